@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.dao;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.audit.entity.AuthzAuditEventDbObj;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+
+/**
+ * Writes authorization audit events to xa_access_audit using JDBC batches on
+ * a single reused connection and prepared statement. Column values are taken
+ * from AuthzAuditEventDbObj, so truncation works the same as with JPA.
+ */
+public class AuthzAuditEventBatchWriter {
+	private static final Log LOG = LogFactory.getLog(AuthzAuditEventBatchWriter.class);
+
+	static final String INSERT_COLUMNS = "repo_type, repo_name, request_user, event_time, access_type, resource_path, resource_type,"
+			+ " action, access_result, agent_id, policy_id, result_reason, acl_enforcer, session_id, client_type, client_ip,"
+			+ " request_data, seq_num, event_count, event_dur_ms, tags";
+	static final String INSERT_VALUES = "?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?";
+
+	private final String jdbcUrl;
+	private final Properties connectionProps;
+	private final int batchSize;
+	private final String insertSql;
+
+	private Connection connection = null;
+	private PreparedStatement insertStmt = null;
+
+	public AuthzAuditEventBatchWriter(String jdbcDriver, String jdbcUrl, String dbUser, String dbPassword, int batchSize) {
+		this.jdbcUrl         = getBatchRewriteUrl(jdbcUrl);
+		this.batchSize       = batchSize > 0 ? batchSize : 1000;
+		this.connectionProps = new Properties();
+
+		if (dbUser != null) {
+			connectionProps.put("user", dbUser);
+		}
+		if (dbPassword != null) {
+			connectionProps.put("password", dbPassword);
+		}
+
+		if (jdbcDriver != null && !jdbcDriver.isEmpty()) {
+			try {
+				Class.forName(jdbcDriver);
+			} catch (ClassNotFoundException excp) {
+				LOG.error("AuthzAuditEventBatchWriter: JDBC driver not found. driver=" + jdbcDriver, excp);
+			}
+		}
+
+		// Oracle has no column default for the id, it must come from the sequence
+		if (jdbcUrl != null && jdbcUrl.startsWith("jdbc:oracle:")) {
+			insertSql = "INSERT INTO xa_access_audit (id, " + INSERT_COLUMNS + ") VALUES (XA_ACCESS_AUDIT_SEQ.NEXTVAL, " + INSERT_VALUES + ")";
+		} else {
+			insertSql = "INSERT INTO xa_access_audit (" + INSERT_COLUMNS + ") VALUES (" + INSERT_VALUES + ")";
+		}
+
+		LOG.info("AuthzAuditEventBatchWriter: jdbcUrl=" + this.jdbcUrl + ", batchSize=" + this.batchSize);
+	}
+
+	/**
+	 * Inserts the events in a single transaction. On failure the transaction
+	 * is rolled back, the connection is closed and SQLException is thrown.
+	 */
+	public synchronized void write(Collection<AuditEventBase> events) throws SQLException {
+		if (events == null || events.isEmpty()) {
+			return;
+		}
+
+		try {
+			PreparedStatement stmt = getInsertStatement();
+			int count = 0;
+
+			for (AuditEventBase event : events) {
+				if (!(event instanceof AuthzAuditEvent)) {
+					LOG.warn("AuthzAuditEventBatchWriter: ignoring unsupported event type " + event.getClass().getName());
+					continue;
+				}
+
+				bind(stmt, new AuthzAuditEventDbObj((AuthzAuditEvent) event));
+				stmt.addBatch();
+
+				if (++count % batchSize == 0) {
+					stmt.executeBatch();
+				}
+			}
+
+			if (count % batchSize != 0) {
+				stmt.executeBatch();
+			}
+
+			connection.commit();
+		} catch (SQLException excp) {
+			rollback();
+			close();
+
+			throw excp;
+		}
+	}
+
+	public synchronized boolean isConnected() {
+		try {
+			return connection != null && !connection.isClosed();
+		} catch (SQLException excp) {
+			return false;
+		}
+	}
+
+	public synchronized void close() {
+		if (insertStmt != null) {
+			try {
+				insertStmt.close();
+			} catch (SQLException excp) {
+				LOG.debug("AuthzAuditEventBatchWriter.close(): error closing statement", excp);
+			}
+			insertStmt = null;
+		}
+
+		if (connection != null) {
+			try {
+				connection.close();
+			} catch (SQLException excp) {
+				LOG.debug("AuthzAuditEventBatchWriter.close(): error closing connection", excp);
+			}
+			connection = null;
+		}
+	}
+
+	private PreparedStatement getInsertStatement() throws SQLException {
+		if (connection == null || connection.isClosed()) {
+			close();
+
+			connection = DriverManager.getConnection(jdbcUrl, connectionProps);
+			connection.setAutoCommit(false);
+		}
+
+		if (insertStmt == null) {
+			insertStmt = connection.prepareStatement(insertSql);
+		}
+
+		return insertStmt;
+	}
+
+	private void rollback() {
+		if (connection != null) {
+			try {
+				connection.rollback();
+			} catch (SQLException excp) {
+				LOG.debug("AuthzAuditEventBatchWriter.rollback(): failed", excp);
+			}
+		}
+	}
+
+	private void bind(PreparedStatement stmt, AuthzAuditEventDbObj obj) throws SQLException {
+		int idx = 0;
+
+		stmt.setInt(++idx, obj.getRepositoryType());
+		setString(stmt, ++idx, obj.getRepositoryName());
+		setString(stmt, ++idx, obj.getUser());
+		stmt.setTimestamp(++idx, obj.getTimeStamp() == null ? null : new Timestamp(obj.getTimeStamp().getTime()));
+		setString(stmt, ++idx, obj.getAccessType());
+		setString(stmt, ++idx, obj.getResourcePath());
+		setString(stmt, ++idx, obj.getResourceType());
+		setString(stmt, ++idx, obj.getAction());
+		stmt.setInt(++idx, obj.getAccessResult());
+		setString(stmt, ++idx, obj.getAgentId());
+		stmt.setLong(++idx, obj.getPolicyId());
+		setString(stmt, ++idx, obj.getResultReason());
+		setString(stmt, ++idx, obj.getAclEnforcer());
+		setString(stmt, ++idx, obj.getSessionId());
+		setString(stmt, ++idx, obj.getClientType());
+		setString(stmt, ++idx, obj.getClientIP());
+		setString(stmt, ++idx, obj.getRequestData());
+		stmt.setLong(++idx, obj.getSeqNum());
+		stmt.setLong(++idx, obj.getEventCount());
+		stmt.setLong(++idx, obj.getEventDurationMS());
+		setString(stmt, ++idx, obj.getTags());
+	}
+
+	private void setString(PreparedStatement stmt, int idx, String value) throws SQLException {
+		if (value == null) {
+			stmt.setNull(idx, Types.VARCHAR);
+		} else {
+			stmt.setString(idx, value);
+		}
+	}
+
+	/*
+	 * Let the driver rewrite a batch into multi-row INSERT statements where it
+	 * supports doing so
+	 */
+	static String getBatchRewriteUrl(String jdbcUrl) {
+		String ret = jdbcUrl;
+
+		if (jdbcUrl != null) {
+			if (jdbcUrl.startsWith("jdbc:mysql:") && !jdbcUrl.contains("rewriteBatchedStatements")) {
+				ret = jdbcUrl + (jdbcUrl.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true";
+			} else if (jdbcUrl.startsWith("jdbc:postgresql:") && !jdbcUrl.contains("reWriteBatchedInserts")) {
+				ret = jdbcUrl + (jdbcUrl.contains("?") ? "&" : "?") + "reWriteBatchedInserts=true";
+			}
+		}
+
+		return ret;
+	}
+}
@@ -19,6 +19,7 @@
 
 package org.apache.ranger.audit.destination;
 
+import java.sql.SQLException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -32,6 +33,7 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.Persistence;
 
+import org.apache.ranger.audit.dao.AuthzAuditEventBatchWriter;
 import org.apache.ranger.audit.dao.DaoManager;
 import org.apache.ranger.audit.entity.AuthzAuditEventDbObj;
 import org.apache.ranger.audit.model.AuditEventBase;
@@ -47,14 +49,19 @@ public class DBAuditDestination extends AuditDestination {
 	public static final String PROP_DB_USER = "user";
 	public static final String PROP_DB_PASSWORD = "password";
 	public static final String PROP_DB_PASSWORD_ALIAS = "password.alias";
+	public static final String PROP_DB_JDBC_BATCH_ENABLED = "jdbc.batch.enabled";
+	public static final String PROP_DB_JDBC_BATCH_SIZE = "jdbc.batch.size";
 
 	private EntityManagerFactory entityManagerFactory;
 	private DaoManager daoManager;
+	private AuthzAuditEventBatchWriter batchWriter;
 
 	private String jdbcDriver = null;
 	private String jdbcURL = null;
 	private String dbUser = null;
 	private String dbPasswordAlias = "auditDBCred";
+	private boolean useJdbcBatch = false;
+	private int jdbcBatchSize = 1000;
 
 	public DBAuditDestination() {
 		logger.info("DBAuditDestination() called");
@@ -64,6 +71,14 @@ public class DBAuditDestination extends AuditDestination {
 	public void init(Properties props, String propPrefix) {
 		logger.info("init() called");
 		super.init(props, propPrefix);
+
+		useJdbcBatch = MiscUtil.getBooleanProperty(props, this.propPrefix + "."
+				+ PROP_DB_JDBC_BATCH_ENABLED, useJdbcBatch);
+		jdbcBatchSize = MiscUtil.getIntProperty(props, this.propPrefix + "."
+				+ PROP_DB_JDBC_BATCH_SIZE, jdbcBatchSize);
+		logger.info("useJdbcBatch=" + useJdbcBatch + ", jdbcBatchSize="
+				+ jdbcBatchSize);
+
 		// Initial connect
 		connect();
 
@@ -83,8 +98,10 @@ public class DBAuditDestination extends AuditDestination {
 		boolean retValue = false;
 		logStatusIfRequired();
 		addTotalCount(events.size());
-		
-		if (beginTransaction()) {
+
+		if (useJdbcBatch) {
+			retValue = logWithJdbcBatch(events);
+		} else if (beginTransaction()) {
 			boolean isFailed = false;
 			for (AuditEventBase event : events) {
 				try {
@@ -111,6 +128,25 @@ public class DBAuditDestination extends AuditDestination {
 		return retValue;
 	}
 
+	private boolean logWithJdbcBatch(Collection<AuditEventBase> events) {
+		AuthzAuditEventBatchWriter writer = batchWriter;
+		if (writer == null) {
+			connect();
+			writer = batchWriter;
+		}
+		if (writer == null) {
+			return false;
+		}
+		try {
+			writer.write(events);
+			return true;
+		} catch (SQLException excp) {
+			logError("Error writing audit events to database. dbURL="
+					+ jdbcURL + ", dbUser=" + dbUser, excp);
+			return false;
+		}
+	}
+
 	@Override
 	public void stop() {
 		cleanUp();
@@ -119,7 +155,7 @@ public class DBAuditDestination extends AuditDestination {
 
 	// Local methods
 	protected void connect() {
-		if (isDbConnected()) {
+		if (useJdbcBatch ? batchWriter != null : isDbConnected()) {
 			return;
 		}
 		try {
@@ -169,6 +205,12 @@ public class DBAuditDestination extends AuditDestination {
 					+ dbPasswordAlias + ", credFile=" + credFile
 					+ ", usingPassword=" + (dbPassword == null ? "no" : "yes"));
 
+			if (useJdbcBatch) {
+				batchWriter = new AuthzAuditEventBatchWriter(jdbcDriver,
+						jdbcURL, dbUser, dbPassword, jdbcBatchSize);
+				return;
+			}
+
 			Map<String, String> dbProperties = new HashMap<String, String>();
 			dbProperties.put("javax.persistence.jdbc.driver", jdbcDriver);
 			dbProperties.put("javax.persistence.jdbc.url", jdbcURL);
@@ -203,6 +245,11 @@ public class DBAuditDestination extends AuditDestination {
 	private synchronized void cleanUp() {
 		logger.info("DBAuditDestination: cleanUp()");
 
+		if (batchWriter != null) {
+			batchWriter.close();
+			batchWriter = null;
+		}
+
 		try {
 			if (entityManagerFactory != null && entityManagerFactory.isOpen()) {
 				entityManagerFactory.close();
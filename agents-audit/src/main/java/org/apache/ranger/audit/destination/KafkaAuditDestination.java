@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.destination;
+
+import java.nio.charset.Charset;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.provider.kafka.KafkaAuditProvider;
+
+/**
+ * Kafka audit destination. A batch handed over by the queue is sent as a
+ * whole and acknowledged by all in-sync replicas before log() returns, so a
+ * failed batch can be stashed by the file spooler of the queue.
+ *
+ * Producer tuning is read from the destination properties; any other
+ * producer setting can be passed through with the "config." prefix.
+ */
+public class KafkaAuditDestination extends AuditDestination {
+	private static final Log LOG = LogFactory.getLog(KafkaAuditDestination.class);
+
+	public static final String PROP_KAFKA_BROKER_LIST = "broker_list";
+	public static final String PROP_KAFKA_TOPIC_NAME = "topic_name";
+	public static final String PROP_KAFKA_LINGER_MS = "linger.ms";
+	public static final String PROP_KAFKA_BATCH_SIZE = "batch.size";
+	public static final String PROP_KAFKA_COMPRESSION_TYPE = "compression.type";
+	public static final String PROP_KAFKA_ACKS = "acks";
+	public static final String PROP_KAFKA_PARTITION_KEY = "partition.key";
+	public static final String PROP_KAFKA_SEND_TIMEOUT_MS = "send.timeout.ms";
+
+	public static final String DEFAULT_TOPIC_NAME = "ranger_audits";
+
+	public enum PartitionKey {
+		none, resource, user, repo
+	}
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private volatile Producer<String, byte[]> producer = null;
+	private String topic = DEFAULT_TOPIC_NAME;
+	private PartitionKey partitionKey = PartitionKey.resource;
+	private long sendTimeoutMs = 30 * 1000;
+	private final Map<String, Object> producerProps = new HashMap<String, Object>();
+
+	public KafkaAuditDestination() {
+	}
+
+	@Override
+	public void init(Properties props, String propPrefix) {
+		LOG.info("init() called");
+		super.init(props, propPrefix);
+
+		// Configurations written for KafkaAuditProvider use the
+		// xasecure.audit.kafka.* keys
+		topic = getStringProperty(props, PROP_KAFKA_TOPIC_NAME,
+				KafkaAuditProvider.AUDIT_KAFKA_TOPIC_NAME, DEFAULT_TOPIC_NAME);
+		String brokerList = getStringProperty(props, PROP_KAFKA_BROKER_LIST,
+				KafkaAuditProvider.AUDIT_KAFKA_BROKER_LIST, "localhost:9092");
+
+		String keyName = MiscUtil.getStringProperty(props, this.propPrefix
+				+ "." + PROP_KAFKA_PARTITION_KEY);
+		if (keyName != null && !keyName.isEmpty()) {
+			try {
+				partitionKey = PartitionKey.valueOf(keyName.trim().toLowerCase());
+			} catch (IllegalArgumentException excp) {
+				LOG.error("Invalid value for " + this.propPrefix + "."
+						+ PROP_KAFKA_PARTITION_KEY + ": " + keyName
+						+ ". Using " + partitionKey);
+			}
+		}
+		sendTimeoutMs = MiscUtil.getLongProperty(props, this.propPrefix + "."
+				+ PROP_KAFKA_SEND_TIMEOUT_MS, sendTimeoutMs);
+
+		producerProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, brokerList);
+		producerProps.put(ProducerConfig.LINGER_MS_CONFIG, MiscUtil
+				.getIntProperty(props, this.propPrefix + "."
+						+ PROP_KAFKA_LINGER_MS, 50));
+		producerProps.put(ProducerConfig.BATCH_SIZE_CONFIG, MiscUtil
+				.getIntProperty(props, this.propPrefix + "."
+						+ PROP_KAFKA_BATCH_SIZE, 256 * 1024));
+		producerProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG,
+				getStringProperty(props, PROP_KAFKA_COMPRESSION_TYPE, "lz4"));
+		producerProps.put(ProducerConfig.ACKS_CONFIG,
+				getStringProperty(props, PROP_KAFKA_ACKS, "all"));
+		// Retry without reordering or duplicating in-flight batches
+		producerProps.put(ProducerConfig.RETRIES_CONFIG, 3);
+		producerProps.put(
+				ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 1);
+		producerProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG,
+				StringSerializer.class.getName());
+		producerProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
+				ByteArraySerializer.class.getName());
+		producerProps.putAll(configProps);
+
+		LOG.info("Kafka topic=" + topic + ", partitionKey=" + partitionKey
+				+ ", producerProperties=" + producerProps);
+
+		connect();
+	}
+
+	synchronized void connect() {
+		if (producer == null) {
+			try {
+				producer = MiscUtil.executePrivilegedAction(new PrivilegedAction<Producer<String, byte[]>>() {
+					@Override
+					public Producer<String, byte[]> run() {
+						return new KafkaProducer<String, byte[]>(producerProps);
+					};
+				});
+			} catch (Throwable t) {
+				logError("Error creating Kafka producer. brokers="
+						+ producerProps.get(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG), t);
+			}
+		}
+	}
+
+	@Override
+	public boolean log(Collection<AuditEventBase> events) {
+		try {
+			logStatusIfRequired();
+			addTotalCount(events.size());
+
+			if (producer == null) {
+				connect();
+				if (producer == null) {
+					addDeferredCount(events.size());
+					return false;
+				}
+			}
+
+			final List<ProducerRecord<String, byte[]>> records = new ArrayList<ProducerRecord<String, byte[]>>(events.size());
+			for (AuditEventBase event : events) {
+				records.add(toRecord(event));
+			}
+
+			final List<Future<RecordMetadata>> results = MiscUtil.executePrivilegedAction(new PrivilegedAction<List<Future<RecordMetadata>>>() {
+				@Override
+				public List<Future<RecordMetadata>> run() {
+					List<Future<RecordMetadata>> ret = new ArrayList<Future<RecordMetadata>>(records.size());
+					for (ProducerRecord<String, byte[]> record : records) {
+						ret.add(producer.send(record));
+					}
+					return ret;
+				};
+			});
+
+			long deadline = System.currentTimeMillis() + sendTimeoutMs;
+			for (Future<RecordMetadata> result : results) {
+				long waitMs = Math.max(deadline - System.currentTimeMillis(), 1);
+				result.get(waitMs, TimeUnit.MILLISECONDS);
+			}
+			addSuccessCount(events.size());
+		} catch (Throwable t) {
+			// Let the queue spool the batch and retry. Some events of the
+			// batch might be delivered twice.
+			addDeferredCount(events.size());
+			logError("Error sending audit events to Kafka. topic=" + topic, t);
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public void flush() {
+		Producer<String, byte[]> me = producer;
+		if (me != null) {
+			me.flush();
+		}
+	}
+
+	@Override
+	public void stop() {
+		LOG.info("stop() called");
+		final Producer<String, byte[]> me = producer;
+		producer = null;
+		if (me != null) {
+			try {
+				MiscUtil.executePrivilegedAction(new PrivilegedAction<Void>() {
+					@Override
+					public Void run() {
+						me.close();
+						return null;
+					};
+				});
+			} catch (Throwable t) {
+				LOG.error("Error closing Kafka producer", t);
+			}
+		}
+		logStatus();
+	}
+
+	ProducerRecord<String, byte[]> toRecord(AuditEventBase event) {
+		String key = null;
+		if (event instanceof AuthzAuditEvent) {
+			AuthzAuditEvent authzEvent = (AuthzAuditEvent) event;
+
+			if (authzEvent.getAgentHostname() == null) {
+				authzEvent.setAgentHostname(MiscUtil.getHostname());
+			}
+			if (authzEvent.getLogType() == null) {
+				authzEvent.setLogType("RangerAudit");
+			}
+			if (authzEvent.getEventId() == null) {
+				authzEvent.setEventId(MiscUtil.generateUniqueId());
+			}
+			key = getPartitionKey(authzEvent);
+		}
+
+		byte[] value = MiscUtil.stringify(event).getBytes(UTF8);
+
+		return new ProducerRecord<String, byte[]>(topic, key, value);
+	}
+
+	String getPartitionKey(AuthzAuditEvent event) {
+		switch (partitionKey) {
+		case resource:
+			return event.getResourcePath();
+		case user:
+			return event.getUser();
+		case repo:
+			return event.getRepositoryName();
+		default:
+			return null;
+		}
+	}
+
+	private String getStringProperty(Properties props, String propName,
+			String defValue) {
+		String ret = MiscUtil.getStringProperty(props, propPrefix + "."
+				+ propName);
+		return ret == null || ret.isEmpty() ? defValue : ret;
+	}
+
+	private String getStringProperty(Properties props, String propName,
+			String legacyPropName, String defValue) {
+		String ret = getStringProperty(props, propName, null);
+		if (ret == null) {
+			ret = MiscUtil.getStringProperty(props, legacyPropName);
+			if (ret != null && !ret.isEmpty()) {
+				LOG.info("Using " + legacyPropName + " as " + propPrefix + "."
+						+ propName + " is not set");
+			}
+		}
+		return ret == null || ret.isEmpty() ? defValue : ret;
+	}
+
+	String getTopic() {
+		return topic;
+	}
+
+	Object getBrokerList() {
+		return producerProps.get(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG);
+	}
+}
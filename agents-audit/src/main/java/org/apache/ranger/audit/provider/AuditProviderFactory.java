@@ -30,6 +30,7 @@ import org.apache.hadoop.util.ShutdownHookManager;
 import org.apache.ranger.audit.destination.DBAuditDestination;
 import org.apache.ranger.audit.destination.FileAuditDestination;
 import org.apache.ranger.audit.destination.HDFSAuditDestination;
+import org.apache.ranger.audit.destination.KafkaAuditDestination;
 import org.apache.ranger.audit.destination.Log4JAuditDestination;
 import org.apache.ranger.audit.destination.SolrAuditDestination;
 import org.apache.ranger.audit.provider.hdfs.HdfsAuditProvider;
@@ -202,6 +203,11 @@ public class AuditProviderFactory {
 				} else {
 					LOG.info("Audit destination " + destProvider.getName()
 							+ " added to provider list");
+					if (destNameList.size() > 1) {
+						LOG.warn("Audit destination " + destProvider.getName()
+								+ " has no queue. With multiple destinations, it"
+								+ " is written to in line and can hold up the others");
+					}
 					providers.add(destProvider);
 				}
 			}
@@ -433,7 +439,7 @@ public class AuditProviderFactory {
 			} else if (providerName.equals("solr")) {
 				provider = new SolrAuditDestination();
 			} else if (providerName.equals("kafka")) {
-				provider = new KafkaAuditProvider();
+				provider = new KafkaAuditDestination();
 			} else if (providerName.equals("db")) {
 				provider = new DBAuditDestination();
 			} else if (providerName.equals("log4j")) {
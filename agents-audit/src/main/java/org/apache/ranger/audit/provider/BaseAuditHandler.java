@@ -306,13 +306,21 @@ public abstract class BaseAuditHandler implements AuditHandler {
 					+ (totalStashedCount > 0 ? (", totalStashedCount=" + totalStashedCount)
 							: "")
 					+ (totalDeferredCount > 0 ? (", totalDeferredCount=" + totalDeferredCount)
-							: "");
+							: "")
+					+ getStatusDetails();
 			LOG.info(msg);
 		} catch (Throwable t) {
 			LOG.error("Error while printing stats. auditProvider=" + getName());
 		}
 	}
 
+	/**
+	 * @return handler specific details appended to the status log line
+	 */
+	protected String getStatusDetails() {
+		return "";
+	}
+
 	public void logError(String msg) {
 		long currTimeMS = System.currentTimeMillis();
 		if (currTimeMS - lastErrorLogMS > errorLogIntervalMS) {
@@ -21,23 +21,45 @@ package org.apache.ranger.audit.queue;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.Properties;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.log4j.MDC;
 import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.provider.AuditHandler;
+import org.apache.ranger.audit.provider.MiscUtil;
 
 public class AuditBatchQueue extends AuditQueue implements Runnable {
 	private static final Log logger = LogFactory.getLog(AuditBatchQueue.class);
 
+	public static final String PROP_QUEUE_FULL_POLICY = "queue.full.policy";
+	public static final String PROP_QUEUE_FULL_WAIT_MS = "queue.full.wait.ms";
+
+	/**
+	 * What log() does when the queue of this destination is full. With spool
+	 * and block, a slow destination doesn't make the caller drop events for
+	 * the other destinations; block holds the caller up for at most
+	 * queue.full.wait.ms.
+	 */
+	public enum QueueFullPolicy {
+		drop, spool, block
+	}
+
 	private BlockingQueue<AuditEventBase> queue = null;
 	private Collection<AuditEventBase> localBatchBuffer = new ArrayList<AuditEventBase>();
 
+	private QueueFullPolicy queueFullPolicy = QueueFullPolicy.drop;
+	private long queueFullWaitMs = 1000;
+	private final AtomicLong queueFullCount = new AtomicLong();
+	private volatile long lastDeliveredEventTime = 0;
+	private volatile long lastDeliveryTime = 0;
+
 	Thread consumerThread = null;
 	static int threadCount = 0;
 	static final String DEFAULT_NAME = "batch";
@@ -56,9 +78,34 @@ public class AuditBatchQueue extends AuditQueue implements Runnable {
 	 */
 	@Override
 	public boolean log(AuditEventBase event) {
-		// Add to batchQueue. Block if full
-		queue.add(event);
-		return true;
+		if (queue.offer(event)) {
+			return true;
+		}
+
+		queueFullCount.incrementAndGet();
+
+		if (queueFullPolicy == QueueFullPolicy.block) {
+			try {
+				if (queue.offer(event, queueFullWaitMs, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		if (queueFullPolicy != QueueFullPolicy.drop && fileSpoolerEnabled) {
+			fileSpooler.stashLogs(event);
+			addStashedCount(1);
+			return true;
+		}
+
+		addFailedCount(1);
+		logError("Queue is full, dropping audit event. queue=" + getName()
+				+ ", dest=" + consumer.getName() + ", queueSize="
+				+ queue.size());
+		logFailedEvent(event);
+		return false;
 	}
 
 	@Override
@@ -82,6 +129,60 @@ public class AuditBatchQueue extends AuditQueue implements Runnable {
 
 		super.init(prop, propPrefix);
 
+		String policy = MiscUtil.getStringProperty(prop, this.propPrefix + "."
+				+ PROP_QUEUE_FULL_POLICY);
+		if (policy == null || policy.isEmpty()) {
+			// Spool rather than lose events, if there is a spool
+			queueFullPolicy = fileSpoolerEnabled ? QueueFullPolicy.spool
+					: QueueFullPolicy.drop;
+		} else {
+			try {
+				queueFullPolicy = QueueFullPolicy.valueOf(policy.trim()
+						.toLowerCase());
+			} catch (IllegalArgumentException excp) {
+				logger.error("Invalid value for " + this.propPrefix + "."
+						+ PROP_QUEUE_FULL_POLICY + ": " + policy + ". Using "
+						+ queueFullPolicy);
+			}
+		}
+		queueFullWaitMs = MiscUtil.getLongProperty(prop, this.propPrefix + "."
+				+ PROP_QUEUE_FULL_WAIT_MS, queueFullWaitMs);
+
+		logger.info("name=" + getName() + ", queueFullPolicy="
+				+ queueFullPolicy + ", queueFullWaitMs=" + queueFullWaitMs);
+	}
+
+	public QueueFullPolicy getQueueFullPolicy() {
+		return queueFullPolicy;
+	}
+
+	public int getQueueSize() {
+		BlockingQueue<AuditEventBase> me = queue;
+		return me == null ? 0 : me.size();
+	}
+
+	public long getQueueFullCount() {
+		return queueFullCount.get();
+	}
+
+	/**
+	 * @return how far the destination is behind, in milliseconds: the time
+	 *         since the last delivered event was generated if events are
+	 *         waiting, otherwise 0
+	 */
+	public long getLagMs() {
+		if (getQueueSize() == 0 && !(fileSpoolerEnabled && fileSpooler.isPending())) {
+			return 0;
+		}
+		long since = lastDeliveredEventTime > 0 ? lastDeliveredEventTime
+				: lastDeliveryTime;
+		return since > 0 ? Math.max(System.currentTimeMillis() - since, 0) : 0;
+	}
+
+	@Override
+	protected String getStatusDetails() {
+		return ", queueSize=" + getQueueSize() + ", lagMs=" + getLagMs()
+				+ ", queueFullCount=" + getQueueFullCount();
 	}
 
 	/*
@@ -98,6 +199,7 @@ public class AuditBatchQueue extends AuditQueue implements Runnable {
 		logger.info("Creating ArrayBlockingQueue with maxSize="
 				+ getMaxQueueSize());
 		queue = new ArrayBlockingQueue<AuditEventBase>(getMaxQueueSize());
+		lastDeliveryTime = System.currentTimeMillis();
 
 		// Start the consumer first
 		consumer.start();
@@ -323,6 +425,7 @@ public class AuditBatchQueue extends AuditQueue implements Runnable {
 				} else {
 					isDestActive = true;
 					addSuccessCount(localBatchBuffer.size());
+					updateDeliveredTime(localBatchBuffer);
 				}
 				localBatchBuffer.clear();
 			}
@@ -361,4 +464,18 @@ public class AuditBatchQueue extends AuditQueue implements Runnable {
 		logStatus();
 		logger.info("Exiting consumerThread.run() method. name=" + getName());
 	}
+
+	private void updateDeliveredTime(Collection<AuditEventBase> events) {
+		long latest = 0;
+		for (AuditEventBase event : events) {
+			Date eventTime = event.getEventTime();
+			if (eventTime != null && eventTime.getTime() > latest) {
+				latest = eventTime.getTime();
+			}
+		}
+		lastDeliveryTime = System.currentTimeMillis();
+		if (latest > 0) {
+			lastDeliveredEventTime = latest;
+		}
+	}
 }
@@ -0,0 +1,778 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.log4j.MDC;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.provider.AuditHandler;
+import org.apache.ranger.audit.provider.MiscUtil;
+
+/**
+ * Write-ahead spool that stores audit events in fixed-size memory-mapped
+ * segment files instead of line oriented JSON files.
+ *
+ * Each segment starts with a checksummed header, followed by length-prefixed
+ * records (length, crc32, payload). Read progress is tracked in a small
+ * double-slot checkpoint file, so no index file is rewritten per batch.
+ * Segments are replayed sequentially and deleted once fully delivered.
+ *
+ * Segments are mapped for read up to their length on disk; records past the
+ * end of a truncated segment are treated like a torn write and skipped.
+ */
+public class AuditSegmentSpool extends AuditFileSpool {
+	private static final Log logger = LogFactory.getLog(AuditSegmentSpool.class);
+
+	public static final String PROP_FILE_SPOOL_SEGMENT_SIZE_MB = "filespool.segment.size.mb";
+	public static final String PROP_FILE_SPOOL_CHECKPOINT_FILE = "filespool.checkpoint.filename";
+
+	static final int SEGMENT_MAGIC = 0x52534547; // "RSEG"
+	static final int SEGMENT_VERSION = 1;
+	// magic(4) + version(4) + sequence(8) + segmentSize(4) + crc(4)
+	static final int SEGMENT_HEADER_SIZE = 24;
+	// length(4) + crc(4)
+	static final int RECORD_HEADER_SIZE = 8;
+	static final int RECORD_END_OF_SEGMENT = -1;
+	// generation(8) + sequence(8) + offset(4) + crc(4)
+	static final int CHECKPOINT_SLOT_SIZE = 24;
+	static final String SEGMENT_FILE_EXT = ".seg";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	int segmentSize = 64 * 1024 * 1024;
+	String segmentFilePrefix = null;
+
+	final TreeMap<Long, File> segmentFiles = new TreeMap<Long, File>();
+
+	// Writer state, guarded by this
+	MappedByteBuffer writeBuffer = null;
+	long writeSeq = 0;
+	int writeOffset = SEGMENT_HEADER_SIZE;
+
+	// Reader state, owned by the destination thread
+	MappedByteBuffer readBuffer = null;
+	long readBufferSeq = -1;
+	byte[] readScratch = new byte[8 * 1024];
+	final CRC32 readCrc = new CRC32();
+
+	// Committed read position, guarded by this
+	long readSeq = 0;
+	int readOffset = SEGMENT_HEADER_SIZE;
+
+	File checkpointFile = null;
+	MappedByteBuffer checkpointBuffer = null;
+	long checkpointGeneration = 0;
+
+	public AuditSegmentSpool(AuditQueue queueProvider,
+			AuditHandler consumerProvider) {
+		super(queueProvider, consumerProvider);
+	}
+
+	@Override
+	public boolean init(Properties props, String basePropertyName) {
+		if (initDone) {
+			logger.error("init() called more than once. queueProvider="
+					+ queueProvider.getName() + ", consumerProvider="
+					+ consumerProvider.getName());
+			return true;
+		}
+		String propPrefix = "xasecure.audit.filespool";
+		if (basePropertyName != null) {
+			propPrefix = basePropertyName;
+		}
+
+		try {
+			String logFolderProp = MiscUtil.getStringProperty(props, propPrefix
+					+ "." + PROP_FILE_SPOOL_LOCAL_DIR);
+			fileNamePrefix = MiscUtil.getStringProperty(props, propPrefix + "."
+					+ PROP_FILE_SPOOL_FILENAME_PREFIX);
+			String checkpointFileName = MiscUtil.getStringProperty(props,
+					propPrefix + "." + PROP_FILE_SPOOL_CHECKPOINT_FILE);
+			retryDestinationMS = MiscUtil.getIntProperty(props, propPrefix
+					+ "." + PROP_FILE_SPOOL_DEST_RETRY_MS, retryDestinationMS);
+			int segmentSizeMB = MiscUtil.getIntProperty(props, propPrefix
+					+ "." + PROP_FILE_SPOOL_SEGMENT_SIZE_MB, segmentSize
+					/ (1024 * 1024));
+			if (segmentSizeMB > 0 && segmentSizeMB < 2048) {
+				segmentSize = segmentSizeMB * 1024 * 1024;
+			}
+
+			logger.info("retryDestinationMS=" + retryDestinationMS
+					+ ", queueName=" + queueProvider.getName());
+			logger.info("segmentSize=" + segmentSize + ", queueName="
+					+ queueProvider.getName());
+
+			if (logFolderProp == null || logFolderProp.isEmpty()) {
+				logger.fatal("Audit spool folder is not configured. Please set "
+						+ propPrefix
+						+ "."
+						+ PROP_FILE_SPOOL_LOCAL_DIR
+						+ ". queueName=" + queueProvider.getName());
+				return false;
+			}
+			logFolder = new File(logFolderProp);
+			if (!logFolder.isDirectory()) {
+				logFolder.mkdirs();
+				if (!logFolder.isDirectory()) {
+					logger.fatal("File Spool folder not found and can't be created. folder="
+							+ logFolder.getAbsolutePath()
+							+ ", queueName="
+							+ queueProvider.getName());
+					return false;
+				}
+			}
+			logger.info("logFolder=" + logFolder + ", queueName="
+					+ queueProvider.getName());
+
+			if (fileNamePrefix == null || fileNamePrefix.isEmpty()) {
+				fileNamePrefix = queueProvider.getName() + "_"
+						+ consumerProvider.getName();
+			}
+			segmentFilePrefix = MiscUtil.replaceTokens("segment_"
+					+ fileNamePrefix + "_" + "%app-type%" + "_",
+					System.currentTimeMillis());
+
+			if (checkpointFileName == null || checkpointFileName.isEmpty()) {
+				checkpointFileName = MiscUtil.replaceTokens("checkpoint_"
+						+ fileNamePrefix + "_" + "%app-type%" + ".bin",
+						System.currentTimeMillis());
+			}
+			checkpointFile = new File(logFolder, checkpointFileName);
+			logger.info("checkpointFile=" + checkpointFile + ", queueName="
+					+ queueProvider.getName());
+
+			recoverSegments();
+		} catch (Throwable t) {
+			logger.fatal("Error initializing Segment Spooler. queue="
+					+ queueProvider.getName(), t);
+			return false;
+		}
+		initDone = true;
+		return true;
+	}
+
+	@Override
+	public void start() {
+		if (!initDone) {
+			logger.error("Cannot start Audit Segment Spooler. Initilization not done yet. queueName="
+					+ queueProvider.getName());
+			return;
+		}
+
+		logger.info("Starting writerThread, queueName="
+				+ queueProvider.getName() + ", consumer="
+				+ consumerProvider.getName());
+
+		destinationThread = new Thread(this, queueProvider.getName() + "_"
+				+ consumerProvider.getName() + "_destWriter");
+		destinationThread.setDaemon(true);
+		destinationThread.start();
+	}
+
+	@Override
+	public void stop() {
+		if (!initDone) {
+			logger.error("Cannot stop Audit Segment Spooler. Initilization not done. queueName="
+					+ queueProvider.getName());
+			return;
+		}
+		logger.info("Stop called, queueName=" + queueProvider.getName()
+				+ ", consumer=" + consumerProvider.getName());
+
+		isDrain = true;
+		flush();
+
+		try {
+			if (destinationThread != null) {
+				destinationThread.interrupt();
+			}
+			destinationThread = null;
+		} catch (Throwable e) {
+			// ignore
+		}
+	}
+
+	@Override
+	synchronized public void flush() {
+		if (!initDone) {
+			logger.error("Cannot flush Audit Segment Spooler. Initilization not done. queueName="
+					+ queueProvider.getName());
+			return;
+		}
+		if (writeBuffer != null) {
+			writeBuffer.force();
+		}
+		if (checkpointBuffer != null) {
+			checkpointBuffer.force();
+		}
+	}
+
+	@Override
+	synchronized public boolean isPending() {
+		if (!initDone) {
+			logError("isPending(): Segment Spooler not initialized. queueName="
+					+ queueProvider.getName());
+			return false;
+		}
+		return readSeq < writeSeq || readOffset < writeOffset;
+	}
+
+	@Override
+	synchronized public void stashLogs(AuditEventBase event) {
+		if (isDrain) {
+			// Stop has been called, so this method shouldn't be called
+			logger.error("stashLogs() is called after stop is called. event="
+					+ event);
+			return;
+		}
+		try {
+			appendRecord(MiscUtil.stringify(event).getBytes(UTF8));
+		} catch (Exception ex) {
+			logger.error("Error writing to segment. event=" + event, ex);
+		}
+	}
+
+	@Override
+	synchronized public void stashLogs(Collection<AuditEventBase> events) {
+		for (AuditEventBase event : events) {
+			stashLogs(event);
+		}
+	}
+
+	@Override
+	synchronized public void stashLogsString(String event) {
+		if (isDrain) {
+			// Stop has been called, so this method shouldn't be called
+			logger.error("stashLogs() is called after stop is called. event="
+					+ event);
+			return;
+		}
+		try {
+			appendRecord(event.getBytes(UTF8));
+		} catch (Exception ex) {
+			logger.error("Error writing to segment. event=" + event, ex);
+		}
+	}
+
+	@Override
+	synchronized public void stashLogsString(Collection<String> events) {
+		for (String event : events) {
+			stashLogsString(event);
+		}
+	}
+
+	/**
+	 * Appends one record to the active segment. The length field is written
+	 * last, so a reader never sees a partially written record.
+	 */
+	synchronized void appendRecord(byte[] payload) throws IOException {
+		int recordSize = RECORD_HEADER_SIZE + payload.length;
+		// A record must fit in an empty segment, leaving room for the end marker
+		if (recordSize > segmentSize - SEGMENT_HEADER_SIZE - RECORD_HEADER_SIZE) {
+			logger.error("Audit record too large for segment. recordSize="
+					+ recordSize + ", segmentSize=" + segmentSize
+					+ ", queueName=" + queueProvider.getName());
+			return;
+		}
+		if (writeBuffer == null
+				|| writeOffset + recordSize + RECORD_HEADER_SIZE > segmentSize) {
+			rollSegment();
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(payload, 0, payload.length);
+
+		ByteBuffer out = writeBuffer.duplicate();
+		out.position(writeOffset + RECORD_HEADER_SIZE);
+		out.put(payload);
+		writeBuffer.putInt(writeOffset + 4, (int) crc.getValue());
+		writeBuffer.putInt(writeOffset, payload.length);
+		writeOffset += recordSize;
+
+		isPending = true;
+		notifyAll();
+	}
+
+	/**
+	 * Seals the active segment (if any) and creates the next one
+	 */
+	synchronized void rollSegment() throws IOException {
+		if (writeBuffer != null) {
+			writeBuffer.putInt(writeOffset, RECORD_END_OF_SEGMENT);
+			writeBuffer.force();
+			unmap(writeBuffer);
+			writeBuffer = null;
+		}
+		long newSeq = writeSeq + 1;
+		File segmentFile = new File(logFolder, getSegmentFileName(newSeq));
+		logger.info("Creating new segment. queueName="
+				+ queueProvider.getName() + ", fileName=" + segmentFile);
+
+		MappedByteBuffer buffer = mapSegment(segmentFile,
+				FileChannel.MapMode.READ_WRITE);
+		buffer.putInt(0, SEGMENT_MAGIC);
+		buffer.putInt(4, SEGMENT_VERSION);
+		buffer.putLong(8, newSeq);
+		buffer.putInt(16, segmentSize);
+		buffer.putInt(20, headerCrc(buffer));
+
+		segmentFiles.put(newSeq, segmentFile);
+		writeBuffer = buffer;
+		writeSeq = newSeq;
+		writeOffset = SEGMENT_HEADER_SIZE;
+	}
+
+	/**
+	 * Loads existing segments and the checkpoint, and positions the writer at
+	 * the end of the last valid record
+	 */
+	void recoverSegments() throws IOException {
+		File[] files = logFolder.listFiles(new FileFilter() {
+			public boolean accept(File pathname) {
+				String name = pathname.getName();
+				return name.startsWith(segmentFilePrefix)
+						&& name.endsWith(SEGMENT_FILE_EXT);
+			}
+		});
+		if (files != null) {
+			for (File file : files) {
+				String name = file.getName();
+				try {
+					long seq = Long.parseLong(name.substring(
+							segmentFilePrefix.length(), name.length()
+									- SEGMENT_FILE_EXT.length()));
+					segmentFiles.put(seq, file);
+				} catch (NumberFormatException excp) {
+					logger.warn("Ignoring unexpected file in spool folder. file="
+							+ file);
+				}
+			}
+		}
+
+		checkpointBuffer = mapCheckpoint();
+		long[] checkpoint = readCheckpoint();
+
+		if (segmentFiles.isEmpty()) {
+			writeSeq = checkpoint != null ? checkpoint[1] : 0;
+			readSeq = writeSeq;
+			readOffset = SEGMENT_HEADER_SIZE;
+			writeOffset = SEGMENT_HEADER_SIZE;
+			return;
+		}
+
+		readSeq = segmentFiles.firstKey();
+		readOffset = SEGMENT_HEADER_SIZE;
+		if (checkpoint != null && segmentFiles.containsKey(checkpoint[1])) {
+			readSeq = checkpoint[1];
+			readOffset = (int) checkpoint[2];
+		}
+		logger.info("Recovered read position. segment=" + readSeq
+				+ ", offset=" + readOffset + ", queueName="
+				+ queueProvider.getName());
+
+		// Segments before the checkpoint were already delivered
+		while (!segmentFiles.isEmpty() && segmentFiles.firstKey() < readSeq) {
+			deleteSegment(segmentFiles.firstKey());
+		}
+
+		// The last segment is not reopened for write, the next write rolls to
+		// a new one. Find the end of its valid records for the reader.
+		writeSeq = segmentFiles.lastKey();
+		writeOffset = SEGMENT_HEADER_SIZE;
+		MappedByteBuffer lastSegment = mapSegment(segmentFiles.get(writeSeq),
+				FileChannel.MapMode.READ_ONLY);
+		try {
+			if (isValidHeader(lastSegment, writeSeq)) {
+				// A segment shorter than segmentSize ends with a torn record
+				int limit = lastSegment.capacity();
+				CRC32 crc = new CRC32();
+				while (writeOffset + RECORD_HEADER_SIZE <= limit) {
+					int length = lastSegment.getInt(writeOffset);
+					if (length <= 0
+							|| writeOffset + RECORD_HEADER_SIZE + length > limit
+							|| !isValidRecord(lastSegment, writeOffset, length, crc)) {
+						break;
+					}
+					writeOffset += RECORD_HEADER_SIZE + length;
+				}
+			}
+		} finally {
+			unmap(lastSegment);
+		}
+		if (readSeq == writeSeq && readOffset > writeOffset) {
+			readOffset = writeOffset;
+		}
+		isPending = readSeq < writeSeq || readOffset < writeOffset;
+		logger.info("Recovered write position. segment=" + writeSeq
+				+ ", offset=" + writeOffset + ", queueName="
+				+ queueProvider.getName());
+	}
+
+	@Override
+	public void run() {
+		try {
+			//This is done to clear the MDC context to avoid issue with Ranger Auditing for Knox
+			MDC.clear();
+			runLogAudit();
+		} catch (Throwable t) {
+			logger.fatal("Exited thread without abnormaly. queue="
+					+ consumerProvider.getName(), t);
+		}
+	}
+
+	@Override
+	public void runLogAudit() {
+		List<String> lines = new ArrayList<String>();
+		long[] position = new long[2];
+		while (true) {
+			try {
+				if (isDestDown) {
+					logger.info("Destination is down. sleeping for "
+							+ retryDestinationMS + " milli seconds. queueName="
+							+ queueProvider.getName() + ", consumer="
+							+ consumerProvider.getName());
+					Thread.sleep(retryDestinationMS);
+				}
+				if (isDrain) {
+					// Need to exit
+					break;
+				}
+
+				lines.clear();
+				readBatch(lines, position, queueProvider.getMaxBatchSize());
+				if (lines.isEmpty()) {
+					// Segments may have been fully consumed without new records
+					commitReadPosition(position[0], (int) position[1]);
+					synchronized (this) {
+						if (!isPending()) {
+							wait(retryDestinationMS);
+						}
+					}
+					continue;
+				}
+
+				boolean ret = false;
+				try {
+					ret = consumerProvider.logJSON(lines);
+				} catch (Throwable t) {
+					logger.error("Error while sending logs to consumer. provider="
+							+ queueProvider.getName() + ", consumer="
+							+ consumerProvider.getName(), t);
+				}
+				if (ret) {
+					commitReadPosition(position[0], (int) position[1]);
+					if (isDestDown) {
+						isDestDown = false;
+						logger.info("Destination up now. queueName="
+								+ queueProvider.getName() + ", consumer="
+								+ consumerProvider.getName());
+					}
+				} else {
+					isDestDown = true;
+					lastAttemptTime = System.currentTimeMillis();
+					logError("Destination down. queueName="
+							+ queueProvider.getName() + ", consumer="
+							+ consumerProvider.getName());
+				}
+			} catch (InterruptedException e) {
+				logger.info("Caught exception in consumer thread. Shutdown might be in progress");
+			} catch (Throwable t) {
+				logger.error("Exception in destination writing thread.", t);
+			}
+		}
+		logger.info("Exiting segment spooler. provider="
+				+ queueProvider.getName() + ", consumer="
+				+ consumerProvider.getName());
+	}
+
+	/**
+	 * Reads up to maxRecords records starting at the committed read position.
+	 * The position following the last record read is returned in position,
+	 * it is committed only after the consumer accepts the batch.
+	 */
+	void readBatch(List<String> lines, long[] position, int maxRecords)
+			throws IOException {
+		long seq;
+		int offset;
+		long lastSeq;
+		int lastOffset;
+		synchronized (this) {
+			seq = readSeq;
+			offset = readOffset;
+			lastSeq = writeSeq;
+			lastOffset = writeOffset;
+		}
+
+		while (lines.size() < maxRecords) {
+			if (seq == lastSeq && offset >= lastOffset) {
+				break;
+			}
+			MappedByteBuffer segment = getReadBuffer(seq);
+			// Truncated segments are mapped only up to their length
+			int limit = segment == null ? 0 : Math.min(segment.capacity(),
+					seq == lastSeq ? lastOffset : segmentSize);
+			int length = segment == null || offset + RECORD_HEADER_SIZE > limit ? 0
+					: segment.getInt(offset);
+
+			if (length <= 0 || offset + RECORD_HEADER_SIZE + length > limit) {
+				if (seq == lastSeq) {
+					break;
+				}
+				if (length != 0 && length != RECORD_END_OF_SEGMENT) {
+					logger.error("Invalid record length in segment. Skipping rest of segment. segment="
+							+ seq + ", offset=" + offset + ", length=" + length);
+				}
+				seq = nextSegmentSeq(seq, lastSeq);
+				offset = SEGMENT_HEADER_SIZE;
+				continue;
+			}
+
+			if (!isValidRecord(segment, offset, length, readCrc)) {
+				logger.error("Checksum mismatch in segment. Skipping rest of segment. segment="
+						+ seq + ", offset=" + offset);
+				if (seq == lastSeq) {
+					break;
+				}
+				seq = nextSegmentSeq(seq, lastSeq);
+				offset = SEGMENT_HEADER_SIZE;
+				continue;
+			}
+			// isValidRecord() left the payload in readScratch
+			lines.add(new String(readScratch, 0, length, UTF8));
+			offset += RECORD_HEADER_SIZE + length;
+		}
+		position[0] = seq;
+		position[1] = offset;
+	}
+
+	synchronized void commitReadPosition(long seq, int offset)
+			throws IOException {
+		if (seq == readSeq && offset == readOffset) {
+			return;
+		}
+		readSeq = seq;
+		readOffset = offset;
+		writeCheckpoint(seq, offset);
+
+		while (!segmentFiles.isEmpty() && segmentFiles.firstKey() < readSeq) {
+			deleteSegment(segmentFiles.firstKey());
+		}
+		isPending = readSeq < writeSeq || readOffset < writeOffset;
+	}
+
+	synchronized long nextSegmentSeq(long seq, long lastSeq) {
+		Long next = segmentFiles.higherKey(seq);
+		return next != null ? next : lastSeq;
+	}
+
+	MappedByteBuffer getReadBuffer(long seq) throws IOException {
+		if (readBuffer == null || readBufferSeq != seq) {
+			if (readBuffer != null) {
+				unmap(readBuffer);
+			}
+			readBuffer = null;
+			readBufferSeq = seq;
+			File segmentFile;
+			synchronized (this) {
+				segmentFile = segmentFiles.get(seq);
+			}
+			if (segmentFile != null && segmentFile.exists()) {
+				MappedByteBuffer buffer = mapSegment(segmentFile,
+						FileChannel.MapMode.READ_ONLY);
+				if (isValidHeader(buffer, seq)) {
+					readBuffer = buffer;
+				} else {
+					logger.error("Invalid segment header. Skipping segment. file="
+							+ segmentFile);
+					unmap(buffer);
+				}
+			}
+		}
+		return readBuffer;
+	}
+
+	/**
+	 * Verifies the record checksum. On return the payload is in readScratch.
+	 */
+	boolean isValidRecord(ByteBuffer segment, int offset, int length,
+			CRC32 crc) {
+		if (readScratch.length < length) {
+			readScratch = new byte[Math.max(length, readScratch.length * 2)];
+		}
+		ByteBuffer in = segment.duplicate();
+		in.position(offset + RECORD_HEADER_SIZE);
+		in.get(readScratch, 0, length);
+
+		crc.reset();
+		crc.update(readScratch, 0, length);
+		return (int) crc.getValue() == segment.getInt(offset + 4);
+	}
+
+	boolean isValidHeader(ByteBuffer segment, long seq) {
+		return segment.capacity() >= SEGMENT_HEADER_SIZE
+				&& segment.getInt(0) == SEGMENT_MAGIC
+				&& segment.getInt(4) == SEGMENT_VERSION
+				&& segment.getLong(8) == seq
+				&& segment.getInt(16) == segmentSize
+				&& segment.getInt(20) == headerCrc(segment);
+	}
+
+	int headerCrc(ByteBuffer segment) {
+		byte[] header = new byte[SEGMENT_HEADER_SIZE - 4];
+		ByteBuffer in = segment.duplicate();
+		in.position(0);
+		in.get(header);
+		CRC32 crc = new CRC32();
+		crc.update(header, 0, header.length);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Maps the segment file. New segments are mapped (and extended) to
+	 * segmentSize for write; existing segments are mapped for read up to
+	 * their length, as mapping past the end of a read-only file fails.
+	 */
+	MappedByteBuffer mapSegment(File file, FileChannel.MapMode mode)
+			throws IOException {
+		boolean isReadOnly = mode == FileChannel.MapMode.READ_ONLY;
+		RandomAccessFile raf = new RandomAccessFile(file, isReadOnly ? "r"
+				: "rw");
+		try {
+			long size = isReadOnly ? Math.min(segmentSize, raf.length())
+					: segmentSize;
+			// The mapping stays valid after the channel is closed
+			return raf.getChannel().map(mode, 0, size);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Releases the mapping of a retired buffer right away, instead of when
+	 * the buffer is garbage collected, so that deleted segments free their
+	 * disk space. The buffer must not be used afterwards.
+	 */
+	static void unmap(MappedByteBuffer buffer) {
+		try {
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		} catch (Throwable t) {
+			// Not supported by this JVM; the mapping is released on GC
+			if (logger.isDebugEnabled()) {
+				logger.debug("Unable to unmap segment buffer", t);
+			}
+		}
+	}
+
+	MappedByteBuffer mapCheckpoint() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(checkpointFile, "rw");
+		try {
+			return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+					2 * CHECKPOINT_SLOT_SIZE);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Returns {generation, segment, offset} from the newest valid checkpoint
+	 * slot, or null if there is none
+	 */
+	long[] readCheckpoint() {
+		long[] ret = null;
+		for (int slot = 0; slot < 2; slot++) {
+			int base = slot * CHECKPOINT_SLOT_SIZE;
+			long generation = checkpointBuffer.getLong(base);
+			long seq = checkpointBuffer.getLong(base + 8);
+			int offset = checkpointBuffer.getInt(base + 16);
+			if (generation > 0
+					&& checkpointBuffer.getInt(base + 20) == checkpointCrc(
+							generation, seq, offset)
+					&& (ret == null || generation > ret[0])) {
+				ret = new long[] { generation, seq, offset };
+			}
+		}
+		if (ret != null) {
+			checkpointGeneration = ret[0];
+		}
+		return ret;
+	}
+
+	/**
+	 * Writes the checkpoint into the older of the two slots, so that a torn
+	 * write always leaves the previous checkpoint intact
+	 */
+	synchronized void writeCheckpoint(long seq, int offset) {
+		checkpointGeneration++;
+		int base = (int) (checkpointGeneration % 2) * CHECKPOINT_SLOT_SIZE;
+		checkpointBuffer.putLong(base + 8, seq);
+		checkpointBuffer.putInt(base + 16, offset);
+		checkpointBuffer.putInt(base + 20,
+				checkpointCrc(checkpointGeneration, seq, offset));
+		checkpointBuffer.putLong(base, checkpointGeneration);
+	}
+
+	int checkpointCrc(long generation, long seq, int offset) {
+		ByteBuffer buf = ByteBuffer.allocate(20);
+		buf.putLong(generation).putLong(seq).putInt(offset);
+		CRC32 crc = new CRC32();
+		crc.update(buf.array(), 0, buf.capacity());
+		return (int) crc.getValue();
+	}
+
+	synchronized void deleteSegment(long seq) {
+		File segmentFile = segmentFiles.remove(seq);
+		if (segmentFile != null) {
+			logger.info("Deleting delivered segment. file=" + segmentFile
+					+ ", queueName=" + queueProvider.getName()
+					+ ", consumer=" + consumerProvider.getName());
+			if (!segmentFile.delete()) {
+				logger.error("Error deleting segment file. file="
+						+ segmentFile);
+			}
+		}
+	}
+
+	String getSegmentFileName(long seq) {
+		return segmentFilePrefix + String.format("%020d", seq)
+				+ SEGMENT_FILE_EXT;
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ranger.audit.dao;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Writes audit events into an embedded Derby database
+ */
+public class AuthzAuditEventBatchWriterTest {
+    private static final String DRIVER = "org.apache.derby.jdbc.EmbeddedDriver";
+    private static final String URL    = "jdbc:derby:memory:auditdb;create=true";
+
+    private static final int EVENT_COUNT = 20000;
+
+    private Connection connection;
+
+    @Before
+    public void setup() throws Exception {
+        Class.forName(DRIVER);
+        connection = DriverManager.getConnection(URL);
+
+        Statement stmt = connection.createStatement();
+        stmt.executeUpdate("CREATE TABLE xa_access_audit ("
+                + " id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,"
+                + " repo_type INT, repo_name VARCHAR(255), request_user VARCHAR(255), event_time TIMESTAMP,"
+                + " access_type VARCHAR(255), resource_path VARCHAR(4000), resource_type VARCHAR(255),"
+                + " action VARCHAR(2000), access_result INT, agent_id VARCHAR(255), policy_id BIGINT,"
+                + " result_reason VARCHAR(255), acl_enforcer VARCHAR(255), session_id VARCHAR(255),"
+                + " client_type VARCHAR(255), client_ip VARCHAR(255), request_data VARCHAR(4000),"
+                + " seq_num BIGINT, event_count BIGINT, event_dur_ms BIGINT, tags VARCHAR(4000))");
+        stmt.close();
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        Statement stmt = connection.createStatement();
+        stmt.executeUpdate("DROP TABLE xa_access_audit");
+        stmt.close();
+        connection.close();
+    }
+
+    @Test
+    public void testBatchWrite() throws Exception {
+        List<AuditEventBase> events = createEvents(EVENT_COUNT);
+
+        AuthzAuditEventBatchWriter writer = new AuthzAuditEventBatchWriter(DRIVER, URL, null, null, 500);
+
+        for (int i = 0; i < events.size(); i += 1000) {
+            writer.write(events.subList(i, i + 1000));
+        }
+        Assert.assertTrue(writer.isConnected());
+
+        writer.write(events.subList(0, 10));
+        writer.close();
+
+        Assert.assertEquals(EVENT_COUNT + 10, getRowCount());
+        Assert.assertEquals(EVENT_COUNT / 10 + 1, getRowCount("request_user = 'user3'"));
+        Assert.assertEquals(1, getRowCount("resource_path = '/data/dir42/file4242'"));
+    }
+
+    @Test
+    public void testFailedWriteIsRolledBack() throws Exception {
+        AuthzAuditEventBatchWriter writer = new AuthzAuditEventBatchWriter(DRIVER, URL, null, null, 10);
+
+        List<AuditEventBase> events = createEvents(25);
+        writer.write(events);
+        Assert.assertEquals(25, getRowCount());
+
+        Statement stmt = connection.createStatement();
+        stmt.executeUpdate("ALTER TABLE xa_access_audit ADD CONSTRAINT max_seq_num CHECK (seq_num < 100)");
+        stmt.close();
+
+        try {
+            writer.write(createEvents(200));
+            Assert.fail("write() should have failed");
+        } catch (SQLException excp) {
+            // expected
+        }
+        Assert.assertFalse(writer.isConnected());
+        Assert.assertEquals(25, getRowCount());
+
+        writer.close();
+    }
+
+    private List<AuditEventBase> createEvents(int count) {
+        List<AuditEventBase> ret = new ArrayList<AuditEventBase>(count);
+
+        for (int i = 0; i < count; i++) {
+            AuthzAuditEvent event = new AuthzAuditEvent();
+
+            event.setRepositoryType(1);
+            event.setRepositoryName("hdfsdev");
+            event.setUser("user" + (i % 10));
+            event.setEventTime(new Date());
+            event.setAccessType("read");
+            event.setResourcePath("/data/dir" + (i % 100) + "/file" + i);
+            event.setResourceType("path");
+            event.setAction("read");
+            event.setAccessResult((short) 1);
+            event.setAgentId("hdfs");
+            event.setPolicyId(i % 50);
+            event.setAclEnforcer("ranger-acl");
+            event.setClientIP("10.0.0." + (i % 250));
+            event.setSeqNum(i);
+            event.setEventCount(1);
+
+            ret.add(event);
+        }
+
+        return ret;
+    }
+
+    private int getRowCount() throws SQLException {
+        return getRowCount("1 = 1");
+    }
+
+    private int getRowCount(String condition) throws SQLException {
+        Statement stmt = connection.createStatement();
+        try {
+            ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM xa_access_audit WHERE " + condition);
+            try {
+                if (!rs.next()) {
+                    Assert.fail("COUNT(*) returned no rows");
+                }
+                return rs.getInt(1);
+            } finally {
+                rs.close();
+            }
+        } finally {
+            stmt.close();
+        }
+    }
+}
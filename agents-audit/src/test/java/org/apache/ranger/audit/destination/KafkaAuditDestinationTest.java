@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ranger.audit.destination;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.curator.test.TestingServer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.kafka.KafkaAuditProvider;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import kafka.server.KafkaConfig;
+import kafka.server.KafkaServerStartable;
+
+/**
+ * Starts an embedded Kafka broker, sends a batch of audit events through
+ * KafkaAuditDestination and reads them back.
+ */
+public class KafkaAuditDestinationTest {
+    private static final String PROP_PREFIX = "xasecure.audit.destination.kafka";
+
+    private static KafkaServerStartable kafkaServer;
+    private static TestingServer zkServer;
+    private static int port;
+    private static Path tempDir;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        zkServer = new TestingServer();
+
+        // Get a random port
+        ServerSocket serverSocket = new ServerSocket(0);
+        port = serverSocket.getLocalPort();
+        serverSocket.close();
+
+        tempDir = Files.createTempDirectory("kafka");
+
+        final Properties props = new Properties();
+        props.put("broker.id", 1);
+        props.put("host.name", "localhost");
+        props.put("port", port);
+        props.put("log.dir", tempDir.toString());
+        props.put("zookeeper.connect", zkServer.getConnectString());
+        props.put("replica.socket.timeout.ms", "1500");
+        props.put("controlled.shutdown.enable", Boolean.TRUE.toString());
+        props.put("num.partitions", "4");
+
+        KafkaConfig config = new KafkaConfig(props);
+        kafkaServer = new KafkaServerStartable(config);
+        kafkaServer.startup();
+    }
+
+    @AfterClass
+    public static void cleanup() throws Exception {
+        if (kafkaServer != null) {
+            kafkaServer.shutdown();
+        }
+        if (zkServer != null) {
+            zkServer.stop();
+        }
+        if (tempDir != null) {
+            FileUtils.deleteDirectory(new File(tempDir.toString()));
+        }
+    }
+
+    @Test
+    public void testBatchSend() throws Exception {
+        Properties props = new Properties();
+        props.put(PROP_PREFIX + "." + KafkaAuditDestination.PROP_KAFKA_BROKER_LIST, "localhost:" + port);
+        props.put(PROP_PREFIX + "." + KafkaAuditDestination.PROP_KAFKA_TOPIC_NAME, "audits");
+        props.put(PROP_PREFIX + "." + KafkaAuditDestination.PROP_KAFKA_PARTITION_KEY, "user");
+
+        KafkaAuditDestination destination = new KafkaAuditDestination();
+        destination.init(props, PROP_PREFIX);
+        destination.start();
+
+        List<AuditEventBase> events = new ArrayList<AuditEventBase>();
+        for (int i = 0; i < 100; i++) {
+            events.add(createEvent("user" + (i % 5), "/data/file" + i));
+        }
+        Assert.assertTrue(destination.log(events));
+        destination.stop();
+
+        Properties consumerProps = new Properties();
+        consumerProps.put("bootstrap.servers", "localhost:" + port);
+        consumerProps.put("group.id", "test");
+        consumerProps.put("auto.offset.reset", "earliest");
+        consumerProps.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+        consumerProps.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+
+        KafkaConsumer<String, String> consumer = new KafkaConsumer<String, String>(consumerProps);
+        Map<String, Integer> partitionOfUser = new HashMap<String, Integer>();
+        int received = 0;
+        try {
+            consumer.subscribe(Arrays.asList("audits"));
+            for (int i = 0; i < 20 && received < events.size(); i++) {
+                ConsumerRecords<String, String> records = consumer.poll(1000);
+                for (ConsumerRecord<String, String> record : records) {
+                    received++;
+                    Assert.assertTrue(record.value().contains("\"reqUser\":\"" + record.key() + "\""));
+
+                    // All events of a user must land in the same partition
+                    Integer partition = partitionOfUser.get(record.key());
+                    if (partition == null) {
+                        partitionOfUser.put(record.key(), record.partition());
+                    } else {
+                        Assert.assertEquals(partition.intValue(), record.partition());
+                    }
+                }
+            }
+        } finally {
+            consumer.close();
+        }
+        Assert.assertEquals(events.size(), received);
+        Assert.assertEquals(5, partitionOfUser.size());
+    }
+
+    @Test
+    public void testBrokerDownReturnsFalse() throws Exception {
+        ServerSocket serverSocket = new ServerSocket(0);
+        int unusedPort = serverSocket.getLocalPort();
+        serverSocket.close();
+
+        Properties props = new Properties();
+        props.put(PROP_PREFIX + "." + KafkaAuditDestination.PROP_KAFKA_BROKER_LIST, "localhost:" + unusedPort);
+        props.put(PROP_PREFIX + "." + KafkaAuditDestination.PROP_KAFKA_SEND_TIMEOUT_MS, "2000");
+        props.put(PROP_PREFIX + ".config.max.block.ms", "1000");
+
+        KafkaAuditDestination destination = new KafkaAuditDestination();
+        destination.init(props, PROP_PREFIX);
+
+        List<AuditEventBase> events = new ArrayList<AuditEventBase>();
+        events.add(createEvent("user1", "/data/file1"));
+
+        // The queue stashes the batch in its spool when log() fails
+        Assert.assertFalse(destination.log(events));
+        destination.stop();
+    }
+
+    @Test
+    public void testLegacyProviderProperties() throws Exception {
+        Properties props = new Properties();
+        props.put(KafkaAuditProvider.AUDIT_KAFKA_BROKER_LIST, "localhost:" + port);
+        props.put(KafkaAuditProvider.AUDIT_KAFKA_TOPIC_NAME, "legacy_audits");
+
+        KafkaAuditDestination destination = new KafkaAuditDestination();
+        destination.init(props, PROP_PREFIX);
+        destination.stop();
+
+        Assert.assertEquals("legacy_audits", destination.getTopic());
+        Assert.assertEquals("localhost:" + port, destination.getBrokerList());
+    }
+
+    private AuthzAuditEvent createEvent(String user, String resource) {
+        AuthzAuditEvent event = new AuthzAuditEvent();
+        event.setUser(user);
+        event.setResourcePath(resource);
+        event.setAccessType("read");
+        event.setAccessResult((short) 1);
+        event.setEventTime(new Date());
+        return event;
+    }
+}
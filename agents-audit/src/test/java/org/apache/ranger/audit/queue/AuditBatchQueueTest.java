@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ranger.audit.destination.AuditDestination;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MultiDestAuditProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that a stalled destination doesn't hold up the other destinations
+ * of a MultiDestAuditProvider.
+ */
+public class AuditBatchQueueTest {
+    private static final String PROP_PREFIX = "xasecure.audit.destination.test";
+
+    @Test
+    public void testStalledDestinationDropsOnlyItsOwnEvents() throws Exception {
+        CountingDestination stalled = new CountingDestination(new CountDownLatch(1));
+        CountingDestination healthy = new CountingDestination(null);
+
+        AuditBatchQueue stalledQueue = createQueue(stalled, "stalled", 10, "drop");
+        AuditBatchQueue healthyQueue = createQueue(healthy, "healthy", 1000, null);
+
+        MultiDestAuditProvider multiDest = new MultiDestAuditProvider();
+        multiDest.addAuditProvider(stalledQueue);
+        multiDest.addAuditProvider(healthyQueue);
+        multiDest.start();
+
+        for (int i = 0; i < 200; i++) {
+            multiDest.log(createEvent(i));
+        }
+
+        Assert.assertEquals(AuditBatchQueue.QueueFullPolicy.drop, healthyQueue.getQueueFullPolicy());
+        Assert.assertTrue(stalledQueue.getQueueFullCount() > 0);
+        Assert.assertTrue(stalledQueue.getLagMs() >= 0);
+
+        stopAndWait(healthyQueue);
+        Assert.assertEquals(200, healthy.count);
+        Assert.assertEquals(0, healthyQueue.getQueueFullCount());
+
+        stalled.release.countDown();
+        multiDest.stop();
+    }
+
+    @Test
+    public void testBlockPolicyWaitsForSpace() throws Exception {
+        CountingDestination slow = new CountingDestination(null);
+        slow.delayMs = 20;
+
+        AuditBatchQueue queue = createQueue(slow, "slow", 10, "block");
+        queue.start();
+
+        for (int i = 0; i < 200; i++) {
+            Assert.assertTrue(queue.log(createEvent(i)));
+        }
+
+        stopAndWait(queue);
+        Assert.assertEquals(200, slow.count);
+    }
+
+    private void stopAndWait(AuditBatchQueue queue) throws InterruptedException {
+        Thread consumerThread = queue.consumerThread;
+        queue.stop();
+        consumerThread.join(10000);
+    }
+
+    private AuditBatchQueue createQueue(CountingDestination destination, String name, int queueSize, String policy) {
+        String queuePrefix = PROP_PREFIX + "." + name + ".batch";
+
+        Properties props = new Properties();
+        props.put(queuePrefix + "." + AuditQueue.PROP_QUEUE_SIZE, String.valueOf(queueSize));
+        props.put(queuePrefix + "." + AuditQueue.PROP_BATCH_SIZE, "5");
+        props.put(queuePrefix + "." + AuditQueue.PROP_BATCH_INTERVAL, "10");
+        if (policy != null) {
+            props.put(queuePrefix + "." + AuditBatchQueue.PROP_QUEUE_FULL_POLICY, policy);
+        }
+
+        destination.init(props, PROP_PREFIX + "." + name);
+        destination.setName(name);
+
+        AuditBatchQueue ret = new AuditBatchQueue(destination);
+        ret.init(props, queuePrefix);
+        return ret;
+    }
+
+    private AuthzAuditEvent createEvent(int i) {
+        AuthzAuditEvent event = new AuthzAuditEvent();
+        event.setUser("user" + (i % 5));
+        event.setResourcePath("/data/file" + i);
+        event.setAccessType("read");
+        event.setAccessResult((short) 1);
+        event.setEventTime(new Date());
+        return event;
+    }
+
+    static class CountingDestination extends AuditDestination {
+        final CountDownLatch release;
+        volatile int count = 0;
+        volatile long delayMs = 0;
+
+        CountingDestination(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public boolean log(Collection<AuditEventBase> events) {
+            try {
+                if (release != null) {
+                    release.await(30, TimeUnit.SECONDS);
+                }
+                if (delayMs > 0) {
+                    Thread.sleep(delayMs);
+                }
+            } catch (InterruptedException e) {
+                // stop() interrupts the consumer thread; deliver anyway
+            }
+            count += events.size();
+            return true;
+        }
+    }
+}
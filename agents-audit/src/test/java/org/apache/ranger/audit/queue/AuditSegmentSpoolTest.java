@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.ranger.audit.destination.AuditDestination;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Writes records to an AuditSegmentSpool and reads them back, across segment
+ * rolls, restarts, corrupted records and truncated segment files.
+ */
+public class AuditSegmentSpoolTest {
+    private static final String PROP_PREFIX = "xasecure.audit.destination.test.batch.filespool";
+
+    private File spoolDir;
+    private AuditSegmentSpool spool;
+
+    @Before
+    public void setup() throws Exception {
+        spoolDir = Files.createTempDirectory("segspool").toFile();
+        spool = createSpool();
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        FileUtils.deleteDirectory(spoolDir);
+    }
+
+    @Test
+    public void testAppendAndReplay() throws Exception {
+        spool.stashLogsString(Arrays.asList("a", "b", "c"));
+        Assert.assertTrue(spool.isPending());
+
+        List<String> lines = readAll(spool);
+
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), lines);
+        Assert.assertFalse(spool.isPending());
+    }
+
+    @Test
+    public void testSegmentRoll() throws Exception {
+        List<String> expected = appendLargeRecords(spool, 25);
+
+        Assert.assertTrue(spool.segmentFiles.size() > 1);
+        Assert.assertEquals(expected, readAll(spool));
+        // Delivered segments are deleted, the active one is kept
+        Assert.assertEquals(1, spool.segmentFiles.size());
+        Assert.assertEquals(1, listSegmentFiles().length);
+    }
+
+    @Test
+    public void testChecksumMismatchSkipsRestOfSegment() throws Exception {
+        spool.stashLogsString(Arrays.asList("first", "second", "third"));
+        spool.rollSegment();
+        spool.stashLogsString("next");
+        spool.flush();
+
+        // Corrupt the payload of "second" in the first segment
+        File firstSegment = spool.segmentFiles.firstEntry().getValue();
+        int offset = AuditSegmentSpool.SEGMENT_HEADER_SIZE + AuditSegmentSpool.RECORD_HEADER_SIZE + "first".length()
+                + AuditSegmentSpool.RECORD_HEADER_SIZE;
+        RandomAccessFile raf = new RandomAccessFile(firstSegment, "rw");
+        try {
+            raf.seek(offset);
+            raf.write('X');
+        } finally {
+            raf.close();
+        }
+
+        Assert.assertEquals(Arrays.asList("first", "next"), readAll(spool));
+    }
+
+    @Test
+    public void testCheckpointRecovery() throws Exception {
+        spool.stashLogsString(Arrays.asList("1", "2", "3", "4", "5"));
+
+        List<String> lines = new ArrayList<String>();
+        long[] position = new long[2];
+        spool.readBatch(lines, position, 2);
+        spool.commitReadPosition(position[0], (int) position[1]);
+        spool.flush();
+        Assert.assertEquals(Arrays.asList("1", "2"), lines);
+
+        // Records read but not committed are replayed after a restart
+        lines.clear();
+        spool.readBatch(lines, position, 2);
+        Assert.assertEquals(Arrays.asList("3", "4"), lines);
+
+        AuditSegmentSpool restarted = createSpool();
+        Assert.assertTrue(restarted.isPending());
+        Assert.assertEquals(Arrays.asList("3", "4", "5"), readAll(restarted));
+
+        // Writes after recovery go to a new segment
+        restarted.stashLogsString("6");
+        Assert.assertEquals(Arrays.asList("6"), readAll(restarted));
+    }
+
+    @Test
+    public void testTornRecordInLastSegment() throws Exception {
+        spool.stashLogsString(Arrays.asList("one", "two", "three"));
+        spool.flush();
+
+        File segment = spool.segmentFiles.lastEntry().getValue();
+        int endOfTwo = AuditSegmentSpool.SEGMENT_HEADER_SIZE + 2 * AuditSegmentSpool.RECORD_HEADER_SIZE
+                + "one".length() + "two".length();
+        truncate(segment, endOfTwo + AuditSegmentSpool.RECORD_HEADER_SIZE + 2);
+
+        AuditSegmentSpool restarted = createSpool();
+        Assert.assertEquals(endOfTwo, restarted.writeOffset);
+        Assert.assertEquals(Arrays.asList("one", "two"), readAll(restarted));
+
+        restarted.stashLogsString("four");
+        Assert.assertEquals(Arrays.asList("four"), readAll(restarted));
+    }
+
+    @Test
+    public void testTruncatedSegmentBeforeLast() throws Exception {
+        List<String> expected = appendLargeRecords(spool, 25);
+        spool.flush();
+
+        // Keep only the header and the first record of the first segment
+        File firstSegment = spool.segmentFiles.firstEntry().getValue();
+        int recordSize = AuditSegmentSpool.RECORD_HEADER_SIZE + expected.get(0).length();
+        truncate(firstSegment, AuditSegmentSpool.SEGMENT_HEADER_SIZE + recordSize + 10);
+
+        AuditSegmentSpool restarted = createSpool();
+        List<String> lines = readAll(restarted);
+
+        Assert.assertEquals(expected.get(0), lines.get(0));
+        Assert.assertEquals(expected.get(expected.size() - 1), lines.get(lines.size() - 1));
+        Assert.assertTrue(lines.size() < expected.size());
+    }
+
+    @Test
+    public void testEmptySegmentFile() throws Exception {
+        spool.stashLogsString("a");
+        spool.flush();
+        truncate(spool.segmentFiles.lastEntry().getValue(), 0);
+
+        AuditSegmentSpool restarted = createSpool();
+        Assert.assertTrue(readAll(restarted).isEmpty());
+
+        restarted.stashLogsString("b");
+        Assert.assertEquals(Arrays.asList("b"), readAll(restarted));
+    }
+
+    private AuditSegmentSpool createSpool() {
+        Properties props = new Properties();
+        props.put(PROP_PREFIX + "." + AuditFileSpool.PROP_FILE_SPOOL_LOCAL_DIR, spoolDir.getAbsolutePath());
+        props.put(PROP_PREFIX + "." + AuditFileSpool.PROP_FILE_SPOOL_FILENAME_PREFIX, "test");
+        props.put(PROP_PREFIX + "." + AuditSegmentSpool.PROP_FILE_SPOOL_SEGMENT_SIZE_MB, "1");
+
+        NullDestination destination = new NullDestination();
+        destination.setName("test");
+        AuditBatchQueue queue = new AuditBatchQueue(destination);
+        queue.setName("test.batch");
+
+        AuditSegmentSpool ret = new AuditSegmentSpool(queue, destination);
+        Assert.assertTrue(ret.init(props, PROP_PREFIX));
+        return ret;
+    }
+
+    private List<String> appendLargeRecords(AuditSegmentSpool spool, int count) throws Exception {
+        char[] filler = new char[100 * 1024];
+        Arrays.fill(filler, 'x');
+
+        List<String> ret = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            String record = i + new String(filler);
+            spool.stashLogsString(record);
+            ret.add(record);
+        }
+        return ret;
+    }
+
+    private List<String> readAll(AuditSegmentSpool spool) throws Exception {
+        List<String> ret = new ArrayList<String>();
+        List<String> lines = new ArrayList<String>();
+        long[] position = new long[2];
+        while (true) {
+            lines.clear();
+            spool.readBatch(lines, position, 10);
+            spool.commitReadPosition(position[0], (int) position[1]);
+            if (lines.isEmpty()) {
+                break;
+            }
+            ret.addAll(lines);
+        }
+        return ret;
+    }
+
+    private File[] listSegmentFiles() {
+        return spoolDir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().endsWith(AuditSegmentSpool.SEGMENT_FILE_EXT);
+            }
+        });
+    }
+
+    private void truncate(File file, long length) throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    static class NullDestination extends AuditDestination {
+        @Override
+        public boolean log(Collection<AuditEventBase> events) {
+            return true;
+        }
+    }
+}
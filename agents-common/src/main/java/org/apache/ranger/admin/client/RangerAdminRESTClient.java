@@ -23,6 +23,7 @@
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.GenericType;
 import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.api.client.filter.GZIPContentEncodingFilter;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -34,6 +35,7 @@ import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.plugin.util.GrantRevokeRequest;
 import org.apache.ranger.plugin.util.RangerRESTClient;
 import org.apache.ranger.plugin.util.RangerRESTUtils;
+import org.apache.ranger.plugin.util.RangerResourceScope;
 import org.apache.ranger.plugin.util.RangerServiceNotFoundException;
 import org.apache.ranger.plugin.util.ServicePolicies;
 import org.apache.ranger.plugin.util.ServiceTags;
@@ -51,6 +53,8 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 	private String           pluginId    = null;
 	private RangerRESTClient restClient  = null;
 	private RangerRESTUtils restUtils   = new RangerRESTUtils();
+	private long             longPollWaitTimeMs = 0;
+	private RangerResourceScope resourceScope = null;
 
 	public RangerAdminRESTClient() {
 	}
@@ -84,6 +88,14 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 		int	 restClientConnTimeOutMs	= RangerConfiguration.getInstance().getInt(propertyPrefix + ".policy.rest.client.connection.timeoutMs", 120 * 1000);
 		int	 restClientReadTimeOutMs	= RangerConfiguration.getInstance().getInt(propertyPrefix + ".policy.rest.client.read.timeoutMs", 30 * 1000);
 
+		longPollWaitTimeMs = RangerConfiguration.getInstance().getLong(propertyPrefix + ".policy.rest.longpoll.wait.ms", 0);
+		resourceScope      = RangerResourceScope.fromString(RangerConfiguration.getInstance().get(propertyPrefix + ".policy.rest.resource.scope"));
+
+		if (longPollWaitTimeMs > 0 && restClientReadTimeOutMs < longPollWaitTimeMs + 10 * 1000) {
+			// Ranger Admin holds a long-poll download request for up to the wait time
+			restClientReadTimeOutMs = (int) longPollWaitTimeMs + 10 * 1000;
+		}
+
 		init(url, sslConfigFileName, restClientConnTimeOutMs , restClientReadTimeOutMs);
 	}
 
@@ -104,10 +116,10 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 			}
 			PrivilegedAction<ClientResponse> action = new PrivilegedAction<ClientResponse>() {
 				public ClientResponse run() {
-					WebResource secureWebResource = createWebResource(RangerRESTUtils.REST_URL_POLICY_GET_FOR_SECURE_SERVICE_IF_UPDATED + serviceName)
+					WebResource secureWebResource = addResourceScopeParam(addLongPollParam(createPolicyDownloadWebResource(RangerRESTUtils.REST_URL_POLICY_GET_FOR_SECURE_SERVICE_IF_UPDATED + serviceName)
 							.queryParam(RangerRESTUtils.REST_PARAM_LAST_KNOWN_POLICY_VERSION, Long.toString(lastKnownVersion))
 							.queryParam(RangerRESTUtils.REST_PARAM_LAST_ACTIVATION_TIME, Long.toString(lastActivationTimeInMillis))
-							.queryParam(RangerRESTUtils.REST_PARAM_PLUGIN_ID, pluginId);
+							.queryParam(RangerRESTUtils.REST_PARAM_PLUGIN_ID, pluginId)));
 					return secureWebResource.accept(RangerRESTUtils.REST_MIME_TYPE_JSON).get(ClientResponse.class);
 				}
 			};
@@ -116,10 +128,10 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("Checking Service policy if updated with old api call");
 			}
-			WebResource webResource = createWebResource(RangerRESTUtils.REST_URL_POLICY_GET_FOR_SERVICE_IF_UPDATED + serviceName)
+			WebResource webResource = addResourceScopeParam(addLongPollParam(createPolicyDownloadWebResource(RangerRESTUtils.REST_URL_POLICY_GET_FOR_SERVICE_IF_UPDATED + serviceName)
 					.queryParam(RangerRESTUtils.REST_PARAM_LAST_KNOWN_POLICY_VERSION, Long.toString(lastKnownVersion))
 					.queryParam(RangerRESTUtils.REST_PARAM_LAST_ACTIVATION_TIME, Long.toString(lastActivationTimeInMillis))
-					.queryParam(RangerRESTUtils.REST_PARAM_PLUGIN_ID, pluginId);
+					.queryParam(RangerRESTUtils.REST_PARAM_PLUGIN_ID, pluginId)));
 			response = webResource.accept(RangerRESTUtils.REST_MIME_TYPE_JSON).get(ClientResponse.class);
 		}
 
@@ -269,6 +281,31 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 		return ret;
 	}
 
+	private WebResource addLongPollParam(WebResource webResource) {
+		return longPollWaitTimeMs > 0 ? webResource.queryParam(RangerRESTUtils.REST_PARAM_MAX_WAIT_TIME_MS, Long.toString(longPollWaitTimeMs)) : webResource;
+	}
+
+	private WebResource addResourceScopeParam(WebResource webResource) {
+		WebResource ret = webResource;
+
+		if (resourceScope != null) {
+			for (String scopeParam : resourceScope.toParams()) {
+				ret = ret.queryParam(RangerRESTUtils.REST_PARAM_RESOURCE_SCOPE, scopeParam);
+			}
+		}
+
+		return ret;
+	}
+
+	private WebResource createPolicyDownloadWebResource(String url) {
+		WebResource ret = createWebResource(url);
+
+		// ask for a gzip-compressed response, which is decompressed by the filter
+		ret.addFilter(new GZIPContentEncodingFilter(false));
+
+		return ret;
+	}
+
 	@Override
 	public ServiceTags getServiceTagsIfUpdated(final long lastKnownVersion, final long lastActivationTimeInMillis) throws Exception {
 		if(LOG.isDebugEnabled()) {
@@ -284,10 +321,10 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 		if (isSecureMode) {
 			PrivilegedAction<ClientResponse> action = new PrivilegedAction<ClientResponse>() {
 				public ClientResponse run() {
-					WebResource secureWebResource = createWebResource(RangerRESTUtils.REST_URL_GET_SECURE_SERVICE_TAGS_IF_UPDATED + serviceName)
+					WebResource secureWebResource = addResourceScopeParam(addLongPollParam(createWebResource(RangerRESTUtils.REST_URL_GET_SECURE_SERVICE_TAGS_IF_UPDATED + serviceName)
 							.queryParam(RangerRESTUtils.LAST_KNOWN_TAG_VERSION_PARAM, Long.toString(lastKnownVersion))
 							.queryParam(RangerRESTUtils.REST_PARAM_LAST_ACTIVATION_TIME, Long.toString(lastActivationTimeInMillis))
-							.queryParam(RangerRESTUtils.REST_PARAM_PLUGIN_ID, pluginId);
+							.queryParam(RangerRESTUtils.REST_PARAM_PLUGIN_ID, pluginId)));
 					return secureWebResource.accept(RangerRESTUtils.REST_MIME_TYPE_JSON).get(ClientResponse.class);
 				}
 			};
@@ -296,10 +333,10 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 			}
 			response = user.doAs(action);
 		} else {
-			webResource = createWebResource(RangerRESTUtils.REST_URL_GET_SERVICE_TAGS_IF_UPDATED + serviceName)
+			webResource = addResourceScopeParam(addLongPollParam(createWebResource(RangerRESTUtils.REST_URL_GET_SERVICE_TAGS_IF_UPDATED + serviceName)
 					.queryParam(RangerRESTUtils.LAST_KNOWN_TAG_VERSION_PARAM, Long.toString(lastKnownVersion))
 					.queryParam(RangerRESTUtils.REST_PARAM_LAST_ACTIVATION_TIME, Long.toString(lastActivationTimeInMillis))
-					.queryParam(RangerRESTUtils.REST_PARAM_PLUGIN_ID, pluginId);
+					.queryParam(RangerRESTUtils.REST_PARAM_PLUGIN_ID, pluginId)));
 			response = webResource.accept(RangerRESTUtils.REST_MIME_TYPE_JSON).get(ClientResponse.class);
 		}
 
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.audit;
+
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
+import org.apache.ranger.plugin.policyengine.CacheMap;
+
+/**
+ * Decides which allowed access events are sent to the audit provider.
+ * Denied events are never sampled out.
+ *
+ * An emitted event carries, in its event count, the number of events it
+ * stands for: itself plus the events of the same key dropped since the
+ * previous emitted event. Summing event_count downstream gives the number
+ * of audited accesses.
+ */
+public class RangerAuditSampler {
+	private static final Log LOG = LogFactory.getLog(RangerAuditSampler.class);
+
+	public static final String PROP_SAMPLING_MODE       = "xasecure.audit.sampling.mode";
+	public static final String PROP_SAMPLING_KEY        = "xasecure.audit.sampling.key";
+	public static final String PROP_SAMPLING_RATIO      = "xasecure.audit.sampling.ratio";
+	public static final String PROP_SAMPLING_RATE       = "xasecure.audit.sampling.rate.per.sec";
+	public static final String PROP_SAMPLING_RATE_BURST = "xasecure.audit.sampling.rate.burst";
+	public static final String PROP_SAMPLING_MAX_KEYS   = "xasecure.audit.sampling.max.keys";
+
+	public enum Mode { none, ratio, rate }
+	public enum KeyType { none, user, resource }
+
+	private static volatile RangerAuditSampler instance = null;
+
+	private final Mode    mode;
+	private final KeyType keyType;
+	private final int     ratio;
+	private final double  ratePerMs;
+	private final double  burst;
+
+	private final Map<String, SampleState> states;
+
+	public static RangerAuditSampler getInstance() {
+		RangerAuditSampler ret = instance;
+
+		if (ret == null) {
+			synchronized (RangerAuditSampler.class) {
+				ret = instance;
+
+				if (ret == null) {
+					ret = instance = new RangerAuditSampler(RangerConfiguration.getInstance());
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	public RangerAuditSampler(Configuration config) {
+		this.mode      = getEnum(Mode.class, config.get(PROP_SAMPLING_MODE), Mode.none);
+		this.keyType   = getEnum(KeyType.class, config.get(PROP_SAMPLING_KEY), KeyType.none);
+		this.ratio     = Math.max(config.getInt(PROP_SAMPLING_RATIO, 1), 1);
+		this.ratePerMs = Math.max(config.getFloat(PROP_SAMPLING_RATE, 100), 0) / 1000.0;
+		this.burst     = Math.max(config.getFloat(PROP_SAMPLING_RATE_BURST, 100), 1);
+		this.states    = new CacheMap<String, SampleState>(Math.max(config.getInt(PROP_SAMPLING_MAX_KEYS, 10000), 1));
+
+		LOG.info("RangerAuditSampler: mode=" + mode + ", key=" + keyType + ", ratio=" + ratio
+				+ ", ratePerSec=" + (ratePerMs * 1000) + ", burst=" + burst);
+	}
+
+	public boolean isEnabled() {
+		return mode != Mode.none && !(mode == Mode.ratio && ratio == 1);
+	}
+
+	/**
+	 * @return 0 if the event is to be dropped; otherwise the number of
+	 *         events the emitted event stands for
+	 */
+	public long sample(AuthzAuditEvent event) {
+		if (!isEnabled() || event.getAccessResult() == 0) {
+			return 1;
+		}
+
+		SampleState state = getState(getKey(event));
+		long        ret;
+
+		synchronized (state) {
+			boolean emit;
+
+			if (mode == Mode.ratio) {
+				emit = state.isNew || state.dropped + 1 >= ratio;
+			} else {
+				long now = System.currentTimeMillis();
+
+				state.tokens    = state.isNew ? burst : Math.min(burst, state.tokens + (now - state.lastRefillTime) * ratePerMs);
+				state.lastRefillTime = now;
+
+				emit = state.tokens >= 1;
+
+				if (emit) {
+					state.tokens -= 1;
+				}
+			}
+
+			state.isNew = false;
+
+			if (emit) {
+				ret = state.dropped + 1;
+
+				state.dropped = 0;
+			} else {
+				ret = 0;
+
+				state.dropped++;
+			}
+		}
+
+		return ret;
+	}
+
+	private SampleState getState(String key) {
+		SampleState ret;
+
+		synchronized (states) {
+			ret = states.get(key);
+
+			if (ret == null) {
+				ret = new SampleState();
+
+				states.put(key, ret);
+			}
+		}
+
+		return ret;
+	}
+
+	private String getKey(AuthzAuditEvent event) {
+		final String ret;
+
+		switch (keyType) {
+			case user:
+				ret = event.getUser();
+				break;
+
+			case resource:
+				ret = event.getResourcePath();
+				break;
+
+			default:
+				ret = null;
+				break;
+		}
+
+		return ret == null ? "" : ret;
+	}
+
+	private static <T extends Enum<T>> T getEnum(Class<T> enumType, String value, T defaultValue) {
+		T ret = defaultValue;
+
+		if (value != null && !value.trim().isEmpty()) {
+			try {
+				ret = Enum.valueOf(enumType, value.trim().toLowerCase());
+			} catch (IllegalArgumentException excp) {
+				LOG.error("RangerAuditSampler: invalid value '" + value + "' for " + enumType.getSimpleName() + "; using " + defaultValue);
+			}
+		}
+
+		return ret;
+	}
+
+	private static class SampleState {
+		boolean isNew   = true;
+		long    dropped = 0;
+		double  tokens  = 0;
+		long    lastRefillTime = 0;
+	}
+}
@@ -166,6 +166,20 @@ public class RangerDefaultAuditHandler implements RangerAccessResultProcessor {
 		}
 
 		if(auditEvent != null) {
+			long sampleCount = RangerAuditSampler.getInstance().sample(auditEvent);
+
+			if(sampleCount == 0) {
+				if(LOG.isDebugEnabled()) {
+					LOG.debug("<== RangerDefaultAuditHandler.logAuthzAudit(" + auditEvent + "): sampled out");
+				}
+
+				return;
+			}
+
+			if(sampleCount > 1) {
+				auditEvent.setEventCount(auditEvent.getEventCount() * sampleCount);
+			}
+
 			populateDefaults(auditEvent);
                         if(!AuditProviderFactory.getAuditProvider().log(auditEvent)) {
 				MiscUtil.logErrorMessageByInterval(LOG, "fail to log audit event " + auditEvent);
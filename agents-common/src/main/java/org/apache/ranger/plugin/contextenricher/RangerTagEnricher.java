@@ -442,13 +442,19 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 				LOG.debug("==> RangerTagRefresher(pollingIntervalMs=" + pollingIntervalMs + ").run()");
 			}
 
+			long sleepTimeMs = pollingIntervalMs;
+
 			while (true) {
 
 				try {
 
 					// Sleep first and then fetch tags
 					if (pollingIntervalMs > 0) {
-						Thread.sleep(pollingIntervalMs);
+						if (sleepTimeMs > 0) {
+							Thread.sleep(sleepTimeMs);
+						} else if (Thread.interrupted()) {
+							throw new InterruptedException();
+						}
 					} else {
 						break;
 					}
@@ -457,8 +463,15 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 					if(RangerPerfTracer.isPerfTraceEnabled(PERF_CONTEXTENRICHER_INIT_LOG)) {
 						perf = RangerPerfTracer.getPerfTracer(PERF_CONTEXTENRICHER_INIT_LOG, "RangerTagRefresher.populateTags(serviceName=" + tagRetriever.getServiceName() + ",lastKnownVersion=" + lastKnownVersion + ")");
 					}
+
+					long startTimeMs          = System.currentTimeMillis();
+					long prevLastKnownVersion = lastKnownVersion;
+
 					populateTags();
 
+					// a long-poll request has already waited at Ranger Admin; after an update, poll again right away
+					sleepTimeMs = lastKnownVersion != prevLastKnownVersion ? 0 : pollingIntervalMs - (System.currentTimeMillis() - startTimeMs);
+
 					RangerPerfTracer.log(perf);
 
 				} catch (InterruptedException excp) {
@@ -168,9 +168,20 @@ public class PolicyRefresher extends Thread {
 		}
 
 		while(true) {
+			long startTimeMs          = System.currentTimeMillis();
+			long prevLastKnownVersion = lastKnownVersion;
+
 			loadPolicy();
+
 			try {
-				Thread.sleep(pollingIntervalMs);
+				// a long-poll request has already waited at Ranger Admin; after an update, poll again right away
+				long sleepTimeMs = lastKnownVersion != prevLastKnownVersion ? 0 : pollingIntervalMs - (System.currentTimeMillis() - startTimeMs);
+
+				if (sleepTimeMs > 0) {
+					Thread.sleep(sleepTimeMs);
+				} else if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
 			} catch(InterruptedException excp) {
 				LOG.info("PolicyRefresher(serviceName=" + serviceName + ").run(): interrupted! Exiting thread", excp);
 				break;
@@ -58,6 +58,8 @@ public class RangerRESTUtils {
 	public static final String REST_PARAM_LAST_KNOWN_POLICY_VERSION = "lastKnownVersion";
 	public static final String REST_PARAM_LAST_ACTIVATION_TIME = "lastActivationTime";
 	public static final String REST_PARAM_PLUGIN_ID                 = "pluginId";
+	public static final String REST_PARAM_MAX_WAIT_TIME_MS          = "maxWaitTimeMs";
+	public static final String REST_PARAM_RESOURCE_SCOPE            = "resourceScope";
 
 	private static final int MAX_PLUGIN_ID_LEN = 255;
 
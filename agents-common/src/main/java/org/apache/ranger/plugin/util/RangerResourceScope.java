@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.MapUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.resourcematcher.RangerAbstractResourceMatcher;
+
+/**
+ * Resources served by a plugin, given as value prefixes of resource names;
+ * for example "database:finance" for a plugin that only serves the databases
+ * whose names start with "finance". Policies and tagged resources that can
+ * not match any resource of the scope are left out of the downloads of the
+ * plugin.
+ *
+ * Matching is conservative: a resource is excluded only when it has a value
+ * for a scoped resource name and none of its values can match any of the
+ * prefixes of that name. Values are compared up to the first wildcard or
+ * token, like {USER}; such values, and all values of recursive resources,
+ * are kept for prefixes that extend the part before it. For example, a
+ * recursive policy on /data is kept for the scope path:/data/finance.
+ */
+public class RangerResourceScope {
+	private static final char   NAME_SEPARATOR  = ':';
+	private static final String ENTRY_SEPARATOR = ",";
+	private static final char[] WILDCARD_CHARS  = { '*', '?' };
+	private static final char   DEFAULT_TOKEN_DELIMITER_START = '{';
+
+	private final Map<String, TreeSet<String>> prefixes = new TreeMap<String, TreeSet<String>>();
+	private final String                       signature;
+
+	/**
+	 * @param entries each of the form resourceName:valuePrefix, or a comma separated list of these
+	 */
+	public RangerResourceScope(Collection<String> entries) {
+		if (CollectionUtils.isNotEmpty(entries)) {
+			for (String entry : entries) {
+				if (entry == null) {
+					continue;
+				}
+
+				for (String item : entry.split(ENTRY_SEPARATOR)) {
+					int idx = item.indexOf(NAME_SEPARATOR);
+
+					if (idx <= 0) {
+						continue;
+					}
+
+					String name   = item.substring(0, idx).trim().toLowerCase();
+					String prefix = item.substring(idx + 1).trim().toLowerCase();
+
+					if (name.isEmpty()) {
+						continue;
+					}
+
+					TreeSet<String> namePrefixes = prefixes.get(name);
+
+					if (namePrefixes == null) {
+						namePrefixes = new TreeSet<String>();
+
+						prefixes.put(name, namePrefixes);
+					}
+
+					namePrefixes.add(prefix);
+				}
+			}
+		}
+
+		signature = StringUtils.join(toParams(), ENTRY_SEPARATOR);
+	}
+
+	public static RangerResourceScope fromString(String entries) {
+		return StringUtils.isBlank(entries) ? null : new RangerResourceScope(Collections.singletonList(entries));
+	}
+
+	public boolean isEmpty() {
+		return prefixes.isEmpty();
+	}
+
+	/**
+	 * @return the entries of this scope, in the form resourceName:valuePrefix, in a stable order
+	 */
+	public List<String> toParams() {
+		List<String> ret = new ArrayList<String>();
+
+		for (Map.Entry<String, TreeSet<String>> entry : prefixes.entrySet()) {
+			for (String prefix : entry.getValue()) {
+				ret.add(entry.getKey() + NAME_SEPARATOR + prefix);
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @return a string that is the same for scopes having the same entries
+	 */
+	public String getSignature() {
+		return signature;
+	}
+
+	public boolean isInScope(Map<String, RangerPolicyResource> resources) {
+		return isInScope(resources, null);
+	}
+
+	/**
+	 * @param serviceDef to read the token delimiter of resources from; the default, '{', is used when null
+	 */
+	public boolean isInScope(Map<String, RangerPolicyResource> resources, RangerServiceDef serviceDef) {
+		if (MapUtils.isEmpty(resources)) {
+			return true;
+		}
+
+		for (Map.Entry<String, TreeSet<String>> entry : prefixes.entrySet()) {
+			RangerPolicyResource resource = resources.get(entry.getKey());
+
+			if (resource == null || CollectionUtils.isEmpty(resource.getValues())) {
+				continue;
+			}
+
+			if (resource.getIsExcludes() != null && resource.getIsExcludes()) {
+				continue;
+			}
+
+			boolean isRecursive         = resource.getIsRecursive() != null && resource.getIsRecursive();
+			char    tokenDelimiterStart = getTokenDelimiterStart(serviceDef, entry.getKey());
+			boolean isMatch             = false;
+
+			for (String value : resource.getValues()) {
+				if (isMatch(value, isRecursive, tokenDelimiterStart, entry.getValue())) {
+					isMatch = true;
+
+					break;
+				}
+			}
+
+			if (!isMatch) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return policies having only the resource policies in this scope; tag policies are retained as is
+	 */
+	public ServicePolicies filter(ServicePolicies servicePolicies) {
+		if (servicePolicies == null || isEmpty() || CollectionUtils.isEmpty(servicePolicies.getPolicies())) {
+			return servicePolicies;
+		}
+
+		List<RangerPolicy> policies = new ArrayList<RangerPolicy>();
+
+		for (RangerPolicy policy : servicePolicies.getPolicies()) {
+			if (isInScope(policy.getResources(), servicePolicies.getServiceDef())) {
+				policies.add(policy);
+			}
+		}
+
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceName(servicePolicies.getServiceName());
+		ret.setServiceId(servicePolicies.getServiceId());
+		ret.setPolicyVersion(servicePolicies.getPolicyVersion());
+		ret.setPolicyUpdateTime(servicePolicies.getPolicyUpdateTime());
+		ret.setServiceDef(servicePolicies.getServiceDef());
+		ret.setAuditMode(servicePolicies.getAuditMode());
+		ret.setPolicies(policies);
+		ret.setTagPolicies(servicePolicies.getTagPolicies());
+
+		return ret;
+	}
+
+	/**
+	 * @return service-tags having only the service-resources in this scope, and their tags
+	 */
+	public ServiceTags filter(ServiceTags serviceTags) {
+		if (serviceTags == null || isEmpty() || CollectionUtils.isEmpty(serviceTags.getServiceResources())) {
+			return serviceTags;
+		}
+
+		List<RangerServiceResource> serviceResources = new ArrayList<RangerServiceResource>();
+		Map<Long, List<Long>>       resourceToTagIds = new HashMap<Long, List<Long>>();
+		Map<Long, RangerTag>        tags             = new HashMap<Long, RangerTag>();
+
+		for (RangerServiceResource serviceResource : serviceTags.getServiceResources()) {
+			if (!isInScope(serviceResource.getResourceElements())) {
+				continue;
+			}
+
+			serviceResources.add(serviceResource);
+
+			List<Long> tagIds = serviceTags.getResourceToTagIds() != null ? serviceTags.getResourceToTagIds().get(serviceResource.getId()) : null;
+
+			if (tagIds == null) {
+				continue;
+			}
+
+			resourceToTagIds.put(serviceResource.getId(), tagIds);
+
+			if (serviceTags.getTags() != null) {
+				for (Long tagId : tagIds) {
+					RangerTag tag = serviceTags.getTags().get(tagId);
+
+					if (tag != null) {
+						tags.put(tagId, tag);
+					}
+				}
+			}
+		}
+
+		ServiceTags ret = new ServiceTags();
+
+		ret.setOp(serviceTags.getOp());
+		ret.setServiceName(serviceTags.getServiceName());
+		ret.setTagVersion(serviceTags.getTagVersion());
+		ret.setTagUpdateTime(serviceTags.getTagUpdateTime());
+		ret.setTagDefinitions(serviceTags.getTagDefinitions());
+		ret.setServiceResources(serviceResources);
+		ret.setResourceToTagIds(resourceToTagIds);
+		ret.setTags(tags);
+
+		return ret;
+	}
+
+	@Override
+	public String toString() {
+		return "RangerResourceScope={" + signature + "}";
+	}
+
+	/*
+	 * a value can match a resource under a prefix when the value extends the prefix; or,
+	 * for a recursive value or one with a wildcard or token, when the prefix extends the
+	 * value up to the first wildcard or token
+	 */
+	private static boolean isMatch(String value, boolean isRecursive, char tokenDelimiterStart, Collection<String> prefixes) {
+		if (value == null) {
+			return false;
+		}
+
+		String lowerValue = value.toLowerCase();
+		int    openIdx    = StringUtils.indexOfAny(lowerValue, WILDCARD_CHARS);
+		int    tokenIdx   = lowerValue.indexOf(Character.toLowerCase(tokenDelimiterStart));
+
+		if (tokenIdx != -1 && (openIdx == -1 || tokenIdx < openIdx)) {
+			openIdx = tokenIdx;
+		}
+
+		boolean isOpen  = isRecursive || openIdx != -1;
+		String  literal = openIdx == -1 ? lowerValue : lowerValue.substring(0, openIdx);
+
+		for (String prefix : prefixes) {
+			if (literal.startsWith(prefix) || (isOpen && prefix.startsWith(literal))) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static char getTokenDelimiterStart(RangerServiceDef serviceDef, String resourceName) {
+		if (serviceDef != null && serviceDef.getResources() != null) {
+			for (RangerResourceDef resourceDef : serviceDef.getResources()) {
+				if (resourceName.equalsIgnoreCase(resourceDef.getName())) {
+					return RangerAbstractResourceMatcher.getOptionDelimiterStart(resourceDef.getMatcherOptions());
+				}
+			}
+		}
+
+		return DEFAULT_TOKEN_DELIMITER_START;
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.junit.Test;
+
+public class TestRangerAuditSampler {
+
+	@Test
+	public void testDisabledByDefault() {
+		RangerAuditSampler sampler = new RangerAuditSampler(new Configuration(false));
+
+		assertFalse(sampler.isEnabled());
+
+		for (int i = 0; i < 10; i++) {
+			assertEquals(1, sampler.sample(createEvent("user1", "/tmp", true)));
+		}
+	}
+
+	@Test
+	public void testRatioSampling() {
+		Configuration config = new Configuration(false);
+		config.set(RangerAuditSampler.PROP_SAMPLING_MODE, "ratio");
+		config.setInt(RangerAuditSampler.PROP_SAMPLING_RATIO, 10);
+		config.set(RangerAuditSampler.PROP_SAMPLING_KEY, "user");
+
+		RangerAuditSampler sampler = new RangerAuditSampler(config);
+
+		assertTrue(sampler.isEnabled());
+
+		long emitted = 0;
+		long total   = 0;
+
+		for (int i = 0; i < 101; i++) {
+			long count = sampler.sample(createEvent("user1", "/tmp/" + i, true));
+
+			if (count > 0) {
+				emitted++;
+				total += count;
+			}
+		}
+
+		// first event of the key, then every 10th one
+		assertEquals(11, emitted);
+		assertEquals(101, total);
+
+		// first event of a new key is always emitted
+		assertEquals(1, sampler.sample(createEvent("user2", "/tmp", true)));
+	}
+
+	@Test
+	public void testDeniedEventsAreNotSampled() {
+		Configuration config = new Configuration(false);
+		config.set(RangerAuditSampler.PROP_SAMPLING_MODE, "ratio");
+		config.setInt(RangerAuditSampler.PROP_SAMPLING_RATIO, 1000);
+
+		RangerAuditSampler sampler = new RangerAuditSampler(config);
+
+		for (int i = 0; i < 100; i++) {
+			assertEquals(1, sampler.sample(createEvent("user1", "/tmp", false)));
+		}
+	}
+
+	@Test
+	public void testRateSampling() {
+		Configuration config = new Configuration(false);
+		config.set(RangerAuditSampler.PROP_SAMPLING_MODE, "rate");
+		config.set(RangerAuditSampler.PROP_SAMPLING_KEY, "resource");
+		config.setFloat(RangerAuditSampler.PROP_SAMPLING_RATE, 0);
+		config.setFloat(RangerAuditSampler.PROP_SAMPLING_RATE_BURST, 5);
+
+		RangerAuditSampler sampler = new RangerAuditSampler(config);
+
+		long emitted = 0;
+
+		for (int i = 0; i < 100; i++) {
+			if (sampler.sample(createEvent("user" + i, "/data", true)) > 0) {
+				emitted++;
+			}
+		}
+
+		// no refill: only the burst is emitted for the resource
+		assertEquals(5, emitted);
+		assertEquals(1, sampler.sample(createEvent("user1", "/other", true)));
+	}
+
+	private AuthzAuditEvent createEvent(String user, String resource, boolean isAllowed) {
+		AuthzAuditEvent event = new AuthzAuditEvent();
+
+		event.setUser(user);
+		event.setResourcePath(resource);
+		event.setAccessResult((short) (isAllowed ? 1 : 0));
+
+		return event;
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.resourcematcher.RangerAbstractResourceMatcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRangerResourceScope {
+
+	@Test
+	public void testParse() {
+		RangerResourceScope scope = new RangerResourceScope(Arrays.asList("Database:sales, database:finance", "bad-entry", ":x"));
+
+		Assert.assertEquals(Arrays.asList("database:finance", "database:sales"), scope.toParams());
+		Assert.assertEquals("database:finance,database:sales", scope.getSignature());
+		Assert.assertEquals(scope.getSignature(), RangerResourceScope.fromString("database:sales,database:finance").getSignature());
+
+		Assert.assertNull(RangerResourceScope.fromString(" "));
+		Assert.assertTrue(new RangerResourceScope(Arrays.asList("bad-entry")).isEmpty());
+	}
+
+	@Test
+	public void testIsInScope() {
+		RangerResourceScope scope = RangerResourceScope.fromString("database:finance");
+
+		Assert.assertTrue(scope.isInScope(resources("database", "finance_eu")));
+		Assert.assertTrue(scope.isInScope(resources("database", "FINANCE")));
+		Assert.assertTrue(scope.isInScope(resources("database", "hr", "finance")));
+		Assert.assertTrue(scope.isInScope(resources("database", "fin*")));
+		Assert.assertTrue(scope.isInScope(resources("database", "*")));
+		Assert.assertTrue(scope.isInScope(resources("database", "finance*_eu")));
+		Assert.assertTrue(scope.isInScope(resources("url", "hdfs://tmp")));
+		Assert.assertTrue(scope.isInScope(new HashMap<String, RangerPolicyResource>()));
+
+		Assert.assertFalse(scope.isInScope(resources("database", "fin")));
+		Assert.assertFalse(scope.isInScope(resources("database", "hr")));
+		Assert.assertFalse(scope.isInScope(resources("database", "hr*")));
+
+		Map<String, RangerPolicyResource> excludes = resources("database", "hr");
+
+		excludes.get("database").setIsExcludes(true);
+
+		Assert.assertTrue(scope.isInScope(excludes));
+	}
+
+	@Test
+	public void testRecursiveValues() {
+		RangerResourceScope scope = RangerResourceScope.fromString("path:/data/finance");
+
+		Map<String, RangerPolicyResource> recursive = recursive("path", "/data");
+
+		Assert.assertTrue(scope.isInScope(recursive));
+		Assert.assertFalse(scope.isInScope(resources("path", "/data")));
+		Assert.assertFalse(scope.isInScope(recursive("path", "/tmp")));
+
+		// like a deny policy on the root of the file system
+		Assert.assertTrue(scope.isInScope(recursive("path", "/")));
+		Assert.assertFalse(scope.isInScope(resources("path", "/")));
+	}
+
+	@Test
+	public void testTokenValues() {
+		RangerResourceScope scope = RangerResourceScope.fromString("path:/user/bob");
+
+		Assert.assertTrue(scope.isInScope(resources("path", "/user/{USER}")));
+		Assert.assertTrue(scope.isInScope(resources("path", "/user/{USER}/data")));
+		Assert.assertFalse(scope.isInScope(resources("path", "/home/{USER}")));
+
+		// token delimiter of the resource, as set in the service-def
+		RangerResourceDef resourceDef = new RangerResourceDef();
+
+		resourceDef.setName("path");
+		resourceDef.setMatcherOptions(Collections.singletonMap(RangerAbstractResourceMatcher.OPTION_TOKEN_DELIMITER_START, "%"));
+
+		RangerServiceDef serviceDef = new RangerServiceDef();
+
+		serviceDef.setResources(Arrays.asList(resourceDef));
+
+		Assert.assertTrue(scope.isInScope(resources("path", "/user/%USER%"), serviceDef));
+		Assert.assertFalse(scope.isInScope(resources("path", "/user/%USER%")));
+	}
+
+	@Test
+	public void testFilterServiceTags() {
+		ServiceTags serviceTags = new ServiceTags();
+
+		serviceTags.setServiceName("hivedev");
+		serviceTags.setTagVersion(10L);
+		serviceTags.setServiceResources(new ArrayList<RangerServiceResource>());
+		serviceTags.setResourceToTagIds(new HashMap<Long, List<Long>>());
+		serviceTags.setTags(new HashMap<Long, RangerTag>());
+
+		addResource(serviceTags, 1L, "finance", 100L, 101L);
+		addResource(serviceTags, 2L, "hr", 101L, 102L);
+		addResource(serviceTags, 3L, "finance_eu");
+
+		ServiceTags filtered = RangerResourceScope.fromString("database:finance").filter(serviceTags);
+
+		Assert.assertEquals(Long.valueOf(10L), filtered.getTagVersion());
+		Assert.assertEquals(2, filtered.getServiceResources().size());
+		Assert.assertEquals(Long.valueOf(1L), filtered.getServiceResources().get(0).getId());
+		Assert.assertEquals(Long.valueOf(3L), filtered.getServiceResources().get(1).getId());
+		Assert.assertEquals(1, filtered.getResourceToTagIds().size());
+		Assert.assertEquals(2, filtered.getTags().size());
+		Assert.assertTrue(filtered.getTags().containsKey(100L));
+		Assert.assertTrue(filtered.getTags().containsKey(101L));
+
+		Assert.assertEquals(3, serviceTags.getServiceResources().size());
+		Assert.assertEquals(3, serviceTags.getTags().size());
+
+		Assert.assertSame(serviceTags, new RangerResourceScope(null).filter(serviceTags));
+	}
+
+	@Test
+	public void testFilterServicePolicies() {
+		ServicePolicies servicePolicies = new ServicePolicies();
+		ServicePolicies.TagPolicies tagPolicies = new ServicePolicies.TagPolicies();
+
+		servicePolicies.setServiceName("hivedev");
+		servicePolicies.setPolicyVersion(5L);
+		servicePolicies.setPolicies(Arrays.asList(policy(1L, "finance"), policy(2L, "hr"), policy(3L, "*")));
+		servicePolicies.setTagPolicies(tagPolicies);
+
+		ServicePolicies filtered = RangerResourceScope.fromString("database:finance").filter(servicePolicies);
+
+		Assert.assertEquals(Long.valueOf(5L), filtered.getPolicyVersion());
+		Assert.assertEquals(2, filtered.getPolicies().size());
+		Assert.assertEquals(Long.valueOf(1L), filtered.getPolicies().get(0).getId());
+		Assert.assertEquals(Long.valueOf(3L), filtered.getPolicies().get(1).getId());
+		Assert.assertSame(tagPolicies, filtered.getTagPolicies());
+	}
+
+	private static Map<String, RangerPolicyResource> resources(String name, String... values) {
+		Map<String, RangerPolicyResource> ret = new HashMap<String, RangerPolicyResource>();
+
+		ret.put(name, new RangerPolicyResource(Arrays.asList(values), false, false));
+
+		return ret;
+	}
+
+	private static Map<String, RangerPolicyResource> recursive(String name, String... values) {
+		Map<String, RangerPolicyResource> ret = new HashMap<String, RangerPolicyResource>();
+
+		ret.put(name, new RangerPolicyResource(Arrays.asList(values), false, true));
+
+		return ret;
+	}
+
+	private static RangerPolicy policy(Long id, String database) {
+		RangerPolicy ret = new RangerPolicy();
+
+		ret.setId(id);
+		ret.setResources(resources("database", database));
+
+		return ret;
+	}
+
+	private static void addResource(ServiceTags serviceTags, Long id, String database, Long... tagIds) {
+		RangerServiceResource resource = new RangerServiceResource();
+
+		resource.setId(id);
+		resource.setResourceElements(resources("database", database));
+
+		serviceTags.getServiceResources().add(resource);
+
+		if (tagIds.length > 0) {
+			serviceTags.getResourceToTagIds().put(id, Arrays.asList(tagIds));
+
+			for (Long tagId : tagIds) {
+				RangerTag tag = new RangerTag();
+
+				tag.setId(tagId);
+
+				serviceTags.getTags().put(tagId, tag);
+			}
+		}
+	}
+}
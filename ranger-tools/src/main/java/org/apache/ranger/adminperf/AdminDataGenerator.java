@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.adminperf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerService;
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.model.RangerTagDef;
+import org.apache.ranger.plugin.util.ServiceTags;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Generates the synthetic data a run is seeded with: hive services sharing a
+ * tag service, policies on their databases and tables, users in groups, and
+ * tagged tables. Names are derived from the prefix and an index, so that the
+ * load clients can pick existing objects without asking Ranger Admin; the
+ * rest is drawn from a seeded Random, so that runs are repeatable.
+ */
+public class AdminDataGenerator {
+	static final String   SERVICE_TYPE   = "hive";
+	static final String[] ACCESS_TYPES   = { "select", "update", "create", "drop", "alter", "index", "lock" };
+	static final String[] TAG_TYPES      = { "PII", "PCI", "FINANCE", "SENSITIVE", "EXPIRES_ON" };
+	static final int      DATABASE_COUNT = 20;
+
+	private final AdminPerfTestOptions options;
+	private final Gson                 gson = new Gson();
+
+	public AdminDataGenerator(AdminPerfTestOptions options) {
+		this.options = options;
+	}
+
+	public String getServiceName(int index) {
+		return options.getPrefix() + "_hive_" + index;
+	}
+
+	public String getTagServiceName() {
+		return options.getPrefix() + "_tag";
+	}
+
+	public String getUserName(int index) {
+		return options.getPrefix() + "_user_" + index;
+	}
+
+	public String getGroupName(int index) {
+		return options.getPrefix() + "_group_" + index;
+	}
+
+	public String getTagService() {
+		RangerService ret = new RangerService("tag", getTagServiceName(), "perf-test tag service", null, new HashMap<String, String>());
+
+		return gson.toJson(ret);
+	}
+
+	public String getService(int serviceIndex) {
+		Map<String, String> configs = new HashMap<String, String>();
+
+		configs.put("username", "hive");
+		configs.put("password", "hive");
+		configs.put("jdbc.driverClassName", "org.apache.hive.jdbc.HiveDriver");
+		configs.put("jdbc.url", "jdbc:hive2://localhost:10000");
+
+		RangerService ret = new RangerService(SERVICE_TYPE, getServiceName(serviceIndex), "perf-test service", getTagServiceName(), configs);
+
+		return gson.toJson(ret);
+	}
+
+	/**
+	 * @return policy on a table of the service, allowing a few random
+	 *         accesses to a few random users and a group
+	 */
+	public String getPolicy(int serviceIndex, int policyIndex) {
+		Random random = new Random(options.getRandomSeed() * 31 + serviceIndex * 100003L + policyIndex);
+
+		Map<String, RangerPolicyResource> resources = new HashMap<String, RangerPolicyResource>();
+
+		resources.put("database", new RangerPolicyResource(getDatabaseName(policyIndex)));
+		resources.put("table", new RangerPolicyResource(getTableName(policyIndex)));
+		resources.put("column", new RangerPolicyResource("*"));
+
+		List<RangerPolicyItemAccess> accesses = new ArrayList<RangerPolicyItemAccess>();
+
+		for (int accessType : pick(random, ACCESS_TYPES.length, 1 + random.nextInt(3))) {
+			accesses.add(new RangerPolicyItemAccess(ACCESS_TYPES[accessType], Boolean.TRUE));
+		}
+
+		List<String> users = new ArrayList<String>();
+
+		for (int userIndex : pick(random, options.getUserCount(), 1 + random.nextInt(3))) {
+			users.add(getUserName(userIndex));
+		}
+
+		List<String>     groups     = Arrays.asList(getGroupName(random.nextInt(options.getGroupCount())));
+		RangerPolicyItem policyItem = new RangerPolicyItem(accesses, users, groups, new ArrayList<RangerPolicyItemCondition>(), Boolean.FALSE);
+
+		RangerPolicy ret = new RangerPolicy(getServiceName(serviceIndex), options.getPrefix() + "_policy_" + policyIndex, RangerPolicy.POLICY_TYPE_ACCESS,
+				"perf-test policy", resources, Arrays.asList(policyItem), null);
+
+		return gson.toJson(ret);
+	}
+
+	/**
+	 * @return usersync snapshot, in the format of /service/xusers/users/import,
+	 *         of the users from firstUser (inclusive) to lastUser (exclusive);
+	 *         each user is in one to three random groups
+	 */
+	public String getUserGroupSnapshot(int firstUser, int lastUser, Random random) {
+		JsonArray groups = new JsonArray();
+		JsonArray users  = new JsonArray();
+
+		for (int i = 0; i < options.getGroupCount(); i++) {
+			JsonObject group = new JsonObject();
+
+			group.addProperty("name", getGroupName(i));
+			groups.add(group);
+		}
+
+		for (int i = firstUser; i < lastUser; i++) {
+			JsonObject user          = new JsonObject();
+			JsonArray  groupNameList = new JsonArray();
+
+			for (int groupIndex : pick(random, options.getGroupCount(), 1 + random.nextInt(3))) {
+				groupNameList.add(new JsonPrimitive(getGroupName(groupIndex)));
+			}
+
+			user.addProperty("name", getUserName(i));
+			user.add("groupNameList", groupNameList);
+			users.add(user);
+		}
+
+		JsonObject ret = new JsonObject();
+
+		ret.addProperty("isFullSnapshot", false);
+		ret.add("xgroupInfo", groups);
+		ret.add("xuserInfo", users);
+
+		return ret.toString();
+	}
+
+	/**
+	 * @return tags, in the format of /service/tags/importservicetags/, for
+	 *         the first taggedResourceCount tables of the service
+	 */
+	public String getServiceTags(int serviceIndex) {
+		Random                      random           = new Random(options.getRandomSeed() * 17 + serviceIndex);
+		String                      serviceName      = getServiceName(serviceIndex);
+		Map<Long, RangerTagDef>     tagDefinitions   = new HashMap<Long, RangerTagDef>();
+		Map<Long, RangerTag>        tags             = new HashMap<Long, RangerTag>();
+		List<RangerServiceResource> serviceResources = new ArrayList<RangerServiceResource>();
+		Map<Long, List<Long>>       resourceToTagIds = new HashMap<Long, List<Long>>();
+
+		for (int i = 0; i < TAG_TYPES.length; i++) {
+			RangerTagDef tagDef = new RangerTagDef(TAG_TYPES[i], "perftest");
+
+			tagDef.setId((long) i);
+			tagDefinitions.put(tagDef.getId(), tagDef);
+		}
+
+		for (int i = 0; i < options.getTaggedResourceCount(); i++) {
+			Map<String, RangerPolicyResource> resourceElements = new HashMap<String, RangerPolicyResource>();
+
+			resourceElements.put("database", new RangerPolicyResource(getDatabaseName(i)));
+			resourceElements.put("table", new RangerPolicyResource(getTableName(i)));
+
+			RangerServiceResource resource = new RangerServiceResource(serviceName + "_resource_" + i, serviceName, resourceElements);
+			RangerTag             tag      = new RangerTag(serviceName + "_tag_" + i, TAG_TYPES[random.nextInt(TAG_TYPES.length)], new HashMap<String, String>(), RangerTag.OWNER_SERVICERESOURCE);
+
+			resource.setId((long) i);
+			tag.setId((long) i);
+
+			serviceResources.add(resource);
+			tags.put(tag.getId(), tag);
+			resourceToTagIds.put(resource.getId(), Arrays.asList(tag.getId()));
+		}
+
+		ServiceTags ret = new ServiceTags();
+
+		ret.setOp(ServiceTags.OP_ADD_OR_UPDATE);
+		ret.setServiceName(serviceName);
+		ret.setTagDefinitions(tagDefinitions);
+		ret.setTags(tags);
+		ret.setServiceResources(serviceResources);
+		ret.setResourceToTagIds(resourceToTagIds);
+
+		return gson.toJson(ret);
+	}
+
+	private String getDatabaseName(int index) {
+		return "db_" + (index % DATABASE_COUNT);
+	}
+
+	private String getTableName(int index) {
+		return "table_" + index;
+	}
+
+	// count distinct random indexes below bound
+	private static Set<Integer> pick(Random random, int bound, int count) {
+		Set<Integer> ret = new LinkedHashSet<Integer>();
+
+		while (ret.size() < Math.min(count, bound)) {
+			ret.add(random.nextInt(bound));
+		}
+
+		return ret;
+	}
+}
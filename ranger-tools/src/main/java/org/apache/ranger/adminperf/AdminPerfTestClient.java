@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.adminperf;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Calls the configured endpoints in turn until the end of the run. Calls
+ * that start after the warm-up and complete before the end of the run are
+ * recorded, per endpoint.
+ */
+public class AdminPerfTestClient extends Thread {
+	static final Log LOG = LogFactory.getLog(AdminPerfTestClient.class);
+
+	static final int USERSYNC_BATCH_SIZE = 100;
+
+	final AdminPerfTestOptions options;
+	final AdminDataGenerator   generator;
+	final AdminRestClient      restClient;
+	final List<String>         endpoints;
+	final String[]             serviceTags;
+	final long                 measureStartTime;
+	final long                 measureEndTime;
+	final Random               random;
+
+	final Map<String, LatencyStats> stats = new HashMap<String, LatencyStats>();
+
+	public AdminPerfTestClient(AdminPerfTestOptions options, AdminDataGenerator generator, String[] serviceTags, int clientId, long measureStartTime, long measureEndTime) {
+		this.options          = options;
+		this.generator        = generator;
+		this.restClient       = new AdminRestClient(options.getAdminUrl(), options.getUserName(), options.getPassword(), options.getTimeoutMs());
+		this.endpoints        = options.getEndpoints();
+		this.serviceTags      = serviceTags;
+		this.measureStartTime = measureStartTime;
+		this.measureEndTime   = measureEndTime;
+		this.random           = new Random(options.getRandomSeed() + clientId);
+
+		for (String endpoint : endpoints) {
+			stats.put(endpoint, new LatencyStats());
+		}
+
+		setName("AdminPerfTestClient-" + clientId);
+		setDaemon(true);
+	}
+
+	public Map<String, LatencyStats> getStats() {
+		return stats;
+	}
+
+	@Override
+	public void run() {
+		// start each client at a different endpoint, for an even mix from the start
+		for (int i = random.nextInt(endpoints.size()); System.currentTimeMillis() < measureEndTime; i++) {
+			String  endpoint  = endpoints.get(i % endpoints.size());
+			Request request   = createRequest(endpoint);
+			long    startTime = System.currentTimeMillis();
+			long    startNano = System.nanoTime();
+			boolean isError;
+
+			try {
+				AdminRestClient.Response response = restClient.call(request.method, request.path, request.body);
+
+				isError = !response.isSuccess();
+
+				if (isError && LOG.isDebugEnabled()) {
+					LOG.debug(endpoint + ": status=" + response.getStatus() + ", response=" + response.getBody());
+				}
+			} catch (Exception excp) {
+				LOG.warn(endpoint + ": call failed", excp);
+
+				isError = true;
+			}
+
+			long latencyNanos = System.nanoTime() - startNano;
+
+			if (startTime >= measureStartTime && System.currentTimeMillis() <= measureEndTime) {
+				stats.get(endpoint).record(latencyNanos, isError);
+			}
+		}
+	}
+
+	// the request body is generated here, outside of the measured call
+	private Request createRequest(String endpoint) {
+		int    serviceIndex = random.nextInt(options.getServiceCount());
+		String serviceName  = generator.getServiceName(serviceIndex);
+		String pluginId     = "perftest-" + getName();
+
+		if (RangerAdminPerfTester.ENDPOINT_POLICY_DOWNLOAD.equals(endpoint)) {
+			return new Request("GET", "/service/plugins/policies/download/" + serviceName + "?lastKnownVersion=-1&pluginId=" + pluginId, null);
+		} else if (RangerAdminPerfTester.ENDPOINT_POLICY_SEARCH.equals(endpoint)) {
+			String userName = generator.getUserName(random.nextInt(options.getUserCount()));
+
+			return new Request("GET", "/service/plugins/policies?serviceName=" + serviceName + "&user=" + userName + "&pageSize=25", null);
+		} else if (RangerAdminPerfTester.ENDPOINT_TAG_DOWNLOAD.equals(endpoint)) {
+			return new Request("GET", "/service/tags/download/" + serviceName + "?lastKnownVersion=-1&pluginId=" + pluginId, null);
+		} else if (RangerAdminPerfTester.ENDPOINT_USERSYNC_IMPORT.equals(endpoint)) {
+			int firstUser = random.nextInt(Math.max(options.getUserCount() - USERSYNC_BATCH_SIZE, 0) + 1);
+			int lastUser  = Math.min(firstUser + USERSYNC_BATCH_SIZE, options.getUserCount());
+
+			return new Request("POST", "/service/xusers/users/import", generator.getUserGroupSnapshot(firstUser, lastUser, random));
+		} else {
+			return new Request("PUT", "/service/tags/importservicetags/", serviceTags[serviceIndex]);
+		}
+	}
+
+	private static class Request {
+		final String method;
+		final String path;
+		final String body;
+
+		Request(String method, String path, String body) {
+			this.method = method;
+			this.path   = path;
+			this.body   = body;
+		}
+	}
+}
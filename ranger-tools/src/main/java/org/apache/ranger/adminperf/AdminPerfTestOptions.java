@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.adminperf;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+public class AdminPerfTestOptions {
+	static final Log LOG = LogFactory.getLog(AdminPerfTestOptions.class);
+
+	static final String DEFAULT_ENDPOINTS = RangerAdminPerfTester.ENDPOINT_POLICY_DOWNLOAD + "," + RangerAdminPerfTester.ENDPOINT_POLICY_SEARCH + ","
+											+ RangerAdminPerfTester.ENDPOINT_TAG_DOWNLOAD + "," + RangerAdminPerfTester.ENDPOINT_USERSYNC_IMPORT;
+
+	private String       adminUrl             = "http://localhost:6080";
+	private String       userName             = "admin";
+	private String       password             = "admin";
+	private String       prefix               = "perftest";
+	private int          serviceCount         = 2;
+	private int          policyCount          = 100;
+	private int          userCount            = 1000;
+	private int          groupCount           = 100;
+	private int          taggedResourceCount  = 100;
+	private int          clientCount          = 8;
+	private int          warmupSeconds        = 10;
+	private int          durationSeconds      = 60;
+	private int          timeoutMs            = 60 * 1000;
+	private long         randomSeed           = 0;
+	private boolean      isSeedingSkipped     = false;
+	private List<String> endpoints            = Arrays.asList(DEFAULT_ENDPOINTS.split(","));
+	private String       reportFileName       = null;
+	private String       baselineFileName     = null;
+	private double       tolerance            = 0.2;
+
+	private final Options options = new Options();
+
+	AdminPerfTestOptions() {}
+
+	/**
+	 * @return false if the arguments are invalid, or help was asked for; usage
+	 *         is shown then
+	 */
+	final boolean parse(final String[] args) {
+		boolean ret = false;
+
+		options.addOption("h", "help", false, "show help.");
+		options.addOption("u", "url", true, "Ranger Admin URL; default " + adminUrl);
+		options.addOption("U", "user", true, "Ranger Admin user, with admin role; default " + userName);
+		options.addOption("P", "password", true, "Password of the user");
+		options.addOption("x", "prefix", true, "Prefix of the names of the generated services, users, groups and policies; default " + prefix);
+		options.addOption("s", "services", true, "Number of hive services to generate; default " + serviceCount);
+		options.addOption("m", "policies", true, "Number of policies per service; default " + policyCount);
+		options.addOption("k", "users", true, "Number of users; default " + userCount);
+		options.addOption("g", "groups", true, "Number of groups; default " + groupCount);
+		options.addOption("t", "tagged-resources", true, "Number of tagged resources per service; default " + taggedResourceCount);
+		options.addOption("c", "clients", true, "Number of concurrent clients; default " + clientCount);
+		options.addOption("w", "warmup", true, "Warm-up time in seconds, not measured; default " + warmupSeconds);
+		options.addOption("d", "duration", true, "Measured time in seconds; default " + durationSeconds);
+		options.addOption("e", "endpoints", true, "Comma-separated endpoints to call; default " + DEFAULT_ENDPOINTS + "; also " + RangerAdminPerfTester.ENDPOINT_TAG_IMPORT);
+		options.addOption("n", "no-seed", false, "Skip generating the data; use the data of an earlier run with the same prefix and counts");
+		options.addOption("R", "random-seed", true, "Seed of the generated data; default " + randomSeed);
+		options.addOption("o", "report", true, "File to write the results to, as JSON");
+		options.addOption("b", "baseline", true, "Report of an earlier run to compare with; exits with 2 on regression");
+		options.addOption("T", "tolerance", true, "Allowed degradation from the baseline in percent; default " + (int) (tolerance * 100));
+
+		try {
+			CommandLine commandLine = new DefaultParser().parse(options, args);
+
+			if (commandLine.hasOption("h")) {
+				showUsage();
+
+				return false;
+			}
+
+			adminUrl            = commandLine.getOptionValue("u", adminUrl);
+			userName            = commandLine.getOptionValue("U", userName);
+			password            = commandLine.getOptionValue("P", password);
+			prefix              = commandLine.getOptionValue("x", prefix);
+			serviceCount        = getIntValue(commandLine, "s", serviceCount);
+			policyCount         = getIntValue(commandLine, "m", policyCount);
+			userCount           = getIntValue(commandLine, "k", userCount);
+			groupCount          = getIntValue(commandLine, "g", groupCount);
+			taggedResourceCount = getIntValue(commandLine, "t", taggedResourceCount);
+			clientCount         = getIntValue(commandLine, "c", clientCount);
+			warmupSeconds       = getIntValue(commandLine, "w", warmupSeconds);
+			durationSeconds     = getIntValue(commandLine, "d", durationSeconds);
+			isSeedingSkipped    = commandLine.hasOption("n");
+			reportFileName      = commandLine.getOptionValue("o");
+			baselineFileName    = commandLine.getOptionValue("b");
+
+			if (commandLine.hasOption("R")) {
+				randomSeed = Long.parseLong(commandLine.getOptionValue("R"));
+			}
+
+			if (commandLine.hasOption("T")) {
+				tolerance = Double.parseDouble(commandLine.getOptionValue("T")) / 100;
+			}
+
+			if (commandLine.hasOption("e")) {
+				endpoints = Arrays.asList(StringUtils.stripAll(StringUtils.split(commandLine.getOptionValue("e"), ',')));
+			}
+
+			ret = validate();
+		} catch (Exception exception) {
+			LOG.error("Error processing command-line arguments: ", exception);
+		}
+
+		if (!ret) {
+			showUsage();
+		}
+
+		return ret;
+	}
+
+	public String getAdminUrl() { return adminUrl; }
+
+	public String getUserName() { return userName; }
+
+	public String getPassword() { return password; }
+
+	public String getPrefix() { return prefix; }
+
+	public int getServiceCount() { return serviceCount; }
+
+	public int getPolicyCount() { return policyCount; }
+
+	public int getUserCount() { return userCount; }
+
+	public int getGroupCount() { return groupCount; }
+
+	public int getTaggedResourceCount() { return taggedResourceCount; }
+
+	public int getClientCount() { return clientCount; }
+
+	public int getWarmupSeconds() { return warmupSeconds; }
+
+	public int getDurationSeconds() { return durationSeconds; }
+
+	public int getTimeoutMs() { return timeoutMs; }
+
+	public long getRandomSeed() { return randomSeed; }
+
+	public boolean getIsSeedingSkipped() { return isSeedingSkipped; }
+
+	public List<String> getEndpoints() { return endpoints; }
+
+	public String getReportFileName() { return reportFileName; }
+
+	public String getBaselineFileName() { return baselineFileName; }
+
+	public double getTolerance() { return tolerance; }
+
+	private boolean validate() {
+		if (serviceCount < 1 || userCount < 1 || groupCount < 1 || clientCount < 1 || durationSeconds < 1 || policyCount < 0 || taggedResourceCount < 0 || warmupSeconds < 0) {
+			LOG.error("Invalid arguments: services, users, groups, clients and duration must be positive; policies, tagged-resources and warmup must not be negative");
+
+			return false;
+		}
+
+		for (String endpoint : endpoints) {
+			if (!RangerAdminPerfTester.ENDPOINTS.contains(endpoint)) {
+				LOG.error("Invalid endpoint: " + endpoint + "; valid endpoints are " + RangerAdminPerfTester.ENDPOINTS);
+
+				return false;
+			}
+		}
+
+		return !endpoints.isEmpty();
+	}
+
+	private static int getIntValue(CommandLine commandLine, String option, int defaultValue) {
+		String value = commandLine.getOptionValue(option);
+
+		return value != null ? Integer.parseInt(value) : defaultValue;
+	}
+
+	private void showUsage() {
+		HelpFormatter formatter = new HelpFormatter();
+
+		formatter.printHelp("ranger-admin-perftester", options);
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.adminperf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summary of the calls made to one endpoint during the measured part of a
+ * run; written to the report file, and read back from a baseline report.
+ */
+public class AdminPerfTestResult {
+	private String endpoint;
+	private int    count;
+	private int    errorCount;
+	private double throughput;
+	private double meanMs;
+	private double p50Ms;
+	private double p90Ms;
+	private double p99Ms;
+	private double maxMs;
+
+	public AdminPerfTestResult() {
+	}
+
+	public AdminPerfTestResult(String endpoint, LatencyStats stats, long elapsedMs) {
+		this.endpoint   = endpoint;
+		this.count      = stats.getCount();
+		this.errorCount = stats.getErrorCount();
+		this.throughput = elapsedMs > 0 ? stats.getCount() * 1000d / elapsedMs : 0;
+		this.meanMs     = stats.getMeanMs();
+		this.p50Ms      = stats.getPercentileMs(50);
+		this.p90Ms      = stats.getPercentileMs(90);
+		this.p99Ms      = stats.getPercentileMs(99);
+		this.maxMs      = stats.getMaxMs();
+	}
+
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public int getErrorCount() {
+		return errorCount;
+	}
+
+	public double getThroughput() {
+		return throughput;
+	}
+
+	public double getMeanMs() {
+		return meanMs;
+	}
+
+	public double getP50Ms() {
+		return p50Ms;
+	}
+
+	public double getP90Ms() {
+		return p90Ms;
+	}
+
+	public double getP99Ms() {
+		return p99Ms;
+	}
+
+	public double getMaxMs() {
+		return maxMs;
+	}
+
+	/**
+	 * @param tolerance allowed degradation, as a fraction; 0.2 for 20%
+	 * @return descriptions of the metrics that are worse than the baseline by
+	 *         more than the tolerance; empty if there are none
+	 */
+	public List<String> compareTo(AdminPerfTestResult baseline, double tolerance) {
+		List<String> ret = new ArrayList<String>();
+
+		if (p50Ms > baseline.p50Ms * (1 + tolerance)) {
+			ret.add(endpoint + ": p50 " + format(p50Ms) + "ms, baseline " + format(baseline.p50Ms) + "ms");
+		}
+
+		if (p99Ms > baseline.p99Ms * (1 + tolerance)) {
+			ret.add(endpoint + ": p99 " + format(p99Ms) + "ms, baseline " + format(baseline.p99Ms) + "ms");
+		}
+
+		if (throughput < baseline.throughput * (1 - tolerance)) {
+			ret.add(endpoint + ": throughput " + format(throughput) + "/s, baseline " + format(baseline.throughput) + "/s");
+		}
+
+		if (errorCount > 0 && baseline.errorCount == 0) {
+			ret.add(endpoint + ": " + errorCount + " errors, none in baseline");
+		}
+
+		return ret;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%-18s count=%-8d errors=%-6d throughput=%-10s mean=%-9s p50=%-9s p90=%-9s p99=%-9s max=%s",
+				endpoint, count, errorCount, format(throughput) + "/s", format(meanMs) + "ms", format(p50Ms) + "ms", format(p90Ms) + "ms", format(p99Ms) + "ms", format(maxMs) + "ms");
+	}
+
+	private static String format(double value) {
+		return String.format("%.2f", value);
+	}
+}
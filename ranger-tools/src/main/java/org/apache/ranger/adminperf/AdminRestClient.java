@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.adminperf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+
+import javax.xml.bind.DatatypeConverter;
+
+/**
+ * Minimal JSON over HTTP client for Ranger Admin, using basic authentication.
+ * Responses are read fully, so that connections are kept alive and reused.
+ */
+public class AdminRestClient {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final String baseUrl;
+	private final String authorization;
+	private final int    timeoutMs;
+
+	public AdminRestClient(String baseUrl, String userName, String password, int timeoutMs) {
+		this.baseUrl       = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+		this.authorization = "Basic " + DatatypeConverter.printBase64Binary((userName + ":" + password).getBytes(UTF_8));
+		this.timeoutMs     = timeoutMs;
+	}
+
+	public Response get(String path) throws IOException {
+		return call("GET", path, null);
+	}
+
+	public Response post(String path, String body) throws IOException {
+		return call("POST", path, body);
+	}
+
+	public Response put(String path, String body) throws IOException {
+		return call("PUT", path, body);
+	}
+
+	public Response call(String method, String path, String body) throws IOException {
+		HttpURLConnection conn = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+
+		conn.setRequestMethod(method);
+		conn.setConnectTimeout(timeoutMs);
+		conn.setReadTimeout(timeoutMs);
+		conn.setRequestProperty("Authorization", authorization);
+		conn.setRequestProperty("Accept", "application/json");
+
+		if (body != null) {
+			byte[] bytes = body.getBytes(UTF_8);
+
+			conn.setDoOutput(true);
+			conn.setRequestProperty("Content-Type", "application/json");
+			conn.setFixedLengthStreamingMode(bytes.length);
+
+			OutputStream out = conn.getOutputStream();
+
+			try {
+				out.write(bytes);
+			} finally {
+				out.close();
+			}
+		}
+
+		int         status = conn.getResponseCode();
+		InputStream in     = status >= 400 ? conn.getErrorStream() : conn.getInputStream();
+
+		return new Response(status, in != null ? readFully(in) : "");
+	}
+
+	private static String readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out    = new ByteArrayOutputStream();
+		byte[]                buffer = new byte[8192];
+
+		try {
+			for (int len = in.read(buffer); len != -1; len = in.read(buffer)) {
+				out.write(buffer, 0, len);
+			}
+		} finally {
+			in.close();
+		}
+
+		return new String(out.toByteArray(), UTF_8);
+	}
+
+	public static class Response {
+		private final int    status;
+		private final String body;
+
+		Response(int status, String body) {
+			this.status = status;
+			this.body   = body;
+		}
+
+		public int getStatus() {
+			return status;
+		}
+
+		public String getBody() {
+			return body;
+		}
+
+		public boolean isSuccess() {
+			return status >= 200 && status < 300 || status == HttpURLConnection.HTTP_NOT_MODIFIED;
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.adminperf;
+
+import java.util.Arrays;
+
+/**
+ * Latencies of the calls made to one endpoint. Not thread-safe: each client
+ * records into its own instance; these are merged at the end of the run.
+ */
+public class LatencyStats {
+	private long[]  latencies  = new long[1024];
+	private int     count      = 0;
+	private int     errorCount = 0;
+	private boolean isSorted   = true;
+
+	public void record(long latencyNanos, boolean isError) {
+		if (count == latencies.length) {
+			latencies = Arrays.copyOf(latencies, count * 2);
+		}
+
+		latencies[count++] = latencyNanos;
+		isSorted           = false;
+
+		if (isError) {
+			errorCount++;
+		}
+	}
+
+	public void add(LatencyStats other) {
+		if (count + other.count > latencies.length) {
+			latencies = Arrays.copyOf(latencies, Math.max(count + other.count, count * 2));
+		}
+
+		System.arraycopy(other.latencies, 0, latencies, count, other.count);
+
+		count      += other.count;
+		errorCount += other.errorCount;
+		isSorted    = false;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public int getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * @param percentile 0 to 100
+	 * @return latency, in milliseconds, at the given percentile (nearest rank)
+	 */
+	public double getPercentileMs(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+
+		sort();
+
+		int rank = (int) Math.ceil(percentile / 100 * count);
+
+		return toMs(latencies[Math.min(Math.max(rank, 1), count) - 1]);
+	}
+
+	public double getMeanMs() {
+		if (count == 0) {
+			return 0;
+		}
+
+		long total = 0;
+
+		for (int i = 0; i < count; i++) {
+			total += latencies[i];
+		}
+
+		return toMs(total / count);
+	}
+
+	public double getMaxMs() {
+		return getPercentileMs(100);
+	}
+
+	private void sort() {
+		if (!isSorted) {
+			Arrays.sort(latencies, 0, count);
+
+			isSorted = true;
+		}
+	}
+
+	private static double toMs(long nanos) {
+		return nanos / 1000000d;
+	}
+}
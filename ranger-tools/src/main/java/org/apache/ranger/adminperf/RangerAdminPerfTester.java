@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.adminperf;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Measures Ranger Admin REST endpoints under concurrent load: seeds a running
+ * Ranger Admin with synthetic services, policies, users, groups and tags, then
+ * calls the endpoints from concurrent clients for the given duration, and
+ * reports throughput and latency percentiles per endpoint.
+ *
+ * Exit codes: 0 on success, 1 on failure to seed or run, 2 when the results
+ * are worse than the given baseline by more than the tolerance.
+ */
+public class RangerAdminPerfTester {
+	static final Log LOG = LogFactory.getLog(RangerAdminPerfTester.class);
+
+	public static final String ENDPOINT_POLICY_DOWNLOAD = "policy-download";
+	public static final String ENDPOINT_POLICY_SEARCH   = "policy-search";
+	public static final String ENDPOINT_TAG_DOWNLOAD    = "tag-download";
+	public static final String ENDPOINT_USERSYNC_IMPORT = "usersync-import";
+	public static final String ENDPOINT_TAG_IMPORT      = "tag-import";
+
+	public static final List<String> ENDPOINTS = Arrays.asList(ENDPOINT_POLICY_DOWNLOAD, ENDPOINT_POLICY_SEARCH, ENDPOINT_TAG_DOWNLOAD, ENDPOINT_USERSYNC_IMPORT, ENDPOINT_TAG_IMPORT);
+
+	static final int EXIT_FAILURE    = 1;
+	static final int EXIT_REGRESSION = 2;
+
+	static final int USERSYNC_SEED_BATCH_SIZE = 1000;
+
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	public static void main(String[] args) {
+		AdminPerfTestOptions options = new AdminPerfTestOptions();
+
+		if (!options.parse(args)) {
+			System.exit(EXIT_FAILURE);
+		}
+
+		System.exit(run(options));
+	}
+
+	static int run(AdminPerfTestOptions options) {
+		AdminDataGenerator generator  = new AdminDataGenerator(options);
+		AdminRestClient    restClient = new AdminRestClient(options.getAdminUrl(), options.getUserName(), options.getPassword(), options.getTimeoutMs());
+
+		try {
+			if (!options.getIsSeedingSkipped()) {
+				seed(options, generator, restClient);
+			}
+
+			List<AdminPerfTestResult> results = runClients(options, generator);
+
+			System.out.println("Results of " + options.getClientCount() + " clients over " + options.getDurationSeconds() + " seconds:");
+
+			for (AdminPerfTestResult result : results) {
+				System.out.println("\t" + result);
+			}
+
+			if (options.getReportFileName() != null) {
+				writeReport(results, options.getReportFileName());
+			}
+
+			if (options.getBaselineFileName() != null) {
+				List<String> regressions = compare(results, readReport(options.getBaselineFileName()), options.getTolerance());
+
+				if (!regressions.isEmpty()) {
+					System.out.println("Regressions against " + options.getBaselineFileName() + ":");
+
+					for (String regression : regressions) {
+						System.out.println("\t" + regression);
+					}
+
+					return EXIT_REGRESSION;
+				}
+			}
+		} catch (Exception excp) {
+			LOG.error("Performance run failed", excp);
+
+			return EXIT_FAILURE;
+		}
+
+		return 0;
+	}
+
+	// users and groups first: policies can only refer to existing ones
+	static void seed(final AdminPerfTestOptions options, final AdminDataGenerator generator, final AdminRestClient restClient) throws Exception {
+		long   startTime = System.currentTimeMillis();
+		Random random    = new Random(options.getRandomSeed());
+
+		LOG.info("Seeding " + options.getUserCount() + " users in " + options.getGroupCount() + " groups");
+
+		for (int i = 0; i < options.getUserCount(); i += USERSYNC_SEED_BATCH_SIZE) {
+			String snapshot = generator.getUserGroupSnapshot(i, Math.min(i + USERSYNC_SEED_BATCH_SIZE, options.getUserCount()), random);
+
+			checkResponse(restClient.post("/service/xusers/users/import", snapshot), "import users");
+		}
+
+		LOG.info("Seeding " + options.getServiceCount() + " services with " + options.getPolicyCount() + " policies and " + options.getTaggedResourceCount() + " tagged resources each");
+
+		checkResponse(restClient.post("/service/public/v2/api/service/", generator.getTagService()), "create tag service");
+
+		for (int i = 0; i < options.getServiceCount(); i++) {
+			checkResponse(restClient.post("/service/public/v2/api/service/", generator.getService(i)), "create service " + generator.getServiceName(i));
+		}
+
+		ExecutorService      executor = Executors.newFixedThreadPool(options.getClientCount());
+		List<Future<Object>> futures  = new ArrayList<Future<Object>>();
+
+		try {
+			for (int i = 0; i < options.getServiceCount(); i++) {
+				for (int j = 0; j < options.getPolicyCount(); j++) {
+					final int serviceIndex = i;
+					final int policyIndex  = j;
+
+					futures.add(executor.submit(new Callable<Object>() {
+						@Override
+						public Object call() throws Exception {
+							checkResponse(restClient.post("/service/public/v2/api/policy", generator.getPolicy(serviceIndex, policyIndex)), "create policy " + policyIndex + " of " + generator.getServiceName(serviceIndex));
+
+							return null;
+						}
+					}));
+				}
+			}
+
+			for (Future<Object> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		if (options.getTaggedResourceCount() > 0) {
+			for (int i = 0; i < options.getServiceCount(); i++) {
+				checkResponse(restClient.put("/service/tags/importservicetags/", generator.getServiceTags(i)), "import tags of " + generator.getServiceName(i));
+			}
+		}
+
+		LOG.info("Seeded in " + (System.currentTimeMillis() - startTime) + "ms");
+	}
+
+	static List<AdminPerfTestResult> runClients(AdminPerfTestOptions options, AdminDataGenerator generator) throws InterruptedException {
+		String[] serviceTags = new String[options.getServiceCount()];
+
+		if (options.getEndpoints().contains(ENDPOINT_TAG_IMPORT)) {
+			for (int i = 0; i < serviceTags.length; i++) {
+				serviceTags[i] = generator.getServiceTags(i);
+			}
+		}
+
+		long measureStartTime = System.currentTimeMillis() + options.getWarmupSeconds() * 1000L;
+		long measureEndTime   = measureStartTime + options.getDurationSeconds() * 1000L;
+
+		List<AdminPerfTestClient> clients = new ArrayList<AdminPerfTestClient>(options.getClientCount());
+
+		for (int i = 0; i < options.getClientCount(); i++) {
+			clients.add(new AdminPerfTestClient(options, generator, serviceTags, i, measureStartTime, measureEndTime));
+		}
+
+		LOG.info("Starting " + clients.size() + " clients; warm-up " + options.getWarmupSeconds() + "s, measured " + options.getDurationSeconds() + "s");
+
+		for (AdminPerfTestClient client : clients) {
+			client.start();
+		}
+
+		Map<String, LatencyStats> stats = new HashMap<String, LatencyStats>();
+
+		for (String endpoint : options.getEndpoints()) {
+			stats.put(endpoint, new LatencyStats());
+		}
+
+		for (AdminPerfTestClient client : clients) {
+			client.join();
+
+			for (Map.Entry<String, LatencyStats> entry : client.getStats().entrySet()) {
+				stats.get(entry.getKey()).add(entry.getValue());
+			}
+		}
+
+		List<AdminPerfTestResult> ret = new ArrayList<AdminPerfTestResult>();
+
+		for (String endpoint : options.getEndpoints()) {
+			ret.add(new AdminPerfTestResult(endpoint, stats.get(endpoint), options.getDurationSeconds() * 1000L));
+		}
+
+		return ret;
+	}
+
+	static List<String> compare(List<AdminPerfTestResult> results, List<AdminPerfTestResult> baseline, double tolerance) {
+		List<String>                     ret         = new ArrayList<String>();
+		Map<String, AdminPerfTestResult> baselineMap = new HashMap<String, AdminPerfTestResult>();
+
+		for (AdminPerfTestResult result : baseline) {
+			baselineMap.put(result.getEndpoint(), result);
+		}
+
+		for (AdminPerfTestResult result : results) {
+			AdminPerfTestResult baselineResult = baselineMap.get(result.getEndpoint());
+
+			if (baselineResult != null) {
+				ret.addAll(result.compareTo(baselineResult, tolerance));
+			}
+		}
+
+		return ret;
+	}
+
+	static void writeReport(List<AdminPerfTestResult> results, String fileName) throws IOException {
+		Gson   gson   = new GsonBuilder().setPrettyPrinting().create();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(fileName), UTF_8);
+
+		try {
+			gson.toJson(results, writer);
+		} finally {
+			writer.close();
+		}
+	}
+
+	static List<AdminPerfTestResult> readReport(String fileName) throws IOException {
+		Type   listType = new TypeToken<List<AdminPerfTestResult>>() {}.getType();
+		Reader reader   = new InputStreamReader(new FileInputStream(fileName), UTF_8);
+
+		try {
+			return new Gson().fromJson(reader, listType);
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static void checkResponse(AdminRestClient.Response response, String operation) throws IOException {
+		if (!response.isSuccess()) {
+			throw new IOException(operation + " failed: status=" + response.getStatus() + ", response=" + response.getBody()
+								+ "; use --no-seed, or another --prefix, to run against data seeded earlier");
+		}
+	}
+}
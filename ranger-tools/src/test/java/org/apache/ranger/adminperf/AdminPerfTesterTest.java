@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.adminperf;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.util.ServiceTags;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+public class AdminPerfTesterTest {
+
+	@Test
+	public void testPercentiles() {
+		LatencyStats stats  = new LatencyStats();
+		LatencyStats other  = new LatencyStats();
+
+		for (int i = 100; i >= 1; i--) {
+			(i % 2 == 0 ? stats : other).record(i * 1000000L, i == 7);
+		}
+
+		stats.add(other);
+
+		Assert.assertEquals(100, stats.getCount());
+		Assert.assertEquals(1, stats.getErrorCount());
+		Assert.assertEquals(50, stats.getPercentileMs(50), 0.001);
+		Assert.assertEquals(99, stats.getPercentileMs(99), 0.001);
+		Assert.assertEquals(100, stats.getMaxMs(), 0.001);
+		Assert.assertEquals(50.5, stats.getMeanMs(), 0.001);
+	}
+
+	@Test
+	public void testBaselineComparison() {
+		LatencyStats fast = new LatencyStats();
+		LatencyStats slow = new LatencyStats();
+
+		for (int i = 0; i < 100; i++) {
+			fast.record(10000000L, false);
+			slow.record(20000000L, false);
+		}
+
+		List<AdminPerfTestResult> baseline = Arrays.asList(new AdminPerfTestResult(RangerAdminPerfTester.ENDPOINT_POLICY_DOWNLOAD, fast, 1000));
+		List<AdminPerfTestResult> same     = Arrays.asList(new AdminPerfTestResult(RangerAdminPerfTester.ENDPOINT_POLICY_DOWNLOAD, fast, 1000));
+		List<AdminPerfTestResult> slower   = Arrays.asList(new AdminPerfTestResult(RangerAdminPerfTester.ENDPOINT_POLICY_DOWNLOAD, slow, 2000));
+		List<AdminPerfTestResult> other    = Arrays.asList(new AdminPerfTestResult(RangerAdminPerfTester.ENDPOINT_TAG_DOWNLOAD, slow, 2000));
+
+		Assert.assertEquals(Collections.emptyList(), RangerAdminPerfTester.compare(same, baseline, 0.2));
+		Assert.assertEquals(3, RangerAdminPerfTester.compare(slower, baseline, 0.2).size()); // p50, p99 and throughput
+		Assert.assertEquals(Collections.emptyList(), RangerAdminPerfTester.compare(slower, baseline, 1.5));
+		Assert.assertEquals(Collections.emptyList(), RangerAdminPerfTester.compare(other, baseline, 0.2));
+	}
+
+	@Test
+	public void testGeneratedData() {
+		AdminPerfTestOptions options = new AdminPerfTestOptions();
+
+		Assert.assertTrue(options.parse(new String[] { "-s", "3", "-m", "10", "-k", "50", "-g", "5", "-t", "20", "-x", "test" }));
+
+		AdminDataGenerator generator = new AdminDataGenerator(options);
+		Gson               gson      = new Gson();
+		RangerPolicy       policy    = gson.fromJson(generator.getPolicy(2, 7), RangerPolicy.class);
+		ServiceTags        tags      = gson.fromJson(generator.getServiceTags(1), ServiceTags.class);
+
+		Assert.assertEquals("test_hive_2", policy.getService());
+		Assert.assertEquals("table_7", policy.getResources().get("table").getValues().get(0));
+		Assert.assertTrue(policy.getPolicyItems().get(0).getUsers().get(0).startsWith("test_user_"));
+		Assert.assertEquals(generator.getPolicy(2, 7), generator.getPolicy(2, 7));
+
+		Assert.assertEquals("test_hive_1", tags.getServiceName());
+		Assert.assertEquals(20, tags.getServiceResources().size());
+		Assert.assertEquals(20, tags.getResourceToTagIds().size());
+	}
+}
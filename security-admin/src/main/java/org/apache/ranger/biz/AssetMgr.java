@@ -21,6 +21,7 @@
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Date;
@@ -131,6 +132,9 @@ public class AssetMgr extends AssetMgrBase {
 	@Autowired
 	RangerPluginInfoService pluginInfoService;
 
+	@Autowired
+	RangerPluginActivityQueue pluginActivityQueue;
+
 	private static final Logger logger = Logger.getLogger(AssetMgr.class);
 
 	public File getXResourceFile(Long id, String fileType) {
@@ -649,6 +653,8 @@ public class AssetMgr extends AssetMgrBase {
 				logger.debug("Not logging HttpServletResponse."
 						+ "SC_NOT_MODIFIED, to enable, update "
 						+ ": ranger.log.SC_NOT_MODIFIED");
+			} else if (pluginActivityQueue.isEnabled()) {
+				pluginActivityQueue.addPolicyExportAudit(xXPolicyExportAudit);
 			} else {
 				// Create PolicyExportAudit record after transaction is completed. If it is created in-line here
 				// then the TransactionManager will roll-back the changes because the HTTP return code is
@@ -662,6 +668,8 @@ public class AssetMgr extends AssetMgrBase {
 				};
 				activityLogger.commitAfterTransactionComplete(commitWork);
 			}
+		} else if (pluginActivityQueue.isEnabled()) {
+			pluginActivityQueue.addPolicyExportAudit(xXPolicyExportAudit);
 		} else {
 			ret = rangerDaoManager.getXXPolicyExportAudit().create(xXPolicyExportAudit);
 		}
@@ -712,6 +720,16 @@ public class AssetMgr extends AssetMgrBase {
 			logger.debug("==> createOrUpdatePluginInfo(pluginInfo=" + pluginInfo + ", isPolicyDownloadRequest=" + isPolicyDownloadRequest + ", httpCode=" + httpCode + ")");
 		}
 
+		if (pluginActivityQueue.isEnabled()) {
+			pluginActivityQueue.addPluginInfo(pluginInfo, isPolicyDownloadRequest, httpCode);
+
+			if (logger.isDebugEnabled()) {
+				logger.debug("<== createOrUpdatePluginInfo(pluginInfo=" + pluginInfo + ", isPolicyDownloadRequest=" + isPolicyDownloadRequest + ", httpCode=" + httpCode + "): queued");
+			}
+
+			return;
+		}
+
 		final boolean isTagVersionResetNeeded;
 
 		if (httpCode == HttpServletResponse.SC_NOT_MODIFIED) {
@@ -762,6 +780,27 @@ public class AssetMgr extends AssetMgrBase {
 
 	}
 
+	/*
+	 * Writes a plugin-info update queued by RangerPluginActivityQueue, in the caller's transaction
+	 */
+	void updatePluginInfo(RangerPluginInfo pluginInfo, boolean isPolicyDownloadRequest, int httpCode) {
+		if (httpCode == HttpServletResponse.SC_NOT_FOUND
+				&& ((isPolicyDownloadRequest && (pluginInfo.getPolicyActiveVersion() == null || pluginInfo.getPolicyActiveVersion() == -1))
+					|| (!isPolicyDownloadRequest && (pluginInfo.getTagActiveVersion() == null || pluginInfo.getTagActiveVersion() == -1)))) {
+			doDeleteXXPluginInfo(pluginInfo);
+		} else {
+			final boolean isTagVersionResetNeeded;
+
+			if (httpCode == HttpServletResponse.SC_NOT_MODIFIED && isPolicyDownloadRequest) {
+				isTagVersionResetNeeded = rangerDaoManager.getXXService().findAssociatedTagService(pluginInfo.getServiceName()) == null;
+			} else {
+				isTagVersionResetNeeded = false;
+			}
+
+			doCreateOrUpdateXXPluginInfo(pluginInfo, isPolicyDownloadRequest, isTagVersionResetNeeded);
+		}
+	}
+
 	private XXPluginInfo doCreateOrUpdateXXPluginInfo(RangerPluginInfo pluginInfo, final boolean isPolicyDownloadRequest, final boolean isTagVersionResetNeeded) {
 		XXPluginInfo ret = null;
 
@@ -949,6 +988,40 @@ public class AssetMgr extends AssetMgrBase {
 	}
 
 	public VXAccessAuditList getAccessLogs(SearchCriteria searchCriteria) {
+        searchCriteria = normalizeAccessLogCriteria(searchCriteria);
+        if (xaBizUtil.getAuditDBType().equalsIgnoreCase(RangerBizUtil.AUDIT_STORE_SOLR)) {
+            return solrAccessAuditsService.searchXAccessAudits(searchCriteria);
+        } else {
+            return xAccessAuditService.searchXAccessAudits(searchCriteria);
+        }
+    }
+
+	/**
+	 * Validates an export of access audits before the response is committed
+	 *
+	 * @return criteria to pass to exportAccessLogs()
+	 */
+	public SearchCriteria getAccessLogExportCriteria(SearchCriteria searchCriteria) {
+		searchCriteria = normalizeAccessLogCriteria(searchCriteria);
+
+		if (!xaBizUtil.getAuditDBType().equalsIgnoreCase(RangerBizUtil.AUDIT_STORE_SOLR)) {
+			throw restErrorUtil.createRESTException("Export of access audits is supported only for audits in Solr",
+					MessageEnums.OPER_NOT_ALLOWED_FOR_STATE);
+		}
+
+		solrAccessAuditsService.getFieldNames(searchCriteria);
+
+		return searchCriteria;
+	}
+
+	/**
+	 * @param searchCriteria as returned by getAccessLogExportCriteria()
+	 */
+	public long exportAccessLogs(SearchCriteria searchCriteria, OutputStream out) throws IOException {
+		return solrAccessAuditsService.exportXAccessAudits(searchCriteria, out);
+	}
+
+	private SearchCriteria normalizeAccessLogCriteria(SearchCriteria searchCriteria) {
 
         if (searchCriteria == null) {
             searchCriteria = new SearchCriteria();
@@ -979,11 +1052,7 @@ public class AssetMgr extends AssetMgrBase {
         } else if (!searchCriteria.getSortType().equalsIgnoreCase("asc") && !searchCriteria.getSortType().equalsIgnoreCase("desc")) {
             searchCriteria.setSortType("desc");
         }
-        if (xaBizUtil.getAuditDBType().equalsIgnoreCase(RangerBizUtil.AUDIT_STORE_SOLR)) {
-            return solrAccessAuditsService.searchXAccessAudits(searchCriteria);
-        } else {
-            return xAccessAuditService.searchXAccessAudits(searchCriteria);
-        }
+        return searchCriteria;
     }
 
 
@@ -0,0 +1,340 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.common.PropertiesUtil;
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.entity.XXPolicyExportAudit;
+import org.apache.ranger.plugin.model.RangerPluginInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Holds plugin-info updates and policy download audits made by plugin
+ * download requests, and writes them to the database from a background
+ * thread, so that download requests don't wait on these writes.
+ *
+ * Updates of a plugin are merged into one until the next flush, keeping the
+ * download time of the request that downloaded the version; download audits
+ * of unchanged (HTTP 304) polls are kept once per plugin.
+ */
+@Component
+public class RangerPluginActivityQueue {
+	private static final Log LOG = LogFactory.getLog(RangerPluginActivityQueue.class);
+
+	public static final String PROP_ASYNC_ENABLED     = "ranger.plugin.activity.async.enabled";
+	public static final String PROP_FLUSH_INTERVAL_MS = "ranger.plugin.activity.flush.interval.ms";
+	public static final String PROP_BATCH_SIZE        = "ranger.plugin.activity.batch.size";
+	public static final String PROP_MAX_PENDING       = "ranger.plugin.activity.max.pending";
+
+	@Autowired
+	@Qualifier(value = "transactionManager")
+	PlatformTransactionManager txManager;
+
+	@Autowired
+	RangerDaoManager daoMgr;
+
+	@Autowired
+	AssetMgr assetMgr;
+
+	private boolean asyncEnabled    = true;
+	private int     flushIntervalMs = 5000;
+	private int     batchSize       = 500;
+	private int     maxPending      = 100000;
+
+	private Map<String, PluginInfoUpdate>    pendingPluginInfos       = new LinkedHashMap<String, PluginInfoUpdate>();
+	private Map<String, XXPolicyExportAudit> pendingNotModifiedAudits = new LinkedHashMap<String, XXPolicyExportAudit>();
+	private List<XXPolicyExportAudit>        pendingAudits            = new ArrayList<XXPolicyExportAudit>();
+	private long                             droppedCount             = 0;
+
+	private ScheduledExecutorService scheduler = null;
+
+	@PostConstruct
+	public void init() {
+		asyncEnabled    = PropertiesUtil.getBooleanProperty(PROP_ASYNC_ENABLED, asyncEnabled);
+		flushIntervalMs = Math.max(PropertiesUtil.getIntProperty(PROP_FLUSH_INTERVAL_MS, flushIntervalMs), 100);
+		batchSize       = Math.max(PropertiesUtil.getIntProperty(PROP_BATCH_SIZE, batchSize), 1);
+		maxPending      = Math.max(PropertiesUtil.getIntProperty(PROP_MAX_PENDING, maxPending), 1);
+
+		LOG.info("RangerPluginActivityQueue: asyncEnabled=" + asyncEnabled + ", flushIntervalMs=" + flushIntervalMs + ", batchSize=" + batchSize + ", maxPending=" + maxPending);
+
+		if (asyncEnabled) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread ret = new Thread(r, "RangerPluginActivityQueue");
+
+					ret.setDaemon(true);
+
+					return ret;
+				}
+			});
+
+			scheduler.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						flush();
+					} catch (Throwable excp) {
+						LOG.error("RangerPluginActivityQueue: flush failed", excp);
+					}
+				}
+			}, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		if (scheduler != null) {
+			LOG.info("RangerPluginActivityQueue: shutting down");
+
+			scheduler.shutdown();
+
+			try {
+				scheduler.awaitTermination(5, TimeUnit.SECONDS);
+			} catch (InterruptedException excp) {
+				LOG.warn("RangerPluginActivityQueue: interrupted while waiting for pending flush");
+			}
+
+			flush();
+		}
+	}
+
+	public boolean isEnabled() {
+		return scheduler != null && !scheduler.isShutdown();
+	}
+
+	public void addPluginInfo(RangerPluginInfo pluginInfo, boolean isPolicyDownloadRequest, int httpCode) {
+		String key = pluginInfo.getServiceName() + "|" + pluginInfo.getHostName() + "|" + pluginInfo.getAppType() + "|" + isPolicyDownloadRequest;
+
+		PluginInfoUpdate update = new PluginInfoUpdate(pluginInfo, isPolicyDownloadRequest, httpCode);
+
+		synchronized (this) {
+			PluginInfoUpdate pending = pendingPluginInfos.get(key);
+
+			if (pending != null) {
+				update.mergeFrom(pending);
+
+				pendingPluginInfos.put(key, update);
+			} else if (pendingPluginInfos.size() < maxPending) {
+				pendingPluginInfos.put(key, update);
+			} else {
+				droppedCount++;
+			}
+		}
+	}
+
+	public void addPolicyExportAudit(XXPolicyExportAudit policyExportAudit) {
+		synchronized (this) {
+			if (policyExportAudit.getHttpRetCode() == HttpServletResponse.SC_NOT_MODIFIED) {
+				String key = policyExportAudit.getRepositoryName() + "|" + policyExportAudit.getAgentId() + "|" + policyExportAudit.getClientIP();
+
+				if (pendingNotModifiedAudits.size() < maxPending || pendingNotModifiedAudits.containsKey(key)) {
+					pendingNotModifiedAudits.put(key, policyExportAudit);
+				} else {
+					droppedCount++;
+				}
+			} else if (pendingAudits.size() < maxPending) {
+				pendingAudits.add(policyExportAudit);
+			} else {
+				droppedCount++;
+			}
+		}
+	}
+
+	void flush() {
+		final List<PluginInfoUpdate>    pluginInfos;
+		final List<XXPolicyExportAudit> audits;
+		final long                      dropped;
+
+		synchronized (this) {
+			pluginInfos = new ArrayList<PluginInfoUpdate>(pendingPluginInfos.values());
+			audits      = pendingAudits;
+			dropped     = droppedCount;
+
+			audits.addAll(pendingNotModifiedAudits.values());
+
+			pendingPluginInfos       = new LinkedHashMap<String, PluginInfoUpdate>();
+			pendingNotModifiedAudits = new LinkedHashMap<String, XXPolicyExportAudit>();
+			pendingAudits            = new ArrayList<XXPolicyExportAudit>();
+			droppedCount             = 0;
+		}
+
+		if (dropped > 0) {
+			LOG.warn("RangerPluginActivityQueue: dropped " + dropped + " plugin activity records as more than " + maxPending + " were pending");
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("RangerPluginActivityQueue.flush(): pluginInfos=" + pluginInfos.size() + ", policyExportAudits=" + audits.size());
+		}
+
+		for (int i = 0; i < pluginInfos.size(); i += batchSize) {
+			final List<PluginInfoUpdate> batch = pluginInfos.subList(i, Math.min(i + batchSize, pluginInfos.size()));
+
+			if (!executeInTransaction(new Runnable() {
+				@Override
+				public void run() {
+					for (PluginInfoUpdate update : batch) {
+						update.apply();
+					}
+				}
+			})) {
+				// retry individually, so that a failing record doesn't take the others along
+				for (final PluginInfoUpdate update : batch) {
+					executeInTransaction(new Runnable() {
+						@Override
+						public void run() {
+							update.apply();
+						}
+					});
+				}
+			}
+		}
+
+		for (int i = 0; i < audits.size(); i += batchSize) {
+			final List<XXPolicyExportAudit> batch = audits.subList(i, Math.min(i + batchSize, audits.size()));
+
+			if (!executeInTransaction(new Runnable() {
+				@Override
+				public void run() {
+					daoMgr.getXXPolicyExportAudit().batchCreate(batch);
+				}
+			})) {
+				LOG.error("RangerPluginActivityQueue: failed to write " + batch.size() + " policy export audit records");
+			}
+		}
+	}
+
+	private boolean executeInTransaction(final Runnable work) {
+		boolean ret = false;
+
+		try {
+			TransactionTemplate txTemplate = new TransactionTemplate(txManager);
+
+			txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+			txTemplate.execute(new TransactionCallback<Object>() {
+				@Override
+				public Object doInTransaction(TransactionStatus status) {
+					work.run();
+
+					return null;
+				}
+			});
+
+			ret = true;
+		} catch (Exception excp) {
+			LOG.error("RangerPluginActivityQueue: failed to commit transaction", excp);
+		}
+
+		return ret;
+	}
+
+	private class PluginInfoUpdate {
+		final RangerPluginInfo pluginInfo;
+		final boolean          isPolicyDownloadRequest;
+		final int              httpCode;
+
+		PluginInfoUpdate(RangerPluginInfo pluginInfo, boolean isPolicyDownloadRequest, int httpCode) {
+			this.pluginInfo              = pluginInfo;
+			this.isPolicyDownloadRequest = isPolicyDownloadRequest;
+			this.httpCode                = httpCode;
+		}
+
+		void apply() {
+			assetMgr.updatePluginInfo(pluginInfo, isPolicyDownloadRequest, httpCode);
+		}
+
+		/*
+		 * Takes over the fields of the earlier update that applying both, in order,
+		 * would have left in place: the download time of a version downloaded earlier
+		 * (e.g. a 304 following a 200) and the last known active version
+		 */
+		void mergeFrom(PluginInfoUpdate earlier) {
+			if (isDelete() || earlier.isDelete()) {
+				return;
+			}
+
+			RangerPluginInfo prev = earlier.pluginInfo;
+
+			if (isPolicyDownloadRequest) {
+				if (isSameVersion(pluginInfo.getPolicyDownloadedVersion(), prev.getPolicyDownloadedVersion()) && !isRefresherRestart(pluginInfo.getPolicyActiveVersion())) {
+					pluginInfo.setPolicyDownloadTime(prev.getPolicyDownloadTime());
+				}
+				if (!isPositive(pluginInfo.getPolicyActiveVersion()) && !isRefresherRestart(pluginInfo.getPolicyActiveVersion())) {
+					pluginInfo.setPolicyActiveVersion(prev.getPolicyActiveVersion());
+				}
+				if (!isPositive(pluginInfo.getPolicyActivationTime())) {
+					pluginInfo.setPolicyActivationTime(prev.getPolicyActivationTime());
+				}
+			} else {
+				if (isSameVersion(pluginInfo.getTagDownloadedVersion(), prev.getTagDownloadedVersion()) && !isRefresherRestart(pluginInfo.getTagActiveVersion())) {
+					pluginInfo.setTagDownloadTime(prev.getTagDownloadTime());
+				}
+				if (!isPositive(pluginInfo.getTagActiveVersion()) && !isRefresherRestart(pluginInfo.getTagActiveVersion())) {
+					pluginInfo.setTagActiveVersion(prev.getTagActiveVersion());
+				}
+				if (!isPositive(pluginInfo.getTagActivationTime())) {
+					pluginInfo.setTagActivationTime(prev.getTagActivationTime());
+				}
+			}
+		}
+
+		// a 404 for a plugin without an active version removes its plugin-info, as in AssetMgr.updatePluginInfo()
+		private boolean isDelete() {
+			Long activeVersion = isPolicyDownloadRequest ? pluginInfo.getPolicyActiveVersion() : pluginInfo.getTagActiveVersion();
+
+			return httpCode == HttpServletResponse.SC_NOT_FOUND && (activeVersion == null || activeVersion == -1);
+		}
+
+		private boolean isSameVersion(Long version, Long other) {
+			return version == null ? other == null : version.equals(other);
+		}
+
+		private boolean isRefresherRestart(Long activeVersion) {
+			return activeVersion != null && activeVersion == -1;
+		}
+
+		private boolean isPositive(Long value) {
+			return value != null && value > 0;
+		}
+	}
+}
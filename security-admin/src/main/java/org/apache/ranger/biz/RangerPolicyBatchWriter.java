@@ -0,0 +1,431 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.entity.*;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerDataMaskPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemDataMaskInfo;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemRowFilterInfo;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerRowFilterPolicyItem;
+import org.apache.ranger.plugin.policyevaluator.RangerPolicyItemEvaluator;
+import org.apache.ranger.service.RangerAuditFields;
+
+/**
+ * Writes the resources and policy items of created policies in batches: rows
+ * of the added policies are collected, and on flush() written table by table,
+ * each table with a single flush of the entity manager.
+ *
+ * Names of users, groups and service-def elements are resolved once per
+ * writer, when a policy is added; a policy referring to an unknown name is
+ * rejected then, with the same error as ServiceDBStore.createPolicy().
+ */
+public class RangerPolicyBatchWriter {
+	static final Log LOG = LogFactory.getLog(RangerPolicyBatchWriter.class);
+
+	final RangerDaoManager            daoMgr;
+	final RangerAuditFields<XXDBBase> auditFields;
+	final Map<String, Long>           userIds            = new HashMap<String, Long>();
+	final Map<String, Long>           groupIds           = new HashMap<String, Long>();
+	final Map<Long, ServiceDefLookup> serviceDefLookups  = new HashMap<Long, ServiceDefLookup>();
+	final List<PendingResource>       pendingResources   = new ArrayList<PendingResource>();
+	final List<PendingPolicyItem>     pendingPolicyItems = new ArrayList<PendingPolicyItem>();
+
+	public RangerPolicyBatchWriter(RangerDaoManager daoMgr, RangerAuditFields<XXDBBase> auditFields) {
+		this.daoMgr      = daoMgr;
+		this.auditFields = auditFields;
+	}
+
+	public int getPendingCount() {
+		return pendingResources.size() + pendingPolicyItems.size();
+	}
+
+	/**
+	 * Adds resources and policy items of the policy, which must have been
+	 * created as xPolicy, to be written on next flush()
+	 */
+	public void add(RangerPolicy policy, XXPolicy xPolicy, XXServiceDef xServiceDef) throws Exception {
+		ServiceDefLookup lookup = getServiceDefLookup(xServiceDef);
+
+		if (policy.getResources() != null) {
+			for (Map.Entry<String, RangerPolicyResource> resource : policy.getResources().entrySet()) {
+				Long resourceDefId = lookup.resourceDefIds.get(resource.getKey());
+
+				if (resourceDefId == null) {
+					throw new Exception(resource.getKey() + ": is not a valid resource-type. policy='" + policy.getName() + "' service='" + policy.getService() + "'");
+				}
+
+				RangerPolicyResource policyRes = resource.getValue();
+				XXPolicyResource     xPolRes   = new XXPolicyResource();
+
+				xPolRes = (XXPolicyResource) auditFields.populateAuditFields(xPolRes, xPolicy);
+
+				xPolRes.setIsExcludes(policyRes.getIsExcludes());
+				xPolRes.setIsRecursive(policyRes.getIsRecursive());
+				xPolRes.setPolicyId(xPolicy.getId());
+				xPolRes.setResDefId(resourceDefId);
+
+				pendingResources.add(new PendingResource(xPolRes, policyRes.getValues()));
+			}
+		}
+
+		addPolicyItems(policy, xPolicy, lookup, policy.getPolicyItems(), RangerPolicyItemEvaluator.POLICY_ITEM_TYPE_ALLOW);
+		addPolicyItems(policy, xPolicy, lookup, policy.getDenyPolicyItems(), RangerPolicyItemEvaluator.POLICY_ITEM_TYPE_DENY);
+		addPolicyItems(policy, xPolicy, lookup, policy.getAllowExceptions(), RangerPolicyItemEvaluator.POLICY_ITEM_TYPE_ALLOW_EXCEPTIONS);
+		addPolicyItems(policy, xPolicy, lookup, policy.getDenyExceptions(), RangerPolicyItemEvaluator.POLICY_ITEM_TYPE_DENY_EXCEPTIONS);
+		addPolicyItems(policy, xPolicy, lookup, policy.getDataMaskPolicyItems(), RangerPolicyItemEvaluator.POLICY_ITEM_TYPE_DATAMASK);
+		addPolicyItems(policy, xPolicy, lookup, policy.getRowFilterPolicyItems(), RangerPolicyItemEvaluator.POLICY_ITEM_TYPE_ROWFILTER);
+	}
+
+	public void flush() {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerPolicyBatchWriter.flush(): resources=" + pendingResources.size() + ", policyItems=" + pendingPolicyItems.size());
+		}
+
+		if (!pendingResources.isEmpty()) {
+			List<XXPolicyResource> xPolResources = new ArrayList<XXPolicyResource>(pendingResources.size());
+
+			for (PendingResource pending : pendingResources) {
+				xPolResources.add(pending.xPolRes);
+			}
+
+			daoMgr.getXXPolicyResource().batchCreate(xPolResources);
+
+			List<XXPolicyResourceMap> xPolResMaps = new ArrayList<XXPolicyResourceMap>();
+
+			for (PendingResource pending : pendingResources) {
+				if (CollectionUtils.isEmpty(pending.values)) {
+					continue;
+				}
+
+				for (int i = 0; i < pending.values.size(); i++) {
+					if (pending.values.get(i) != null) {
+						XXPolicyResourceMap xPolResMap = new XXPolicyResourceMap();
+
+						xPolResMap = (XXPolicyResourceMap) auditFields.populateAuditFields(xPolResMap, pending.xPolRes);
+						xPolResMap.setResourceId(pending.xPolRes.getId());
+						xPolResMap.setValue(pending.values.get(i));
+						xPolResMap.setOrder(i);
+
+						xPolResMaps.add(xPolResMap);
+					}
+				}
+			}
+
+			daoMgr.getXXPolicyResourceMap().batchCreate(xPolResMaps);
+
+			pendingResources.clear();
+		}
+
+		if (!pendingPolicyItems.isEmpty()) {
+			List<XXPolicyItem> xPolicyItems = new ArrayList<XXPolicyItem>(pendingPolicyItems.size());
+
+			for (PendingPolicyItem pending : pendingPolicyItems) {
+				xPolicyItems.add(pending.xPolicyItem);
+			}
+
+			daoMgr.getXXPolicyItem().batchCreate(xPolicyItems);
+
+			List<XXPolicyItemAccess>        xAccesses       = new ArrayList<XXPolicyItemAccess>();
+			List<XXPolicyItemUserPerm>      xUserPerms      = new ArrayList<XXPolicyItemUserPerm>();
+			List<XXPolicyItemGroupPerm>     xGroupPerms     = new ArrayList<XXPolicyItemGroupPerm>();
+			List<XXPolicyItemCondition>     xConditions     = new ArrayList<XXPolicyItemCondition>();
+			List<XXPolicyItemDataMaskInfo>  xDataMaskInfos  = new ArrayList<XXPolicyItemDataMaskInfo>();
+			List<XXPolicyItemRowFilterInfo> xRowFilterInfos = new ArrayList<XXPolicyItemRowFilterInfo>();
+
+			for (PendingPolicyItem pending : pendingPolicyItems) {
+				Long policyItemId = pending.xPolicyItem.getId();
+
+				for (XXPolicyItemAccess xAccess : pending.accesses) {
+					xAccess.setPolicyitemid(policyItemId);
+					xAccesses.add(xAccess);
+				}
+
+				for (XXPolicyItemUserPerm xUserPerm : pending.userPerms) {
+					xUserPerm.setPolicyItemId(policyItemId);
+					xUserPerms.add(xUserPerm);
+				}
+
+				for (XXPolicyItemGroupPerm xGroupPerm : pending.groupPerms) {
+					xGroupPerm.setPolicyItemId(policyItemId);
+					xGroupPerms.add(xGroupPerm);
+				}
+
+				for (XXPolicyItemCondition xCondition : pending.conditions) {
+					xCondition.setPolicyItemId(policyItemId);
+					xConditions.add(xCondition);
+				}
+
+				if (pending.dataMaskInfo != null) {
+					pending.dataMaskInfo.setPolicyItemId(policyItemId);
+					xDataMaskInfos.add(pending.dataMaskInfo);
+				}
+
+				if (pending.rowFilterInfo != null) {
+					pending.rowFilterInfo.setPolicyItemId(policyItemId);
+					xRowFilterInfos.add(pending.rowFilterInfo);
+				}
+			}
+
+			daoMgr.getXXPolicyItemAccess().batchCreate(xAccesses);
+			daoMgr.getXXPolicyItemUserPerm().batchCreate(xUserPerms);
+			daoMgr.getXXPolicyItemGroupPerm().batchCreate(xGroupPerms);
+			daoMgr.getXXPolicyItemCondition().batchCreate(xConditions);
+			daoMgr.getXXPolicyItemDataMaskInfo().batchCreate(xDataMaskInfos);
+			daoMgr.getXXPolicyItemRowFilterInfo().batchCreate(xRowFilterInfos);
+
+			pendingPolicyItems.clear();
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerPolicyBatchWriter.flush()");
+		}
+	}
+
+	private void addPolicyItems(RangerPolicy policy, XXPolicy xPolicy, ServiceDefLookup lookup, List<? extends RangerPolicyItem> policyItems, int policyItemType) throws Exception {
+		if (CollectionUtils.isEmpty(policyItems)) {
+			return;
+		}
+
+		for (int itemOrder = 0; itemOrder < policyItems.size(); itemOrder++) {
+			RangerPolicyItem policyItem  = policyItems.get(itemOrder);
+			XXPolicyItem     xPolicyItem = new XXPolicyItem();
+
+			xPolicyItem = (XXPolicyItem) auditFields.populateAuditFields(xPolicyItem, xPolicy);
+
+			xPolicyItem.setDelegateAdmin(policyItem.getDelegateAdmin());
+			xPolicyItem.setItemType(policyItemType);
+			xPolicyItem.setIsEnabled(Boolean.TRUE);
+			xPolicyItem.setComments(null);
+			xPolicyItem.setPolicyId(xPolicy.getId());
+			xPolicyItem.setOrder(itemOrder);
+
+			PendingPolicyItem pending = new PendingPolicyItem(xPolicyItem);
+
+			List<RangerPolicyItemAccess> accesses = policyItem.getAccesses();
+			for (int i = 0; i < accesses.size(); i++) {
+				RangerPolicyItemAccess access       = accesses.get(i);
+				Long                   accessTypeId = lookup.accessTypeIds.get(access.getType());
+
+				if (accessTypeId == null) {
+					throw new Exception(access.getType() + ": is not a valid access-type. policy='" + policy.getName() + "' service='" + policy.getService() + "'");
+				}
+
+				XXPolicyItemAccess xPolItemAcc = new XXPolicyItemAccess();
+
+				xPolItemAcc = (XXPolicyItemAccess) auditFields.populateAuditFields(xPolItemAcc, xPolicyItem);
+				xPolItemAcc.setIsAllowed(access.getIsAllowed());
+				xPolItemAcc.setType(accessTypeId);
+				xPolItemAcc.setOrder(i);
+
+				pending.accesses.add(xPolItemAcc);
+			}
+
+			List<String> users = policyItem.getUsers();
+			for (int i = 0; i < users.size(); i++) {
+				String user   = users.get(i);
+				Long   userId = getUserId(user);
+
+				if (userId == null) {
+					throw new Exception(user + ": user does not exist. policy='" + policy.getName() + "' service='" + policy.getService() + "'");
+				}
+
+				XXPolicyItemUserPerm xUserPerm = new XXPolicyItemUserPerm();
+
+				xUserPerm = (XXPolicyItemUserPerm) auditFields.populateAuditFields(xUserPerm, xPolicyItem);
+				xUserPerm.setUserId(userId);
+				xUserPerm.setOrder(i);
+
+				pending.userPerms.add(xUserPerm);
+			}
+
+			List<String> groups = policyItem.getGroups();
+			for (int i = 0; i < groups.size(); i++) {
+				String group   = groups.get(i);
+				Long   groupId = getGroupId(group);
+
+				if (groupId == null) {
+					throw new Exception(group + ": group does not exist. policy='" + policy.getName() + "' service='" + policy.getService() + "'");
+				}
+
+				XXPolicyItemGroupPerm xGrpPerm = new XXPolicyItemGroupPerm();
+
+				xGrpPerm = (XXPolicyItemGroupPerm) auditFields.populateAuditFields(xGrpPerm, xPolicyItem);
+				xGrpPerm.setGroupId(groupId);
+				xGrpPerm.setOrder(i);
+
+				pending.groupPerms.add(xGrpPerm);
+			}
+
+			for (RangerPolicyItemCondition condition : policyItem.getConditions()) {
+				Long conditionDefId = lookup.conditionDefIds.get(condition.getType());
+
+				if (conditionDefId == null) {
+					throw new Exception(condition.getType() + ": is not a valid condition-type. policy='" + xPolicy.getName() + "' service='" + xPolicy.getService() + "'");
+				}
+
+				for (int i = 0; i < condition.getValues().size(); i++) {
+					XXPolicyItemCondition xPolItemCond = new XXPolicyItemCondition();
+
+					xPolItemCond = (XXPolicyItemCondition) auditFields.populateAuditFields(xPolItemCond, xPolicyItem);
+					xPolItemCond.setType(conditionDefId);
+					xPolItemCond.setValue(condition.getValues().get(i));
+					xPolItemCond.setOrder(i);
+
+					pending.conditions.add(xPolItemCond);
+				}
+			}
+
+			if (policyItem instanceof RangerDataMaskPolicyItem) {
+				RangerPolicyItemDataMaskInfo dataMaskInfo = ((RangerDataMaskPolicyItem) policyItem).getDataMaskInfo();
+
+				if (dataMaskInfo != null) {
+					Long dataMaskTypeId = lookup.dataMaskTypeIds.get(dataMaskInfo.getDataMaskType());
+
+					if (dataMaskTypeId == null) {
+						throw new Exception(dataMaskInfo.getDataMaskType() + ": is not a valid datamask-type. policy='" + policy.getName() + "' service='" + policy.getService() + "'");
+					}
+
+					XXPolicyItemDataMaskInfo xxDataMaskInfo = new XXPolicyItemDataMaskInfo();
+
+					xxDataMaskInfo.setType(dataMaskTypeId);
+					xxDataMaskInfo.setConditionExpr(dataMaskInfo.getConditionExpr());
+					xxDataMaskInfo.setValueExpr(dataMaskInfo.getValueExpr());
+
+					pending.dataMaskInfo = xxDataMaskInfo;
+				}
+			} else if (policyItem instanceof RangerRowFilterPolicyItem) {
+				RangerPolicyItemRowFilterInfo rowFilterInfo = ((RangerRowFilterPolicyItem) policyItem).getRowFilterInfo();
+
+				if (rowFilterInfo != null) {
+					XXPolicyItemRowFilterInfo xxRowFilterInfo = new XXPolicyItemRowFilterInfo();
+
+					xxRowFilterInfo.setFilterExpr(rowFilterInfo.getFilterExpr());
+
+					pending.rowFilterInfo = xxRowFilterInfo;
+				}
+			}
+
+			pendingPolicyItems.add(pending);
+		}
+	}
+
+	private Long getUserId(String userName) {
+		Long ret = userIds.get(userName);
+
+		if (ret == null && !userIds.containsKey(userName)) {
+			XXUser xUser = daoMgr.getXXUser().findByUserName(userName);
+
+			ret = xUser != null ? xUser.getId() : null;
+
+			userIds.put(userName, ret);
+		}
+
+		return ret;
+	}
+
+	private Long getGroupId(String groupName) {
+		Long ret = groupIds.get(groupName);
+
+		if (ret == null && !groupIds.containsKey(groupName)) {
+			XXGroup xGroup = daoMgr.getXXGroup().findByGroupName(groupName);
+
+			ret = xGroup != null ? xGroup.getId() : null;
+
+			groupIds.put(groupName, ret);
+		}
+
+		return ret;
+	}
+
+	private ServiceDefLookup getServiceDefLookup(XXServiceDef xServiceDef) {
+		ServiceDefLookup ret = serviceDefLookups.get(xServiceDef.getId());
+
+		if (ret == null) {
+			ret = new ServiceDefLookup(xServiceDef.getId());
+
+			serviceDefLookups.put(xServiceDef.getId(), ret);
+		}
+
+		return ret;
+	}
+
+	class ServiceDefLookup {
+		final Map<String, Long> resourceDefIds  = new HashMap<String, Long>();
+		final Map<String, Long> accessTypeIds   = new HashMap<String, Long>();
+		final Map<String, Long> conditionDefIds = new HashMap<String, Long>();
+		final Map<String, Long> dataMaskTypeIds = new HashMap<String, Long>();
+
+		ServiceDefLookup(Long serviceDefId) {
+			for (XXResourceDef xResourceDef : daoMgr.getXXResourceDef().findByServiceDefId(serviceDefId)) {
+				resourceDefIds.put(xResourceDef.getName(), xResourceDef.getId());
+			}
+
+			for (XXAccessTypeDef xAccessTypeDef : daoMgr.getXXAccessTypeDef().findByServiceDefId(serviceDefId)) {
+				accessTypeIds.put(xAccessTypeDef.getName(), xAccessTypeDef.getId());
+			}
+
+			for (XXPolicyConditionDef xConditionDef : daoMgr.getXXPolicyConditionDef().findByServiceDefId(serviceDefId)) {
+				conditionDefIds.put(xConditionDef.getName(), xConditionDef.getId());
+			}
+
+			for (XXDataMaskTypeDef xDataMaskTypeDef : daoMgr.getXXDataMaskTypeDef().findByServiceDefId(serviceDefId)) {
+				dataMaskTypeIds.put(xDataMaskTypeDef.getName(), xDataMaskTypeDef.getId());
+			}
+		}
+	}
+
+	static class PendingResource {
+		final XXPolicyResource xPolRes;
+		final List<String>     values;
+
+		PendingResource(XXPolicyResource xPolRes, List<String> values) {
+			this.xPolRes = xPolRes;
+			this.values  = values;
+		}
+	}
+
+	static class PendingPolicyItem {
+		final XXPolicyItem                xPolicyItem;
+		final List<XXPolicyItemAccess>    accesses   = new ArrayList<XXPolicyItemAccess>();
+		final List<XXPolicyItemUserPerm>  userPerms  = new ArrayList<XXPolicyItemUserPerm>();
+		final List<XXPolicyItemGroupPerm> groupPerms = new ArrayList<XXPolicyItemGroupPerm>();
+		final List<XXPolicyItemCondition> conditions = new ArrayList<XXPolicyItemCondition>();
+		XXPolicyItemDataMaskInfo          dataMaskInfo;
+		XXPolicyItemRowFilterInfo         rowFilterInfo;
+
+		PendingPolicyItem(XXPolicyItem xPolicyItem) {
+			this.xPolicyItem = xPolicyItem;
+		}
+	}
+}
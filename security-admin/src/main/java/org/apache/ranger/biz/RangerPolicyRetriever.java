@@ -236,6 +236,62 @@ public class RangerPolicyRetriever {
 		final Map<Long, String> resourceDefs    = new HashMap<Long, String>();
 		final Map<Long, String> dataMasks       = new HashMap<Long, String>();
 
+		/*
+		 * Loads, with one query per table, the names referenced by the
+		 * policies of the service; names not found here are still looked up
+		 * one at a time
+		 */
+		void prefetch(XXService xService) {
+			Long serviceId    = xService.getId();
+			Long serviceDefId = xService.getType();
+
+			RangerPerfTracer perf = null;
+
+			if(RangerPerfTracer.isPerfTraceEnabled(PERF_LOG)) {
+				perf = RangerPerfTracer.getPerfTracer(PERF_LOG, "RangerPolicyRetriever.LookupCache.prefetch(serviceId=" + serviceId + ")");
+			}
+
+			for(Object[] row : daoMgr.getXXUser().getIdsAndNamesByServiceId(serviceId)) {
+				userNames.put((Long) row[0], (String) row[1]);
+			}
+
+			for(Object[] row : daoMgr.getXXGroup().getIdsAndNamesByServiceId(serviceId)) {
+				groupNames.put((Long) row[0], (String) row[1]);
+			}
+
+			for(XXPortalUser user : daoMgr.getXXPortalUser().findByServiceId(serviceId)) {
+				String screenName = getScreenName(user);
+
+				if(screenName != null) {
+					userScreenNames.put(user.getId(), screenName);
+				}
+			}
+
+			for(XXAccessTypeDef xAccessType : daoMgr.getXXAccessTypeDef().findByServiceDefId(serviceDefId)) {
+				accessTypes.put(xAccessType.getId(), xAccessType.getName());
+			}
+
+			for(XXPolicyConditionDef xPolicyConditionDef : daoMgr.getXXPolicyConditionDef().findByServiceDefId(serviceDefId)) {
+				conditions.put(xPolicyConditionDef.getId(), xPolicyConditionDef.getName());
+			}
+
+			for(XXResourceDef xResourceDef : daoMgr.getXXResourceDef().findByServiceDefId(serviceDefId)) {
+				resourceDefs.put(xResourceDef.getId(), xResourceDef.getName());
+			}
+
+			for(XXDataMaskTypeDef xDataMaskDef : daoMgr.getXXDataMaskTypeDef().findByServiceDefId(serviceDefId)) {
+				dataMasks.put(xDataMaskDef.getId(), xDataMaskDef.getName());
+			}
+
+			RangerPerfTracer.log(perf);
+
+			if(LOG.isDebugEnabled()) {
+				LOG.debug("RangerPolicyRetriever.LookupCache.prefetch(serviceId=" + serviceId + "): users=" + userNames.size()
+						+ ", groups=" + groupNames.size() + ", portalUsers=" + userScreenNames.size() + ", accessTypes=" + accessTypes.size()
+						+ ", conditions=" + conditions.size() + ", resourceDefs=" + resourceDefs.size() + ", dataMasks=" + dataMasks.size());
+			}
+		}
+
 		String getUserName(Long userId) {
 			String ret = null;
 
@@ -266,19 +322,7 @@ public class RangerPolicyRetriever {
 					XXPortalUser user = daoMgr.getXXPortalUser().getById(userId);
 
 					if(user != null) {
-						ret = user.getPublicScreenName();
-
-						if (StringUtil.isEmpty(ret)) {
-							ret = user.getFirstName();
-
-							if(StringUtil.isEmpty(ret)) {
-								ret = user.getLoginId();
-							} else {
-								if(!StringUtil.isEmpty(user.getLastName())) {
-									ret += (" " + user.getLastName());
-								}
-							}
-						}
+						ret = getScreenName(user);
 
 						if(ret != null) {
 							userScreenNames.put(userId, ret);
@@ -290,6 +334,24 @@ public class RangerPolicyRetriever {
 			return ret;
 		}
 
+		String getScreenName(XXPortalUser user) {
+			String ret = user.getPublicScreenName();
+
+			if (StringUtil.isEmpty(ret)) {
+				ret = user.getFirstName();
+
+				if(StringUtil.isEmpty(ret)) {
+					ret = user.getLoginId();
+				} else {
+					if(!StringUtil.isEmpty(user.getLastName())) {
+						ret += (" " + user.getLastName());
+					}
+				}
+			}
+
+			return ret;
+		}
+
 		String getGroupName(Long groupId) {
 			String ret = null;
 
@@ -428,6 +490,10 @@ public class RangerPolicyRetriever {
 			List<XXPolicyItemDataMaskInfo>  xDataMaskInfos  = daoMgr.getXXPolicyItemDataMaskInfo().findByServiceId(serviceId);
 			List<XXPolicyItemRowFilterInfo> xRowFilterInfos = daoMgr.getXXPolicyItemRowFilterInfo().findByServiceId(serviceId);
 
+			if(xService != null && CollectionUtils.isNotEmpty(xPolicies)) {
+				lookupCache.prefetch(xService);
+			}
+
 			this.service          = xService;
 			this.iterPolicy       = xPolicies.listIterator();
 			this.iterResources    = xResources.listIterator();
@@ -0,0 +1,766 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.MapUtils;
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.common.DateUtil;
+import org.apache.ranger.common.GUIDUtil;
+import org.apache.ranger.common.MessageEnums;
+import org.apache.ranger.common.RESTErrorUtil;
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.entity.XXDBBase;
+import org.apache.ranger.entity.XXResourceDef;
+import org.apache.ranger.entity.XXService;
+import org.apache.ranger.entity.XXServiceResource;
+import org.apache.ranger.entity.XXServiceResourceElement;
+import org.apache.ranger.entity.XXServiceResourceElementValue;
+import org.apache.ranger.entity.XXTag;
+import org.apache.ranger.entity.XXTagAttribute;
+import org.apache.ranger.entity.XXTagDef;
+import org.apache.ranger.entity.XXTagResourceMap;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.store.RangerServiceResourceSignature;
+import org.apache.ranger.plugin.util.ServiceTags;
+import org.apache.ranger.service.RangerAuditFields;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Adds or updates the service-resources and tags of a ServiceTags, as
+ * ServiceTagsProcessor does one object at a time, in batches of resources:
+ * for each batch the existing resources, tags and tag-resource mappings are
+ * read with a few queries, compared in memory with the incoming ones, and new
+ * rows are written table by table with a single flush each.
+ *
+ * Resources and tags found unchanged are not written; changed ones are
+ * updated the same way, table by table. The tag version of a service is
+ * updated once, after all batches, recording the resources that changed or
+ * whose tags changed.
+ */
+public class RangerServiceTagsImporter {
+	private static final Log LOG = LogFactory.getLog(RangerServiceTagsImporter.class);
+
+	static final int BATCH_SIZE                  = 500;
+	static final int MAX_IN_CLAUSE_VALUES        = 1000;
+	static final int MAX_LOGGED_RESOURCE_CHANGES = 10000;
+
+	final RangerDaoManager             daoMgr;
+	final RangerAuditFields<XXDBBase>  auditFields;
+	final GUIDUtil                     guidUtil;
+	final RESTErrorUtil                errorUtil;
+	final Map<String, Long>            tagDefIds          = new HashMap<String, Long>();
+	final Map<String, XXService>       services           = new HashMap<String, XXService>();
+	final Map<Long, Map<String, Long>> resourceDefIds     = new HashMap<Long, Map<String, Long>>();
+	final Map<Long, Set<Long>>         updatedResourceIds = new HashMap<Long, Set<Long>>();
+
+	public RangerServiceTagsImporter(RangerDaoManager daoMgr, RangerAuditFields<XXDBBase> auditFields, GUIDUtil guidUtil, RESTErrorUtil errorUtil) {
+		this.daoMgr      = daoMgr;
+		this.auditFields = auditFields;
+		this.guidUtil    = guidUtil;
+		this.errorUtil   = errorUtil;
+	}
+
+	public void importServiceTags(ServiceTags serviceTags) throws Exception {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerServiceTagsImporter.importServiceTags(" + serviceTags.getServiceName() + ")");
+		}
+
+		List<RangerServiceResource> resources        = serviceTags.getServiceResources();
+		Map<Long, List<Long>>       resourceToTagIds = serviceTags.getResourceToTagIds() != null ? serviceTags.getResourceToTagIds() : Collections.<Long, List<Long>>emptyMap();
+		Set<Long>                   importedIds      = new HashSet<Long>();
+
+		for (XXTagDef xTagDef : daoMgr.getXXTagDef().getAll()) {
+			tagDefIds.put(xTagDef.getName(), xTagDef.getId());
+		}
+
+		if (CollectionUtils.isNotEmpty(resources)) {
+			for (List<RangerServiceResource> batch : Lists.partition(resources, BATCH_SIZE)) {
+				Map<Long, XXServiceResource> resourcesInStore = addOrUpdateResources(batch);
+
+				updateTagsForResources(batch, resourcesInStore, resourceToTagIds, serviceTags.getTags());
+
+				for (RangerServiceResource resource : batch) {
+					importedIds.add(resource.getId());
+				}
+
+				// changes are flushed; clearing keeps the persistence context from growing with the import
+				daoMgr.getEntityManager().flush();
+				daoMgr.getEntityManager().clear();
+
+				LOG.info("RangerServiceTagsImporter.importServiceTags(" + serviceTags.getServiceName() + "): imported " + importedIds.size() + " of " + resources.size() + " service-resources");
+			}
+		}
+
+		for (Long resourceId : resourceToTagIds.keySet()) {
+			if (!importedIds.contains(resourceId)) {
+				LOG.error("Resource (id=" + resourceId + ") not found. Skipping tags update");
+			}
+		}
+
+		Date updateTime = DateUtil.getUTCDate();
+
+		for (Map.Entry<Long, Set<Long>> entry : updatedResourceIds.entrySet()) {
+			// too many changes to be worth recording individually; the service's tags are to be reloaded in full
+			Set<Long> resourceIds = entry.getValue().size() > MAX_LOGGED_RESOURCE_CHANGES ? null : entry.getValue();
+
+			daoMgr.getXXServiceVersionInfo().updateServiceVersionInfoForServiceTagsUpdate(entry.getKey(), resourceIds, updateTime);
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerServiceTagsImporter.importServiceTags(" + serviceTags.getServiceName() + "): updatedServices=" + updatedResourceIds.keySet());
+		}
+	}
+
+	/**
+	 * @return resources in store, by id of the incoming resource
+	 */
+	private Map<Long, XXServiceResource> addOrUpdateResources(List<RangerServiceResource> resources) {
+		Map<Long, XXServiceResource> ret = new HashMap<Long, XXServiceResource>();
+
+		Map<String, XXServiceResource> existingByGuid      = new HashMap<String, XXServiceResource>();
+		Map<String, XXServiceResource> existingBySignature = new HashMap<String, XXServiceResource>();
+		List<String>                   guids               = new ArrayList<String>();
+		Map<Long, List<String>>        signatures          = new HashMap<Long, List<String>>();
+
+		for (RangerServiceResource resource : resources) {
+			if (StringUtils.isNotEmpty(resource.getGuid())) {
+				guids.add(resource.getGuid());
+			}
+		}
+
+		for (List<String> guidsBatch : Lists.partition(guids, MAX_IN_CLAUSE_VALUES)) {
+			for (XXServiceResource xResource : daoMgr.getXXServiceResource().findByGuids(guidsBatch)) {
+				existingByGuid.put(xResource.getGuid(), xResource);
+			}
+		}
+
+		for (RangerServiceResource resource : resources) {
+			if (MapUtils.isNotEmpty(resource.getResourceElements()) && !existingByGuid.containsKey(resource.getGuid())) {
+				XXService xService = getService(resource.getServiceName());
+
+				if (xService != null) {
+					resource.setResourceSignature(new RangerServiceResourceSignature(resource).getSignature());
+
+					List<String> serviceSignatures = signatures.get(xService.getId());
+
+					if (serviceSignatures == null) {
+						serviceSignatures = new ArrayList<String>();
+
+						signatures.put(xService.getId(), serviceSignatures);
+					}
+
+					serviceSignatures.add(resource.getResourceSignature());
+				}
+			}
+		}
+
+		for (Map.Entry<Long, List<String>> entry : signatures.entrySet()) {
+			for (List<String> signaturesBatch : Lists.partition(entry.getValue(), MAX_IN_CLAUSE_VALUES)) {
+				for (XXServiceResource xResource : daoMgr.getXXServiceResource().findByServiceAndResourceSignatures(entry.getKey(), signaturesBatch)) {
+					existingBySignature.put(getSignatureKey(xResource.getServiceId(), xResource.getResourceSignature()), xResource);
+				}
+			}
+		}
+
+		List<XXServiceResource>          xResourcesToCreate = new ArrayList<XXServiceResource>();
+		List<RangerServiceResource>      resourcesToCreate  = new ArrayList<RangerServiceResource>();
+		Map<Long, XXServiceResource>     xResourcesToUpdate = new LinkedHashMap<Long, XXServiceResource>();
+		Map<Long, RangerServiceResource> resourcesToReplace = new LinkedHashMap<Long, RangerServiceResource>();
+
+		for (RangerServiceResource resource : resources) {
+			Long              resourceId = resource.getId();
+			XXServiceResource existing   = StringUtils.isNotEmpty(resource.getGuid()) ? existingByGuid.get(resource.getGuid()) : null;
+
+			if (existing == null && StringUtils.isNotEmpty(resource.getResourceSignature()) && MapUtils.isNotEmpty(resource.getResourceElements())) {
+				XXService xService = getService(resource.getServiceName());
+
+				if (xService != null) {
+					existing = existingBySignature.get(getSignatureKey(xService.getId(), resource.getResourceSignature()));
+				}
+			}
+
+			XXServiceResource resourceInStore;
+
+			if (existing == null) {
+				resourceInStore = createServiceResource(resource);
+
+				xResourcesToCreate.add(resourceInStore);
+				resourcesToCreate.add(resource);
+
+				// a later duplicate of this resource in the batch finds it
+				existingByGuid.put(resourceInStore.getGuid(), resourceInStore);
+				existingBySignature.put(getSignatureKey(resourceInStore.getServiceId(), resourceInStore.getResourceSignature()), resourceInStore);
+			} else if (StringUtils.isEmpty(resource.getServiceName()) || MapUtils.isEmpty(resource.getResourceElements())) {
+				resourceInStore = existing;
+			} else {
+				if (StringUtils.isEmpty(resource.getResourceSignature())) {
+					resource.setResourceSignature(new RangerServiceResourceSignature(resource).getSignature());
+				}
+
+				XXService xService = getService(resource.getServiceName());
+
+				boolean isUnchanged = xService != null && xService.getId().equals(existing.getServiceId())
+										&& StringUtils.equals(existing.getResourceSignature(), resource.getResourceSignature())
+										&& ObjectUtils.equals(existing.getIsEnabled(), resource.getIsEnabled());
+
+				if (!isUnchanged && existing.getId() != null) {
+					if (xService == null) {
+						throw errorUtil.createRESTException("Error Populating XXServiceResource. No Service found with name: " + resource.getServiceName(), MessageEnums.INVALID_INPUT_DATA);
+					}
+
+					// the resource leaves its old service, if it moves
+					addUpdatedResource(existing.getServiceId(), existing.getId());
+
+					if (!StringUtils.equals(existing.getResourceSignature(), resource.getResourceSignature())) {
+						resourcesToReplace.put(existing.getId(), resource);
+					}
+
+					existing.setServiceId(xService.getId());
+					existing.setIsEnabled(resource.getIsEnabled());
+					existing.setResourceSignature(resource.getResourceSignature());
+
+					xResourcesToUpdate.put(existing.getId(), (XXServiceResource) auditFields.populateAuditFieldsForUpdate(existing));
+
+					addUpdatedResource(existing.getServiceId(), existing.getId());
+				}
+
+				resourceInStore = existing;
+			}
+
+			ret.put(resourceId, resourceInStore);
+		}
+
+		if (!xResourcesToCreate.isEmpty()) {
+			daoMgr.getXXServiceResource().batchCreate(xResourcesToCreate);
+
+			createResourceElements(xResourcesToCreate, resourcesToCreate);
+		}
+
+		if (!xResourcesToUpdate.isEmpty()) {
+			daoMgr.getXXServiceResource().batchUpdate(new ArrayList<XXServiceResource>(xResourcesToUpdate.values()));
+		}
+
+		if (!resourcesToReplace.isEmpty()) {
+			replaceResourceElements(xResourcesToUpdate, resourcesToReplace);
+		}
+
+		return ret;
+	}
+
+	private void updateTagsForResources(List<RangerServiceResource> resources, Map<Long, XXServiceResource> resourcesInStore, Map<Long, List<Long>> resourceToTagIds, Map<Long, RangerTag> incomingTags) {
+		List<Long>   resourceIds = new ArrayList<Long>();
+		List<String> tagGuids    = new ArrayList<String>();
+
+		for (RangerServiceResource resource : resources) {
+			List<Long>        tagIds          = resourceToTagIds.get(resource.getId());
+			XXServiceResource resourceInStore = resourcesInStore.get(resource.getId());
+
+			if (tagIds == null || resourceInStore == null) {
+				continue;
+			}
+
+			resourceIds.add(resourceInStore.getId());
+
+			for (Long tagId : tagIds) {
+				RangerTag incomingTag = incomingTags != null ? incomingTags.get(tagId) : null;
+
+				if (incomingTag != null && StringUtils.isNotEmpty(incomingTag.getGuid())) {
+					tagGuids.add(incomingTag.getGuid());
+				}
+			}
+		}
+
+		if (resourceIds.isEmpty()) {
+			return;
+		}
+
+		Map<Long, TagState>               tagsById       = new HashMap<Long, TagState>();
+		Map<String, TagState>             tagsByGuid     = new HashMap<String, TagState>();
+		Map<Long, List<XXTagResourceMap>> mapsByResource = new HashMap<Long, List<XXTagResourceMap>>();
+
+		for (List<Long> resourceIdsBatch : Lists.partition(resourceIds, MAX_IN_CLAUSE_VALUES)) {
+			for (XXTag xTag : daoMgr.getXXTag().findForResourceIds(resourceIdsBatch)) {
+				addTagState(xTag, tagsById, tagsByGuid);
+			}
+
+			for (XXTagResourceMap xTagResourceMap : daoMgr.getXXTagResourceMap().findByResourceIds(resourceIdsBatch)) {
+				List<XXTagResourceMap> maps = mapsByResource.get(xTagResourceMap.getResourceId());
+
+				if (maps == null) {
+					maps = new ArrayList<XXTagResourceMap>();
+
+					mapsByResource.put(xTagResourceMap.getResourceId(), maps);
+				}
+
+				maps.add(xTagResourceMap);
+			}
+		}
+
+		for (List<String> guidsBatch : Lists.partition(tagGuids, MAX_IN_CLAUSE_VALUES)) {
+			for (XXTag xTag : daoMgr.getXXTag().findByGuids(guidsBatch)) {
+				addTagState(xTag, tagsById, tagsByGuid);
+			}
+		}
+
+		for (List<Long> tagIdsBatch : Lists.partition(new ArrayList<Long>(tagsById.keySet()), MAX_IN_CLAUSE_VALUES)) {
+			for (XXTagAttribute xTagAttribute : daoMgr.getXXTagAttribute().findByTagIds(tagIdsBatch)) {
+				tagsById.get(xTagAttribute.getTagId()).attributes.put(xTagAttribute.getName(), xTagAttribute.getValue());
+			}
+		}
+
+		List<TagState>         tagsToCreate = new ArrayList<TagState>();
+		Set<TagState>          tagsToUpdate = new LinkedHashSet<TagState>();
+		List<PendingTagMap>    mapsToCreate = new ArrayList<PendingTagMap>();
+		List<XXTagResourceMap> mapsToDelete = new ArrayList<XXTagResourceMap>();
+
+		for (RangerServiceResource resource : resources) {
+			List<Long>        tagIds          = resourceToTagIds.get(resource.getId());
+			XXServiceResource resourceInStore = resourcesInStore.get(resource.getId());
+
+			if (tagIds == null || resourceInStore == null) {
+				continue;
+			}
+
+			Long                   resourceId        = resourceInStore.getId();
+			int                    mapsToCreateCount = mapsToCreate.size();
+			int                    mapsToDeleteCount = mapsToDelete.size();
+			List<XXTagResourceMap> maps              = mapsByResource.containsKey(resourceId) ? mapsByResource.get(resourceId) : Collections.<XXTagResourceMap>emptyList();
+			List<TagState>         associatedTags    = new ArrayList<TagState>();
+			Set<TagState>          tagsToRetain      = new HashSet<TagState>();
+
+			for (XXTagResourceMap map : maps) {
+				TagState associatedTag = tagsById.get(map.getTagId());
+
+				if (associatedTag != null) {
+					associatedTags.add(associatedTag);
+				}
+			}
+
+			for (Long tagId : tagIds) {
+				RangerTag incomingTag = incomingTags != null ? incomingTags.get(tagId) : null;
+
+				if (incomingTag == null) {
+					LOG.error("Tag (id=" + tagId + ") not found. Skipping addition of this tag for resource (id=" + resource.getId() + ")");
+					continue;
+				}
+
+				TagState matchingTag = findMatchingTag(incomingTag, associatedTags, tagsByGuid);
+				boolean  createTag;
+
+				if (matchingTag == null) {
+					createTag = true;
+				} else if (isResourcePrivateTag(incomingTag)) {
+					createTag = !matchingTag.isResourcePrivate();
+
+					if (!createTag && StringUtils.equals(incomingTag.getGuid(), matchingTag.xTag.getGuid())) {
+						updateTag(incomingTag, matchingTag, tagsToUpdate);
+					}
+				} else {
+					createTag = matchingTag.isResourcePrivate();
+
+					if (!createTag) {
+						updateTag(incomingTag, matchingTag, tagsToUpdate);
+
+						if (!associatedTags.contains(matchingTag)) {
+							mapsToCreate.add(new PendingTagMap(matchingTag, resourceId));
+						}
+					}
+				}
+
+				if (createTag) {
+					TagState newTag = createTag(incomingTag);
+
+					tagsToCreate.add(newTag);
+					tagsByGuid.put(newTag.xTag.getGuid(), newTag);
+					mapsToCreate.add(new PendingTagMap(newTag, resourceId));
+					associatedTags.add(newTag);
+					tagsToRetain.add(newTag);
+				} else {
+					tagsToRetain.add(matchingTag);
+				}
+			}
+
+			for (XXTagResourceMap map : maps) {
+				if (!tagsToRetain.contains(tagsById.get(map.getTagId()))) {
+					mapsToDelete.add(map);
+				}
+			}
+
+			if (mapsToDelete.size() > mapsToDeleteCount || mapsToCreate.size() > mapsToCreateCount) {
+				addUpdatedResource(resourceInStore.getServiceId(), resourceId);
+			}
+		}
+
+		writeTags(tagsToCreate, tagsToUpdate, mapsToCreate, mapsToDelete);
+	}
+
+	private void writeTags(List<TagState> tagsToCreate, Set<TagState> tagsToUpdate, List<PendingTagMap> mapsToCreate, List<XXTagResourceMap> mapsToDelete) {
+		if (!tagsToCreate.isEmpty()) {
+			List<XXTag> xTags = new ArrayList<XXTag>(tagsToCreate.size());
+
+			for (TagState tag : tagsToCreate) {
+				xTags.add(tag.xTag);
+			}
+
+			daoMgr.getXXTag().batchCreate(xTags);
+
+			createTagAttributes(tagsToCreate);
+		}
+
+		List<Long> updatedTagIds = new ArrayList<Long>(tagsToUpdate.size());
+
+		if (!tagsToUpdate.isEmpty()) {
+			List<XXTag> xTags = new ArrayList<XXTag>(tagsToUpdate.size());
+
+			for (TagState tag : tagsToUpdate) {
+				xTags.add(tag.xTag);
+				updatedTagIds.add(tag.xTag.getId());
+			}
+
+			daoMgr.getXXTag().batchUpdate(xTags);
+
+			for (List<Long> tagIdsBatch : Lists.partition(updatedTagIds, MAX_IN_CLAUSE_VALUES)) {
+				daoMgr.getXXTagAttribute().batchRemove(daoMgr.getXXTagAttribute().findByTagIds(tagIdsBatch));
+			}
+
+			createTagAttributes(tagsToUpdate);
+		}
+
+		if (!mapsToCreate.isEmpty()) {
+			List<XXTagResourceMap> xTagResourceMaps = new ArrayList<XXTagResourceMap>(mapsToCreate.size());
+
+			for (PendingTagMap pending : mapsToCreate) {
+				XXTagResourceMap xTagResourceMap = new XXTagResourceMap();
+
+				xTagResourceMap.setGuid(guidUtil.genGUID());
+				xTagResourceMap.setTagId(pending.tag.xTag.getId());
+				xTagResourceMap.setResourceId(pending.resourceId);
+				xTagResourceMap = (XXTagResourceMap) auditFields.populateAuditFieldsForCreate(xTagResourceMap);
+
+				xTagResourceMaps.add(xTagResourceMap);
+			}
+
+			daoMgr.getXXTagResourceMap().batchCreate(xTagResourceMaps);
+		}
+
+		if (!mapsToDelete.isEmpty()) {
+			daoMgr.getXXTagResourceMap().batchRemove(mapsToDelete);
+		}
+
+		// an updated tag changes every resource it is mapped to, including those not in this import
+		for (List<Long> tagIdsBatch : Lists.partition(updatedTagIds, MAX_IN_CLAUSE_VALUES)) {
+			for (Object[] row : daoMgr.getXXServiceResource().findServiceAndResourceIdsByTagIds(tagIdsBatch)) {
+				addUpdatedResource((Long) row[0], (Long) row[1]);
+			}
+		}
+	}
+
+	private void createTagAttributes(Collection<TagState> tags) {
+		List<XXTagAttribute> xTagAttributes = new ArrayList<XXTagAttribute>();
+
+		for (TagState tag : tags) {
+			for (Map.Entry<String, String> attr : tag.attributes.entrySet()) {
+				XXTagAttribute xTagAttr = new XXTagAttribute();
+
+				xTagAttr.setTagId(tag.xTag.getId());
+				xTagAttr.setName(attr.getKey());
+				xTagAttr.setValue(attr.getValue());
+				xTagAttr = (XXTagAttribute) auditFields.populateAuditFieldsForCreate(xTagAttr);
+
+				xTagAttributes.add(xTagAttr);
+			}
+		}
+
+		daoMgr.getXXTagAttribute().batchCreate(xTagAttributes);
+	}
+
+	private void addUpdatedResource(Long serviceId, Long resourceId) {
+		Set<Long> serviceResourceIds = updatedResourceIds.get(serviceId);
+
+		if (serviceResourceIds == null) {
+			serviceResourceIds = new HashSet<Long>();
+
+			updatedResourceIds.put(serviceId, serviceResourceIds);
+		}
+
+		serviceResourceIds.add(resourceId);
+	}
+
+	private XXServiceResource createServiceResource(RangerServiceResource resource) {
+		XXService xService = getService(resource.getServiceName());
+
+		if (xService == null) {
+			throw errorUtil.createRESTException("Error Populating XXServiceResource. No Service found with name: " + resource.getServiceName(), MessageEnums.INVALID_INPUT_DATA);
+		}
+
+		if (StringUtils.isEmpty(resource.getResourceSignature())) {
+			resource.setResourceSignature(new RangerServiceResourceSignature(resource).getSignature());
+		}
+
+		XXServiceResource ret = new XXServiceResource();
+
+		ret.setGuid(StringUtils.isEmpty(resource.getGuid()) ? guidUtil.genGUID() : resource.getGuid());
+		ret.setIsEnabled(resource.getIsEnabled());
+		ret.setResourceSignature(resource.getResourceSignature());
+		ret.setServiceId(xService.getId());
+
+		return (XXServiceResource) auditFields.populateAuditFieldsForCreate(ret);
+	}
+
+	// elements of the given resources are deleted and created again from the incoming resources
+	private void replaceResourceElements(Map<Long, XXServiceResource> xResources, Map<Long, RangerServiceResource> resources) {
+		List<Long>                  resourceIds       = new ArrayList<Long>(resources.keySet());
+		List<XXServiceResource>     xResourcesInOrder = new ArrayList<XXServiceResource>(resourceIds.size());
+		List<RangerServiceResource> resourcesInOrder  = new ArrayList<RangerServiceResource>(resourceIds.size());
+
+		for (List<Long> resourceIdsBatch : Lists.partition(resourceIds, MAX_IN_CLAUSE_VALUES)) {
+			daoMgr.getXXServiceResourceElementValue().batchRemove(daoMgr.getXXServiceResourceElementValue().findByResourceIds(resourceIdsBatch));
+			daoMgr.getXXServiceResourceElement().batchRemove(daoMgr.getXXServiceResourceElement().findByResourceIds(resourceIdsBatch));
+		}
+
+		for (Long resourceId : resourceIds) {
+			xResourcesInOrder.add(xResources.get(resourceId));
+			resourcesInOrder.add(resources.get(resourceId));
+		}
+
+		createResourceElements(xResourcesInOrder, resourcesInOrder);
+	}
+
+	// xResources and resources are in the same order
+	private void createResourceElements(List<XXServiceResource> xResources, List<RangerServiceResource> resources) {
+		List<XXServiceResourceElement> xElements = new ArrayList<XXServiceResourceElement>();
+		List<List<String>>             values    = new ArrayList<List<String>>();
+
+		for (int i = 0; i < xResources.size(); i++) {
+			XXServiceResource     xResource = xResources.get(i);
+			RangerServiceResource resource  = resources.get(i);
+			Map<String, Long>     resDefs   = getResourceDefIds(getService(resource.getServiceName()));
+
+			if (resource.getResourceElements() == null) {
+				continue;
+			}
+
+			for (Map.Entry<String, RangerPolicyResource> resElement : resource.getResourceElements().entrySet()) {
+				Long resDefId = resDefs.get(resElement.getKey());
+
+				if (resDefId == null) {
+					LOG.error("RangerServiceTagsImporter.createResourceElements: ResourceType is not valid [" + resElement.getKey() + "]");
+					throw errorUtil.createRESTException("Resource Type is not valid [" + resElement.getKey() + "]", MessageEnums.DATA_NOT_FOUND);
+				}
+
+				RangerPolicyResource     policyRes       = resElement.getValue();
+				XXServiceResourceElement resourceElement = new XXServiceResourceElement();
+
+				resourceElement.setIsExcludes(policyRes.getIsExcludes());
+				resourceElement.setIsRecursive(policyRes.getIsRecursive());
+				resourceElement.setResDefId(resDefId);
+				resourceElement.setResourceId(xResource.getId());
+				resourceElement = (XXServiceResourceElement) auditFields.populateAuditFieldsForCreate(resourceElement);
+
+				xElements.add(resourceElement);
+				values.add(policyRes.getValues());
+			}
+		}
+
+		daoMgr.getXXServiceResourceElement().batchCreate(xElements);
+
+		List<XXServiceResourceElementValue> xValues = new ArrayList<XXServiceResourceElementValue>();
+
+		for (int i = 0; i < xElements.size(); i++) {
+			int sortOrder = 1;
+
+			for (String resVal : values.get(i)) {
+				XXServiceResourceElementValue resourceElementValue = new XXServiceResourceElementValue();
+
+				resourceElementValue.setResElementId(xElements.get(i).getId());
+				resourceElementValue.setValue(resVal);
+				resourceElementValue.setSortOrder(sortOrder);
+				resourceElementValue = (XXServiceResourceElementValue) auditFields.populateAuditFieldsForCreate(resourceElementValue);
+
+				xValues.add(resourceElementValue);
+				sortOrder++;
+			}
+		}
+
+		daoMgr.getXXServiceResourceElementValue().batchCreate(xValues);
+	}
+
+	private TagState createTag(RangerTag incomingTag) {
+		Long tagDefId = tagDefIds.get(incomingTag.getType());
+
+		if (tagDefId == null) {
+			throw errorUtil.createRESTException("No TagDefinition found with name :" + incomingTag.getType(), MessageEnums.INVALID_INPUT_DATA);
+		}
+
+		XXTag xTag = new XXTag();
+
+		xTag.setGuid(StringUtils.isEmpty(incomingTag.getGuid()) ? guidUtil.genGUID() : incomingTag.getGuid());
+		xTag.setType(tagDefId);
+		xTag.setOwner(incomingTag.getOwner());
+		xTag = (XXTag) auditFields.populateAuditFieldsForCreate(xTag);
+
+		TagState ret = new TagState(xTag);
+
+		if (incomingTag.getAttributes() != null) {
+			ret.attributes.putAll(incomingTag.getAttributes());
+		}
+
+		return ret;
+	}
+
+	// tags created in this batch, or having the incoming type and attributes, are left as they are
+	private void updateTag(RangerTag incomingTag, TagState tag, Set<TagState> tagsToUpdate) {
+		if (tag.xTag.getId() == null) {
+			return;
+		}
+
+		Map<String, String> incomingAttributes = incomingTag.getAttributes() != null ? incomingTag.getAttributes() : Collections.<String, String>emptyMap();
+
+		boolean isUnchanged = ObjectUtils.equals(tagDefIds.get(incomingTag.getType()), tag.xTag.getType())
+								&& ObjectUtils.equals(incomingTag.getOwner(), tag.xTag.getOwner())
+								&& incomingAttributes.equals(tag.attributes);
+
+		if (!isUnchanged) {
+			Long tagDefId = tagDefIds.get(incomingTag.getType());
+
+			if (tagDefId == null) {
+				throw errorUtil.createRESTException("No TagDefinition found with name :" + incomingTag.getType(), MessageEnums.INVALID_INPUT_DATA);
+			}
+
+			tag.xTag.setType(tagDefId);
+			tag.xTag.setOwner(incomingTag.getOwner());
+			auditFields.populateAuditFieldsForUpdate(tag.xTag);
+
+			tag.attributes.clear();
+			tag.attributes.putAll(incomingAttributes);
+
+			tagsToUpdate.add(tag);
+		}
+	}
+
+	private TagState findMatchingTag(RangerTag incomingTag, List<TagState> associatedTags, Map<String, TagState> tagsByGuid) {
+		TagState ret = null;
+
+		if (StringUtils.isNotEmpty(incomingTag.getGuid())) {
+			ret = tagsByGuid.get(incomingTag.getGuid());
+		}
+
+		if (ret == null && isResourcePrivateTag(incomingTag)) {
+			Long                incomingType       = tagDefIds.get(incomingTag.getType());
+			Map<String, String> incomingAttributes = incomingTag.getAttributes() != null ? incomingTag.getAttributes() : Collections.<String, String>emptyMap();
+
+			for (TagState associatedTag : associatedTags) {
+				if (ObjectUtils.equals(incomingType, associatedTag.xTag.getType()) && incomingAttributes.equals(associatedTag.attributes)) {
+					ret = associatedTag;
+					break;
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private void addTagState(XXTag xTag, Map<Long, TagState> tagsById, Map<String, TagState> tagsByGuid) {
+		if (!tagsById.containsKey(xTag.getId())) {
+			TagState tag = new TagState(xTag);
+
+			tagsById.put(xTag.getId(), tag);
+			tagsByGuid.put(xTag.getGuid(), tag);
+		}
+	}
+
+	private boolean isResourcePrivateTag(RangerTag tag) {
+		return tag.getOwner() == RangerTag.OWNER_SERVICERESOURCE;
+	}
+
+	private XXService getService(String serviceName) {
+		XXService ret = services.get(serviceName);
+
+		if (ret == null && StringUtils.isNotEmpty(serviceName) && !services.containsKey(serviceName)) {
+			ret = daoMgr.getXXService().findByName(serviceName);
+
+			services.put(serviceName, ret);
+		}
+
+		return ret;
+	}
+
+	private Map<String, Long> getResourceDefIds(XXService xService) {
+		Map<String, Long> ret = resourceDefIds.get(xService.getType());
+
+		if (ret == null) {
+			ret = new HashMap<String, Long>();
+
+			for (XXResourceDef xResourceDef : daoMgr.getXXResourceDef().findByServiceDefId(xService.getType())) {
+				ret.put(xResourceDef.getName(), xResourceDef.getId());
+			}
+
+			resourceDefIds.put(xService.getType(), ret);
+		}
+
+		return ret;
+	}
+
+	private static String getSignatureKey(Long serviceId, String resourceSignature) {
+		return serviceId + ":" + resourceSignature;
+	}
+
+	static class TagState {
+		final XXTag               xTag;
+		final Map<String, String> attributes = new HashMap<String, String>();
+
+		TagState(XXTag xTag) {
+			this.xTag = xTag;
+		}
+
+		boolean isResourcePrivate() {
+			return xTag.getOwner() != null && xTag.getOwner() == RangerTag.OWNER_SERVICERESOURCE;
+		}
+	}
+
+	static class PendingTagMap {
+		final TagState tag;
+		final Long     resourceId;
+
+		PendingTagMap(TagState tag, Long resourceId) {
+			this.tag        = tag;
+			this.resourceId = resourceId;
+		}
+	}
+}
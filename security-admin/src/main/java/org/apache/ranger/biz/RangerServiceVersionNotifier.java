@@ -0,0 +1,339 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.common.PropertiesUtil;
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.entity.XXServiceVersionInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Tells waiting long-poll download requests when the policy or tag version
+ * of their service changes from the version known to the plugin.
+ *
+ * Versions are read from x_service_version_info every
+ * ranger.admin.download.longpoll.check.interval.ms while there are waiters,
+ * so that changes made by other Ranger Admin instances are seen as well;
+ * changes made by this instance trigger a check right after commit. New
+ * waiters are checked by the same background thread, so request threads
+ * never read the database here.
+ *
+ * The number of waiters is capped, in total by
+ * ranger.admin.download.longpoll.max.waiters and per service by
+ * ranger.admin.download.longpoll.max.waiters.per.service; requests beyond
+ * the caps are served right away, without waiting.
+ */
+@Component
+public class RangerServiceVersionNotifier {
+	private static final Log LOG = LogFactory.getLog(RangerServiceVersionNotifier.class);
+
+	public static final String PROP_LONGPOLL_ENABLED        = "ranger.admin.download.longpoll.enabled";
+	public static final String PROP_CHECK_INTERVAL_MS       = "ranger.admin.download.longpoll.check.interval.ms";
+	public static final String PROP_MAX_WAIT_TIME_MS        = "ranger.admin.download.longpoll.max.wait.ms";
+	public static final String PROP_MAX_WAITERS             = "ranger.admin.download.longpoll.max.waiters";
+	public static final String PROP_MAX_WAITERS_PER_SERVICE = "ranger.admin.download.longpoll.max.waiters.per.service";
+
+	public interface Listener {
+		void onVersionChange();
+	}
+
+	@Autowired
+	@Qualifier(value = "transactionManager")
+	PlatformTransactionManager txManager;
+
+	@Autowired
+	RangerDaoManager daoMgr;
+
+	private boolean enabled              = true;
+	private int     checkIntervalMs      = 2000;
+	private int     maxWaitTimeMs        = 60 * 1000;
+	private int     maxWaiters           = 10000;
+	private int     maxWaitersPerService = 2000;
+
+	// guarded by waiters
+	private final Map<String, List<Waiter>> waiters     = new HashMap<String, List<Waiter>>();
+	private int                             waiterCount = 0;
+
+	private final AtomicBoolean isCheckPending = new AtomicBoolean(false);
+
+	private ScheduledExecutorService scheduler = null;
+
+	@PostConstruct
+	public void init() {
+		enabled         = PropertiesUtil.getBooleanProperty(PROP_LONGPOLL_ENABLED, enabled);
+		checkIntervalMs = Math.max(PropertiesUtil.getIntProperty(PROP_CHECK_INTERVAL_MS, checkIntervalMs), 100);
+		maxWaitTimeMs   = Math.max(PropertiesUtil.getIntProperty(PROP_MAX_WAIT_TIME_MS, maxWaitTimeMs), 0);
+
+		maxWaiters           = Math.max(PropertiesUtil.getIntProperty(PROP_MAX_WAITERS, maxWaiters), 0);
+		maxWaitersPerService = Math.max(PropertiesUtil.getIntProperty(PROP_MAX_WAITERS_PER_SERVICE, maxWaitersPerService), 0);
+
+		LOG.info("RangerServiceVersionNotifier: enabled=" + enabled + ", checkIntervalMs=" + checkIntervalMs + ", maxWaitTimeMs=" + maxWaitTimeMs
+				+ ", maxWaiters=" + maxWaiters + ", maxWaitersPerService=" + maxWaitersPerService);
+
+		if (enabled) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread ret = new Thread(r, "RangerServiceVersionNotifier");
+
+					ret.setDaemon(true);
+
+					return ret;
+				}
+			});
+
+			scheduler.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					checkVersions();
+				}
+			}, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	public boolean isEnabled() {
+		return scheduler != null && !scheduler.isShutdown() && maxWaitTimeMs > 0;
+	}
+
+	public int getMaxWaitTimeMs() {
+		return maxWaitTimeMs;
+	}
+
+	/**
+	 * @return false if a new waiter for the service would exceed the caps;
+	 *         addWaiter() makes the final check
+	 */
+	public boolean canWait(String serviceName) {
+		synchronized (waiters) {
+			return hasRoomFor(serviceName);
+		}
+	}
+
+	/**
+	 * Registers the listener to be called once the version of the service
+	 * differs from lastKnownVersion, or the service is not found. Versions
+	 * are checked by the background thread, soon after the listener is added.
+	 *
+	 * @return false if the caps on the number of waiters are reached; the
+	 *         listener is not registered then
+	 */
+	public boolean addWaiter(String serviceName, boolean isTagVersion, long lastKnownVersion, Listener listener) {
+		synchronized (waiters) {
+			if (!hasRoomFor(serviceName)) {
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("RangerServiceVersionNotifier: too many waiters (total=" + waiterCount + "); not waiting for service " + serviceName);
+				}
+
+				return false;
+			}
+
+			List<Waiter> serviceWaiters = waiters.get(serviceName);
+
+			if (serviceWaiters == null) {
+				serviceWaiters = new ArrayList<Waiter>();
+
+				waiters.put(serviceName, serviceWaiters);
+			}
+
+			serviceWaiters.add(new Waiter(isTagVersion, lastKnownVersion, listener));
+			waiterCount++;
+		}
+
+		scheduleCheck();
+
+		return true;
+	}
+
+	public void removeWaiter(String serviceName, Listener listener) {
+		synchronized (waiters) {
+			List<Waiter> serviceWaiters = waiters.get(serviceName);
+
+			if (serviceWaiters != null) {
+				for (Iterator<Waiter> iter = serviceWaiters.iterator(); iter.hasNext(); ) {
+					if (iter.next().listener == listener) {
+						iter.remove();
+						waiterCount--;
+					}
+				}
+
+				if (serviceWaiters.isEmpty()) {
+					waiters.remove(serviceName);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called when this instance updates a service version. The waiters are
+	 * checked once the current transaction commits.
+	 */
+	public void onVersionUpdate() {
+		if (!isEnabled()) {
+			return;
+		}
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					scheduleCheck();
+				}
+			});
+		} else {
+			scheduleCheck();
+		}
+	}
+
+	// checks requested while one is pending are served by it
+	private void scheduleCheck() {
+		if (scheduler == null || !isCheckPending.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			scheduler.execute(new Runnable() {
+				@Override
+				public void run() {
+					checkVersions();
+				}
+			});
+		} catch (Exception excp) {
+			isCheckPending.set(false);
+
+			LOG.warn("RangerServiceVersionNotifier: failed to schedule version check", excp);
+		}
+	}
+
+	void checkVersions() {
+		isCheckPending.set(false);
+
+		synchronized (waiters) {
+			if (waiters.isEmpty()) {
+				return;
+			}
+		}
+
+		List<Listener> toNotify = new ArrayList<Listener>();
+
+		try {
+			List<Object[]> versionInfos = new TransactionTemplate(txManager).execute(new TransactionCallback<List<Object[]>>() {
+				@Override
+				public List<Object[]> doInTransaction(TransactionStatus status) {
+					return daoMgr.getXXServiceVersionInfo().getAllWithServiceNames();
+				}
+			});
+
+			Map<String, XXServiceVersionInfo> versionInfoByService = new HashMap<String, XXServiceVersionInfo>();
+
+			for (Object[] row : versionInfos) {
+				versionInfoByService.put((String) row[1], (XXServiceVersionInfo) row[0]);
+			}
+
+			synchronized (waiters) {
+				for (Iterator<Map.Entry<String, List<Waiter>>> entryIter = waiters.entrySet().iterator(); entryIter.hasNext(); ) {
+					Map.Entry<String, List<Waiter>> entry          = entryIter.next();
+					XXServiceVersionInfo            versionInfo    = versionInfoByService.get(entry.getKey());
+					List<Waiter>                    serviceWaiters = entry.getValue();
+
+					for (Iterator<Waiter> iter = serviceWaiters.iterator(); iter.hasNext(); ) {
+						Waiter waiter = iter.next();
+
+						// waiters of unknown services are released, to get the error from the download API
+						if (versionInfo == null || isChanged(versionInfo, waiter.isTagVersion, waiter.lastKnownVersion)) {
+							toNotify.add(waiter.listener);
+
+							iter.remove();
+							waiterCount--;
+						}
+					}
+
+					if (serviceWaiters.isEmpty()) {
+						entryIter.remove();
+					}
+				}
+			}
+		} catch (Throwable excp) {
+			LOG.error("RangerServiceVersionNotifier: failed to check service versions", excp);
+		}
+
+		for (Listener listener : toNotify) {
+			try {
+				listener.onVersionChange();
+			} catch (Throwable excp) {
+				LOG.error("RangerServiceVersionNotifier: listener failed", excp);
+			}
+		}
+	}
+
+	private boolean hasRoomFor(String serviceName) {
+		List<Waiter> serviceWaiters = waiters.get(serviceName);
+
+		return waiterCount < maxWaiters && (serviceWaiters == null || serviceWaiters.size() < maxWaitersPerService);
+	}
+
+	private boolean isChanged(XXServiceVersionInfo versionInfo, boolean isTagVersion, long lastKnownVersion) {
+		Long version = isTagVersion ? versionInfo.getTagVersion() : versionInfo.getPolicyVersion();
+
+		return version != null && version.longValue() != lastKnownVersion;
+	}
+
+	private static class Waiter {
+		final boolean  isTagVersion;
+		final long     lastKnownVersion;
+		final Listener listener;
+
+		Waiter(boolean isTagVersion, long lastKnownVersion, Listener listener) {
+			this.isTagVersion     = isTagVersion;
+			this.lastKnownVersion = lastKnownVersion;
+			this.listener         = listener;
+		}
+	}
+}
@@ -0,0 +1,380 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.entity.XXResourceDef;
+import org.apache.ranger.entity.XXService;
+import org.apache.ranger.entity.XXServiceResource;
+import org.apache.ranger.entity.XXServiceResourceElement;
+import org.apache.ranger.entity.XXServiceResourceElementValue;
+import org.apache.ranger.entity.XXTag;
+import org.apache.ranger.entity.XXTagAttribute;
+import org.apache.ranger.entity.XXTagChangeLog;
+import org.apache.ranger.entity.XXTagDef;
+import org.apache.ranger.entity.XXTagResourceMap;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.util.RangerPerfTracer;
+import org.apache.ranger.plugin.util.ServiceTags;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Brings the cached ServiceTags of a service upto the current tag version by
+ * reading only the service-resources and tags recorded in x_tag_change_log
+ * since the cached version.
+ *
+ * The cached ServiceTags is not modified: a new ServiceTags is returned that
+ * shares the unchanged resources and tags with it. Resources and tags read
+ * here are populated as RangerServiceTagsCache keeps them, i.e. without guid,
+ * audit fields, service-name and resource-signature.
+ */
+public class RangerTagDBDeltaRetriever {
+	static final Log LOG      = LogFactory.getLog(RangerTagDBDeltaRetriever.class);
+	static final Log PERF_LOG = RangerPerfTracer.getPerfLogger("db.RangerTagDBDeltaRetriever");
+
+	public static final String OPTION_RANGER_TAG_DELTA_MAX_CHANGES = "ranger.admin.tag.download.cache.delta.max.changes";
+
+	static final int MAX_IN_CLAUSE_VALUES = 1000;
+
+	private final RangerDaoManager  daoMgr;
+	private final XXService         xService;
+	private final boolean           filterForServicePlugin;
+	private final int               maxChanges;
+	private final Map<Long, String> tagDefNames      = new HashMap<Long, String>();
+	private final Map<Long, String> resourceDefNames = new HashMap<Long, String>();
+
+	public RangerTagDBDeltaRetriever(final RangerDaoManager daoMgr, final XXService xService) {
+		this.daoMgr                 = daoMgr;
+		this.xService               = xService;
+		this.filterForServicePlugin = RangerConfiguration.getInstance().getBoolean(RangerTagDBRetriever.OPTION_RANGER_FILTER_TAGS_FOR_SERVICE_PLUGIN, true);
+		this.maxChanges             = RangerConfiguration.getInstance().getInt(OPTION_RANGER_TAG_DELTA_MAX_CHANGES, 10000);
+	}
+
+	/**
+	 * @return ServiceTags of tagVersion; null if the changes since the cached version are not all
+	 *         in the change-log, or are too many to be worth reading one by one
+	 */
+	public ServiceTags getServiceTags(ServiceTags cachedServiceTags, Long tagVersion, Date tagUpdateTime) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerTagDBDeltaRetriever.getServiceTags(" + xService.getName() + ", cachedVersion=" + cachedServiceTags.getTagVersion() + ", tagVersion=" + tagVersion + ")");
+		}
+
+		RangerPerfTracer perf = null;
+
+		if (RangerPerfTracer.isPerfTraceEnabled(PERF_LOG)) {
+			perf = RangerPerfTracer.getPerfTracer(PERF_LOG, "RangerTagDBDeltaRetriever.getServiceTags(serviceName=" + xService.getName() + ")");
+		}
+
+		ServiceTags ret         = null;
+		Set<Long>   resourceIds = getChangedResourceIds(cachedServiceTags, tagVersion);
+
+		if (resourceIds != null) {
+			ret = merge(cachedServiceTags, resourceIds, tagVersion, tagUpdateTime);
+		}
+
+		RangerPerfTracer.log(perf);
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerTagDBDeltaRetriever.getServiceTags(" + xService.getName() + ", cachedVersion=" + cachedServiceTags.getTagVersion() + ", tagVersion=" + tagVersion + "): "
+					+ (ret == null ? "full reload needed" : ("changedResources=" + resourceIds.size())));
+		}
+
+		return ret;
+	}
+
+	// resources whose tags may have changed since the cached version; null if they can't be determined
+	private Set<Long> getChangedResourceIds(ServiceTags cachedServiceTags, Long tagVersion) {
+		Long cachedVersion = cachedServiceTags.getTagVersion();
+
+		if (cachedVersion == null || tagVersion == null || tagVersion <= cachedVersion || (tagVersion - cachedVersion) > maxChanges) {
+			return null;
+		}
+
+		List<XXTagChangeLog> changeLogs  = daoMgr.getXXTagChangeLog().findByServiceIdAndVersions(xService.getId(), cachedVersion, tagVersion);
+		Set<Long>            versions    = new HashSet<Long>();
+		Set<Long>            resourceIds = new HashSet<Long>();
+		Set<Long>            tagIds      = new HashSet<Long>();
+
+		for (XXTagChangeLog changeLog : changeLogs) {
+			versions.add(changeLog.getServiceTagsVersion());
+
+			Integer changeType = changeLog.getChangeType();
+
+			if (changeType != null && changeType == XXTagChangeLog.CHANGE_TYPE_SERVICE_RESOURCE_UPDATE && changeLog.getServiceResourceId() != null) {
+				resourceIds.add(changeLog.getServiceResourceId());
+			} else if (changeType != null && changeType == XXTagChangeLog.CHANGE_TYPE_TAG_UPDATE && changeLog.getTagId() != null) {
+				tagIds.add(changeLog.getTagId());
+			} else {
+				return null;
+			}
+		}
+
+		// versions made before the change-log existed, purged, or not yet committed
+		if (versions.size() != (tagVersion - cachedVersion)) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("RangerTagDBDeltaRetriever(" + xService.getName() + "): change-log has " + versions.size() + " of " + (tagVersion - cachedVersion) + " versions");
+			}
+
+			return null;
+		}
+
+		// an updated tag changes the cached resources it is mapped to
+		Map<Long, List<Long>> cachedResourceToTagIds = cachedServiceTags.getResourceToTagIds();
+
+		if (cachedResourceToTagIds != null) {
+			for (List<Long> tagIdsBatch : Lists.partition(new ArrayList<Long>(tagIds), MAX_IN_CLAUSE_VALUES)) {
+				for (XXTagResourceMap xTagResourceMap : daoMgr.getXXTagResourceMap().findByTagIds(tagIdsBatch)) {
+					if (cachedResourceToTagIds.containsKey(xTagResourceMap.getResourceId())) {
+						resourceIds.add(xTagResourceMap.getResourceId());
+					}
+				}
+			}
+		}
+
+		return resourceIds.size() > maxChanges ? null : resourceIds;
+	}
+
+	private ServiceTags merge(ServiceTags cachedServiceTags, Set<Long> resourceIds, Long tagVersion, Date tagUpdateTime) {
+		Map<Long, RangerServiceResource> resources        = new LinkedHashMap<Long, RangerServiceResource>();
+		Map<Long, List<Long>>            resourceToTagIds = new HashMap<Long, List<Long>>();
+		Map<Long, RangerTag>             tags             = new HashMap<Long, RangerTag>();
+
+		if (cachedServiceTags.getServiceResources() != null) {
+			for (RangerServiceResource resource : cachedServiceTags.getServiceResources()) {
+				resources.put(resource.getId(), resource);
+			}
+		}
+
+		if (cachedServiceTags.getResourceToTagIds() != null) {
+			resourceToTagIds.putAll(cachedServiceTags.getResourceToTagIds());
+		}
+
+		if (cachedServiceTags.getTags() != null) {
+			tags.putAll(cachedServiceTags.getTags());
+		}
+
+		Set<Long>        tagDefIdsInScope = getTagDefIdsInScope();
+		Set<Long>        untaggedTagIds   = new HashSet<Long>();
+		Map<Long, XXTag> xTags            = new HashMap<Long, XXTag>();
+		List<RangerTag>  loadedTags       = new ArrayList<RangerTag>();
+
+		for (List<Long> resourceIdsBatch : Lists.partition(new ArrayList<Long>(resourceIds), MAX_IN_CLAUSE_VALUES)) {
+			for (XXTag xTag : daoMgr.getXXTag().findForResourceIds(resourceIdsBatch)) {
+				if (tagDefIdsInScope == null || tagDefIdsInScope.contains(xTag.getType())) {
+					xTags.put(xTag.getId(), xTag);
+				}
+			}
+
+			Map<Long, List<Long>>            batchTagIds    = new HashMap<Long, List<Long>>();
+			Map<Long, RangerServiceResource> batchResources = getServiceResources(resourceIdsBatch);
+
+			for (XXTagResourceMap xTagResourceMap : daoMgr.getXXTagResourceMap().findByResourceIds(resourceIdsBatch)) {
+				if (xTags.containsKey(xTagResourceMap.getTagId())) {
+					List<Long> tagIds = batchTagIds.get(xTagResourceMap.getResourceId());
+
+					if (tagIds == null) {
+						tagIds = new ArrayList<Long>();
+
+						batchTagIds.put(xTagResourceMap.getResourceId(), tagIds);
+					}
+
+					tagIds.add(xTagResourceMap.getTagId());
+				}
+			}
+
+			for (Long resourceId : resourceIdsBatch) {
+				List<Long> oldTagIds = resourceToTagIds.remove(resourceId);
+
+				if (oldTagIds != null) {
+					untaggedTagIds.addAll(oldTagIds);
+				}
+
+				resources.remove(resourceId);
+
+				RangerServiceResource resource = batchResources.get(resourceId);
+				List<Long>            tagIds   = batchTagIds.get(resourceId);
+
+				if (resource != null && tagIds != null) {
+					resources.put(resourceId, resource);
+					resourceToTagIds.put(resourceId, tagIds);
+				}
+			}
+		}
+
+		for (List<Long> tagIdsBatch : Lists.partition(new ArrayList<Long>(xTags.keySet()), MAX_IN_CLAUSE_VALUES)) {
+			Map<Long, RangerTag> batchTags = new HashMap<Long, RangerTag>();
+
+			for (Long tagId : tagIdsBatch) {
+				batchTags.put(tagId, toRangerTag(xTags.get(tagId)));
+			}
+
+			for (XXTagAttribute xTagAttribute : daoMgr.getXXTagAttribute().findByTagIds(tagIdsBatch)) {
+				batchTags.get(xTagAttribute.getTagId()).getAttributes().put(xTagAttribute.getName(), xTagAttribute.getValue());
+			}
+
+			loadedTags.addAll(batchTags.values());
+		}
+
+		for (RangerTag tag : loadedTags) {
+			tags.put(tag.getId(), tag);
+		}
+
+		untaggedTagIds.removeAll(xTags.keySet());
+
+		if (!untaggedTagIds.isEmpty()) {
+			Set<Long> referencedTagIds = new HashSet<Long>();
+
+			for (List<Long> tagIds : resourceToTagIds.values()) {
+				referencedTagIds.addAll(tagIds);
+			}
+
+			untaggedTagIds.removeAll(referencedTagIds);
+
+			for (Long tagId : untaggedTagIds) {
+				tags.remove(tagId);
+			}
+		}
+
+		ServiceTags ret = new ServiceTags();
+
+		ret.setServiceName(cachedServiceTags.getServiceName());
+		ret.setTagVersion(tagVersion);
+		ret.setTagUpdateTime(tagUpdateTime);
+		ret.setTagDefinitions(cachedServiceTags.getTagDefinitions());
+		ret.setTags(tags);
+		ret.setServiceResources(new ArrayList<RangerServiceResource>(resources.values()));
+		ret.setResourceToTagIds(resourceToTagIds);
+
+		return ret;
+	}
+
+	private Map<Long, RangerServiceResource> getServiceResources(List<Long> resourceIds) {
+		Map<Long, RangerServiceResource> ret      = new HashMap<Long, RangerServiceResource>();
+		Map<Long, RangerPolicyResource>  elements = new HashMap<Long, RangerPolicyResource>();
+
+		for (XXServiceResource xServiceResource : daoMgr.getXXServiceResource().findByServiceAndIds(xService.getId(), resourceIds)) {
+			RangerServiceResource resource = new RangerServiceResource();
+
+			resource.setId(xServiceResource.getId());
+			resource.setIsEnabled(xServiceResource.getIsEnabled());
+			resource.setVersion(xServiceResource.getVersion());
+
+			ret.put(resource.getId(), resource);
+		}
+
+		for (XXServiceResourceElement xElement : daoMgr.getXXServiceResourceElement().findByResourceIds(resourceIds)) {
+			RangerServiceResource resource = ret.get(xElement.getResourceId());
+
+			if (resource != null) {
+				RangerPolicyResource element = new RangerPolicyResource();
+
+				element.setIsExcludes(xElement.getIsExcludes());
+				element.setIsRecursive(xElement.getIsRecursive());
+
+				resource.getResourceElements().put(getResourceDefName(xElement.getResDefId()), element);
+				elements.put(xElement.getId(), element);
+			}
+		}
+
+		for (XXServiceResourceElementValue xElementValue : daoMgr.getXXServiceResourceElementValue().findByResourceIds(resourceIds)) {
+			RangerPolicyResource element = elements.get(xElementValue.getResElementId());
+
+			if (element != null) {
+				element.getValues().add(xElementValue.getValue());
+			}
+		}
+
+		return ret;
+	}
+
+	private RangerTag toRangerTag(XXTag xTag) {
+		RangerTag ret = new RangerTag();
+
+		ret.setId(xTag.getId());
+		ret.setOwner(xTag.getOwner());
+		ret.setVersion(xTag.getVersion());
+		ret.setType(getTagDefName(xTag.getType()));
+
+		return ret;
+	}
+
+	// null when all tag-definitions are in scope
+	private Set<Long> getTagDefIdsInScope() {
+		Set<Long> ret = null;
+
+		if (filterForServicePlugin) {
+			ret = new HashSet<Long>();
+
+			for (XXTagDef xTagDef : daoMgr.getXXTagDef().findForServicePlugin(xService.getId())) {
+				ret.add(xTagDef.getId());
+				tagDefNames.put(xTagDef.getId(), xTagDef.getName());
+			}
+		}
+
+		return ret;
+	}
+
+	private String getTagDefName(Long tagDefId) {
+		String ret = tagDefNames.get(tagDefId);
+
+		if (ret == null && tagDefId != null) {
+			XXTagDef xTagDef = daoMgr.getXXTagDef().getById(tagDefId);
+
+			if (xTagDef != null) {
+				ret = xTagDef.getName();
+
+				tagDefNames.put(tagDefId, ret);
+			}
+		}
+
+		return ret;
+	}
+
+	private String getResourceDefName(Long resourceDefId) {
+		String ret = resourceDefNames.get(resourceDefId);
+
+		if (ret == null && resourceDefId != null) {
+			XXResourceDef xResourceDef = daoMgr.getXXResourceDef().getById(resourceDefId);
+
+			if (xResourceDef != null) {
+				ret = xResourceDef.getName();
+
+				resourceDefNames.put(resourceDefId, ret);
+			}
+		}
+
+		return ret;
+	}
+}
@@ -0,0 +1,392 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.common.PropertiesUtil;
+import org.apache.ranger.db.RangerDaoManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * In-memory index of group memberships, by user name and by group name.
+ *
+ * The index is loaded in the background at startup; until then lookups
+ * return null and callers read the database. Changes made by this instance
+ * are applied right after commit; the whole index is reloaded every
+ * ranger.admin.usergroup.cache.refresh.interval.ms, so that changes made by
+ * other Ranger Admin instances are seen as well.
+ *
+ * Lookups feed authorization checks, so an index loaded more than
+ * ranger.admin.usergroup.cache.max.age.ms ago - for example when reloads
+ * fail - is not used; lookups return null until the next reload succeeds.
+ */
+@Component
+public class RangerUserGroupCache {
+	private static final Log LOG = LogFactory.getLog(RangerUserGroupCache.class);
+
+	public static final String PROP_CACHE_ENABLED       = "ranger.admin.usergroup.cache.enabled";
+	public static final String PROP_REFRESH_INTERVAL_MS = "ranger.admin.usergroup.cache.refresh.interval.ms";
+	public static final String PROP_MAX_AGE_MS          = "ranger.admin.usergroup.cache.max.age.ms";
+
+	@Autowired
+	@Qualifier(value = "transactionManager")
+	PlatformTransactionManager txManager;
+
+	@Autowired
+	RangerDaoManager daoMgr;
+
+	private boolean enabled           = true;
+	private int     refreshIntervalMs = 15 * 1000;
+	int             maxAgeMs          = 30 * 1000;
+
+	private volatile Index index = null;
+
+	// pending changes; updated under the lock, applied by refresh()
+	private final Set<String> usersToRefresh = new HashSet<String>();
+	private boolean           reloadPending  = false;
+
+	private ScheduledExecutorService scheduler = null;
+
+	@PostConstruct
+	public void init() {
+		enabled           = PropertiesUtil.getBooleanProperty(PROP_CACHE_ENABLED, enabled);
+		refreshIntervalMs = Math.max(PropertiesUtil.getIntProperty(PROP_REFRESH_INTERVAL_MS, refreshIntervalMs), 1000);
+		maxAgeMs          = Math.max(PropertiesUtil.getIntProperty(PROP_MAX_AGE_MS, maxAgeMs), refreshIntervalMs);
+
+		LOG.info("RangerUserGroupCache: enabled=" + enabled + ", refreshIntervalMs=" + refreshIntervalMs + ", maxAgeMs=" + maxAgeMs);
+
+		if (enabled) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread ret = new Thread(r, "RangerUserGroupCache");
+
+					ret.setDaemon(true);
+
+					return ret;
+				}
+			});
+
+			scheduler.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					synchronized (RangerUserGroupCache.this) {
+						reloadPending = true;
+					}
+
+					refresh();
+				}
+			}, 0, refreshIntervalMs, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	public boolean isLoaded() {
+		return index != null;
+	}
+
+	/**
+	 * @return names of the groups the user belongs to, or null if the index is
+	 *         not loaded yet or is too old
+	 */
+	public Set<String> getGroupsForUser(String userName) {
+		Index current = getCurrentIndex();
+
+		return current == null ? null : copyOf(current.groupsOfUser.get(userName));
+	}
+
+	/**
+	 * @return names of the users in the group, or null if the index is not
+	 *         loaded yet or is too old
+	 */
+	public Set<String> getUsersInGroup(String groupName) {
+		Index current = getCurrentIndex();
+
+		return current == null ? null : copyOf(current.usersOfGroup.get(groupName));
+	}
+
+	/**
+	 * Called when group memberships of the user change. The user's entry is
+	 * read again once the current transaction commits.
+	 */
+	public void onUserGroupsChange(final String userName) {
+		if (!enabled || userName == null) {
+			return;
+		}
+
+		afterCommit(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (RangerUserGroupCache.this) {
+					usersToRefresh.add(userName);
+				}
+
+				scheduleRefresh();
+			}
+		});
+	}
+
+	/**
+	 * Called on changes that may affect many users, like renaming or deleting
+	 * a group. The index is reloaded once the current transaction commits.
+	 */
+	public void onChange() {
+		if (!enabled) {
+			return;
+		}
+
+		afterCommit(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (RangerUserGroupCache.this) {
+					reloadPending = true;
+				}
+
+				scheduleRefresh();
+			}
+		});
+	}
+
+	private Index getCurrentIndex() {
+		Index ret = index;
+
+		if (ret != null && System.currentTimeMillis() - ret.loadTime > maxAgeMs) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("RangerUserGroupCache: index loaded at " + ret.loadTime + " is older than " + maxAgeMs + "ms; not used");
+			}
+
+			ret = null;
+		}
+
+		return ret;
+	}
+
+	private void afterCommit(final Runnable task) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					task.run();
+				}
+			});
+		} else {
+			task.run();
+		}
+	}
+
+	private void scheduleRefresh() {
+		if (scheduler == null) {
+			return;
+		}
+
+		try {
+			scheduler.execute(new Runnable() {
+				@Override
+				public void run() {
+					refresh();
+				}
+			});
+		} catch (Exception excp) {
+			LOG.warn("RangerUserGroupCache: failed to schedule refresh", excp);
+		}
+	}
+
+	/**
+	 * Applies the pending changes. Runs on the scheduler thread only, so that
+	 * a change committed while the index is being read is applied afterwards.
+	 */
+	void refresh() {
+		final boolean     reload;
+		final Set<String> users;
+
+		synchronized (this) {
+			reload = reloadPending || index == null;
+			users  = reload ? Collections.<String>emptySet() : new HashSet<String>(usersToRefresh);
+
+			reloadPending = false;
+			usersToRefresh.clear();
+		}
+
+		try {
+			if (reload) {
+				reload();
+			} else if (!users.isEmpty()) {
+				refreshUsers(users);
+			}
+		} catch (Throwable excp) {
+			LOG.error("RangerUserGroupCache: failed to refresh", excp);
+
+			synchronized (this) {
+				if (reload) {
+					reloadPending = true;
+				} else {
+					usersToRefresh.addAll(users);
+				}
+			}
+		}
+	}
+
+	private void reload() {
+		long startTime = System.currentTimeMillis();
+
+		List<Object[]> rows = new TransactionTemplate(txManager).execute(new TransactionCallback<List<Object[]>>() {
+			@Override
+			public List<Object[]> doInTransaction(TransactionStatus status) {
+				return daoMgr.getXXGroupUser().findAllUserAndGroupNames();
+			}
+		});
+
+		Index newIndex = new Index(startTime);
+
+		for (Object[] row : rows) {
+			newIndex.add((String) row[0], (String) row[1]);
+		}
+
+		index = newIndex;
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("RangerUserGroupCache: loaded " + rows.size() + " memberships of " + newIndex.groupsOfUser.size() + " users in " + (System.currentTimeMillis() - startTime) + "ms");
+		}
+	}
+
+	private void refreshUsers(final Set<String> userNames) {
+		Map<String, Set<String>> groupsOfUsers = new TransactionTemplate(txManager).execute(new TransactionCallback<Map<String, Set<String>>>() {
+			@Override
+			public Map<String, Set<String>> doInTransaction(TransactionStatus status) {
+				Map<String, Set<String>> ret = new HashMap<String, Set<String>>();
+
+				for (String userName : userNames) {
+					ret.put(userName, daoMgr.getXXGroupUser().findGroupNamesByUserName(userName));
+				}
+
+				return ret;
+			}
+		});
+
+		Index current = index;
+
+		for (Map.Entry<String, Set<String>> entry : groupsOfUsers.entrySet()) {
+			current.setGroups(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private static Set<String> copyOf(Set<String> values) {
+		return values == null ? new HashSet<String>() : new HashSet<String>(values);
+	}
+
+	/**
+	 * Both directions of the index; modified only by the scheduler thread, read
+	 * concurrently by lookups.
+	 */
+	private static class Index {
+		final long                     loadTime;
+		final Map<String, Set<String>> groupsOfUser = new ConcurrentHashMap<String, Set<String>>();
+		final Map<String, Set<String>> usersOfGroup = new ConcurrentHashMap<String, Set<String>>();
+
+		Index(long loadTime) {
+			this.loadTime = loadTime;
+		}
+
+		void add(String userName, String groupName) {
+			getOrCreate(groupsOfUser, userName).add(groupName);
+			getOrCreate(usersOfGroup, groupName).add(userName);
+		}
+
+		void setGroups(String userName, Set<String> groupNames) {
+			Set<String> oldGroupNames = groupsOfUser.get(userName);
+
+			if (oldGroupNames != null) {
+				for (String groupName : oldGroupNames) {
+					if (!groupNames.contains(groupName)) {
+						Set<String> users = usersOfGroup.get(groupName);
+
+						if (users != null) {
+							users.remove(userName);
+
+							if (users.isEmpty()) {
+								usersOfGroup.remove(groupName);
+							}
+						}
+					}
+				}
+			}
+
+			if (groupNames.isEmpty()) {
+				groupsOfUser.remove(userName);
+			} else {
+				Set<String> newGroupNames = newSet();
+
+				newGroupNames.addAll(groupNames);
+
+				groupsOfUser.put(userName, newGroupNames);
+
+				for (String groupName : groupNames) {
+					getOrCreate(usersOfGroup, groupName).add(userName);
+				}
+			}
+		}
+
+		private static Set<String> getOrCreate(Map<String, Set<String>> map, String key) {
+			Set<String> ret = map.get(key);
+
+			if (ret == null) {
+				ret = newSet();
+
+				map.put(key, ret);
+			}
+
+			return ret;
+		}
+
+		private static Set<String> newSet() {
+			return Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		}
+	}
+}
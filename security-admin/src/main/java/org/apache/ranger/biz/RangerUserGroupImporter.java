@@ -0,0 +1,472 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.common.DateUtil;
+import org.apache.ranger.common.RangerCommonEnums;
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.entity.XXDBBase;
+import org.apache.ranger.entity.XXGroup;
+import org.apache.ranger.entity.XXGroupUser;
+import org.apache.ranger.entity.XXUser;
+import org.apache.ranger.view.VXGroup;
+import org.apache.ranger.view.VXUser;
+import org.apache.ranger.view.VXUserGroupImportResult;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Imports a snapshot of users, groups and group memberships sent by
+ * usersync, as createXUserGroupFromMap and createXGroupUserFromMap do one
+ * user or group at a time. The snapshot is read from the request stream one
+ * user or group at a time, and compared as sets with the users, groups and
+ * group-user mappings in store, read with a few queries; only the differences
+ * are written, in batches with a single flush each.
+ *
+ * The snapshot is a JSON object:
+ * <pre>
+ * { "isFullSnapshot": true,
+ *   "xgroupInfo": [ { "name": "finance", "description": "...", "groupSource": 1 } ],
+ *   "xuserInfo":  [ { "name": "alice", "groupNameList": [ "finance" ] } ] }
+ * </pre>
+ * Groups new to Ranger are created as external (groupSource 1) unless the
+ * snapshot gives their groupSource; the groupSource of existing groups is
+ * changed only when the snapshot gives it.
+ *
+ * The external group memberships of each user in the snapshot are replaced
+ * with its groupNameList; in a delta snapshot, users without groupNameList
+ * keep their memberships. A full snapshot also removes users not in it from
+ * the external groups. Memberships in internal groups, added in Ranger Admin,
+ * are never removed, nor are users and groups, as policies may refer to them.
+ */
+public class RangerUserGroupImporter {
+	private static final Log LOG = LogFactory.getLog(RangerUserGroupImporter.class);
+
+	static final String FIELD_IS_FULL_SNAPSHOT = "isFullSnapshot";
+	static final String FIELD_GROUPS           = "xgroupInfo";
+	static final String FIELD_USERS            = "xuserInfo";
+	static final String FIELD_GROUP_SOURCE     = "groupSource";
+
+	static final int BATCH_SIZE           = 1000;
+	static final int MAX_IN_CLAUSE_VALUES = 1000;
+
+	final RangerDaoManager        daoMgr;
+	final Long                    createdByUserId;
+	final Map<String, VXGroup>    groups           = new LinkedHashMap<String, VXGroup>();
+	final Map<String, VXUser>     users            = new LinkedHashMap<String, VXUser>();
+	final Set<String>             groupsWithSource = new HashSet<String>();
+	final VXUserGroupImportResult result           = new VXUserGroupImportResult();
+
+	/**
+	 * @param createdByUserId portal user recorded as the creator of new rows; may be null
+	 */
+	public RangerUserGroupImporter(RangerDaoManager daoMgr, Long createdByUserId) {
+		this.daoMgr          = daoMgr;
+		this.createdByUserId = createdByUserId;
+	}
+
+	public void readSnapshot(InputStream in) throws IOException {
+		ObjectMapper mapper = new ObjectMapper();
+		JsonParser   parser = mapper.getJsonFactory().createJsonParser(in);
+
+		try {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("snapshot must be a JSON object");
+			}
+
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String    fieldName = parser.getCurrentName();
+				JsonToken token     = parser.nextToken();
+
+				if (FIELD_IS_FULL_SNAPSHOT.equals(fieldName)) {
+					result.setIsFullSnapshot(token == JsonToken.VALUE_TRUE);
+				} else if (FIELD_GROUPS.equals(fieldName) && token == JsonToken.START_ARRAY) {
+					while (parser.nextToken() == JsonToken.START_OBJECT) {
+						JsonNode groupNode = mapper.readTree(parser);
+
+						// VXGroup defaults groupSource to internal; tell it apart from a value in the snapshot
+						addGroup(mapper.readValue(groupNode, VXGroup.class), groupNode.has(FIELD_GROUP_SOURCE));
+					}
+				} else if (FIELD_USERS.equals(fieldName) && token == JsonToken.START_ARRAY) {
+					while (parser.nextToken() == JsonToken.START_OBJECT) {
+						addUser(mapper.readValue(parser, VXUser.class));
+					}
+				} else {
+					parser.skipChildren();
+				}
+			}
+		} finally {
+			parser.close();
+		}
+
+		LOG.info("RangerUserGroupImporter.readSnapshot(): isFullSnapshot=" + result.getIsFullSnapshot() + ", users=" + users.size() + ", groups=" + groups.size());
+	}
+
+	public void addGroup(VXGroup group) {
+		addGroup(group, true);
+	}
+
+	/**
+	 * @param hasGroupSource false when the snapshot doesn't give the groupSource of the group
+	 */
+	public void addGroup(VXGroup group, boolean hasGroupSource) {
+		String name = StringUtils.trim(group.getName());
+
+		if (StringUtils.isNotEmpty(name)) {
+			group.setName(name);
+
+			groups.put(name, group);
+
+			if (hasGroupSource) {
+				groupsWithSource.add(name);
+			} else {
+				groupsWithSource.remove(name);
+			}
+		}
+	}
+
+	public void addUser(VXUser user) {
+		String name = StringUtils.trim(user.getName());
+
+		if (StringUtils.isNotEmpty(name)) {
+			user.setName(name);
+
+			users.put(name, user);
+		}
+	}
+
+	public VXUserGroupImportResult importSnapshot() {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerUserGroupImporter.importSnapshot(isFullSnapshot=" + result.getIsFullSnapshot() + ", users=" + users.size() + ", groups=" + groups.size() + ")");
+		}
+
+		Map<String, XXGroup> groupsInStore = importGroups();
+		Map<String, XXUser>  usersInStore  = importUsers();
+
+		importGroupUsers(groupsInStore, usersInStore);
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerUserGroupImporter.importSnapshot(): " + result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return groups in store, by name, including the ones created; in a full snapshot, all groups
+	 */
+	private Map<String, XXGroup> importGroups() {
+		Set<String> names = new LinkedHashSet<String>(groups.keySet());
+
+		for (VXUser user : users.values()) {
+			if (user.getGroupNameList() != null) {
+				for (String groupName : user.getGroupNameList()) {
+					if (StringUtils.isNotBlank(groupName)) {
+						names.add(groupName.trim());
+					}
+				}
+			}
+		}
+
+		Map<String, XXGroup> ret = new HashMap<String, XXGroup>();
+
+		if (result.getIsFullSnapshot()) {
+			for (XXGroup xGroup : daoMgr.getXXGroup().getAll()) {
+				ret.put(xGroup.getName(), xGroup);
+			}
+		} else {
+			for (List<String> namesBatch : Lists.partition(new ArrayList<String>(names), MAX_IN_CLAUSE_VALUES)) {
+				for (XXGroup xGroup : daoMgr.getXXGroup().findByGroupNames(namesBatch)) {
+					ret.put(xGroup.getName(), xGroup);
+				}
+			}
+		}
+
+		List<XXGroup> toCreate = new ArrayList<XXGroup>();
+		List<XXGroup> toUpdate = new ArrayList<XXGroup>();
+
+		for (String name : names) {
+			VXGroup group          = groups.get(name);
+			XXGroup xGroup         = ret.get(name);
+			boolean hasGroupSource = groupsWithSource.contains(name);
+
+			if (xGroup == null) {
+				xGroup = new XXGroup();
+
+				xGroup.setName(name);
+				xGroup.setIsVisible(RangerCommonEnums.IS_VISIBLE);
+				xGroup.setGroupSource(hasGroupSource ? group.getGroupSource() : RangerCommonEnums.GROUP_EXTERNAL);
+
+				if (group != null) {
+					xGroup.setDescription(group.getDescription());
+					xGroup.setGroupType(group.getGroupType());
+
+					if (group.getIsVisible() != null) {
+						xGroup.setIsVisible(group.getIsVisible());
+					}
+				}
+
+				toCreate.add(populateAuditFields(xGroup, true));
+				ret.put(name, xGroup);
+			} else if (group != null && !(StringUtils.equals(xGroup.getDescription(), group.getDescription()) && (!hasGroupSource || xGroup.getGroupSource() == group.getGroupSource()))) {
+				xGroup.setDescription(group.getDescription());
+
+				if (hasGroupSource) {
+					xGroup.setGroupSource(group.getGroupSource());
+				}
+
+				toUpdate.add(populateAuditFields(xGroup, false));
+			}
+		}
+
+		for (List<XXGroup> batch : Lists.partition(toCreate, BATCH_SIZE)) {
+			daoMgr.getXXGroup().batchCreate(batch);
+		}
+
+		for (List<XXGroup> batch : Lists.partition(toUpdate, BATCH_SIZE)) {
+			daoMgr.getXXGroup().batchUpdate(batch);
+		}
+
+		result.setGroupsCreated(toCreate.size());
+		result.setGroupsUpdated(toUpdate.size());
+
+		clearPersistenceContext();
+
+		LOG.info("RangerUserGroupImporter.importGroups(): created " + toCreate.size() + " and updated " + toUpdate.size() + " of " + names.size() + " groups");
+
+		return ret;
+	}
+
+	/**
+	 * @return users in store, by name, including the ones created
+	 */
+	private Map<String, XXUser> importUsers() {
+		Map<String, XXUser> ret = new HashMap<String, XXUser>();
+
+		if (result.getIsFullSnapshot()) {
+			for (XXUser xUser : daoMgr.getXXUser().getAll()) {
+				ret.put(xUser.getName(), xUser);
+			}
+		} else {
+			for (List<String> namesBatch : Lists.partition(new ArrayList<String>(users.keySet()), MAX_IN_CLAUSE_VALUES)) {
+				for (XXUser xUser : daoMgr.getXXUser().findByUserNames(namesBatch)) {
+					ret.put(xUser.getName(), xUser);
+				}
+			}
+		}
+
+		List<XXUser> toCreate = new ArrayList<XXUser>();
+		List<XXUser> toUpdate = new ArrayList<XXUser>();
+
+		for (VXUser user : users.values()) {
+			XXUser xUser = ret.get(user.getName());
+
+			if (xUser == null) {
+				xUser = new XXUser();
+
+				xUser.setName(user.getName());
+				xUser.setDescription(user.getDescription());
+				xUser.setCredStoreId(user.getCredStoreId());
+
+				if (user.getIsVisible() != null) {
+					xUser.setIsVisible(user.getIsVisible());
+				}
+
+				toCreate.add(populateAuditFields(xUser, true));
+				ret.put(user.getName(), xUser);
+			} else if (!StringUtils.equals(xUser.getDescription(), user.getDescription())) {
+				xUser.setDescription(user.getDescription());
+
+				toUpdate.add(populateAuditFields(xUser, false));
+			}
+		}
+
+		for (List<XXUser> batch : Lists.partition(toCreate, BATCH_SIZE)) {
+			daoMgr.getXXUser().batchCreate(batch);
+		}
+
+		for (List<XXUser> batch : Lists.partition(toUpdate, BATCH_SIZE)) {
+			daoMgr.getXXUser().batchUpdate(batch);
+		}
+
+		result.setUsersCreated(toCreate.size());
+		result.setUsersUpdated(toUpdate.size());
+
+		clearPersistenceContext();
+
+		LOG.info("RangerUserGroupImporter.importUsers(): created " + toCreate.size() + " and updated " + toUpdate.size() + " of " + users.size() + " users");
+
+		return ret;
+	}
+
+	private void importGroupUsers(Map<String, XXGroup> groupsInStore, Map<String, XXUser> usersInStore) {
+		boolean              isFullSnapshot = result.getIsFullSnapshot();
+		Map<Long, Set<Long>> groupIdsOfUser = new HashMap<Long, Set<Long>>();
+		Map<Long, String>    groupNames     = new HashMap<Long, String>();
+
+		for (XXGroup xGroup : groupsInStore.values()) {
+			groupNames.put(xGroup.getId(), xGroup.getName());
+		}
+
+		// memberships of the users in the snapshot, as given by it
+		for (VXUser user : users.values()) {
+			if (user.getGroupNameList() == null && !isFullSnapshot) {
+				continue;
+			}
+
+			Set<Long> groupIds = new HashSet<Long>();
+
+			if (user.getGroupNameList() != null) {
+				for (String groupName : user.getGroupNameList()) {
+					XXGroup xGroup = StringUtils.isNotBlank(groupName) ? groupsInStore.get(groupName.trim()) : null;
+
+					if (xGroup != null) {
+						groupIds.add(xGroup.getId());
+					}
+				}
+			}
+
+			groupIdsOfUser.put(usersInStore.get(user.getName()).getId(), groupIds);
+		}
+
+		List<Object[]> memberships = new ArrayList<Object[]>();
+
+		if (isFullSnapshot) {
+			memberships.addAll(daoMgr.getXXGroupUser().findAllMemberships());
+		} else {
+			for (List<Long> userIdsBatch : Lists.partition(new ArrayList<Long>(groupIdsOfUser.keySet()), MAX_IN_CLAUSE_VALUES)) {
+				memberships.addAll(daoMgr.getXXGroupUser().findMembershipsByUserIds(userIdsBatch));
+			}
+		}
+
+		List<Long>           toDelete = new ArrayList<Long>();
+		Map<Long, Set<Long>> existing = new HashMap<Long, Set<Long>>();
+
+		for (Object[] membership : memberships) {
+			Long      id          = (Long) membership[0];
+			Long      userId      = (Long) membership[1];
+			Long      groupId     = (Long) membership[2];
+			Integer   groupSource = (Integer) membership[3];
+			Set<Long> groupIds    = groupIdsOfUser.get(userId);
+			boolean   isStale     = false;
+
+			// only memberships in the synced groups are replaced; internal groups are managed in Ranger Admin
+			if (groupSource != null && groupSource.intValue() == RangerCommonEnums.GROUP_EXTERNAL) {
+				if (groupIds != null) {
+					isStale = !groupIds.contains(groupId);
+				} else {
+					// in a full snapshot, users not in it are no longer members of the synced groups
+					isStale = isFullSnapshot;
+				}
+			}
+
+			Set<Long> userGroupIds = existing.get(userId);
+
+			if (userGroupIds == null) {
+				userGroupIds = new HashSet<Long>();
+
+				existing.put(userId, userGroupIds);
+			}
+
+			// duplicate mappings are removed as well
+			if (isStale || !userGroupIds.add(groupId)) {
+				toDelete.add(id);
+			}
+		}
+
+		List<XXGroupUser> toCreate = new ArrayList<XXGroupUser>();
+
+		for (Map.Entry<Long, Set<Long>> entry : groupIdsOfUser.entrySet()) {
+			Long      userId       = entry.getKey();
+			Set<Long> userGroupIds = existing.get(userId);
+
+			for (Long groupId : entry.getValue()) {
+				if (userGroupIds == null || !userGroupIds.contains(groupId)) {
+					XXGroupUser xGroupUser = new XXGroupUser();
+
+					xGroupUser.setName(groupNames.get(groupId));
+					xGroupUser.setParentGroupId(groupId);
+					xGroupUser.setUserId(userId);
+
+					toCreate.add(populateAuditFields(xGroupUser, true));
+				}
+			}
+		}
+
+		for (List<XXGroupUser> batch : Lists.partition(toCreate, BATCH_SIZE)) {
+			daoMgr.getXXGroupUser().batchCreate(batch);
+
+			clearPersistenceContext();
+		}
+
+		for (List<Long> batch : Lists.partition(toDelete, MAX_IN_CLAUSE_VALUES)) {
+			daoMgr.getXXGroupUser().deleteByIds(batch);
+		}
+
+		result.setGroupUsersCreated(toCreate.size());
+		result.setGroupUsersDeleted(toDelete.size());
+
+		LOG.info("RangerUserGroupImporter.importGroupUsers(): created " + toCreate.size() + " and deleted " + toDelete.size() + " group-user mappings");
+	}
+
+	private <T extends XXDBBase> T populateAuditFields(T obj, boolean isCreate) {
+		Date now = DateUtil.getUTCDate();
+
+		if (isCreate) {
+			obj.setCreateTime(now);
+
+			if (createdByUserId != null) {
+				obj.setAddedByUserId(createdByUserId);
+			}
+		}
+
+		obj.setUpdateTime(now);
+
+		if (createdByUserId != null) {
+			obj.setUpdatedByUserId(createdByUserId);
+		}
+
+		return obj;
+	}
+
+	// written rows are flushed; clearing keeps the persistence context from growing with the import
+	private void clearPersistenceContext() {
+		daoMgr.getEntityManager().clear();
+	}
+}
@@ -22,7 +22,6 @@ package org.apache.ranger.biz;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -32,15 +31,17 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
 import java.util.StringTokenizer;
-import java.io.ByteArrayOutputStream;
+import java.util.TreeMap;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.UnknownHostException;
 import java.text.SimpleDateFormat;
 
 import javax.annotation.PostConstruct;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -62,6 +63,8 @@ import org.apache.ranger.common.PropertiesUtil;
 import org.apache.ranger.common.RESTErrorUtil;
 import org.apache.ranger.common.RangerConstants;
 import org.apache.ranger.common.RangerFactory;
+import org.apache.ranger.common.RangerPolicySearchIndex;
+import org.apache.ranger.common.RangerPolicySignatureMap;
 import org.apache.ranger.common.RangerServicePoliciesCache;
 import org.apache.ranger.common.RangerVersionInfo;
 import org.apache.ranger.common.StringUtil;
@@ -74,6 +77,7 @@ import org.apache.ranger.db.XXDataMaskTypeDefDao;
 import org.apache.ranger.db.XXEnumDefDao;
 import org.apache.ranger.db.XXEnumElementDefDao;
 import org.apache.ranger.db.XXPolicyConditionDefDao;
+import org.apache.ranger.db.XXPolicyDao;
 import org.apache.ranger.db.XXPolicyItemAccessDao;
 import org.apache.ranger.db.XXPolicyItemConditionDao;
 import org.apache.ranger.db.XXPolicyItemDao;
@@ -98,6 +102,7 @@ import org.apache.ranger.entity.XXEnumDef;
 import org.apache.ranger.entity.XXEnumElementDef;
 import org.apache.ranger.entity.XXGroup;
 import org.apache.ranger.entity.XXPolicy;
+import org.apache.ranger.entity.XXPolicyChangeLog;
 import org.apache.ranger.entity.XXPolicyConditionDef;
 import org.apache.ranger.entity.XXPolicyItem;
 import org.apache.ranger.entity.XXPolicyItemAccess;
@@ -170,16 +175,18 @@ import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionTemplate;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.codehaus.jettison.json.JSONException;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 @Component
 public class ServiceDBStore extends AbstractServiceStore {
@@ -204,6 +211,13 @@ public class ServiceDBStore extends AbstractServiceStore {
 	private static final String USER_NAME = "Exported by";
 	private static final String RANGER_VERSION = "Ranger apache version";
 	private static final String TIMESTAMP = "Export time";
+
+	private static final int POLICY_SEARCH_BATCH_SIZE        = 1000;
+	private static final int EXCEL_ROW_ACCESS_WINDOW_SIZE    = 100;
+	private static final int POLICY_IMPORT_BATCH_SIZE        = 500;
+	private static final int MAX_LOGGED_POLICY_CHANGES       = 1000;
+
+	private static final String EXCEL_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
 	
 	static {
 		try {
@@ -261,6 +275,9 @@ public class ServiceDBStore extends AbstractServiceStore {
 
     @Autowired
     RangerFactory factory;
+
+    @Autowired
+    RangerServiceVersionNotifier serviceVersionNotifier;
     
     @Autowired
     JSONUtil jsonUtil;
@@ -1536,7 +1553,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 			service = svcService.update(service);
 
 			if (hasTagServiceValueChanged || hasIsEnabledChanged) {
-				updatePolicyVersion(service, false);
+				updatePolicyVersion(service, false, null);
 			}
 		}
 
@@ -1644,6 +1661,17 @@ public class ServiceDBStore extends AbstractServiceStore {
 
 	@Override
 	public List<RangerPolicy> getPoliciesByResourceSignature(String serviceName, String policySignature, Boolean isPolicyEnabled) throws Exception {
+		XXServiceVersionInfo serviceVersionInfo = daoMgr.getXXServiceVersionInfo().findByServiceName(serviceName);
+
+		if (serviceVersionInfo != null) {
+			RangerPolicySignatureMap signatureMap = RangerServicePoliciesCache.getInstance().getPolicySignatureMap(serviceName);
+
+			// cached policies are used only when they are of the version seen by this transaction; policy
+			// writes update the version in the same transaction, so the map never misses a policy
+			if (signatureMap != null && serviceVersionInfo.getPolicyVersion() != null && serviceVersionInfo.getPolicyVersion().equals(signatureMap.getPolicyVersion())) {
+				return signatureMap.getPolicies(policySignature, isPolicyEnabled);
+			}
+		}
 
 		List<XXPolicy> xxPolicies = daoMgr.getXXPolicy().findByResourceSignatureByPolicyStatus(serviceName, policySignature, isPolicyEnabled);
 		List<RangerPolicy> policies = new ArrayList<RangerPolicy>(xxPolicies.size());
@@ -1807,7 +1835,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 		createNewPolicyItemsForPolicy(policy, xCreatedPolicy, denyExceptions, xServiceDef, RangerPolicyItemEvaluator.POLICY_ITEM_TYPE_DENY_EXCEPTIONS);
 		createNewDataMaskPolicyItemsForPolicy(policy, xCreatedPolicy, dataMaskItems, xServiceDef, RangerPolicyItemEvaluator.POLICY_ITEM_TYPE_DATAMASK);
 		createNewRowFilterPolicyItemsForPolicy(policy, xCreatedPolicy, rowFilterItems, xServiceDef, RangerPolicyItemEvaluator.POLICY_ITEM_TYPE_ROWFILTER);
-		handlePolicyUpdate(service, true);
+		handlePolicyUpdate(service, true, Collections.singletonList(xCreatedPolicy.getId()));
 		RangerPolicy createdPolicy = policyService.getPopulatedViewObject(xCreatedPolicy);
 		dataHistService.createObjectDataHistory(createdPolicy, RangerDataHistService.ACTION_CREATE);
 
@@ -1817,6 +1845,137 @@ public class ServiceDBStore extends AbstractServiceStore {
 		return createdPolicy;
 	}
 
+	/**
+	 * Creates the given policies, as createPolicy() does for each, with rows of
+	 * their resources and policy items written in batches; the policy version of
+	 * each service is updated once, after all its policies are created.
+	 *
+	 * @return the created policies
+	 */
+	public List<RangerPolicy> createPolicies(List<RangerPolicy> policies) throws Exception {
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("==> ServiceDBStore.createPolicies(count=" + policies.size() + ")");
+		}
+
+		List<RangerPolicy>         ret           = new ArrayList<RangerPolicy>(policies.size());
+		Map<String, RangerService> services      = new LinkedHashMap<String, RangerService>();
+		Map<String, XXServiceDef>  serviceDefs   = new HashMap<String, XXServiceDef>();
+		Map<Long, List<Long>>      policyIds     = new HashMap<Long, List<Long>>();
+		RangerPolicyBatchWriter    writer        = new RangerPolicyBatchWriter(daoMgr, rangerAuditFields);
+		List<XXPolicy>             batchPolicies = new ArrayList<XXPolicy>();
+
+		for(RangerPolicy policy : policies) {
+			RangerService service = services.get(policy.getService());
+
+			if(service == null) {
+				service = getServiceByName(policy.getService());
+
+				if(service == null) {
+					throw new Exception("service does not exist - name=" + policy.getService());
+				}
+
+				services.put(service.getName(), service);
+			}
+
+			XXServiceDef xServiceDef = serviceDefs.get(service.getType());
+
+			if(xServiceDef == null) {
+				xServiceDef = daoMgr.getXXServiceDef().findByName(service.getType());
+
+				if(xServiceDef == null) {
+					throw new Exception("service-def does not exist - name=" + service.getType());
+				}
+
+				serviceDefs.put(service.getType(), xServiceDef);
+			}
+
+			XXPolicy existing = daoMgr.getXXPolicy().findByNameAndServiceId(policy.getName(), service.getId());
+
+			if(existing != null) {
+				throw new Exception("policy already exists: ServiceName=" + policy.getService() + "; PolicyName=" + policy.getName() + ". ID=" + existing.getId());
+			}
+
+			policy.setVersion(Long.valueOf(1));
+			updatePolicySignature(policy);
+
+			RangerPolicy createdPolicy;
+
+			if(populateExistingBaseFields) {
+				assignedIdPolicyService.setPopulateExistingBaseFields(true);
+				daoMgr.getXXPolicy().setIdentityInsert(true);
+
+				createdPolicy = assignedIdPolicyService.create(policy);
+
+				daoMgr.getXXPolicy().setIdentityInsert(false);
+				daoMgr.getXXPolicy().updateSequence();
+				assignedIdPolicyService.setPopulateExistingBaseFields(false);
+			} else {
+				createdPolicy = policyService.create(policy);
+			}
+
+			XXPolicy xCreatedPolicy = daoMgr.getXXPolicy().getById(createdPolicy.getId());
+
+			writer.add(policy, xCreatedPolicy, xServiceDef);
+			batchPolicies.add(xCreatedPolicy);
+
+			List<Long> servicePolicyIds = policyIds.get(service.getId());
+
+			if(servicePolicyIds == null) {
+				servicePolicyIds = new ArrayList<Long>();
+
+				policyIds.put(service.getId(), servicePolicyIds);
+			}
+
+			servicePolicyIds.add(xCreatedPolicy.getId());
+
+			if(batchPolicies.size() >= POLICY_IMPORT_BATCH_SIZE) {
+				ret.addAll(completePolicyCreation(writer, batchPolicies));
+
+				LOG.info("ServiceDBStore.createPolicies(): created " + ret.size() + " of " + policies.size() + " policies");
+			}
+		}
+
+		ret.addAll(completePolicyCreation(writer, batchPolicies));
+
+		for(RangerService service : services.values()) {
+			List<Long> servicePolicyIds = policyIds.get(service.getId());
+
+			// too many changes to be worth recording individually; the service's policies are to be read in full
+			handlePolicyUpdate(service, true, servicePolicyIds != null && servicePolicyIds.size() > MAX_LOGGED_POLICY_CHANGES ? null : servicePolicyIds);
+		}
+
+		LOG.info("ServiceDBStore.createPolicies(): created " + ret.size() + " policies in " + services.size() + " services");
+
+		return ret;
+	}
+
+	private List<RangerPolicy> completePolicyCreation(RangerPolicyBatchWriter writer, List<XXPolicy> xPolicies) throws Exception {
+		List<RangerPolicy> ret        = new ArrayList<RangerPolicy>(xPolicies.size());
+		List<XXTrxLog>     trxLogList = new ArrayList<XXTrxLog>();
+
+		writer.flush();
+
+		for(XXPolicy xPolicy : xPolicies) {
+			RangerPolicy createdPolicy = policyService.getPopulatedViewObject(xPolicy);
+
+			dataHistService.createObjectDataHistory(createdPolicy, RangerDataHistService.ACTION_CREATE);
+
+			List<XXTrxLog> policyTrxLogs = policyService.getTransactionLog(createdPolicy, RangerPolicyService.OPERATION_CREATE_CONTEXT);
+
+			if(policyTrxLogs != null) {
+				trxLogList.addAll(policyTrxLogs);
+			}
+
+			ret.add(createdPolicy);
+		}
+
+		bizUtil.createTrxLog(trxLogList);
+
+		xPolicies.clear();
+
+		return ret;
+	}
+
 	@Override
 	public RangerPolicy updatePolicy(RangerPolicy policy) throws Exception {
 		if(LOG.isDebugEnabled()) {
@@ -1889,7 +2048,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 		createNewDataMaskPolicyItemsForPolicy(policy, newUpdPolicy, dataMaskPolicyItems, xServiceDef, RangerPolicyItemEvaluator.POLICY_ITEM_TYPE_DATAMASK);
 		createNewRowFilterPolicyItemsForPolicy(policy, newUpdPolicy, rowFilterItems, xServiceDef, RangerPolicyItemEvaluator.POLICY_ITEM_TYPE_ROWFILTER);
 
-		handlePolicyUpdate(service, isTagVersionUpdateNeeded);
+		handlePolicyUpdate(service, isTagVersionUpdateNeeded, Collections.singletonList(policy.getId()));
 		RangerPolicy updPolicy = policyService.getPopulatedViewObject(newUpdPolicy);
 		dataHistService.createObjectDataHistory(updPolicy, RangerDataHistService.ACTION_UPDATE);
 		
@@ -1933,7 +2092,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 		deleteExistingPolicyResources(policy);
 		
 		policyService.delete(policy);
-		handlePolicyUpdate(service, true);
+		handlePolicyUpdate(service, true, Collections.singletonList(policyId));
 		
 		dataHistService.createObjectDataHistory(policy, RangerDataHistService.ACTION_DELETE);
 		
@@ -1965,7 +2124,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 			LOG.debug("==> ServiceDBStore.getPoliciesInExcel()");
 		}
 		String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
-		String excelFileName = "Ranger_Policies_"+timeStamp+".xls";
+		String excelFileName = "Ranger_Policies_"+timeStamp+".xlsx";
 		writeExcel(policies, excelFileName, response);
 	}
 
@@ -1974,14 +2133,16 @@ public class ServiceDBStore extends AbstractServiceStore {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> ServiceDBStore.getPoliciesInCSV()");
 		}
-		ServletOutputStream out = null;
+		Writer out = null;
 		String CSVFileName = null;
 		try {
 			String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
 			CSVFileName = "Ranger_Policies_" + timeStamp + ".csv";
-			out = response.getOutputStream();
-			StringBuilder sb = writeCSV(policies, CSVFileName, response);
-			IOUtils.write(sb.toString(), out, "UTF-8");
+			response.setContentType("text/csv");
+			response.setHeader("Content-Disposition", "attachment; filename=" + CSVFileName);
+			response.setStatus(HttpServletResponse.SC_OK);
+			out = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), "UTF-8"));
+			writeCSV(policies, out);
 		} catch (Exception e) {
 			LOG.error("Error while generating report file " + CSVFileName, e);
 			e.printStackTrace();
@@ -2013,14 +2174,6 @@ public class ServiceDBStore extends AbstractServiceStore {
 
 		RangerPolicyList policyList = searchRangerPolicies(filter);
 
-		if (LOG.isDebugEnabled()) {
-			LOG.debug("before filter: count=" + policyList.getListSize());
-		}
-		predicateUtil.applyFilter(policyList.getPolicies(), filter);
-		if (LOG.isDebugEnabled()) {
-			LOG.debug("after filter: count=" + policyList.getListSize());
-		}
-
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("<== ServiceDBStore.getPaginatedPolicies(" + filter + "): count=" + policyList.getListSize());
 		}
@@ -2105,14 +2258,23 @@ public class ServiceDBStore extends AbstractServiceStore {
 
 		List<RangerPolicy> ret = null;
 
-		ServicePolicies servicePolicies = RangerServicePoliciesCache.getInstance().getServicePolicies(service.getName(), service.getId(), this);
-		List<RangerPolicy> policies = servicePolicies != null ? servicePolicies.getPolicies() : null;
+		if(RangerPolicySearchIndex.hasIndexedParams(filter)) {
+			RangerPolicySearchIndex searchIndex = RangerServicePoliciesCache.getInstance().getPolicySearchIndex(service.getName(), service.getId(), this);
 
-		if(policies != null && filter != null) {
-			ret = new ArrayList<RangerPolicy>(policies);
-			predicateUtil.applyFilter(ret, filter);
+			if(searchIndex != null) {
+				ret = searchIndex.getCandidatePolicies(filter);
+				predicateUtil.applyFilter(ret, filter);
+			}
 		} else {
-			ret = policies;
+			ServicePolicies servicePolicies = RangerServicePoliciesCache.getInstance().getServicePolicies(service.getName(), service.getId(), this);
+			List<RangerPolicy> policies = servicePolicies != null ? servicePolicies.getPolicies() : null;
+
+			if(policies != null && filter != null) {
+				ret = new ArrayList<RangerPolicy>(policies);
+				predicateUtil.applyFilter(ret, filter);
+			} else {
+				ret = policies;
+			}
 		}
 
 		if(LOG.isDebugEnabled()) {
@@ -2122,6 +2284,106 @@ public class ServiceDBStore extends AbstractServiceStore {
 		return ret;
 	}
 
+	private boolean isSameVersion(RangerServiceDef serviceDef, RangerServiceDef cachedServiceDef) {
+		return cachedServiceDef != null && serviceDef.getId().equals(cachedServiceDef.getId())
+				&& serviceDef.getVersion() != null && serviceDef.getVersion().equals(cachedServiceDef.getVersion());
+	}
+
+	/*
+	 * Re-reads only the policies recorded in the policy change-log after cachedVersion upto
+	 * version, and takes the others from cachedPolicies. All policies are read when the log
+	 * doesn't have every version in between, or when the service itself changed
+	 */
+	List<RangerPolicy> getServicePoliciesFromDb(XXService service, List<RangerPolicy> cachedPolicies, Long cachedVersion, Long version) throws Exception {
+		Set<Long> changedPolicyIds = cachedPolicies == null ? null : getChangedPolicyIds(service, cachedVersion, version);
+
+		// a large change is read faster in one go
+		if (changedPolicyIds == null || changedPolicyIds.size() > Math.max(cachedPolicies.size() / 2, 10)) {
+			return getServicePoliciesFromDb(service);
+		}
+
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("==> ServiceDBStore.getServicePoliciesFromDb(" + service.getName() + ", " + cachedVersion + ", " + version + ")");
+		}
+
+		XXPolicyDao             policyDao = daoMgr.getXXPolicy();
+		Map<Long, RangerPolicy> policyMap = new TreeMap<Long, RangerPolicy>();
+
+		for (RangerPolicy policy : cachedPolicies) {
+			if (!changedPolicyIds.contains(policy.getId())) {
+				policyMap.put(policy.getId(), policy);
+			}
+		}
+
+		RangerPolicyRetriever policyRetriever = new RangerPolicyRetriever(daoMgr);
+
+		for (Long policyId : changedPolicyIds) {
+			XXPolicy xPolicy = policyDao.getById(policyId);
+
+			// deleted policies are not found
+			if (xPolicy != null && service.getId().equals(xPolicy.getService())) {
+				RangerPolicy policy = policyRetriever.getPolicy(xPolicy, service);
+
+				if (policy != null) {
+					policyMap.put(policy.getId(), policy);
+				}
+			}
+		}
+
+		Set<Long>                policyIds = changedPolicyIds.isEmpty() ? null : new HashSet<Long>(policyDao.findIdsByServiceId(service.getId()));
+		final List<RangerPolicy> ret;
+
+		if (policyIds == null || policyMap.keySet().equals(policyIds)) {
+			ret = new ArrayList<RangerPolicy>(policyMap.values());
+		} else {
+			LOG.warn("getServicePoliciesFromDb(" + service.getName() + "): " + policyMap.size() + " policies after incremental read, " + policyIds.size() + " in database. Reading all policies");
+
+			ret = getServicePoliciesFromDb(service);
+		}
+
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("<== ServiceDBStore.getServicePoliciesFromDb(" + service.getName() + ", " + cachedVersion + ", " + version + "): count=" + ret.size() + ", changed=" + changedPolicyIds.size());
+		}
+
+		return ret;
+	}
+
+	/*
+	 * @return ids of the policies changed after fromVersion upto toVersion, as recorded in
+	 *         the policy change-log; null if all policies of the service are to be read
+	 */
+	private Set<Long> getChangedPolicyIds(XXService service, Long fromVersion, Long toVersion) {
+		if (fromVersion == null || toVersion == null || toVersion < fromVersion) {
+			return null;
+		}
+
+		Set<Long> ret      = new HashSet<Long>();
+		Set<Long> versions = new HashSet<Long>();
+
+		for (XXPolicyChangeLog changeLog : daoMgr.getXXPolicyChangeLog().findByServiceIdAndVersions(service.getId(), fromVersion, toVersion)) {
+			versions.add(changeLog.getServicePoliciesVersion());
+
+			Integer changeType = changeLog.getChangeType();
+
+			if (changeType != null && changeType == XXPolicyChangeLog.CHANGE_TYPE_POLICY_UPDATE && changeLog.getPolicyId() != null) {
+				ret.add(changeLog.getPolicyId());
+			} else if (changeType == null || changeType != XXPolicyChangeLog.CHANGE_TYPE_TAG_POLICIES_UPDATE) {
+				return null;
+			}
+		}
+
+		// versions made before the change-log existed, purged, or by an older Ranger Admin
+		if (versions.size() != (toVersion - fromVersion)) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("getChangedPolicyIds(" + service.getName() + "): change-log has " + versions.size() + " of " + (toVersion - fromVersion) + " versions");
+			}
+
+			return null;
+		}
+
+		return ret;
+	}
+
 	private List<RangerPolicy> getServicePoliciesFromDb(XXService service) throws Exception {
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("==> ServiceDBStore.getServicePoliciesFromDb(" + service.getName() + ")");
@@ -2209,8 +2471,21 @@ public class ServiceDBStore extends AbstractServiceStore {
 
 	@Override
 	public ServicePolicies getServicePolicies(String serviceName) throws Exception {
+		return getServicePolicies(serviceName, (ServicePolicies) null);
+	}
+
+	/**
+	 * Returns the policies of the service, re-reading from the database only
+	 * the policies changed since the versions of cachedPolicies, as recorded
+	 * in the policy change-log. Other policies are taken from cachedPolicies,
+	 * which is not modified. All policies are read when cachedPolicies is
+	 * null, when the log misses any of the versions, when the service or its
+	 * service-def changed, or when the result doesn't match the policy ids in
+	 * the database.
+	 */
+	public ServicePolicies getServicePolicies(String serviceName, ServicePolicies cachedPolicies) throws Exception {
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("==> ServiceDBStore.getServicePolicies(" + serviceName  + ")");
+			LOG.debug("==> ServiceDBStore.getServicePolicies(" + serviceName  + ", " + (cachedPolicies == null ? null : cachedPolicies.getPolicyVersion()) + ")");
 		}
 
 		ServicePolicies ret = null;
@@ -2259,13 +2534,27 @@ public class ServiceDBStore extends AbstractServiceStore {
 					tagPolicies.setServiceName(tagServiceDbObj.getName());
 					tagPolicies.setPolicyVersion(tagServiceVersionInfoDbObj == null ? null : tagServiceVersionInfoDbObj.getPolicyVersion());
 					tagPolicies.setPolicyUpdateTime(tagServiceVersionInfoDbObj == null ? null : tagServiceVersionInfoDbObj.getPolicyUpdateTime());
-					tagPolicies.setPolicies(getServicePoliciesFromDb(tagServiceDbObj));
+
+					ServicePolicies.TagPolicies cachedTagPolicies = cachedPolicies == null ? null : cachedPolicies.getTagPolicies();
+					List<RangerPolicy>          cachedTagPolicyList = null;
+
+					if (cachedTagPolicies != null && tagServiceDbObj.getId().equals(cachedTagPolicies.getServiceId()) && isSameVersion(tagServiceDef, cachedTagPolicies.getServiceDef())) {
+						cachedTagPolicyList = cachedTagPolicies.getPolicies();
+					}
+
+					tagPolicies.setPolicies(getServicePoliciesFromDb(tagServiceDbObj, cachedTagPolicyList, cachedTagPolicyList == null ? null : cachedTagPolicies.getPolicyVersion(), tagPolicies.getPolicyVersion()));
 					tagPolicies.setServiceDef(tagServiceDef);
 					tagPolicies.setAuditMode(auditMode);
 				}
 			}
 
-			policies = getServicePoliciesFromDb(serviceDbObj);
+			List<RangerPolicy> cachedPolicyList = null;
+
+			if (cachedPolicies != null && isSameVersion(serviceDef, cachedPolicies.getServiceDef())) {
+				cachedPolicyList = cachedPolicies.getPolicies();
+			}
+
+			policies = getServicePoliciesFromDb(serviceDbObj, cachedPolicyList, cachedPolicyList == null ? null : cachedPolicies.getPolicyVersion(), serviceVersionInfoDbObj == null ? null : serviceVersionInfoDbObj.getPolicyVersion());
 
 		} else {
 			policies = new ArrayList<RangerPolicy>();
@@ -2654,11 +2943,15 @@ public class ServiceDBStore extends AbstractServiceStore {
 		return validConfigs;
 	}
 
-	private void handlePolicyUpdate(RangerService service, boolean isTagVersionUpdateNeeded) throws Exception {
-		updatePolicyVersion(service, isTagVersionUpdateNeeded);
+	private void handlePolicyUpdate(RangerService service, boolean isTagVersionUpdateNeeded, Collection<Long> policyIds) throws Exception {
+		updatePolicyVersion(service, isTagVersionUpdateNeeded, policyIds);
 	}
 
-	private void updatePolicyVersion(RangerService service, boolean isTagVersionUpdateNeeded) throws Exception {
+	/*
+	 * @param policyIds policies of the service that were created, updated or deleted; null if the
+	 *                  service itself changed. Recorded in the policy change-log with the new version
+	 */
+	private void updatePolicyVersion(RangerService service, boolean isTagVersionUpdateNeeded, Collection<Long> policyIds) throws Exception {
 		if(service == null || service.getId() == null) {
 			return;
 		}
@@ -2697,6 +2990,8 @@ public class ServiceDBStore extends AbstractServiceStore {
 			serviceVersionInfoDao.create(serviceVersionInfoDbObj);
 		}
 
+		serviceVersionInfoDao.addPolicyChangeLogs(serviceVersionInfoDbObj, policyIds != null ? XXPolicyChangeLog.CHANGE_TYPE_POLICY_UPDATE : XXPolicyChangeLog.CHANGE_TYPE_SERVICE_UPDATE, policyIds);
+
 		// if this is a tag service, update all services that refer to this tag service
 		// so that next policy-download from plugins will get updated tag policies
 		boolean isTagService = serviceDbObj.getType() == EmbeddedServiceDefsUtil.instance().getTagServiceDefId();
@@ -2731,9 +3026,13 @@ public class ServiceDBStore extends AbstractServiceStore {
 						}
 						serviceVersionInfoDao.create(serviceVersionInfoDbObj);
 					}
+
+					serviceVersionInfoDao.addPolicyChangeLogs(serviceVersionInfoDbObj, XXPolicyChangeLog.CHANGE_TYPE_TAG_POLICIES_UPDATE, null);
 				}
 			}
 		}
+
+		serviceVersionNotifier.onVersionUpdate();
 	}
 
 	private XXPolicyItem createNewPolicyItemForPolicy(RangerPolicy policy, XXPolicy xPolicy, RangerPolicyItem policyItem, XXServiceDef xServiceDef, int itemOrder, int policyItemType) throws Exception {
@@ -3090,6 +3389,8 @@ public class ServiceDBStore extends AbstractServiceStore {
 					serviceVersionInfoDao.create(serviceVersionInfo);
 				}
 
+				serviceVersionInfoDao.addPolicyChangeLogs(serviceVersionInfo, XXPolicyChangeLog.CHANGE_TYPE_SERVICE_UPDATE, null);
+
 				if(isTagServiceDef) {
 					List<XXService> referrringServices = serviceDao.findByTagServiceId(service.getId());
 
@@ -3112,6 +3413,8 @@ public class ServiceDBStore extends AbstractServiceStore {
 
 								serviceVersionInfoDao.create(serviceVersionInfo);
 							}
+
+							serviceVersionInfoDao.addPolicyChangeLogs(serviceVersionInfo, XXPolicyChangeLog.CHANGE_TYPE_SERVICE_UPDATE, null);
 						}
 					}
 				}
@@ -3156,10 +3459,12 @@ public class ServiceDBStore extends AbstractServiceStore {
 
 	private void writeExcel(List<RangerPolicy> policies, String excelFileName, HttpServletResponse response)
 			throws IOException {
-		Workbook workbook = null;
+		SXSSFWorkbook workbook = null;
 		OutputStream outStream = null;
 		try {
-			workbook = new HSSFWorkbook();
+			// rows beyond the window are flushed to a temporary file, so that
+			// the workbook doesn't hold all rows in memory
+			workbook = new SXSSFWorkbook(EXCEL_ROW_ACCESS_WINDOW_SIZE);
 			Sheet sheet = workbook.createSheet();
 			createHeaderRow(sheet);
 			int rowCount = 0;
@@ -3219,16 +3524,12 @@ public class ServiceDBStore extends AbstractServiceStore {
 					}	
 				}
 			}
-			ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
-			workbook.write(outByteStream);
-			byte[] outArray = outByteStream.toByteArray();
-			response.setContentType("application/ms-excel");
-			response.setContentLength(outArray.length);
+			response.setContentType(EXCEL_CONTENT_TYPE);
 			response.setHeader("Expires:", "0");
 			response.setHeader("Content-Disposition", "attachment; filename=" + excelFileName);
 			response.setStatus(HttpServletResponse.SC_OK);
 			outStream = response.getOutputStream();
-			outStream.write(outArray);
+			workbook.write(outStream);
 			outStream.flush();
 		} catch (IOException ex) {
 			LOG.error("Failed to create report file " + excelFileName, ex);
@@ -3239,13 +3540,13 @@ public class ServiceDBStore extends AbstractServiceStore {
 				outStream.close();
 			}
 			if (workbook != null) {
+				workbook.dispose();
 				workbook.close();
 			}
 		}
 	}
 
-	private StringBuilder writeCSV(List<RangerPolicy> policies, String cSVFileName, HttpServletResponse response) {
-		response.setContentType("text/csv");
+	private void writeCSV(List<RangerPolicy> policies, Writer out) throws IOException {
 		final String COMMA_DELIMITER = "|";
 		final String LINE_SEPARATOR = "\n";
 		final String FILE_HEADER = "ID|Name|Resources|Groups|Users|Accesses|Service Type|Status";
@@ -3253,6 +3554,10 @@ public class ServiceDBStore extends AbstractServiceStore {
 		csvBuffer.append(FILE_HEADER);
 		csvBuffer.append(LINE_SEPARATOR);
 		for (RangerPolicy policy : policies) {
+			// lines are written out per policy, rather than building the whole file
+			out.append(csvBuffer);
+			csvBuffer.setLength(0);
+
 			String policyStatus = "";
 			String policyName = "";
 			String ServiceType = "";
@@ -3488,9 +3793,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 				}
 			}
 		}
-		response.setHeader("Content-Disposition", "attachment; filename=" + cSVFileName);
-		response.setStatus(HttpServletResponse.SC_OK);
-		return csvBuffer;
+		out.append(csvBuffer);
 	}
 	
 	public void putMetaDataInfo(RangerExportPolicyList rangerExportPolicyList){
@@ -3510,18 +3813,35 @@ public class ServiceDBStore extends AbstractServiceStore {
 			HttpServletResponse response) throws JSONException, IOException {
 		response.setContentType("text/json");
 		response.setHeader("Content-Disposition", "attachment; filename="+ jsonFileName);
-		ServletOutputStream out = null;
+		JsonWriter out = null;
 		RangerExportPolicyList rangerExportPolicyList = new RangerExportPolicyList();
 		putMetaDataInfo(rangerExportPolicyList);
-		rangerExportPolicyList.setPolicies(policies);
-		
+
 		Gson gson = new Gson();
-		String json = gson.toJson(rangerExportPolicyList, RangerExportPolicyList.class);
 
 		try {
-			out = response.getOutputStream();
 			response.setStatus(HttpServletResponse.SC_OK);
-			IOUtils.write(json, out, "UTF-8");
+			out = new JsonWriter(new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), "UTF-8")));
+
+			// writes RangerExportPolicyList, serializing its policies one at a
+			// time into the response instead of into a single JSON string
+			JsonObject exportPolicyList = gson.toJsonTree(rangerExportPolicyList, RangerExportPolicyList.class).getAsJsonObject();
+
+			out.beginObject();
+			for (Entry<String, JsonElement> member : exportPolicyList.entrySet()) {
+				out.name(member.getKey());
+
+				if ("policies".equals(member.getKey())) {
+					out.beginArray();
+					for (RangerPolicy policy : policies) {
+						gson.toJson(policy, RangerPolicy.class, out);
+					}
+					out.endArray();
+				} else {
+					gson.toJson(member.getValue(), out);
+				}
+			}
+			out.endObject();
 		} catch (Exception e) {
 			LOG.error("Error while exporting json file " + jsonFileName, e);
 		} finally {
@@ -3727,87 +4047,150 @@ public class ServiceDBStore extends AbstractServiceStore {
 
 
 	private RangerPolicyList searchRangerPolicies(SearchFilter searchFilter) {
-		List<RangerPolicy> policyList = new ArrayList<RangerPolicy>();
-		RangerPolicyList retList = new RangerPolicyList();
-		Map<Long,RangerPolicy> policyMap=new HashMap<Long,RangerPolicy>();
-		Set<Long> processedServices=new HashSet<Long>();
-		Set<Long> processedPolicies=new HashSet<Long>();
-		Comparator<RangerPolicy> comparator = new Comparator<RangerPolicy>() {
-			public int compare(RangerPolicy c1, RangerPolicy c2) {
-				return (int) ((c1.getId()).compareTo(c2.getId()));
-			}
-		};
-
-		List<XXPolicy> xPolList = (List<XXPolicy>) policyService.searchResources(searchFilter, policyService.searchFields, policyService.sortFields, retList);
-		if (!CollectionUtils.isEmpty(xPolList)) {
-			for (XXPolicy xXPolicy : xPolList) {
-				if(!processedServices.contains(xXPolicy.getService())){
-					loadRangerPolicies(xXPolicy.getService(),processedServices,policyMap,searchFilter);
-				}
-			}
-		}
-		String userName = searchFilter.getParam("user");
-		if (!StringUtils.isEmpty(userName)) {
-			searchFilter.removeParam("user");
-			Set<String> groupNames = daoMgr.getXXGroupUser().findGroupNamesByUserName(userName);
-			if (!CollectionUtils.isEmpty(groupNames)) {
-				List<XXPolicy> xPolList2 = null;
-				for (String groupName : groupNames) {
-					xPolList2 = new ArrayList<XXPolicy>();
-					searchFilter.setParam("group", groupName);
-					xPolList2 = (List<XXPolicy>) policyService.searchResources(searchFilter, policyService.searchFields, policyService.sortFields, retList);
-					if (!CollectionUtils.isEmpty(xPolList2)) {
-						for (XXPolicy xPol2 : xPolList2) {
-							if(xPol2!=null){
-								if(!processedPolicies.contains(xPol2.getId())){
-									if(!processedServices.contains(xPol2.getService())){
-										loadRangerPolicies(xPol2.getService(),processedServices,policyMap,searchFilter);
-									}
-									if(policyMap.containsKey(xPol2.getId())){
-										policyList.add(policyMap.get(xPol2.getId()));
-										processedPolicies.add(xPol2.getId());
-									}
-								}
-							}
-						}
-					}
-				}
+		RangerPolicyList   retList        = new RangerPolicyList();
+		List<RangerPolicy> policyList     = new ArrayList<RangerPolicy>();
+		SearchFilter       inMemoryFilter = getInMemoryPolicyFilter(searchFilter);
+		long               totalCount     = -1;
+
+		if (inMemoryFilter == null) {
+			// all filters are evaluated in the database; read only the policies in the requested page
+			if (searchFilter.isGetCount()) {
+				totalCount = policyService.getPolicyCount(searchFilter);
 			}
-		}
-		if (!CollectionUtils.isEmpty(xPolList)) {
-			for (XXPolicy xPol : xPolList) {
-				if(xPol!=null){
-					if(!processedPolicies.contains(xPol.getId())){
-						if(!processedServices.contains(xPol.getService())){
-							loadRangerPolicies(xPol.getService(),processedServices,policyMap,searchFilter);
-						}
-						if(policyMap.containsKey(xPol.getId())){
-							policyList.add(policyMap.get(xPol.getId()));
-							processedPolicies.add(xPol.getId());
-						}
+
+			if (totalCount != 0) {
+				policyList = getPoliciesByIds(policyService.searchPolicyIds(searchFilter));
+			}
+		} else {
+			// walk through policies matching the database filters, in batches in the requested order
+			boolean sortedById   = isSortedByPolicyIdAscending(searchFilter);
+			int     startIndex   = Math.max(searchFilter.getStartIndex(), 0);
+			int     maxRows      = searchFilter.getMaxRows() > 0 ? searchFilter.getMaxRows() : Integer.MAX_VALUE;
+			long    matchCount   = 0;
+			int     batchStart   = 0;
+			Long    lastPolicyId = null;
+
+			while (true) {
+				List<Long> policyIds = sortedById ? policyService.searchPolicyIds(searchFilter, lastPolicyId, POLICY_SEARCH_BATCH_SIZE)
+				                                  : policyService.searchPolicyIdPage(searchFilter, batchStart, POLICY_SEARCH_BATCH_SIZE);
+
+				if (CollectionUtils.isEmpty(policyIds)) {
+					break;
+				}
+
+				List<RangerPolicy> policies = getPoliciesByIds(policyIds);
+
+				predicateUtil.applyFilter(policies, inMemoryFilter);
+
+				for (RangerPolicy policy : policies) {
+					if (matchCount >= startIndex && policyList.size() < maxRows) {
+						policyList.add(policy);
 					}
+
+					matchCount++;
+				}
+
+				if (policyIds.size() < POLICY_SEARCH_BATCH_SIZE || (!searchFilter.isGetCount() && policyList.size() >= maxRows)) {
+					break;
 				}
+
+				batchStart  += policyIds.size();
+				lastPolicyId = policyIds.get(policyIds.size() - 1);
+			}
+
+			if (searchFilter.isGetCount()) {
+				totalCount = matchCount;
 			}
-			Collections.sort(policyList, comparator);
 		}
+
 		retList.setPolicies(policyList);
+		retList.setStartIndex(searchFilter.getStartIndex());
+		retList.setPageSize(searchFilter.getMaxRows());
+		retList.setResultSize(policyList.size());
+		retList.setTotalCount(totalCount);
+		retList.setSortBy(searchFilter.getSortBy());
+		retList.setSortType(searchFilter.getSortType());
+
 		return retList;
 	}
 
-	private void loadRangerPolicies(Long serviceId,Set<Long> processedServices,Map<Long,RangerPolicy> policyMap,SearchFilter searchFilter){
-		try {
-			List<RangerPolicy> tempPolicyList = getServicePolicies(serviceId,searchFilter);
-			if(!CollectionUtils.isEmpty(tempPolicyList)){
-				for (RangerPolicy rangerPolicy : tempPolicyList) {
-					if(!policyMap.containsKey(rangerPolicy.getId())){
-						policyMap.put(rangerPolicy.getId(), rangerPolicy);
-					}
+	/*
+	 * Policies sorted by ascending id - the default order - are read in batches
+	 * keyed by the last id read, instead of by offset.
+	 */
+	private boolean isSortedByPolicyIdAscending(SearchFilter searchFilter) {
+		String sortBy   = searchFilter.getSortBy();
+		String sortType = searchFilter.getSortType();
+
+		return (StringUtils.isEmpty(sortBy) || SearchFilter.POLICY_ID.equalsIgnoreCase(sortBy)) && !"desc".equalsIgnoreCase(sortType);
+	}
+
+	/*
+	 * Returns a filter with the parameters that can't be evaluated in the database -
+	 * i.e. wildcard matching of resource values and resource signature - or null if
+	 * there are no such parameters.
+	 */
+	private SearchFilter getInMemoryPolicyFilter(SearchFilter searchFilter) {
+		Map<String, String> params = searchFilter.getParamsWithPrefix(SearchFilter.RESOURCE_PREFIX, false);
+
+		if (params == null) {
+			params = new HashMap<String, String>();
+		}
+
+		String resourceSignature = searchFilter.getParam(SearchFilter.RESOURCE_SIGNATURE);
+
+		if (StringUtils.isNotEmpty(resourceSignature)) {
+			params.put(SearchFilter.RESOURCE_SIGNATURE, resourceSignature);
+		}
+
+		return params.isEmpty() ? null : new SearchFilter(params);
+	}
+
+	/*
+	 * Reads the given policies, in the order of ids. Policies are always read
+	 * from the database: policies in the download cache have unused attributes
+	 * pruned and are shared with other readers.
+	 */
+	private List<RangerPolicy> getPoliciesByIds(List<Long> policyIds) {
+		List<RangerPolicy> ret = new ArrayList<RangerPolicy>();
+
+		if (CollectionUtils.isEmpty(policyIds)) {
+			return ret;
+		}
+
+		XXPolicyDao           policyDao       = daoMgr.getXXPolicy();
+		RangerPolicyRetriever policyRetriever = new RangerPolicyRetriever(daoMgr);
+		Map<Long, XXService>  services        = new HashMap<Long, XXService>();
+
+		for (Long policyId : policyIds) {
+			XXPolicy xPolicy = policyDao.getById(policyId);
+
+			if (xPolicy == null) {
+				continue;
+			}
+
+			XXService xService = services.get(xPolicy.getService());
+
+			if (xService == null) {
+				xService = daoMgr.getXXService().getById(xPolicy.getService());
+
+				if (xService == null) {
+					continue;
 				}
-				processedServices.add(serviceId);
+
+				services.put(xService.getId(), xService);
+			}
+
+			RangerPolicy policy = policyRetriever.getPolicy(xPolicy, xService);
+
+			if (policy != null) {
+				ret.add(policy);
 			}
-		} catch (Exception e) {
 		}
+
+		return ret;
 	}
+
 	public void getServiceUpgraded(){
 		LOG.info("==> ServiceDBStore.getServiceUpgraded()");
 		updateServiceWithCustomProperty();
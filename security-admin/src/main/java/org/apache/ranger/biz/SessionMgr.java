@@ -24,6 +24,8 @@ import java.util.Calendar;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
 
@@ -65,6 +67,8 @@ import org.springframework.security.web.authentication.WebAuthenticationDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Component
 @Transactional
@@ -90,12 +94,19 @@ public class SessionMgr {
 	@Autowired
 	StringUtil stringUtil;
 	
+	private static final Long SESSION_UPDATE_INTERVAL_IN_MILLIS = 30 * DateUtils.MILLIS_PER_MINUTE;
+	private static final int  PRINCIPAL_CACHE_TTL_IN_SECONDS    = 30;
+
+	// portal-user, roles and module permissions by loginId, to avoid loading them for each new session
+	private final ConcurrentMap<String, CachedPrincipal> principalCache = new ConcurrentHashMap<String, CachedPrincipal>();
+	private final long principalCacheTtlInMillis;
+
 	public SessionMgr() {
+		principalCacheTtlInMillis = PropertiesUtil.getIntProperty("ranger.admin.session.principal.cache.ttl.seconds", PRINCIPAL_CACHE_TTL_IN_SECONDS) * DateUtils.MILLIS_PER_SECOND;
+
 		logger.debug("SessionManager created");
 	}
 
-	private static final Long SESSION_UPDATE_INTERVAL_IN_MILLIS = 30 * DateUtils.MILLIS_PER_MINUTE;
-
 	public UserSessionBase processSuccessLogin(int authType, String userAgent,
 			HttpServletRequest httpRequest) {
 		boolean newSessionCreation = true;
@@ -122,13 +133,14 @@ public class SessionMgr {
 
 			getSSOSpnegoAuthCheckForAPI(currentLoginId, httpRequest);
 			// Need to build the UserSession
-			XXPortalUser gjUser = daoManager.getXXPortalUser().findByLoginId(currentLoginId);
-			if (gjUser == null) {
+			CachedPrincipal principal = getPrincipal(currentLoginId);
+			if (principal == null) {
 				logger.error(
 						"Error getting user for loginId=" + currentLoginId,
 						new Exception());
 				return null;
 			}
+			XXPortalUser gjUser = principal.portalUser;
 
 			XXAuthSession gjAuthSession = new XXAuthSession();
 			gjAuthSession.setLoginId(currentLoginId);
@@ -176,8 +188,7 @@ public class SessionMgr {
 				userSession.setSpnegoEnabled(true);
 			}
 
-			resetUserSessionForProfiles(userSession);
-			resetUserModulePermission(userSession);
+			setUserSessionPrincipal(userSession, principal);
 
 			Calendar cal = Calendar.getInstance();
 			if (details != null) {
@@ -204,8 +215,8 @@ public class SessionMgr {
 		UserSessionBase session = context != null ? context.getUserSession() : null;
 		boolean ssoEnabled = session != null ? session.isSSOEnabled() : PropertiesUtil.getBooleanProperty("ranger.sso.enabled", false);
 
-		XXPortalUser gjUser = daoManager.getXXPortalUser().findByLoginId(currentLoginId);
-		if (gjUser == null && ((request.getAttribute("spnegoEnabled") != null && (boolean)request.getAttribute("spnegoEnabled")) || (ssoEnabled))) {
+		CachedPrincipal principal = getPrincipal(currentLoginId);
+		if (principal == null && ((request.getAttribute("spnegoEnabled") != null && (boolean)request.getAttribute("spnegoEnabled")) || (ssoEnabled))) {
 			if(logger.isDebugEnabled()){
 				logger.debug("User : "+currentLoginId+" doesn't exist in Ranger DB So creating user as it's SSO or Spnego authenticated");
 			}
@@ -215,26 +226,31 @@ public class SessionMgr {
 
 	public void resetUserModulePermission(UserSessionBase userSession) {
 
+		resetPrincipalCache(userSession.getLoginId());
+
 		XXUser xUser = daoManager.getXXUser().findByUserName(userSession.getLoginId());
 		if (xUser != null) {
 			List<String> permissionList = daoManager.getXXModuleDef().findAccessibleModulesByUserId(userSession.getUserId(), xUser.getId());
-			CopyOnWriteArraySet<String> userPermissions = new CopyOnWriteArraySet<String>(permissionList);
 
-			UserSessionBase.RangerUserPermission rangerUserPermission = userSession.getRangerUserPermission();
-
-			if (rangerUserPermission == null) {
-				rangerUserPermission = new UserSessionBase.RangerUserPermission();
-			}
-
-			rangerUserPermission.setUserPermissions(userPermissions);
-			rangerUserPermission.setLastUpdatedTime(Calendar.getInstance().getTimeInMillis());
-			userSession.setRangerUserPermission(rangerUserPermission);
+			setUserModulePermission(userSession, new CopyOnWriteArraySet<String>(permissionList));
 			logger.info("UserSession Updated to set new Permissions to User: " + userSession.getLoginId());
 		} else {
 			logger.error("No XUser found with username: " + userSession.getLoginId() + "So Permission is not set for the user");
 		}
 	}
 
+	/*
+	 * a new RangerUserPermission is set, rather than updating the one in the session,
+	 * so that concurrent requests of the session see either the old or the new permissions
+	 */
+	private void setUserModulePermission(UserSessionBase userSession, Set<String> userPermissions) {
+		UserSessionBase.RangerUserPermission rangerUserPermission = new UserSessionBase.RangerUserPermission();
+
+		rangerUserPermission.setUserPermissions(new CopyOnWriteArraySet<String>(userPermissions));
+		rangerUserPermission.setLastUpdatedTime(Calendar.getInstance().getTimeInMillis());
+		userSession.setRangerUserPermission(rangerUserPermission);
+	}
+
 	public void resetUserSessionForProfiles(UserSessionBase userSession) {
 		if (userSession == null) {
 			// Nothing to reset
@@ -244,23 +260,115 @@ public class SessionMgr {
 		// Let's get the Current User Again
 		String currentLoginId = userSession.getLoginId();
 
+		resetPrincipalCache(currentLoginId);
+
 		XXPortalUser gjUser = daoManager.getXXPortalUser().findByLoginId(currentLoginId);
 		userSession.setXXPortalUser(gjUser);
 
-		setUserRoles(userSession);
+		setUserRoles(userSession, getUserRoles(userSession.getUserId()));
+
+	}
+
+	/**
+	 * Drops the cached user, roles and module permissions of all users; to be
+	 * called after users, roles, group memberships or permissions are updated.
+	 * Within a transaction the cache is cleared again after commit, so that
+	 * entries loaded by other requests before the commit are not kept.
+	 */
+	public void resetPrincipalCache() {
+		principalCache.clear();
+
+		afterCommit(new Runnable() {
+			@Override
+			public void run() {
+				principalCache.clear();
+			}
+		});
+	}
+
+	public void resetPrincipalCache(final String loginId) {
+		if (loginId != null) {
+			principalCache.remove(loginId);
+
+			afterCommit(new Runnable() {
+				@Override
+				public void run() {
+					principalCache.remove(loginId);
+				}
+			});
+		}
+	}
+
+	private void afterCommit(final Runnable task) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					task.run();
+				}
+			});
+		}
+	}
+
+	/*
+	 * returns the user, roles and module permissions of the loginId, as cached
+	 * for up to ranger.admin.session.principal.cache.ttl.seconds
+	 */
+	private CachedPrincipal getPrincipal(String loginId) {
+		if (loginId == null) {
+			return null;
+		}
+
+		long            now = System.currentTimeMillis();
+		CachedPrincipal ret = principalCache.get(loginId);
+
+		if (ret == null || (now - ret.loadTime) > principalCacheTtlInMillis) {
+			XXPortalUser portalUser = daoManager.getXXPortalUser().findByLoginId(loginId);
 
+			if (portalUser == null) {
+				principalCache.remove(loginId);
+
+				return null;
+			}
+
+			List<String> userRoles       = getUserRoles(portalUser.getId());
+			XXUser       xUser           = daoManager.getXXUser().findByUserName(loginId);
+			List<String> userPermissions = xUser != null ? daoManager.getXXModuleDef().findAccessibleModulesByUserId(portalUser.getId(), xUser.getId()) : null;
+
+			ret = new CachedPrincipal(portalUser, userRoles, userPermissions, now);
+
+			if (principalCacheTtlInMillis > 0) {
+				principalCache.put(loginId, ret);
+			}
+		}
+
+		return ret;
 	}
 
-	private void setUserRoles(UserSessionBase userSession) {
+	private void setUserSessionPrincipal(UserSessionBase userSession, CachedPrincipal principal) {
+		userSession.setXXPortalUser(principal.portalUser);
+
+		setUserRoles(userSession, new ArrayList<String>(principal.userRoles));
+
+		if (principal.userPermissions != null) {
+			setUserModulePermission(userSession, principal.userPermissions);
+		} else {
+			logger.error("No XUser found with username: " + userSession.getLoginId() + "So Permission is not set for the user");
+		}
+	}
 
-		List<String> strRoleList = new ArrayList<String>();
-		List<XXPortalUserRole> roleList = daoManager.getXXPortalUserRole().findByUserId(
-				userSession.getUserId());
+	private List<String> getUserRoles(Long portalUserId) {
+		List<String> ret = new ArrayList<String>();
+		List<XXPortalUserRole> roleList = daoManager.getXXPortalUserRole().findByUserId(portalUserId);
 		for (XXPortalUserRole gjUserRole : roleList) {
-			String userRole = gjUserRole.getUserRole();
-			strRoleList.add(userRole);
+			ret.add(gjUserRole.getUserRole());
 		}
 
+		return ret;
+	}
+
+	private void setUserRoles(UserSessionBase userSession, List<String> strRoleList) {
+
 		if (strRoleList.contains(RangerConstants.ROLE_SYS_ADMIN)) {
 			userSession.setUserAdmin(true);
 			userSession.setKeyAdmin(false);
@@ -324,12 +432,13 @@ public class SessionMgr {
 		String currentLoginId = authentication.getName();
 
 		// Need to build the UserSession
-		XXPortalUser gjUser = daoManager.getXXPortalUser().findByLoginId(currentLoginId);
-		if (gjUser == null) {
+		CachedPrincipal principal = getPrincipal(currentLoginId);
+		if (principal == null) {
 			logger.error("Error getting user for loginId=" + currentLoginId,
 					new Exception());
 			return null;
 		}
+		XXPortalUser gjUser = principal.portalUser;
 
 		XXAuthSession gjAuthSession = new XXAuthSession();
 		gjAuthSession.setLoginId(currentLoginId);
@@ -353,8 +462,7 @@ public class SessionMgr {
 		context.setUserSession(userSession);
 		RangerContextHolder.setSecurityContext(context);
 
-		resetUserSessionForProfiles(userSession);
-		resetUserModulePermission(userSession);
+		setUserSessionPrincipal(userSession, principal);
 
 		return userSession;
 	}
@@ -487,13 +595,32 @@ public class SessionMgr {
 		}
 	}
 
-	public synchronized void refreshPermissionsIfNeeded(UserSessionBase userSession) {
+	public void refreshPermissionsIfNeeded(UserSessionBase userSession) {
 		if (userSession != null) {
 			Long lastUpdatedTime = (userSession.getRangerUserPermission() != null) ? userSession.getRangerUserPermission().getLastUpdatedTime() : null;
 			if (lastUpdatedTime == null || (Calendar.getInstance().getTimeInMillis() - lastUpdatedTime) > SESSION_UPDATE_INTERVAL_IN_MILLIS) {
-				this.resetUserModulePermission(userSession);
+				CachedPrincipal principal = getPrincipal(userSession.getLoginId());
+
+				if (principal != null && principal.userPermissions != null) {
+					setUserModulePermission(userSession, principal.userPermissions);
+				} else {
+					this.resetUserModulePermission(userSession);
+				}
 			}
 		}
 	}
 
+	private static class CachedPrincipal {
+		final XXPortalUser portalUser;
+		final List<String> userRoles;
+		final Set<String>  userPermissions;
+		final long         loadTime;
+
+		CachedPrincipal(XXPortalUser portalUser, List<String> userRoles, List<String> userPermissions, long loadTime) {
+			this.portalUser      = portalUser;
+			this.userRoles       = userRoles;
+			this.userPermissions = userPermissions != null ? new HashSet<String>(userPermissions) : null;
+			this.loadTime        = loadTime;
+		}
+	}
 }
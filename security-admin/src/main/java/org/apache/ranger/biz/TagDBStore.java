@@ -29,6 +29,7 @@ import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.common.GUIDUtil;
 import org.apache.ranger.common.MessageEnums;
 import org.apache.ranger.common.RESTErrorUtil;
@@ -1026,6 +1027,60 @@ public class TagDBStore extends AbstractTagStore {
 
 	}
 
+	/**
+	 * @return cachedServiceTags brought upto the current tag version of the service, from the
+	 *         tag change-log; null if the ServiceTags are to be retrieved in full
+	 */
+	public ServiceTags getServiceTagsDelta(String serviceName, ServiceTags cachedServiceTags) throws Exception {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> TagDBStore.getServiceTagsDelta(" + serviceName + ", cachedVersion=" + cachedServiceTags.getTagVersion() + ")");
+		}
+
+		ServiceTags ret = null;
+
+		XXService xxService = daoManager.getXXService().findByName(serviceName);
+
+		if (xxService == null) {
+			throw new Exception("service does not exist. name=" + serviceName);
+		}
+
+		XXServiceVersionInfo serviceVersionInfoDbObj = daoManager.getXXServiceVersionInfo().findByServiceName(serviceName);
+
+		if (serviceVersionInfoDbObj != null) {
+			RangerTagDBDeltaRetriever tagDBDeltaRetriever = new RangerTagDBDeltaRetriever(daoManager, xxService);
+
+			ret = tagDBDeltaRetriever.getServiceTags(cachedServiceTags, serviceVersionInfoDbObj.getTagVersion(), serviceVersionInfoDbObj.getTagUpdateTime());
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== TagDBStore.getServiceTagsDelta(" + serviceName + ", cachedVersion=" + cachedServiceTags.getTagVersion() + "): " + (ret == null ? null : ret.getTagVersion()));
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Tags downloaded for a service are limited to the tag-types used in the policies of its
+	 * tag-service; these change without a change in the tag version of the service.
+	 *
+	 * @return identifies the tag-service policies in effect; null if tags are not limited by them
+	 */
+	public String getServiceTagsFilterVersion(String serviceName) {
+		String ret = null;
+
+		if (RangerConfiguration.getInstance().getBoolean(RangerTagDBRetriever.OPTION_RANGER_FILTER_TAGS_FOR_SERVICE_PLUGIN, true)) {
+			XXService xxService = daoManager.getXXService().findByName(serviceName);
+
+			if (xxService != null && xxService.getTagService() != null) {
+				XXServiceVersionInfo tagServiceVersionInfo = daoManager.getXXServiceVersionInfo().findByServiceId(xxService.getTagService());
+
+				ret = xxService.getTagService() + ":" + (tagServiceVersionInfo == null ? null : tagServiceVersionInfo.getPolicyVersion());
+			}
+		}
+
+		return ret;
+	}
+
 	private List<XXTagAttributeDef> createTagAttributeDefs(Long tagDefId, List<RangerTagAttributeDef> tagAttrDefList) {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> TagDBStore.createTagAttributeDefs(" + tagDefId + ", attributeDefCount=" + (tagAttrDefList == null ? 0 : tagAttrDefList.size()) + ")");
@@ -1275,4 +1330,22 @@ public class TagDBStore extends AbstractTagStore {
 			LOG.debug("<== TagDBStore.deleteAllTagObjectsForService(" + serviceName + ")");
 		}
 	}
+
+	/**
+	 * Adds or updates the service-resources and tags of the given ServiceTags,
+	 * in batches; tag-definitions are expected to be in store already.
+	 */
+	public void addOrUpdateTaggedResources(ServiceTags serviceTags) throws Exception {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> TagDBStore.addOrUpdateTaggedResources(" + serviceTags.getServiceName() + ")");
+		}
+
+		RangerServiceTagsImporter importer = new RangerServiceTagsImporter(daoManager, rangerAuditFields, guidUtil, errorUtil);
+
+		importer.importServiceTags(serviceTags);
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== TagDBStore.addOrUpdateTaggedResources(" + serviceTags.getServiceName() + ")");
+		}
+	}
 }
@@ -189,6 +189,7 @@ public class UserMgr {
 	 * @return
 	 */
 	public XXPortalUser updateUser(VXPortalUser userProfile) {
+		sessionMgr.resetPrincipalCache();
 		XXPortalUser gjUser = daoManager.getXXPortalUser().getById(
 				userProfile.getId());
 
@@ -936,6 +937,7 @@ public class UserMgr {
 	}
 
 	public boolean deleteUserRole(Long userId, XXPortalUserRole gjUserRole) {
+		sessionMgr.resetPrincipalCache();
 		/*
 		 * if (RangerConstants.ROLE_USER.equals(gjUserRole.getUserRole())) {
 		 * return false; }
@@ -959,6 +961,7 @@ public class UserMgr {
 	}
 
 	public XXPortalUserRole addUserRole(Long userId, String userRole) {
+		sessionMgr.resetPrincipalCache();
 		List<XXPortalUserRole> roleList = daoManager.getXXPortalUserRole()
 				.findByUserId(userId);
 		boolean publicRole = false;
@@ -1287,6 +1290,7 @@ public class UserMgr {
 
         @Transactional(readOnly = false, propagation = Propagation.REQUIRED)
         public XXPortalUser updateOldUserName(String userLoginId,String newUserName, String currentPassword) {
+                sessionMgr.resetPrincipalCache();
                 if (userLoginId == null || newUserName == null
                                 || userLoginId.trim().isEmpty() || newUserName.trim().isEmpty()){
                         return null;
@@ -19,13 +19,33 @@
 
 package org.apache.ranger.biz;
 
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.lang.time.DateUtils;
 import org.apache.ranger.common.ContextUtil;
+import org.apache.ranger.common.MessageEnums;
+import org.apache.ranger.common.PropertiesUtil;
 import org.apache.ranger.common.SearchCriteria;
 import org.apache.ranger.common.UserSessionBase;
+import org.apache.ranger.plugin.policyengine.CacheMap;
 import org.apache.ranger.solr.SolrAccessAuditsService;
+import org.apache.ranger.util.RestUtil;
 import org.apache.ranger.view.VXAccessAudit;
+import org.apache.ranger.view.VXAccessAuditCount;
+import org.apache.ranger.view.VXAccessAuditCountList;
 import org.apache.ranger.view.VXAccessAuditList;
 import org.apache.ranger.view.VXLong;
 import org.apache.ranger.view.VXResponse;
@@ -43,6 +63,39 @@ public class XAuditMgr extends XAuditMgrBase {
 	@Autowired
 	RangerBizUtil rangerBizUtil;
 
+	public static final String COUNT_GAP_HOUR = "HOUR";
+	public static final String COUNT_GAP_DAY  = "DAY";
+
+	private static final int DEFAULT_COUNT_LIMIT           = 10;
+	private static final int MAX_COUNT_LIMIT               = 1000;
+	private static final int DEFAULT_COUNT_BUCKETS         = 24;
+	private static final int MAX_COUNT_BUCKETS             = 1000;
+	private static final int COUNTS_CACHE_TTL_IN_SECONDS   = 60;
+	private static final int COUNTS_CACHE_MAX_ENTRIES      = 256;
+	private static final String COUNT_BUCKET_DATE_FORMAT   = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+
+	// properties of access audits that can be counted by, in both the audit stores
+	private static final Set<String> COUNT_FIELDS = new HashSet<String>(Arrays.asList("requestUser", "repoName", "repoType",
+			"resourcePath", "resourceType", "accessType", "action", "accessResult", "aclEnforcer", "policyId", "agentId", "clientIP"));
+
+	private static final Map<String, Long> COUNT_GAPS = new HashMap<String, Long>();
+
+	static {
+		COUNT_GAPS.put(COUNT_GAP_HOUR, DateUtils.MILLIS_PER_HOUR);
+		COUNT_GAPS.put(COUNT_GAP_DAY, DateUtils.MILLIS_PER_DAY);
+	}
+
+	// counts computed for recent requests; dashboards repeat the same requests every few seconds
+	private final Map<String, CachedCounts> countsCache;
+	private final long countsCacheTtlInMillis;
+	private final int  maxCountBuckets;
+
+	public XAuditMgr() {
+		countsCache            = new CacheMap<String, CachedCounts>(PropertiesUtil.getIntProperty("ranger.audit.counts.cache.max.entries", COUNTS_CACHE_MAX_ENTRIES));
+		countsCacheTtlInMillis = PropertiesUtil.getIntProperty("ranger.audit.counts.cache.ttl.seconds", COUNTS_CACHE_TTL_IN_SECONDS) * DateUtils.MILLIS_PER_SECOND;
+		maxCountBuckets        = PropertiesUtil.getIntProperty("ranger.audit.counts.max.buckets", MAX_COUNT_BUCKETS);
+	}
+
 	public VXTrxLog getXTrxLog(Long id) {
 		checkAdminAccess();
 		return super.getXTrxLog(id);
@@ -112,6 +165,188 @@ public class XAuditMgr extends XAuditMgrBase {
 		}
 	}
 
+	/**
+	 * Counts the access audits matching searchCriteria by the values of a field,
+	 * like the users with the most denied accesses. The counting is done by the
+	 * audit store: a facet query in Solr, or a GROUP BY query in the database.
+	 *
+	 * @param fieldName property of VXAccessAudit to count by
+	 * @param limit number of values to return, highest count first
+	 */
+	public VXAccessAuditCountList getXAccessAuditCounts(SearchCriteria searchCriteria, String fieldName, Integer limit) {
+		if (fieldName == null || !COUNT_FIELDS.contains(fieldName)) {
+			throw restErrorUtil.createRESTException("Invalid field to count access audits by: " + fieldName, MessageEnums.INVALID_INPUT_DATA);
+		}
+
+		int countLimit = limit == null || limit <= 0 ? DEFAULT_COUNT_LIMIT : Math.min(limit, MAX_COUNT_LIMIT);
+
+		SearchCriteria countCriteria = new SearchCriteria();
+		countCriteria.getParamList().putAll(searchCriteria.getParamList());
+
+		// dates are days in the time zone of the client, as in the access audit search
+		long offsetInMillis = RestUtil.getClientTimeOffset() * DateUtils.MILLIS_PER_MINUTE;
+
+		Date startDate = (Date) countCriteria.getParamValue("startDate");
+		if (startDate != null) {
+			countCriteria.getParamList().put("startDate", new Date(startDate.getTime() + offsetInMillis));
+		}
+
+		Date endDate = (Date) countCriteria.getParamValue("endDate");
+		if (endDate != null) {
+			// include the whole of the end day, as the search does
+			countCriteria.getParamList().put("endDate", new Date(endDate.getTime() + DateUtils.MILLIS_PER_DAY - 1 + offsetInMillis));
+		}
+
+		String                   cacheKey = "field=" + fieldName + ";limit=" + countLimit + ";" + toCacheKey(countCriteria);
+		List<VXAccessAuditCount> counts   = getCachedCounts(cacheKey);
+
+		if (counts == null) {
+			if (rangerBizUtil.getAuditDBType().equalsIgnoreCase("solr")) {
+				counts = solrAccessAuditsService.getXAccessAuditCountsByField(countCriteria, fieldName, countLimit);
+			} else {
+				counts = xAccessAuditService.getXAccessAuditCountsByField(countCriteria, fieldName, countLimit);
+			}
+
+			cacheCounts(cacheKey, counts);
+		}
+
+		VXAccessAuditCountList ret = new VXAccessAuditCountList(counts);
+		ret.setField(fieldName);
+		return ret;
+	}
+
+	/**
+	 * Counts the access audits matching searchCriteria in each hour or day from
+	 * startDate till the end of endDate; without startDate the last 24 buckets
+	 * till endDate, or till now, are counted. The dates are days in the time
+	 * zone of the client, as in the access audit search, and bucket boundaries
+	 * are aligned to the gap in that time zone, so that repeated requests get
+	 * the same buckets.
+	 *
+	 * @param gap HOUR or DAY
+	 */
+	public VXAccessAuditCountList getXAccessAuditCountsByTime(SearchCriteria searchCriteria, String gap) {
+		String gapName     = gap == null ? COUNT_GAP_DAY : gap.toUpperCase();
+		Long   gapInMillis = COUNT_GAPS.get(gapName);
+
+		if (gapInMillis == null) {
+			throw restErrorUtil.createRESTException("Invalid gap to count access audits by: " + gap, MessageEnums.INVALID_INPUT_DATA);
+		}
+
+		long offsetInMillis = RestUtil.getClientTimeOffset() * DateUtils.MILLIS_PER_MINUTE;
+		Date startDate      = (Date) searchCriteria.getParamValue("startDate");
+		Date endDate        = (Date) searchCriteria.getParamValue("endDate");
+		long endTime        = endDate != null ? endDate.getTime() + DateUtils.MILLIS_PER_DAY + offsetInMillis : System.currentTimeMillis();
+
+		endTime = alignToGap(endTime + gapInMillis - 1, gapInMillis, offsetInMillis);
+
+		long startTime = startDate != null ? alignToGap(startDate.getTime() + offsetInMillis, gapInMillis, offsetInMillis) : endTime - DEFAULT_COUNT_BUCKETS * gapInMillis;
+
+		if (startTime >= endTime) {
+			throw restErrorUtil.createRESTException("startDate must be before endDate", MessageEnums.INVALID_INPUT_DATA);
+		}
+
+		if ((endTime - startTime) / gapInMillis > maxCountBuckets) {
+			throw restErrorUtil.createRESTException("Too many " + gapName + " buckets from startDate till endDate; at most " + maxCountBuckets + " are allowed", MessageEnums.INVALID_INPUT_DATA);
+		}
+
+		SearchCriteria countCriteria = new SearchCriteria();
+		countCriteria.getParamList().putAll(searchCriteria.getParamList());
+		countCriteria.getParamList().put("startDate", new Date(startTime));
+		countCriteria.getParamList().put("endDate", new Date(endTime - 1));
+
+		String                   cacheKey = "gap=" + gapName + ";" + toCacheKey(countCriteria);
+		List<VXAccessAuditCount> counts   = getCachedCounts(cacheKey);
+
+		if (counts == null) {
+			if (rangerBizUtil.getAuditDBType().equalsIgnoreCase("solr")) {
+				counts = solrAccessAuditsService.getXAccessAuditCountsByTime(countCriteria, new Date(startTime), new Date(endTime), "+1" + gapName);
+			} else {
+				DateFormat dateFormat = new SimpleDateFormat(COUNT_BUCKET_DATE_FORMAT);
+				dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+				counts = xAccessAuditService.getXAccessAuditCountsByTime(countCriteria, new Date(startTime), new Date(endTime), gapInMillis, dateFormat);
+			}
+
+			cacheCounts(cacheKey, counts);
+		}
+
+		VXAccessAuditCountList ret = new VXAccessAuditCountList(counts);
+		ret.setField("eventTime");
+		ret.setGap(gapName);
+		return ret;
+	}
+
+	public void resetCountsCache() {
+		synchronized (countsCache) {
+			countsCache.clear();
+		}
+	}
+
+	private List<VXAccessAuditCount> getCachedCounts(String cacheKey) {
+		if (countsCacheTtlInMillis <= 0) {
+			return null;
+		}
+
+		synchronized (countsCache) {
+			CachedCounts cached = countsCache.get(cacheKey);
+
+			if (cached == null) {
+				return null;
+			}
+
+			if (System.currentTimeMillis() - cached.createTime > countsCacheTtlInMillis) {
+				countsCache.remove(cacheKey);
+
+				return null;
+			}
+
+			return cached.counts;
+		}
+	}
+
+	private void cacheCounts(String cacheKey, List<VXAccessAuditCount> counts) {
+		if (countsCacheTtlInMillis <= 0) {
+			return;
+		}
+
+		synchronized (countsCache) {
+			countsCache.put(cacheKey, new CachedCounts(Collections.unmodifiableList(counts)));
+		}
+	}
+
+	// start of the gap containing time, for gaps starting at offsetInMillis from UTC midnight
+	private static long alignToGap(long time, long gapInMillis, long offsetInMillis) {
+		long timeInGap = (time - offsetInMillis) % gapInMillis;
+
+		if (timeInGap < 0) {
+			timeInGap += gapInMillis;
+		}
+
+		return time - timeInGap;
+	}
+
+	private static String toCacheKey(SearchCriteria searchCriteria) {
+		Map<String, Object> params = new TreeMap<String, Object>();
+
+		for (Map.Entry<String, Object> entry : searchCriteria.getParamList().entrySet()) {
+			Object value = entry.getValue();
+
+			params.put(entry.getKey(), value instanceof Date ? ((Date) value).getTime() : value);
+		}
+
+		return params.toString();
+	}
+
+	private static class CachedCounts {
+		final List<VXAccessAuditCount> counts;
+		final long                     createTime = System.currentTimeMillis();
+
+		CachedCounts(List<VXAccessAuditCount> counts) {
+			this.counts = counts;
+		}
+	}
+
 	@Override
 	public VXLong getXAccessAuditSearchCount(SearchCriteria searchCriteria) {
 		if (rangerBizUtil.getAuditDBType().equalsIgnoreCase("solr")) {
@@ -19,6 +19,8 @@
 
 package org.apache.ranger.biz;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -95,6 +97,7 @@ import org.apache.ranger.view.VXPermMap;
 import org.apache.ranger.view.VXPermMapList;
 import org.apache.ranger.view.VXPortalUser;
 import org.apache.ranger.view.VXUser;
+import org.apache.ranger.view.VXUserGroupImportResult;
 import org.apache.ranger.view.VXUserGroupInfo;
 import org.apache.ranger.view.VXUserList;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -147,6 +150,9 @@ public class XUserMgr extends XUserMgrBase {
 	@Autowired
 	SessionMgr sessionMgr;
 
+	@Autowired
+	RangerUserGroupCache userGroupCache;
+
 	@Autowired
 	RangerPolicyService policyService;
 
@@ -247,6 +253,7 @@ public class XUserMgr extends XUserMgrBase {
 		if(vXPortalUser!=null){
 			assignPermissionToUser(vXPortalUser, true);
 		}
+		userGroupCache.onUserGroupsChange(createdXUser.getName());
 
 		return createdXUser;
 	}
@@ -282,6 +289,7 @@ public class XUserMgr extends XUserMgrBase {
 
 	// Insert or Updating Mapping permissions depending upon roles
 	public void createOrUpdateUserPermisson(VXPortalUser portalUser, Long moduleId, boolean isCreate) {
+		sessionMgr.resetPrincipalCache();
 		VXUserPermission vXUserPermission;
 		XXUserPermission xUserPermission = daoManager.getXXUserPermission().findByModuleIdAndPortalUserId(portalUser.getId(), moduleId);
 		if (xUserPermission == null) {
@@ -339,6 +347,7 @@ public class XUserMgr extends XUserMgrBase {
 	}
 
 	public VXUser updateXUser(VXUser vXUser) {
+		sessionMgr.resetPrincipalCache();
 		if (vXUser == null || vXUser.getName() == null
 				|| "null".equalsIgnoreCase(vXUser.getName())
 				|| vXUser.getName().trim().isEmpty()) {
@@ -346,6 +355,7 @@ public class XUserMgr extends XUserMgrBase {
 					+ "username.", MessageEnums.INVALID_INPUT_DATA);
 		}
 		checkAccess(vXUser.getName());
+		userGroupCache.onUserGroupsChange(vXUser.getName());
 		VXPortalUser oldUserProfile = userMgr.getUserProfileByLoginId(vXUser
 				.getName());
 		VXPortalUser vXPortalUser = new VXPortalUser();
@@ -538,6 +548,8 @@ public class XUserMgr extends XUserMgrBase {
 		if(vXPortalUser!=null){
 			assignPermissionToUser(vXPortalUser, true);
 		}
+		sessionMgr.resetPrincipalCache();
+		userGroupCache.onUserGroupsChange(vXUser.getName());
 		vxUGInfo.setXgroupInfo(vxg);
 
 		return vxUGInfo;
@@ -570,14 +582,50 @@ public class XUserMgr extends XUserMgrBase {
 				vXGroupUser.setName(vXGroup.getName());
 				vXGroupUser = xGroupUserService
 						.createXGroupUserWithOutLogin(vXGroupUser);
+				userGroupCache.onUserGroupsChange(xUser.getName());
 			}
 		}
 
+		if (!vxu.isEmpty()) {
+			sessionMgr.resetPrincipalCache();
+		}
+
 		vxGUInfo.setXuserInfo(vxu);
 
 		return vxGUInfo;
 	}
 	
+	/**
+	 * Imports a snapshot of users, groups and group memberships, read from the
+	 * given stream, in set-based batches; see RangerUserGroupImporter
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public VXUserGroupImportResult importXUserGroups(InputStream snapshot) {
+		checkAdminAccess();
+
+		Long                    createdBy = daoManager.getXXPortalUser().getById(XUserService.createdByUserId) != null ? XUserService.createdByUserId : null;
+		RangerUserGroupImporter importer  = new RangerUserGroupImporter(daoManager, createdBy);
+
+		try {
+			importer.readSnapshot(snapshot);
+		} catch (IOException excp) {
+			logger.error("importXUserGroups(): failed to read the snapshot", excp);
+
+			throw restErrorUtil.createRESTException("Invalid user-group snapshot: " + excp.getMessage(), MessageEnums.INVALID_INPUT_DATA);
+		}
+
+		VXUserGroupImportResult ret = importer.importSnapshot();
+
+		if (ret.hasChanges()) {
+			sessionMgr.resetPrincipalCache();
+			userGroupCache.onChange();
+		}
+
+		logger.info("importXUserGroups(): " + ret);
+
+		return ret;
+	}
+
 	public VXGroupUserInfo getXGroupUserFromMap(
 			String groupName) {
 		checkAdminAccess();
@@ -637,6 +685,8 @@ public class XUserMgr extends XUserMgrBase {
 
 	public VXGroupUser createXGroupUser(VXGroupUser vXGroupUser) {
 		checkAdminAccess();
+		sessionMgr.resetPrincipalCache();
+		userGroupCache.onChange();
 		vXGroupUser = xGroupUserService
 				.createXGroupUserWithOutLogin(vXGroupUser);
 		return vXGroupUser;
@@ -692,6 +742,8 @@ public class XUserMgr extends XUserMgrBase {
 
 	public void deleteXGroupAndXUser(String groupName, String userName) {
 		checkAdminAccess();
+		sessionMgr.resetPrincipalCache();
+		userGroupCache.onUserGroupsChange(userName);
 		VXGroup vxGroup = xGroupService.getGroupByGroupName(groupName);
 		VXUser vxUser = xUserService.getXUserByUserName(userName);
 		SearchCriteria searchCriteria = new SearchCriteria();
@@ -729,7 +781,13 @@ public class XUserMgr extends XUserMgrBase {
 	}
 
 	public Set<String> getGroupsForUser(String userName) {
-		Set<String> ret = new HashSet<String>();
+		Set<String> ret = userGroupCache.getGroupsForUser(userName);
+
+		if (ret != null) {
+			return ret;
+		}
+
+		ret = new HashSet<String>();
 
 		try {
 			VXUser user = getXUserByUserName(userName);
@@ -800,15 +858,20 @@ public class XUserMgr extends XUserMgrBase {
 				xGroup, "update");
 		xaBizUtil.createTrxLog(trxLogList);
 		vXGroup = (VXGroup) xGroupService.updateResource(vXGroup);
+		userGroupCache.onChange();
 		return vXGroup;
 	}
 	public VXGroupUser updateXGroupUser(VXGroupUser vXGroupUser) {
 		checkAdminAccess();
+		sessionMgr.resetPrincipalCache();
+		userGroupCache.onChange();
 		return super.updateXGroupUser(vXGroupUser);
 	}
 
 	public void deleteXGroupUser(Long id, boolean force) {
 		checkAdminAccess();
+		sessionMgr.resetPrincipalCache();
+		userGroupCache.onChange();
 		super.deleteXGroupUser(id, force);
 	}
 
@@ -910,6 +973,7 @@ public class XUserMgr extends XUserMgrBase {
 	}
 
 	public VXModuleDef updateXModuleDefPermission(VXModuleDef vXModuleDef) {
+		sessionMgr.resetPrincipalCache();
 
 		List<VXGroupPermission> groupPermListNew = vXModuleDef.getGroupPermList();
 		List<VXUserPermission> userPermListNew = vXModuleDef.getUserPermList();
@@ -988,6 +1052,7 @@ public class XUserMgr extends XUserMgrBase {
 	}
 
 	public void deleteXModuleDefPermission(Long id, boolean force) {
+		sessionMgr.resetPrincipalCache();
 		daoManager.getXXUserPermission().deleteByModuleId(id);
 		daoManager.getXXGroupPermission().deleteByModuleId(id);
 		xModuleDefService.deleteResource(id);
@@ -995,6 +1060,7 @@ public class XUserMgr extends XUserMgrBase {
 
 	// User permission
 	public VXUserPermission createXUserPermission(VXUserPermission vXUserPermission) {
+		sessionMgr.resetPrincipalCache();
 
 		vXUserPermission = xUserPermissionService.createResource(vXUserPermission);
 
@@ -1015,6 +1081,7 @@ public class XUserMgr extends XUserMgrBase {
 	}
 
 	public VXUserPermission updateXUserPermission(VXUserPermission vXUserPermission) {
+		sessionMgr.resetPrincipalCache();
 
 		vXUserPermission = xUserPermissionService.updateResource(vXUserPermission);
 
@@ -1030,6 +1097,7 @@ public class XUserMgr extends XUserMgrBase {
 	}
 
 	public void deleteXUserPermission(Long id, boolean force) {
+		sessionMgr.resetPrincipalCache();
 
 		XXUserPermission xUserPermission = daoManager.getXXUserPermission().getById(id);
 		if (xUserPermission == null) {
@@ -1049,6 +1117,7 @@ public class XUserMgr extends XUserMgrBase {
 
 	// Group permission
 	public VXGroupPermission createXGroupPermission(VXGroupPermission vXGroupPermission) {
+		sessionMgr.resetPrincipalCache();
 
 		vXGroupPermission = xGroupPermissionService.createResource(vXGroupPermission);
 
@@ -1071,6 +1140,7 @@ public class XUserMgr extends XUserMgrBase {
 	}
 
 	public VXGroupPermission updateXGroupPermission(VXGroupPermission vXGroupPermission) {
+		sessionMgr.resetPrincipalCache();
 
 		vXGroupPermission = xGroupPermissionService.updateResource(vXGroupPermission);
 
@@ -1089,6 +1159,7 @@ public class XUserMgr extends XUserMgrBase {
 	}
 
 	public void deleteXGroupPermission(Long id, boolean force) {
+		sessionMgr.resetPrincipalCache();
 
 		XXGroupPermission xGrpPerm = daoManager.getXXGroupPermission().getById(id);
 
@@ -1112,6 +1183,7 @@ public class XUserMgr extends XUserMgrBase {
 
 	public void modifyUserActiveStatus(HashMap<Long, Integer> statusMap) {
 		checkAdminAccess();
+		sessionMgr.resetPrincipalCache();
 		UserSessionBase session = ContextUtil.getCurrentUserSession();
 		String currentUser=null;
 		if(session!=null){
@@ -1378,6 +1450,7 @@ public class XUserMgr extends XUserMgrBase {
 	}
 
 	public void updateUserRolesPermissions(VXPortalUser oldUserProfile,List<String> roleListNewProfile){
+		sessionMgr.resetPrincipalCache();
 		//update permissions start
 		Collection<String> roleListUpdatedProfile =new ArrayList<String>();
 		if (oldUserProfile != null && oldUserProfile.getId() != null) {
@@ -1585,6 +1658,8 @@ public class XUserMgr extends XUserMgrBase {
 
 	public void deleteXGroup(Long id, boolean force) {
 		checkAdminAccess();
+		sessionMgr.resetPrincipalCache();
+		userGroupCache.onChange();
 		XXGroupDao xXGroupDao = daoManager.getXXGroup();
 		XXGroup xXGroup = xXGroupDao.getById(id);
 		VXGroup vXGroup = xGroupService.populateViewBean(xXGroup);
@@ -1753,6 +1828,8 @@ public class XUserMgr extends XUserMgrBase {
 
 	public void deleteXUser(Long id, boolean force) {
 		checkAdminAccess();
+		sessionMgr.resetPrincipalCache();
+		userGroupCache.onChange();
 		XXUserDao xXUserDao = daoManager.getXXUser();
 		XXUser xXUser =	xXUserDao.getById(id);
 		VXUser vXUser =	xUserService.populateViewBean(xXUser);
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.policyresourcematcher.RangerDefaultPolicyResourceMatcher;
+import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceEvaluator;
+import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceMatcher;
+import org.apache.ranger.plugin.resourcematcher.RangerAbstractResourceMatcher;
+import org.apache.ranger.plugin.resourcematcher.RangerResourceMatcher;
+import org.apache.ranger.plugin.util.RangerResourceTrie;
+import org.apache.ranger.plugin.util.SearchFilter;
+import org.apache.ranger.plugin.util.ServiceDefUtil;
+import org.apache.ranger.plugin.util.ServicePolicies;
+
+/**
+ * Index over the cached policies of a service, to find the policies that
+ * mention a user, group or access type, or that cover a resource, without
+ * scanning all policies.
+ *
+ * getCandidatePolicies() narrows the policies down with the index; the
+ * search filter is still to be applied to the returned policies for the
+ * parameters that are not indexed, and to confirm resource matches.
+ */
+public class RangerPolicySearchIndex {
+	private static final Log LOG = LogFactory.getLog(RangerPolicySearchIndex.class);
+
+	private final Long                                                   policyVersion;
+	private final List<RangerPolicy>                                     policies;
+	private final Map<String, BitSet>                                    userIndex       = new HashMap<String, BitSet>();
+	private final Map<String, BitSet>                                    groupIndex      = new HashMap<String, BitSet>();
+	private final Map<String, BitSet>                                    accessTypeIndex = new HashMap<String, BitSet>();
+	private final Map<String, RangerResourceTrie<PolicyResourceEvaluator>> resourceTries   = new HashMap<String, RangerResourceTrie<PolicyResourceEvaluator>>();
+
+	public RangerPolicySearchIndex(ServicePolicies servicePolicies) {
+		long startTimeMs = System.currentTimeMillis();
+
+		this.policyVersion = servicePolicies.getPolicyVersion();
+		this.policies      = servicePolicies.getPolicies() != null ? servicePolicies.getPolicies() : Collections.<RangerPolicy>emptyList();
+
+		RangerServiceDef              serviceDef = servicePolicies.getServiceDef();
+		List<PolicyResourceEvaluator> evaluators = new ArrayList<PolicyResourceEvaluator>();
+
+		for (int i = 0; i < policies.size(); i++) {
+			RangerPolicy policy = policies.get(i);
+
+			addPolicyItems(i, policy.getPolicyItems());
+			addPolicyItems(i, policy.getDenyPolicyItems());
+			addPolicyItems(i, policy.getAllowExceptions());
+			addPolicyItems(i, policy.getDenyExceptions());
+			addPolicyItems(i, policy.getDataMaskPolicyItems());
+			addPolicyItems(i, policy.getRowFilterPolicyItems());
+
+			if (serviceDef != null && policy.getResources() != null && !policy.getResources().isEmpty()) {
+				evaluators.add(new PolicyResourceEvaluator(i, policy, serviceDef));
+			}
+		}
+
+		if (serviceDef != null && serviceDef.getResources() != null) {
+			for (RangerResourceDef resourceDef : serviceDef.getResources()) {
+				resourceTries.put(resourceDef.getName(), new RangerResourceTrie<PolicyResourceEvaluator>(getTrieResourceDef(resourceDef), evaluators));
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("RangerPolicySearchIndex(service=" + servicePolicies.getServiceName() + ", policyVersion=" + policyVersion + "): policyCount=" + policies.size()
+					+ ", users=" + userIndex.size() + ", groups=" + groupIndex.size() + ", accessTypes=" + accessTypeIndex.size()
+					+ ", buildTimeMs=" + (System.currentTimeMillis() - startTimeMs));
+		}
+	}
+
+	public Long getPolicyVersion() {
+		return policyVersion;
+	}
+
+	public static boolean hasIndexedParams(SearchFilter filter) {
+		return filter != null && (StringUtils.isNotEmpty(filter.getParam(SearchFilter.USER))
+								|| StringUtils.isNotEmpty(filter.getParam(SearchFilter.GROUP))
+								|| StringUtils.isNotEmpty(filter.getParam(SearchFilter.ACCESS_TYPE))
+								|| filter.getParamsWithPrefix(SearchFilter.RESOURCE_PREFIX, true) != null);
+	}
+
+	/**
+	 * Returns, in the order of cached policies, the policies that may match
+	 * the user, group, access-type and resource parameters of the filter.
+	 * The returned list can be modified by the caller.
+	 */
+	public List<RangerPolicy> getCandidatePolicies(SearchFilter filter) {
+		BitSet matches = new BitSet(policies.size());
+
+		matches.set(0, policies.size());
+
+		if (filter != null) {
+			retain(matches, userIndex, filter.getParam(SearchFilter.USER), false);
+			retain(matches, groupIndex, filter.getParam(SearchFilter.GROUP), false);
+			retain(matches, accessTypeIndex, filter.getParam(SearchFilter.ACCESS_TYPE), true);
+
+			Map<String, String> resources = filter.getParamsWithPrefix(SearchFilter.RESOURCE_PREFIX, true);
+
+			if (resources != null) {
+				for (Map.Entry<String, String> entry : resources.entrySet()) {
+					if (matches.isEmpty()) {
+						break;
+					}
+
+					retainForResource(matches, entry.getKey(), entry.getValue());
+				}
+			}
+		}
+
+		List<RangerPolicy> ret = new ArrayList<RangerPolicy>(matches.cardinality());
+
+		for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+			ret.add(policies.get(i));
+		}
+
+		return ret;
+	}
+
+	private void addPolicyItems(int policyIndex, List<? extends RangerPolicyItem> policyItems) {
+		if (CollectionUtils.isEmpty(policyItems)) {
+			return;
+		}
+
+		for (RangerPolicyItem policyItem : policyItems) {
+			for (String user : policyItem.getUsers()) {
+				add(userIndex, user, policyIndex);
+			}
+
+			for (String group : policyItem.getGroups()) {
+				add(groupIndex, group, policyIndex);
+			}
+
+			for (RangerPolicyItemAccess access : policyItem.getAccesses()) {
+				if (access.getType() != null) {
+					add(accessTypeIndex, access.getType().toLowerCase(), policyIndex);
+				}
+			}
+		}
+	}
+
+	private void add(Map<String, BitSet> index, String key, int policyIndex) {
+		BitSet policyIndexes = index.get(key);
+
+		if (policyIndexes == null) {
+			policyIndexes = new BitSet();
+
+			index.put(key, policyIndexes);
+		}
+
+		policyIndexes.set(policyIndex);
+	}
+
+	private void retain(BitSet matches, Map<String, BitSet> index, String key, boolean ignoreCase) {
+		if (StringUtils.isEmpty(key)) {
+			return;
+		}
+
+		BitSet policyIndexes = index.get(ignoreCase ? key.toLowerCase() : key);
+
+		if (policyIndexes == null) {
+			matches.clear();
+		} else {
+			matches.and(policyIndexes);
+		}
+	}
+
+	private void retainForResource(BitSet matches, String resourceName, String resourceValue) {
+		RangerResourceTrie<PolicyResourceEvaluator> trie = resourceTries.get(resourceName);
+
+		if (trie == null) {
+			matches.clear();
+
+			return;
+		}
+
+		List<PolicyResourceEvaluator> evaluators    = trie.getEvaluatorsForResource(resourceValue == null ? "" : resourceValue);
+		BitSet                        policyIndexes = new BitSet(policies.size());
+
+		if (evaluators != null) {
+			for (PolicyResourceEvaluator evaluator : evaluators) {
+				policyIndexes.set(evaluator.policyIndex);
+			}
+		}
+
+		matches.and(policyIndexes);
+	}
+
+	/*
+	 * The search matches resource values case-sensitively, with '*' and '?' of
+	 * policy values always as wildcards. The trie is built without case and
+	 * with wildcards, so that it returns all policies the search could match.
+	 */
+	private static RangerResourceDef getTrieResourceDef(RangerResourceDef resourceDef) {
+		RangerResourceDef   ret            = new RangerResourceDef(resourceDef);
+		Map<String, String> matcherOptions = new HashMap<String, String>();
+
+		if (resourceDef.getMatcherOptions() != null) {
+			matcherOptions.putAll(resourceDef.getMatcherOptions());
+		}
+
+		matcherOptions.put(RangerAbstractResourceMatcher.OPTION_IGNORE_CASE, Boolean.TRUE.toString());
+		matcherOptions.put(RangerAbstractResourceMatcher.OPTION_WILD_CARD, Boolean.TRUE.toString());
+
+		ret.setMatcherOptions(matcherOptions);
+
+		return ret;
+	}
+
+	static class PolicyResourceEvaluator implements RangerPolicyResourceEvaluator {
+		final int                                 policyIndex;
+		private final RangerPolicy                policy;
+		private final RangerPolicyResourceMatcher policyResourceMatcher;
+		private final Integer                     leafResourceLevel;
+
+		PolicyResourceEvaluator(int policyIndex, RangerPolicy policy, RangerServiceDef serviceDef) {
+			RangerDefaultPolicyResourceMatcher matcher = new RangerDefaultPolicyResourceMatcher();
+
+			matcher.setServiceDef(serviceDef);
+			matcher.setPolicy(policy);
+			matcher.init();
+
+			this.policyIndex           = policyIndex;
+			this.policy                = policy;
+			this.policyResourceMatcher = matcher;
+			this.leafResourceLevel     = ServiceDefUtil.getLeafResourceLevel(serviceDef, policy.getResources());
+		}
+
+		@Override
+		public long getId() {
+			return policyIndex;
+		}
+
+		@Override
+		public RangerPolicyResourceMatcher getPolicyResourceMatcher() {
+			return policyResourceMatcher;
+		}
+
+		@Override
+		public Map<String, RangerPolicyResource> getPolicyResource() {
+			return policy.getResources();
+		}
+
+		@Override
+		public RangerResourceMatcher getResourceMatcher(String resourceName) {
+			return policyResourceMatcher.getResourceMatcher(resourceName);
+		}
+
+		@Override
+		public Integer getLeafResourceLevel() {
+			return leafResourceLevel;
+		}
+
+		@Override
+		public int compareTo(RangerPolicyResourceEvaluator other) {
+			return Long.compare(getId(), other.getId());
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicyResourceSignature;
+import org.apache.ranger.plugin.util.ServicePolicies;
+
+/**
+ * Resource signatures of the cached policies of a service, to find the
+ * policies having a given signature with a single lookup.
+ *
+ * Signatures are computed from the policies, as the cached policies don't
+ * carry the signature stored in the database.
+ */
+public class RangerPolicySignatureMap {
+	private static final Log LOG = LogFactory.getLog(RangerPolicySignatureMap.class);
+
+	private final Long                            policyVersion;
+	private final Map<String, List<RangerPolicy>> policiesBySignature = new HashMap<String, List<RangerPolicy>>();
+
+	public RangerPolicySignatureMap(ServicePolicies servicePolicies) {
+		long startTimeMs = System.currentTimeMillis();
+
+		this.policyVersion = servicePolicies.getPolicyVersion();
+
+		if (servicePolicies.getPolicies() != null) {
+			for (RangerPolicy policy : servicePolicies.getPolicies()) {
+				String             signature = new RangerPolicyResourceSignature(policy).getSignature();
+				List<RangerPolicy> policies  = policiesBySignature.get(signature);
+
+				if (policies == null) {
+					policies = new ArrayList<RangerPolicy>(1);
+
+					policiesBySignature.put(signature, policies);
+				}
+
+				policies.add(policy);
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("RangerPolicySignatureMap(" + servicePolicies.getServiceName() + ", version=" + policyVersion + "): signatures=" + policiesBySignature.size()
+					+ ", timeTakenMs=" + (System.currentTimeMillis() - startTimeMs));
+		}
+	}
+
+	public Long getPolicyVersion() {
+		return policyVersion;
+	}
+
+	/**
+	 * @param isPolicyEnabled when not null, only policies with this enabled-status are returned
+	 */
+	public List<RangerPolicy> getPolicies(String signature, Boolean isPolicyEnabled) {
+		List<RangerPolicy> policies = policiesBySignature.get(signature);
+
+		if (policies == null) {
+			return Collections.emptyList();
+		}
+
+		List<RangerPolicy> ret = new ArrayList<RangerPolicy>(policies.size());
+
+		for (RangerPolicy policy : policies) {
+			if (isPolicyEnabled == null || isPolicyEnabled.equals(policy.getIsEnabled())) {
+				ret.add(policy);
+			}
+		}
+
+		return ret;
+	}
+}
@@ -21,14 +21,24 @@ package org.apache.ranger.common;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.ranger.biz.ServiceDBStore;
 import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.policyengine.CacheMap;
 import org.apache.ranger.plugin.store.ServiceStore;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.util.RangerResourceScope;
 import org.apache.ranger.plugin.util.ServicePolicies;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -36,15 +46,25 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.codec.binary.Hex;
+import org.codehaus.jackson.map.ObjectMapper;
 
 public class RangerServicePoliciesCache {
 	private static final Log LOG = LogFactory.getLog(RangerServicePoliciesCache.class);
 
 	private static final int MAX_WAIT_TIME_FOR_UPDATE = 10;
+	private static final long FULL_REFRESH_INTERVAL_MS = 60 * 60 * 1000L;
+	private static final int MAX_RESOURCE_SCOPES = 32;
 
 	private static volatile RangerServicePoliciesCache sInstance = null;
 	private final boolean useServicePoliciesCache;
 	private final int waitTimeInSeconds;
+	private final boolean incrementalRefresh;
+	private final long fullRefreshIntervalMs;
+	private final int maxResourceScopes;
 
 	private final Map<String, ServicePoliciesWrapper> servicePoliciesMap = new HashMap<String, ServicePoliciesWrapper>();
 
@@ -62,6 +82,9 @@ public class RangerServicePoliciesCache {
 	private RangerServicePoliciesCache() {
 		useServicePoliciesCache = RangerConfiguration.getInstance().getBoolean("ranger.admin.policy.download.usecache", true);
 		waitTimeInSeconds = RangerConfiguration.getInstance().getInt("ranger.admin.policy.download.cache.max.waittime.for.update", MAX_WAIT_TIME_FOR_UPDATE);
+		incrementalRefresh = RangerConfiguration.getInstance().getBoolean("ranger.admin.policy.download.cache.incremental.enabled", false);
+		fullRefreshIntervalMs = RangerConfiguration.getInstance().getLong("ranger.admin.policy.download.cache.full.refresh.interval.ms", FULL_REFRESH_INTERVAL_MS);
+		maxResourceScopes = RangerConfiguration.getInstance().getInt("ranger.admin.policy.download.cache.max.resource.scopes", MAX_RESOURCE_SCOPES);
 	}
 
 	public void dump() {
@@ -88,6 +111,85 @@ public class RangerServicePoliciesCache {
 		}
 	}
 
+	/**
+	 * Returns the download payload of the given policies. When they are of the
+	 * version currently cached for the service, the payload is built once and
+	 * shared by all downloads of that version.
+	 */
+	public ServicePoliciesPayload getServicePoliciesPayload(String serviceName, ServicePolicies servicePolicies) throws IOException {
+		return getServicePoliciesPayload(serviceName, servicePolicies, null);
+	}
+
+	/**
+	 * Returns the download payload of the given policies, filtered for the
+	 * resource scope. Payloads of the cached version are shared by all downloads
+	 * having the same scope.
+	 */
+	public ServicePoliciesPayload getServicePoliciesPayload(String serviceName, ServicePolicies servicePolicies, RangerResourceScope resourceScope) throws IOException {
+		ServicePoliciesWrapper servicePoliciesWrapper = null;
+
+		if (useServicePoliciesCache) {
+			synchronized (this) {
+				servicePoliciesWrapper = servicePoliciesMap.get(serviceName);
+			}
+		}
+
+		final ServicePoliciesPayload ret;
+
+		if (servicePoliciesWrapper != null) {
+			ret = servicePoliciesWrapper.getPayload(servicePolicies, resourceScope);
+		} else {
+			ret = new ServicePoliciesPayload(servicePolicies);
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Returns the payload already built for the given version and resource
+	 * scope, or null; used to answer If-None-Match without filtering policies.
+	 */
+	public ServicePoliciesPayload getCachedServicePoliciesPayload(String serviceName, Long policyVersion, RangerResourceScope resourceScope) {
+		ServicePoliciesWrapper servicePoliciesWrapper = null;
+
+		if (useServicePoliciesCache) {
+			synchronized (this) {
+				servicePoliciesWrapper = servicePoliciesMap.get(serviceName);
+			}
+		}
+
+		return servicePoliciesWrapper != null ? servicePoliciesWrapper.getCachedPayload(policyVersion, resourceScope) : null;
+	}
+
+	/**
+	 * Returns the given policies filtered for the resource scope. For the
+	 * version currently cached for the service, the filtered policies are
+	 * computed once and shared by all downloads having the same scope.
+	 */
+	public ServicePolicies getScopedServicePolicies(String serviceName, ServicePolicies servicePolicies, RangerResourceScope resourceScope) {
+		if (servicePolicies == null || resourceScope == null) {
+			return servicePolicies;
+		}
+
+		ServicePoliciesWrapper servicePoliciesWrapper = null;
+
+		if (useServicePoliciesCache) {
+			synchronized (this) {
+				servicePoliciesWrapper = servicePoliciesMap.get(serviceName);
+			}
+		}
+
+		final ServicePolicies ret;
+
+		if (servicePoliciesWrapper != null) {
+			ret = servicePoliciesWrapper.getScopedServicePolicies(servicePolicies, resourceScope);
+		} else {
+			ret = resourceScope.filter(servicePolicies);
+		}
+
+		return ret;
+	}
+
 	public ServicePolicies getServicePolicies(String serviceName, Long serviceId, ServiceStore serviceStore) throws Exception {
 
 		if (LOG.isDebugEnabled()) {
@@ -164,14 +266,81 @@ public class RangerServicePoliciesCache {
 		return ret;
 	}
 
+	/**
+	 * Returns the search index over the cached policies of the service. The
+	 * index is built once per policy version, along with the cached policies.
+	 */
+	public RangerPolicySearchIndex getPolicySearchIndex(String serviceName, Long serviceId, ServiceStore serviceStore) throws Exception {
+		RangerPolicySearchIndex ret             = null;
+		ServicePolicies         servicePolicies = getServicePolicies(serviceName, serviceId, serviceStore);
+
+		if (servicePolicies != null) {
+			ServicePoliciesWrapper servicePoliciesWrapper = null;
+
+			if (useServicePoliciesCache) {
+				synchronized (this) {
+					servicePoliciesWrapper = servicePoliciesMap.get(serviceName);
+				}
+			}
+
+			if (servicePoliciesWrapper != null) {
+				ret = servicePoliciesWrapper.getSearchIndex(servicePolicies);
+			} else {
+				ret = new RangerPolicySearchIndex(servicePolicies);
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Returns the resource signatures of the cached policies of the service,
+	 * computed once per policy version. Returns null when policies are not
+	 * cached. Policies are never loaded here: lookups run inside write
+	 * transactions, where the database may hold policies that are not yet
+	 * committed and must not end up in the cache.
+	 */
+	public RangerPolicySignatureMap getPolicySignatureMap(String serviceName) {
+		RangerPolicySignatureMap ret = null;
+
+		if (useServicePoliciesCache && StringUtils.isNotBlank(serviceName)) {
+			ServicePoliciesWrapper servicePoliciesWrapper = null;
+
+			synchronized (this) {
+				servicePoliciesWrapper = servicePoliciesMap.get(serviceName);
+			}
+
+			if (servicePoliciesWrapper != null) {
+				ServicePolicies servicePolicies = servicePoliciesWrapper.getServicePolicies();
+
+				if (servicePolicies != null) {
+					ret = servicePoliciesWrapper.getSignatureMap(servicePolicies);
+				}
+			}
+		}
+
+		return ret;
+	}
+
 	private class ServicePoliciesWrapper {
 		final Long serviceId;
 		ServicePolicies servicePolicies;
 		Date updateTime = null;
 		long longestDbLoadTimeInMs = -1;
+		ServicePoliciesPayload payload = null;
+		Map<String, ServicePoliciesPayload> scopedPayloads = null;
+		Map<String, ServicePolicies> scopedServicePolicies = null;
+		RangerPolicySearchIndex searchIndex = null;
+		RangerPolicySignatureMap signatureMap = null;
+		long lastFullLoadTimeMs = 0;
 
 		ReentrantLock lock = new ReentrantLock();
 
+		// sequence of the last check against the version in the database, and of the
+		// last one that completed without error; updated under the lock
+		volatile long startedCheckSeq   = 0;
+		long          completedCheckSeq = 0;
+
 		ServicePoliciesWrapper(Long serviceId) {
 			this.serviceId = serviceId;
 			servicePolicies = null;
@@ -191,13 +360,108 @@ public class RangerServicePoliciesCache {
 			return longestDbLoadTimeInMs;
 		}
 
+		synchronized ServicePoliciesPayload getCachedPayload(Long version, RangerResourceScope resourceScope) {
+			if (servicePolicies == null || version == null || !version.equals(servicePolicies.getPolicyVersion())) {
+				return null;
+			}
+
+			ServicePoliciesPayload ret = resourceScope == null ? payload : (scopedPayloads != null ? scopedPayloads.get(resourceScope.getSignature()) : null);
+
+			return ret != null && version.equals(ret.getPolicyVersion()) ? ret : null;
+		}
+
+		synchronized ServicePolicies getScopedServicePolicies(ServicePolicies downloadedPolicies, RangerResourceScope resourceScope) {
+			Long    version         = downloadedPolicies.getPolicyVersion();
+			boolean isCachedVersion = servicePolicies != null && version != null && version.equals(servicePolicies.getPolicyVersion());
+
+			if (!isCachedVersion) {
+				return resourceScope.filter(downloadedPolicies);
+			}
+
+			ServicePolicies ret = scopedServicePolicies != null ? scopedServicePolicies.get(resourceScope.getSignature()) : null;
+
+			if (ret == null || !version.equals(ret.getPolicyVersion())) {
+				ret = resourceScope.filter(downloadedPolicies);
+
+				if (scopedServicePolicies == null) {
+					scopedServicePolicies = new CacheMap<String, ServicePolicies>(maxResourceScopes);
+				}
+
+				scopedServicePolicies.put(resourceScope.getSignature(), ret);
+			}
+
+			return ret;
+		}
+
+		synchronized ServicePoliciesPayload getPayload(ServicePolicies downloadedPolicies, RangerResourceScope resourceScope) throws IOException {
+			Long   version = downloadedPolicies.getPolicyVersion();
+			boolean isCachedVersion = servicePolicies != null && version != null && version.equals(servicePolicies.getPolicyVersion());
+
+			ServicePoliciesPayload ret = resourceScope == null ? payload : (scopedPayloads != null ? scopedPayloads.get(resourceScope.getSignature()) : null);
+
+			if (ret == null || !isCachedVersion || !version.equals(ret.getPolicyVersion())) {
+				ret = new ServicePoliciesPayload(downloadedPolicies);
+
+				if (isCachedVersion) {
+					if (resourceScope == null) {
+						payload = ret;
+					} else {
+						if (scopedPayloads == null) {
+							scopedPayloads = new CacheMap<String, ServicePoliciesPayload>(maxResourceScopes);
+						}
+
+						scopedPayloads.put(resourceScope.getSignature(), ret);
+					}
+				}
+			}
+
+			return ret;
+		}
+
+		synchronized RangerPolicySearchIndex getSearchIndex(ServicePolicies cachedPolicies) {
+			RangerPolicySearchIndex ret = searchIndex;
+
+			if (ret == null || cachedPolicies.getPolicyVersion() == null || !cachedPolicies.getPolicyVersion().equals(ret.getPolicyVersion())) {
+				ret = new RangerPolicySearchIndex(cachedPolicies);
+
+				if (cachedPolicies == servicePolicies) {
+					searchIndex = ret;
+				}
+			}
+
+			return ret;
+		}
+
+		synchronized RangerPolicySignatureMap getSignatureMap(ServicePolicies cachedPolicies) {
+			RangerPolicySignatureMap ret = signatureMap;
+
+			if (ret == null || cachedPolicies.getPolicyVersion() == null || !cachedPolicies.getPolicyVersion().equals(ret.getPolicyVersion())) {
+				ret = new RangerPolicySignatureMap(cachedPolicies);
+
+				if (cachedPolicies == servicePolicies) {
+					signatureMap = ret;
+				}
+			}
+
+			return ret;
+		}
+
 		boolean getLatestOrCached(String serviceName, ServiceStore serviceStore) throws Exception {
 			boolean ret = false;
+			long    checkSeqOnArrival = startedCheckSeq;
 
 			try {
 				ret = lock.tryLock(waitTimeInSeconds, TimeUnit.SECONDS);
-				if (ret) {
+
+				// concurrent downloads of the same service are coalesced: when a check
+				// started after this request arrived and completed, its result is current
+				// for this request too. A failed check is not, and is retried by waiters
+				if (ret && completedCheckSeq <= checkSeqOnArrival) {
+					long checkSeq = ++startedCheckSeq;
+
 					getLatest(serviceName, serviceStore);
+
+					completedCheckSeq = checkSeq;
 				}
 			} catch (InterruptedException exception) {
 				LOG.error("getLatestOrCached:lock got interrupted..", exception);
@@ -227,9 +491,17 @@ public class RangerServicePoliciesCache {
 					LOG.debug("loading servicePolicies from db ... cachedServicePoliciesVersion=" + (servicePolicies != null ? servicePolicies.getPolicyVersion() : null) + ", servicePolicyVersionInDb=" + servicePolicyVersionInDb);
 				}
 
-				long startTimeMs = System.currentTimeMillis();
+				long startTimeMs   = System.currentTimeMillis();
+
+				ServicePolicies servicePoliciesFromDb;
+
+				if (isIncrementalLoad(serviceStore, startTimeMs)) {
+					servicePoliciesFromDb = ((ServiceDBStore) serviceStore).getServicePolicies(serviceName, servicePolicies);
+				} else {
+					servicePoliciesFromDb = serviceStore.getServicePolicies(serviceName);
 
-				ServicePolicies servicePoliciesFromDb = serviceStore.getServicePolicies(serviceName);
+					lastFullLoadTimeMs = startTimeMs;
+				}
 
 				long dbLoadTime = System.currentTimeMillis() - startTimeMs;
 
@@ -252,6 +524,19 @@ public class RangerServicePoliciesCache {
 			}
 		}
 
+		/*
+		 * Incremental loads read only the policies recorded in x_policy_change_log for the
+		 * versions after the cached one. Updates that do not bump the policy version, like
+		 * renames of users or groups referenced in policy items, are not seen by them; such
+		 * policies stay stale until the next full load, every
+		 * ranger.admin.policy.download.cache.full.refresh.interval.ms
+		 */
+		private boolean isIncrementalLoad(ServiceStore serviceStore, long now) {
+			return incrementalRefresh && servicePolicies != null
+					&& serviceStore instanceof ServiceDBStore
+					&& (now - lastFullLoadTimeMs) < fullRefreshIntervalMs;
+		}
+
 		private void pruneUnusedAttributes() {
 			if (servicePolicies != null) {
 				pruneUnusedPolicyAttributes(servicePolicies.getPolicies());
@@ -284,7 +569,8 @@ public class RangerServicePoliciesCache {
 			sb.append("updateTime=").append(updateTime)
 					.append(", longestDbLoadTimeInMs=").append(longestDbLoadTimeInMs)
 					.append(", Service-Version:").append(servicePolicies != null ? servicePolicies.getPolicyVersion() : "null")
-					.append(", Number-Of-Policies:").append(servicePolicies != null ? servicePolicies.getPolicies().size() : 0);
+					.append(", Number-Of-Policies:").append(servicePolicies != null ? servicePolicies.getPolicies().size() : 0)
+					.append(", Payload-Size:").append(payload != null ? payload.getCompressedSize() : 0);
 
 			sb.append("} ");
 
@@ -300,5 +586,74 @@ public class RangerServicePoliciesCache {
 			return sb.toString();
 		}
 	}
-}
 
+	/**
+	 * JSON of a policy download, kept gzip-compressed along with its ETag
+	 */
+	public static class ServicePoliciesPayload {
+		private static final ObjectMapper MAPPER = new ObjectMapper();
+
+		private final Long   policyVersion;
+		private final String eTag;
+		private final byte[] compressedJson;
+
+		ServicePoliciesPayload(ServicePolicies servicePolicies) throws IOException {
+			byte[] json = MAPPER.writeValueAsBytes(servicePolicies);
+
+			ByteArrayOutputStream out  = new ByteArrayOutputStream(json.length / 8 + 64);
+			GZIPOutputStream      gzip = new GZIPOutputStream(out);
+
+			gzip.write(json);
+			gzip.close();
+
+			this.policyVersion  = servicePolicies.getPolicyVersion();
+			this.eTag           = digest(json);
+			this.compressedJson = out.toByteArray();
+		}
+
+		public Long getPolicyVersion() {
+			return policyVersion;
+		}
+
+		public String getETag() {
+			return eTag;
+		}
+
+		/**
+		 * @param ifNoneMatch value of the If-None-Match request header
+		 */
+		public boolean isMatchingETag(String ifNoneMatch) {
+			if (StringUtils.isNotBlank(ifNoneMatch)) {
+				for (String tag : ifNoneMatch.split(",")) {
+					tag = StringUtils.removeStart(tag.trim(), "W/");
+
+					if (tag.equals("*") || eTag.equals(StringUtils.strip(tag, "\""))) {
+						return true;
+					}
+				}
+			}
+
+			return false;
+		}
+
+		public int getCompressedSize() {
+			return compressedJson.length;
+		}
+
+		public InputStream getCompressedStream() {
+			return new ByteArrayInputStream(compressedJson);
+		}
+
+		public InputStream getStream() throws IOException {
+			return new GZIPInputStream(getCompressedStream());
+		}
+
+		private static String digest(byte[] data) {
+			try {
+				return Hex.encodeHexString(MessageDigest.getInstance("MD5").digest(data));
+			} catch (NoSuchAlgorithmException excp) {
+				return Integer.toHexString(Arrays.hashCode(data));
+			}
+		}
+	}
+}
@@ -22,12 +22,15 @@ package org.apache.ranger.common;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
+import org.apache.ranger.biz.TagDBStore;
 import org.apache.ranger.plugin.model.RangerServiceResource;
 import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.policyengine.CacheMap;
 import org.apache.ranger.plugin.store.TagStore;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.util.RangerResourceScope;
 import org.apache.ranger.plugin.util.ServiceTags;
 
 import java.util.Date;
@@ -41,10 +44,13 @@ public class RangerServiceTagsCache {
 	private static final Log LOG = LogFactory.getLog(RangerServiceTagsCache.class);
 
 	private static final int MAX_WAIT_TIME_FOR_UPDATE = 10;
+	private static final int MAX_RESOURCE_SCOPES = 32;
 
 	private static volatile RangerServiceTagsCache sInstance = null;
 	private final boolean useServiceTagsCache;
+	private final boolean useIncrementalRefresh;
 	private final int waitTimeInSeconds;
+	private final int maxResourceScopes;
 
 	private final Map<String, ServiceTagsWrapper> serviceTagsMap = new HashMap<String, ServiceTagsWrapper>();
 
@@ -61,7 +67,9 @@ public class RangerServiceTagsCache {
 
 	private RangerServiceTagsCache() {
 		useServiceTagsCache = RangerConfiguration.getInstance().getBoolean("ranger.admin.tag.download.usecache", true);
+		useIncrementalRefresh = RangerConfiguration.getInstance().getBoolean("ranger.admin.tag.download.cache.incremental.refresh", true);
 		waitTimeInSeconds = RangerConfiguration.getInstance().getInt("ranger.admin.tag.download.cache.max.waittime.for.update", MAX_WAIT_TIME_FOR_UPDATE);
+		maxResourceScopes = RangerConfiguration.getInstance().getInt("ranger.admin.tag.download.cache.max.resource.scopes", MAX_RESOURCE_SCOPES);
 	}
 
 	public void dump() {
@@ -163,14 +171,55 @@ public class RangerServiceTagsCache {
 		return ret;
 	}
 
+	/**
+	 * Returns the given service-tags filtered for the resource scope. For the
+	 * version currently cached for the service, the filtered service-tags are
+	 * computed once and shared by all downloads having the same scope.
+	 */
+	public ServiceTags getScopedServiceTags(String serviceName, ServiceTags serviceTags, RangerResourceScope resourceScope) {
+		if (serviceTags == null || resourceScope == null) {
+			return serviceTags;
+		}
+
+		ServiceTagsWrapper serviceTagsWrapper = null;
+
+		if (useServiceTagsCache) {
+			synchronized (this) {
+				serviceTagsWrapper = serviceTagsMap.get(serviceName);
+			}
+		}
+
+		final ServiceTags ret;
+
+		if (serviceTagsWrapper != null) {
+			ret = serviceTagsWrapper.getScopedServiceTags(serviceTags, resourceScope);
+		} else {
+			ret = resourceScope.filter(serviceTags);
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("RangerServiceTagsCache.getScopedServiceTags(" + serviceName + ", " + resourceScope + "): serviceResources=" + ret.getServiceResources().size() + " of " + serviceTags.getServiceResources().size());
+		}
+
+		return ret;
+	}
+
 	private class ServiceTagsWrapper {
 		final Long serviceId;
 		ServiceTags serviceTags;
+		String filterVersion = null;
 		Date updateTime = null;
 		long longestDbLoadTimeInMs = -1;
+		long incrementalRefreshCount = 0;
+		Map<String, ServiceTags> scopedServiceTags = null;
 
 		ReentrantLock lock = new ReentrantLock();
 
+		// sequence of the last check against the version in the database, and of the
+		// last one that completed without error; updated under the lock
+		volatile long startedCheckSeq   = 0;
+		long          completedCheckSeq = 0;
+
 		ServiceTagsWrapper(Long serviceId) {
 			this.serviceId = serviceId;
 			serviceTags = null;
@@ -190,13 +239,42 @@ public class RangerServiceTagsCache {
 			return longestDbLoadTimeInMs;
 		}
 
+		synchronized ServiceTags getScopedServiceTags(ServiceTags downloadedServiceTags, RangerResourceScope resourceScope) {
+			if (downloadedServiceTags != serviceTags) {
+				return resourceScope.filter(downloadedServiceTags);
+			}
+
+			ServiceTags ret = scopedServiceTags != null ? scopedServiceTags.get(resourceScope.getSignature()) : null;
+
+			if (ret == null || ret.getTagVersion() == null || !ret.getTagVersion().equals(downloadedServiceTags.getTagVersion())) {
+				ret = resourceScope.filter(downloadedServiceTags);
+
+				if (scopedServiceTags == null) {
+					scopedServiceTags = new CacheMap<String, ServiceTags>(maxResourceScopes);
+				}
+
+				scopedServiceTags.put(resourceScope.getSignature(), ret);
+			}
+
+			return ret;
+		}
+
 		boolean getLatestOrCached(String serviceName, TagStore tagStore) throws Exception {
 			boolean ret = false;
+			long    checkSeqOnArrival = startedCheckSeq;
 
 			try {
 				ret = lock.tryLock(waitTimeInSeconds, TimeUnit.SECONDS);
-				if (ret) {
+
+				// concurrent downloads of the same service are coalesced: when a check
+				// started after this request arrived and completed, its result is current
+				// for this request too. A failed check is not, and is retried by waiters
+				if (ret && completedCheckSeq <= checkSeqOnArrival) {
+					long checkSeq = ++startedCheckSeq;
+
 					getLatest(serviceName, tagStore);
+
+					completedCheckSeq = checkSeq;
 				}
 			} catch (InterruptedException exception) {
 				LOG.error("getLatestOrCached:lock got interrupted..", exception);
@@ -229,7 +307,28 @@ public class RangerServiceTagsCache {
 
 				long startTimeMs = System.currentTimeMillis();
 
-				ServiceTags serviceTagsFromDb = tagStore.getServiceTags(serviceName);
+				ServiceTags serviceTagsFromDb = null;
+				boolean     isIncremental     = false;
+				String      filterVersionInDb = null;
+
+				if (tagStore instanceof TagDBStore) {
+					TagDBStore tagDBStore = (TagDBStore) tagStore;
+
+					filterVersionInDb = tagDBStore.getServiceTagsFilterVersion(serviceName);
+
+					if (useIncrementalRefresh && serviceTags != null && StringUtils.equals(filterVersion, filterVersionInDb)) {
+						try {
+							serviceTagsFromDb = tagDBStore.getServiceTagsDelta(serviceName, serviceTags);
+							isIncremental     = serviceTagsFromDb != null;
+						} catch (Exception exception) {
+							LOG.warn("getLatest(" + serviceName + "): failed to apply tag changes to cached serviceTags. Reloading all tags", exception);
+						}
+					}
+				}
+
+				if (serviceTagsFromDb == null) {
+					serviceTagsFromDb = tagStore.getServiceTags(serviceName);
+				}
 
 				long dbLoadTime = System.currentTimeMillis() - startTimeMs;
 
@@ -242,8 +341,20 @@ public class RangerServiceTagsCache {
 					if (serviceTagsFromDb.getTagVersion() == null) {
 						serviceTagsFromDb.setTagVersion(0L);
 					}
-					serviceTags = serviceTagsFromDb;
-					pruneUnusedAttributes();
+					if (isIncremental) {
+						// resources and tags read for the changes are populated without the pruned attributes
+						serviceTagsFromDb.setOp(null);
+						serviceTagsFromDb.setTagUpdateTime(null);
+						serviceTagsFromDb.setTagDefinitions(null);
+
+						serviceTags = serviceTagsFromDb;
+
+						incrementalRefreshCount++;
+					} else {
+						serviceTags = serviceTagsFromDb;
+						pruneUnusedAttributes();
+					}
+					filterVersion = filterVersionInDb;
 				}
 			}
 
@@ -286,6 +397,7 @@ public class RangerServiceTagsCache {
 
 			sb.append("updateTime=").append(updateTime)
 					.append(", longestDbLoadTimeInMs=").append(longestDbLoadTimeInMs)
+					.append(", incrementalRefreshCount=").append(incrementalRefreshCount)
 					.append(", Service-Version:").append(serviceTags != null ? serviceTags.getTagVersion() : "null")
 					.append(", Number-Of-Tags:").append(serviceTags != null ? serviceTags.getTags().size() : 0);
 
@@ -21,6 +21,7 @@ package org.apache.ranger.common;
 
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -50,6 +51,8 @@ import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
 import org.apache.ranger.plugin.model.RangerService;
 import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
 import org.apache.ranger.plugin.util.GrantRevokeRequest;
+import org.apache.ranger.plugin.util.RangerRESTUtils;
+import org.apache.ranger.plugin.util.RangerResourceScope;
 import org.apache.ranger.plugin.util.RangerServiceNotFoundException;
 import org.apache.ranger.plugin.util.SearchFilter;
 import org.apache.ranger.view.VXAsset;
@@ -456,6 +459,21 @@ public class ServiceUtil {
 		return ret;
 	}
 
+	/**
+	 * @return the resource scope a plugin asked its downloads to be limited to; null when not given
+	 */
+	public static RangerResourceScope getResourceScope(HttpServletRequest request) {
+		String[] scopeParams = request != null ? request.getParameterValues(RangerRESTUtils.REST_PARAM_RESOURCE_SCOPE) : null;
+
+		if (scopeParams == null || scopeParams.length == 0) {
+			return null;
+		}
+
+		RangerResourceScope ret = new RangerResourceScope(Arrays.asList(scopeParams));
+
+		return ret.isEmpty() ? null : ret;
+	}
+
 	public static String toAccessType(int permType) {
 		String ret = null;
 
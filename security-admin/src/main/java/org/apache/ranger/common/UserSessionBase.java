@@ -37,7 +37,7 @@ public class UserSessionBase implements Serializable {
 	private boolean keyAdmin = false;
 	private int authProvider = RangerConstants.USER_APP;
 	private List<String> userRoleList = new ArrayList<String>();
-	private RangerUserPermission rangerUserPermission;
+	private volatile RangerUserPermission rangerUserPermission;
 	int clientTimeOffsetInMinute = 0;
 	private Boolean isSSOEnabled;
 	private Boolean isSpnegoEnabled = false;
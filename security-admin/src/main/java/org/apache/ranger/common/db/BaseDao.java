@@ -92,6 +92,32 @@ public abstract class BaseDao<T> {
 		return ret;
 	}
 
+	/**
+	 * Persists the objects with a single flush. Only the flush is batched: as
+	 * JDBC batch writing is not enabled in persistence.xml, each object is
+	 * still inserted with a statement of its own
+	 */
+	public List<T> batchCreate(List<T> objs) {
+		for (T obj : objs) {
+			em.persist(obj);
+		}
+
+		em.flush();
+
+		return objs;
+	}
+
+	/**
+	 * Merges the objects with a single flush
+	 */
+	public void batchUpdate(List<T> objs) {
+		for (T obj : objs) {
+			em.merge(obj);
+		}
+
+		em.flush();
+	}
+
 	public T update(T obj) {
 		em.merge(obj);
 		em.flush();
@@ -113,6 +139,17 @@ public abstract class BaseDao<T> {
 		return true;
 	}
 
+	/**
+	 * Removes the objects with a single flush
+	 */
+	public void batchRemove(List<T> objs) {
+		for (T obj : objs) {
+			em.remove(obj);
+		}
+
+		em.flush();
+	}
+
 	public T getById(Long id) {
 		if (id == null) {
 			return null;
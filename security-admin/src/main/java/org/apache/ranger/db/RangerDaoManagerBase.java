@@ -366,6 +366,12 @@ public abstract class RangerDaoManagerBase {
 		if (className.equals("XXPluginInfo")) {
 			return getXXPluginInfo();
 		}
+		if (className.equals("XXTagChangeLog")) {
+			return getXXTagChangeLog();
+		}
+		if (className.equals("XXPolicyChangeLog")) {
+			return getXXPolicyChangeLog();
+		}
 		logger.error("No DaoManager found for className=" + className, new Throwable());
 		return null;
 	}
@@ -590,5 +596,13 @@ public abstract class RangerDaoManagerBase {
 	public XXPluginInfoDao getXXPluginInfo() {
 		return new XXPluginInfoDao(this);
 	}
+
+	public XXTagChangeLogDao getXXTagChangeLog() {
+		return new XXTagChangeLogDao(this);
+	}
+
+	public XXPolicyChangeLogDao getXXPolicyChangeLog() {
+		return new XXPolicyChangeLogDao(this);
+	}
 }
 
@@ -25,6 +25,7 @@ import java.util.List;
 
 import javax.persistence.NoResultException;
 
+import org.apache.commons.collections.CollectionUtils;
 import org.apache.ranger.common.db.BaseDao;
 import org.apache.ranger.entity.XXGroup;
 
@@ -81,4 +82,28 @@ public class XXGroupDao extends BaseDao<XXGroup> {
 		}
 	}
 
+	/**
+	 * @return id and name of the groups referenced by the policies of the service
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> getIdsAndNamesByServiceId(Long serviceId) {
+		if (serviceId == null) {
+			return new ArrayList<Object[]>();
+		}
+		return getEntityManager()
+				.createNamedQuery("XXGroup.getIdsAndNamesByServiceId")
+				.setParameter("serviceId", serviceId).getResultList();
+	}
+
+	public List<XXGroup> findByGroupNames(List<String> names) {
+		if (CollectionUtils.isEmpty(names)) {
+			return new ArrayList<XXGroup>();
+		}
+		try {
+			return getEntityManager().createNamedQuery("XXGroup.findByGroupNames", tClass)
+					.setParameter("names", names).getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<XXGroup>();
+		}
+	}
 }
@@ -27,6 +27,7 @@ import java.util.Set;
 
 import javax.persistence.NoResultException;
 
+import org.apache.commons.collections.CollectionUtils;
 import org.apache.log4j.Logger;
 import org.apache.ranger.common.db.BaseDao;
 import org.apache.ranger.entity.XXGroupUser;
@@ -114,4 +115,39 @@ public class XXGroupUserDao extends BaseDao<XXGroupUser> {
 		}
 	}
 
+	/**
+	 * @return id, userId, parentGroupId and group source of all group-user mappings
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> findAllMemberships() {
+		return getEntityManager().createNamedQuery("XXGroupUser.findAllMemberships").getResultList();
+	}
+
+	/**
+	 * @return user name and group name of all group-user mappings
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> findAllUserAndGroupNames() {
+		return getEntityManager().createNamedQuery("XXGroupUser.findAllUserAndGroupNames").getResultList();
+	}
+
+	/**
+	 * @return id, userId, parentGroupId and group source of the group-user mappings of the given users
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> findMembershipsByUserIds(List<Long> userIds) {
+		if (CollectionUtils.isEmpty(userIds)) {
+			return new ArrayList<Object[]>();
+		}
+
+		return getEntityManager().createNamedQuery("XXGroupUser.findMembershipsByUserIds").setParameter("userIds", userIds).getResultList();
+	}
+
+	public int deleteByIds(List<Long> ids) {
+		if (CollectionUtils.isEmpty(ids)) {
+			return 0;
+		}
+
+		return getEntityManager().createNamedQuery("XXGroupUser.deleteByIds").setParameter("ids", ids).executeUpdate();
+	}
 }
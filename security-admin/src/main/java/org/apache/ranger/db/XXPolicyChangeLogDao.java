@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ranger.db;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.NoResultException;
+
+import org.apache.ranger.common.DateUtil;
+import org.apache.ranger.common.db.BaseDao;
+import org.apache.ranger.entity.XXPolicyChangeLog;
+
+/**
+ */
+
+public class XXPolicyChangeLogDao extends BaseDao<XXPolicyChangeLog> {
+	/**
+	 * Default Constructor
+	 */
+	public XXPolicyChangeLogDao(RangerDaoManagerBase daoManager) {
+		super(daoManager);
+	}
+
+	@Override
+	public List<XXPolicyChangeLog> batchCreate(List<XXPolicyChangeLog> objs) {
+		Date createTime = DateUtil.getUTCDate();
+
+		for (XXPolicyChangeLog obj : objs) {
+			obj.setCreateTime(createTime);
+		}
+
+		return super.batchCreate(objs);
+	}
+
+	/**
+	 * @return changes of the service after fromVersion, upto and including toVersion
+	 */
+	public List<XXPolicyChangeLog> findByServiceIdAndVersions(Long serviceId, Long fromVersion, Long toVersion) {
+		if (serviceId == null || fromVersion == null || toVersion == null) {
+			return new ArrayList<XXPolicyChangeLog>();
+		}
+		try {
+			return getEntityManager()
+					.createNamedQuery("XXPolicyChangeLog.findByServiceIdAndVersions", tClass)
+					.setParameter("serviceId", serviceId)
+					.setParameter("fromVersion", fromVersion)
+					.setParameter("toVersion", toVersion)
+					.getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<XXPolicyChangeLog>();
+		}
+	}
+
+	public void deleteByServiceIdUptoVersion(Long serviceId, Long version) {
+		if (serviceId == null || version == null) {
+			return;
+		}
+
+		getEntityManager()
+				.createNamedQuery("XXPolicyChangeLog.deleteByServiceIdUptoVersion")
+				.setParameter("serviceId", serviceId)
+				.setParameter("version", version).executeUpdate();
+	}
+}
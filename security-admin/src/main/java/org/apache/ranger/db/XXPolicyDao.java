@@ -64,6 +64,20 @@ public class XXPolicyDao extends BaseDao<XXPolicy> {
 		}
 	}
 
+	@SuppressWarnings("unchecked")
+	public List<Long> findIdsByServiceId(Long serviceId) {
+		if (serviceId == null) {
+			return new ArrayList<Long>();
+		}
+		try {
+			return getEntityManager()
+					.createNamedQuery("XXPolicy.findIdsByServiceId")
+					.setParameter("serviceId", serviceId).getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<Long>();
+		}
+	}
+
 	public Long getMaxIdOfXXPolicy() {
 		try {
 			return (Long) getEntityManager().createNamedQuery("XXPolicy.getMaxIdOfXXPolicy").getSingleResult();
@@ -19,6 +19,7 @@
 
 package org.apache.ranger.db;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.persistence.NoResultException;
@@ -77,6 +78,17 @@ public class XXPortalUserDao extends BaseDao<XXPortalUser> {
     			.getResultList();
     }
 
+	/**
+	 * @return users who created or last updated a policy of the service
+	 */
+	public List<XXPortalUser> findByServiceId(Long serviceId) {
+		if (serviceId == null) {
+			return new ArrayList<XXPortalUser>();
+		}
+		return getEntityManager().createNamedQuery("XXPortalUser.findByServiceId", tClass)
+				.setParameter("serviceId", serviceId).getResultList();
+	}
+
 	public XXPortalUser findByXUserId(Long xUserId) {
 		if (xUserId == null) {
 			return null;
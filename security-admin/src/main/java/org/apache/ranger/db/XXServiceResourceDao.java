@@ -24,6 +24,7 @@ import java.util.List;
 
 import javax.persistence.NoResultException;
 
+import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.ranger.authorization.utils.StringUtil;
 import org.apache.ranger.common.db.BaseDao;
@@ -107,4 +108,54 @@ public class XXServiceResourceDao extends BaseDao<XXServiceResource> {
 			return new ArrayList<String>();
 		}
 	}
+
+	public List<XXServiceResource> findByGuids(List<String> guids) {
+		if (CollectionUtils.isEmpty(guids)) {
+			return new ArrayList<XXServiceResource>();
+		}
+		try {
+			return getEntityManager().createNamedQuery("XXServiceResource.findByGuids", tClass)
+					.setParameter("guids", guids).getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<XXServiceResource>();
+		}
+	}
+
+	public List<XXServiceResource> findByServiceAndResourceSignatures(Long serviceId, List<String> resourceSignatures) {
+		if (serviceId == null || CollectionUtils.isEmpty(resourceSignatures)) {
+			return new ArrayList<XXServiceResource>();
+		}
+		try {
+			return getEntityManager().createNamedQuery("XXServiceResource.findByServiceAndResourceSignatures", tClass)
+					.setParameter("serviceId", serviceId).setParameter("resourceSignatures", resourceSignatures)
+					.getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<XXServiceResource>();
+		}
+	}
+
+	public List<XXServiceResource> findByServiceAndIds(Long serviceId, List<Long> ids) {
+		if (serviceId == null || CollectionUtils.isEmpty(ids)) {
+			return new ArrayList<XXServiceResource>();
+		}
+		try {
+			return getEntityManager().createNamedQuery("XXServiceResource.findByServiceAndIds", tClass)
+					.setParameter("serviceId", serviceId).setParameter("ids", ids)
+					.getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<XXServiceResource>();
+		}
+	}
+
+	/**
+	 * @return service id and id of the service-resources the given tags are mapped to
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> findServiceAndResourceIdsByTagIds(List<Long> tagIds) {
+		if (CollectionUtils.isEmpty(tagIds)) {
+			return new ArrayList<Object[]>();
+		}
+
+		return getEntityManager().createNamedQuery("XXServiceResource.findServiceAndResourceIdsByTagIds").setParameter("tagIds", tagIds).getResultList();
+	}
 }
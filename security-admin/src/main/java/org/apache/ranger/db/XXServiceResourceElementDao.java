@@ -24,6 +24,7 @@ import java.util.List;
 
 import javax.persistence.NoResultException;
 
+import org.apache.commons.collections.CollectionUtils;
 import org.apache.ranger.common.db.BaseDao;
 import org.apache.ranger.entity.XXServiceResourceElement;
 
@@ -84,4 +85,17 @@ public class XXServiceResourceElementDao extends BaseDao<XXServiceResourceElemen
 			return new ArrayList<XXServiceResourceElement>();
 		}
 	}
+
+	public List<XXServiceResourceElement> findByResourceIds(List<Long> resourceIds) {
+		if (CollectionUtils.isEmpty(resourceIds)) {
+			return new ArrayList<XXServiceResourceElement>();
+		}
+		try {
+			return getEntityManager().createNamedQuery("XXServiceResourceElement.findByResourceIds", tClass)
+					.setParameter("resourceIds", resourceIds)
+					.getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<XXServiceResourceElement>();
+		}
+	}
 }
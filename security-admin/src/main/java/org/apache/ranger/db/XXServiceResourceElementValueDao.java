@@ -24,6 +24,7 @@ import java.util.List;
 
 import javax.persistence.NoResultException;
 
+import org.apache.commons.collections.CollectionUtils;
 import org.apache.ranger.common.db.BaseDao;
 import org.apache.ranger.entity.XXServiceResourceElementValue;
 
@@ -109,4 +110,17 @@ public class XXServiceResourceElementValueDao extends BaseDao<XXServiceResourceE
 			return new ArrayList<XXServiceResourceElementValue>();
 		}
 	}
+
+	@SuppressWarnings("unchecked")
+	public List<XXServiceResourceElementValue> findByResourceIds(List<Long> resourceIds) {
+		if (CollectionUtils.isEmpty(resourceIds)) {
+			return new ArrayList<XXServiceResourceElementValue>();
+		}
+		try {
+			return getEntityManager().createNamedQuery("XXServiceResourceElementValue.findByResourceIds")
+					.setParameter("resourceIds", resourceIds).getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<XXServiceResourceElementValue>();
+		}
+	}
 }
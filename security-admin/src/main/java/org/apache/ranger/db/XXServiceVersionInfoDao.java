@@ -17,6 +17,9 @@
 
 package org.apache.ranger.db;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -24,12 +27,22 @@ import javax.persistence.NoResultException;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.ranger.common.db.BaseDao;
+import org.apache.ranger.entity.XXPolicyChangeLog;
 import org.apache.ranger.entity.XXServiceVersionInfo;
+import org.apache.ranger.entity.XXTagChangeLog;
 
 /**
  */
 
 public class XXServiceVersionInfoDao extends BaseDao<XXServiceVersionInfo> {
+	// tag change-log entries older than these many versions of a service are removed, every TAG_CHANGE_LOG_PURGE_INTERVAL versions
+	static final long TAG_CHANGE_LOG_RETENTION_VERSIONS = 10000;
+	static final long TAG_CHANGE_LOG_PURGE_INTERVAL     = 1000;
+
+	// likewise for the policy change-log
+	static final long POLICY_CHANGE_LOG_RETENTION_VERSIONS = 10000;
+	static final long POLICY_CHANGE_LOG_PURGE_INTERVAL     = 1000;
+
 	/**
 	 * Default Constructor
 	 */
@@ -77,7 +90,7 @@ public class XXServiceVersionInfoDao extends BaseDao<XXServiceVersionInfo> {
 		try {
 			List<XXServiceVersionInfo> serviceVersionInfos = getEntityManager().createNamedQuery("XXServiceVersionInfo.findByServiceResourceId", tClass).setParameter("resourceId", resourceId).getResultList();
 
-			updateTagVersionAndTagUpdateTime(serviceVersionInfos, updateTime);
+			updateTagVersionAndTagUpdateTime(serviceVersionInfos, updateTime, XXTagChangeLog.CHANGE_TYPE_SERVICE_RESOURCE_UPDATE, Collections.singletonList(resourceId), null);
 		} catch (NoResultException e) {
 			return;
 		}
@@ -91,7 +104,7 @@ public class XXServiceVersionInfoDao extends BaseDao<XXServiceVersionInfo> {
 		try {
 			List<XXServiceVersionInfo> serviceVersionInfos = getEntityManager().createNamedQuery("XXServiceVersionInfo.findByTagId", tClass).setParameter("tagId", tagId).getResultList();
 
-			updateTagVersionAndTagUpdateTime(serviceVersionInfos, updateTime);
+			updateTagVersionAndTagUpdateTime(serviceVersionInfos, updateTime, XXTagChangeLog.CHANGE_TYPE_TAG_UPDATE, null, tagId);
 		} catch (NoResultException e) {
 			return;
 		}
@@ -105,13 +118,58 @@ public class XXServiceVersionInfoDao extends BaseDao<XXServiceVersionInfo> {
 		try {
 			List<XXServiceVersionInfo> serviceVersionInfos = getEntityManager().createNamedQuery("XXServiceVersionInfo.findByTagDefId", tClass).setParameter("tagDefId", tagDefId).getResultList();
 
-			updateTagVersionAndTagUpdateTime(serviceVersionInfos, updateTime);
+			updateTagVersionAndTagUpdateTime(serviceVersionInfos, updateTime, XXTagChangeLog.CHANGE_TYPE_TAG_DEF_UPDATE, null, null);
 		} catch (NoResultException e) {
 			return;
 		}
 	}
 
-	private void updateTagVersionAndTagUpdateTime(List<XXServiceVersionInfo> serviceVersionInfos, Date updateTime) {
+	/**
+	 * @param resourceIds service-resources that changed; null if they are not known
+	 */
+	public void updateServiceVersionInfoForServiceTagsUpdate(Long serviceId, Collection<Long> resourceIds, Date updateTime) {
+		XXServiceVersionInfo serviceVersionInfo = findByServiceId(serviceId);
+
+		if (serviceVersionInfo != null) {
+			if (resourceIds != null) {
+				updateTagVersionAndTagUpdateTime(Collections.singletonList(serviceVersionInfo), updateTime, XXTagChangeLog.CHANGE_TYPE_SERVICE_RESOURCE_UPDATE, resourceIds, null);
+			} else {
+				updateTagVersionAndTagUpdateTime(Collections.singletonList(serviceVersionInfo), updateTime, XXTagChangeLog.CHANGE_TYPE_SERVICE_TAGS_UPDATE, null, null);
+			}
+		}
+	}
+
+	/**
+	 * Records what changed in the current policy version of the service; to be
+	 * called in the transaction that updated the version
+	 *
+	 * @param policyIds policies that changed; null for change types that are not about a policy
+	 */
+	public void addPolicyChangeLogs(XXServiceVersionInfo serviceVersionInfo, int changeType, Collection<Long> policyIds) {
+		Long policyVersion = serviceVersionInfo.getPolicyVersion();
+
+		if (policyVersion == null) {
+			return;
+		}
+
+		List<XXPolicyChangeLog> changeLogs = new ArrayList<XXPolicyChangeLog>();
+
+		if (CollectionUtils.isEmpty(policyIds)) {
+			changeLogs.add(new XXPolicyChangeLog(serviceVersionInfo.getServiceId(), changeType, policyVersion, null));
+		} else {
+			for (Long policyId : policyIds) {
+				changeLogs.add(new XXPolicyChangeLog(serviceVersionInfo.getServiceId(), changeType, policyVersion, policyId));
+			}
+		}
+
+		if (policyVersion % POLICY_CHANGE_LOG_PURGE_INTERVAL == 0) {
+			daoManager.getXXPolicyChangeLog().deleteByServiceIdUptoVersion(serviceVersionInfo.getServiceId(), policyVersion - POLICY_CHANGE_LOG_RETENTION_VERSIONS);
+		}
+
+		daoManager.getXXPolicyChangeLog().batchCreate(changeLogs);
+	}
+
+	private void updateTagVersionAndTagUpdateTime(List<XXServiceVersionInfo> serviceVersionInfos, Date updateTime, int changeType, Collection<Long> resourceIds, Long tagId) {
 		if(CollectionUtils.isEmpty(serviceVersionInfos)) {
 			return;
 		}
@@ -120,6 +178,8 @@ public class XXServiceVersionInfoDao extends BaseDao<XXServiceVersionInfo> {
 			updateTime = new Date();
 		}
 
+		List<XXTagChangeLog> changeLogs = new ArrayList<XXTagChangeLog>();
+
 		for(XXServiceVersionInfo serviceVersionInfo : serviceVersionInfos) {
 			Long currentTagVersion = serviceVersionInfo.getTagVersion();
 
@@ -127,8 +187,24 @@ public class XXServiceVersionInfoDao extends BaseDao<XXServiceVersionInfo> {
 				currentTagVersion = Long.valueOf(0);
 			}
 
-			serviceVersionInfo.setTagVersion(currentTagVersion + 1);
+			Long newTagVersion = currentTagVersion + 1;
+
+			serviceVersionInfo.setTagVersion(newTagVersion);
 			serviceVersionInfo.setTagUpdateTime(updateTime);
+
+			if (CollectionUtils.isEmpty(resourceIds)) {
+				changeLogs.add(new XXTagChangeLog(serviceVersionInfo.getServiceId(), changeType, newTagVersion, null, tagId));
+			} else {
+				for (Long resourceId : resourceIds) {
+					changeLogs.add(new XXTagChangeLog(serviceVersionInfo.getServiceId(), changeType, newTagVersion, resourceId, tagId));
+				}
+			}
+
+			if (newTagVersion % TAG_CHANGE_LOG_PURGE_INTERVAL == 0) {
+				daoManager.getXXTagChangeLog().deleteByServiceIdUptoVersion(serviceVersionInfo.getServiceId(), newTagVersion - TAG_CHANGE_LOG_RETENTION_VERSIONS);
+			}
 		}
+
+		daoManager.getXXTagChangeLog().batchCreate(changeLogs);
 	}
 }
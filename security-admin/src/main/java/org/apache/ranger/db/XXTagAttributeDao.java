@@ -24,6 +24,7 @@ import java.util.List;
 
 import javax.persistence.NoResultException;
 
+import org.apache.commons.collections.CollectionUtils;
 import org.apache.ranger.common.db.BaseDao;
 import org.apache.ranger.entity.XXTagAttribute;
 
@@ -93,4 +94,16 @@ public class XXTagAttributeDao extends BaseDao<XXTagAttribute> {
 			return new ArrayList<XXTagAttribute>();
 		}
 	}
+
+	public List<XXTagAttribute> findByTagIds(List<Long> tagIds) {
+		if (CollectionUtils.isEmpty(tagIds)) {
+			return new ArrayList<XXTagAttribute>();
+		}
+		try {
+			return getEntityManager().createNamedQuery("XXTagAttribute.findByTagIds", tClass)
+					.setParameter("tagIds", tagIds).getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<XXTagAttribute>();
+		}
+	}
 }
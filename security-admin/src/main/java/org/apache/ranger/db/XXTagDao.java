@@ -24,6 +24,7 @@ import java.util.List;
 
 import javax.persistence.NoResultException;
 
+import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.ranger.authorization.utils.StringUtil;
 import org.apache.ranger.common.db.BaseDao;
@@ -151,4 +152,28 @@ public class XXTagDao extends BaseDao<XXTag> {
 			return new ArrayList<XXTag>();
 		}
 	}
+
+	public List<XXTag> findByGuids(List<String> guids) {
+		if (CollectionUtils.isEmpty(guids)) {
+			return new ArrayList<XXTag>();
+		}
+		try {
+			return getEntityManager().createNamedQuery("XXTag.findByGuids", tClass)
+					.setParameter("guids", guids).getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<XXTag>();
+		}
+	}
+
+	public List<XXTag> findForResourceIds(List<Long> resourceIds) {
+		if (CollectionUtils.isEmpty(resourceIds)) {
+			return new ArrayList<XXTag>();
+		}
+		try {
+			return getEntityManager().createNamedQuery("XXTag.findForResourceIds", tClass)
+					.setParameter("resourceIds", resourceIds).getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<XXTag>();
+		}
+	}
 }
@@ -24,6 +24,7 @@ import java.util.List;
 
 import javax.persistence.NoResultException;
 
+import org.apache.commons.collections.CollectionUtils;
 import org.apache.ranger.authorization.utils.StringUtil;
 import org.apache.ranger.common.db.BaseDao;
 import org.apache.ranger.entity.XXTagResourceMap;
@@ -152,4 +153,28 @@ public class XXTagResourceMapDao extends BaseDao<XXTagResourceMap> {
 			return new ArrayList<XXTagResourceMap>();
 		}
 	}
+
+	public List<XXTagResourceMap> findByResourceIds(List<Long> resourceIds) {
+		if (CollectionUtils.isEmpty(resourceIds)) {
+			return new ArrayList<XXTagResourceMap>();
+		}
+		try {
+			return getEntityManager().createNamedQuery("XXTagResourceMap.findByResourceIds", tClass)
+					.setParameter("resourceIds", resourceIds).getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<XXTagResourceMap>();
+		}
+	}
+
+	public List<XXTagResourceMap> findByTagIds(List<Long> tagIds) {
+		if (CollectionUtils.isEmpty(tagIds)) {
+			return new ArrayList<XXTagResourceMap>();
+		}
+		try {
+			return getEntityManager().createNamedQuery("XXTagResourceMap.findByTagIds", tClass)
+					.setParameter("tagIds", tagIds).getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<XXTagResourceMap>();
+		}
+	}
 }
@@ -20,10 +20,12 @@
  package org.apache.ranger.db;
 
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.persistence.NoResultException;
 
+import org.apache.commons.collections.CollectionUtils;
 import org.apache.log4j.Logger;
 import org.apache.ranger.common.db.BaseDao;
 import org.apache.ranger.entity.XXUser;
@@ -65,6 +67,19 @@ public class XXUserDao extends BaseDao<XXUser> {
 		}
 	}
 
+	/**
+	 * @return id and name of the users referenced by the policies of the service
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> getIdsAndNamesByServiceId(Long serviceId) {
+		if (serviceId == null) {
+			return new ArrayList<Object[]>();
+		}
+		return getEntityManager()
+				.createNamedQuery("XXUser.getIdsAndNamesByServiceId")
+				.setParameter("serviceId", serviceId).getResultList();
+	}
+
 	public XXUser findByPortalUserId(Long portalUserId) {
 		if (portalUserId == null) {
 			return null;
@@ -76,4 +91,16 @@ public class XXUserDao extends BaseDao<XXUser> {
 			return null;
 		}
 	}
+
+	public List<XXUser> findByUserNames(List<String> names) {
+		if (CollectionUtils.isEmpty(names)) {
+			return new ArrayList<XXUser>();
+		}
+		try {
+			return getEntityManager().createNamedQuery("XXUser.findByUserNames", tClass)
+					.setParameter("names", names).getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<XXUser>();
+		}
+	}
 }
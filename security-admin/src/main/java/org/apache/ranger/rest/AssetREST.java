@@ -20,6 +20,8 @@
  package org.apache.ranger.rest;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.List;
@@ -38,6 +40,7 @@ import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
@@ -61,6 +64,7 @@ import org.apache.ranger.plugin.util.GrantRevokeRequest;
 import org.apache.ranger.plugin.util.SearchFilter;
 import org.apache.ranger.plugin.util.ServicePolicies;
 import org.apache.ranger.security.context.RangerAPIList;
+import org.apache.ranger.solr.SolrAccessAuditsService;
 import org.apache.ranger.service.XAccessAuditService;
 import org.apache.ranger.service.XAssetService;
 import org.apache.ranger.service.XCredentialStoreService;
@@ -621,6 +625,33 @@ public class AssetREST {
 	@Produces({ "application/xml", "application/json" })
 	@PreAuthorize("@rangerPreAuthSecurityHandler.isAPIAccessible(\"" + RangerAPIList.GET_ACCESS_LOGS + "\")")
 	public VXAccessAuditList getAccessLogs(@Context HttpServletRequest request){
+		SearchCriteria searchCriteria = getAccessLogSearchCriteria(request);
+
+		searchUtil.extractString(request, searchCriteria, SolrAccessAuditsService.PARAM_CURSOR_MARK,
+				"Cursor mark", null);
+
+		return assetMgr.getAccessLogs(searchCriteria);
+	}
+
+	@GET
+	@Path("/accessAudit/export")
+	@Produces({ "text/csv" })
+	@PreAuthorize("@rangerPreAuthSecurityHandler.isAPIAccessible(\"" + RangerAPIList.GET_ACCESS_LOGS + "\")")
+	public Response exportAccessLogs(@Context HttpServletRequest request) {
+		// errors in the request are reported before the CSV response is started
+		final SearchCriteria searchCriteria = assetMgr.getAccessLogExportCriteria(getAccessLogSearchCriteria(request));
+
+		StreamingOutput output = new StreamingOutput() {
+			@Override
+			public void write(OutputStream out) throws IOException {
+				assetMgr.exportAccessLogs(searchCriteria, out);
+			}
+		};
+
+		return Response.ok(output, "text/csv").header("Content-Disposition", "attachment;filename=ranger_access_audits.csv").build();
+	}
+
+	private SearchCriteria getAccessLogSearchCriteria(HttpServletRequest request) {
 		SearchCriteria searchCriteria = searchUtil.extractCommonCriterias(
 				request, xAccessAuditService.sortFields);
 		searchUtil.extractString(request, searchCriteria, "accessType",
@@ -662,8 +693,11 @@ public class AssetREST {
 		if(isKeyAdmin && xxServiceDef != null){
 			searchCriteria.getParamList().put("repoType", xxServiceDef.getId());
 		}
-		
-		return assetMgr.getAccessLogs(searchCriteria);
+
+		searchUtil.extractString(request, searchCriteria, SolrAccessAuditsService.PARAM_FIELDS,
+				"Fields", null);
+
+		return searchCriteria;
 	}
 	
 	@POST
@@ -46,11 +46,13 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -70,6 +72,8 @@ import org.apache.ranger.common.MessageEnums;
 import org.apache.ranger.common.PropertiesUtil;
 import org.apache.ranger.common.RESTErrorUtil;
 import org.apache.ranger.common.RangerSearchUtil;
+import org.apache.ranger.common.RangerServicePoliciesCache;
+import org.apache.ranger.common.RangerServicePoliciesCache.ServicePoliciesPayload;
 import org.apache.ranger.common.RangerValidatorFactory;
 import org.apache.ranger.common.ServiceUtil;
 import org.apache.ranger.common.UserSessionBase;
@@ -78,11 +82,13 @@ import org.apache.ranger.entity.XXPolicyExportAudit;
 import org.apache.ranger.entity.XXService;
 import org.apache.ranger.entity.XXServiceDef;
 import org.apache.ranger.entity.XXTrxLog;
+import org.apache.ranger.plugin.errors.ValidationErrorCode;
 import org.apache.ranger.plugin.model.RangerPluginInfo;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
 import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
 import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerPolicyResourceSignature;
 import org.apache.ranger.plugin.model.RangerService;
 import org.apache.ranger.plugin.model.RangerServiceDef;
 import org.apache.ranger.plugin.model.validation.RangerPolicyValidator;
@@ -102,6 +108,7 @@ import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
 import org.apache.ranger.plugin.util.GrantRevokeRequest;
 import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
+import org.apache.ranger.plugin.util.RangerResourceScope;
 import org.apache.ranger.plugin.util.SearchFilter;
 import org.apache.ranger.plugin.util.ServicePolicies;
 import org.apache.ranger.security.context.RangerAPIList;
@@ -117,6 +124,8 @@ import org.apache.ranger.view.RangerServiceDefList;
 import org.apache.ranger.view.RangerServiceList;
 import org.apache.ranger.view.VXResponse;
 import org.apache.ranger.view.VXString;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonProcessingException;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
@@ -125,8 +134,6 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
 import com.sun.jersey.core.header.FormDataContentDisposition;
 import com.sun.jersey.multipart.FormDataParam;
 
@@ -1571,7 +1578,7 @@ public class ServiceREST {
 
 	@GET
 	@Path("/policies/downloadExcel")
-	@Produces("application/ms-excel")
+	@Produces("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
 	public void getPoliciesInExcel(@Context HttpServletRequest request,
 			@Context HttpServletResponse response) {
 
@@ -1716,6 +1723,48 @@ public class ServiceREST {
 		}
 	}
 	
+	/**
+	 * Creates the imported policies with a single call to the store, after
+	 * validating all of them as createPolicy() does; the store writes the
+	 * policies in batches and updates each service's policy version once.
+	 */
+	private int createPolicies(List<RangerPolicy> policies) throws Exception {
+		RangerPolicyValidator     validator           = validatorFactory.getPolicyValidator(svcStore);
+		boolean                   isAdmin             = bizUtil.isAdmin();
+		Map<String, RangerPolicy> policiesBySignature = new HashMap<String, RangerPolicy>();
+
+		for (RangerPolicy policy : policies) {
+			if (StringUtils.isBlank(policy.getName())) {
+				String guid = policy.getGuid();
+				if (StringUtils.isBlank(guid)) {
+					guid = guidUtil.genGUID();
+					policy.setGuid(guid);
+				}
+				policy.setName(policy.getService() + "-" + guid);
+			}
+
+			validator.validate(policy, Action.CREATE, isAdmin);
+
+			ensureAdminAccess(policy.getService(), policy.getResources());
+
+			// the validator finds policies already in the store; policies in the same import are checked here
+			if (Boolean.TRUE.equals(policy.getIsEnabled())) {
+				String       signature     = policy.getService() + ":" + new RangerPolicyResourceSignature(policy).getSignature();
+				RangerPolicy matchedPolicy = policiesBySignature.put(signature, policy);
+
+				if (matchedPolicy != null) {
+					throw restErrorUtil.createRESTException(ValidationErrorCode.POLICY_VALIDATION_ERR_DUPLICATE_POLICY_RESOURCE.getMessage(matchedPolicy.getName(), policy.getService()));
+				}
+			}
+		}
+
+		LOG.info("ServiceREST.createPolicies(): validated " + policies.size() + " policies to import");
+
+		List<RangerPolicy> createdPolicies = CollectionUtils.isEmpty(policies) ? policies : svcStore.createPolicies(policies);
+
+		return createdPolicies.size();
+	}
+
 	@POST
 	@Path("/policies/importPoliciesFromFile")
 	@Consumes({MediaType.MULTIPART_FORM_DATA, MediaType.APPLICATION_JSON})
@@ -1812,13 +1861,12 @@ public class ServiceREST {
 				try {
 					RangerExportPolicyList rangerExportPolicyList = null;
 					List<RangerPolicy> policies = null;
-					Gson gson = new Gson();
-					
-					String policiesString = IOUtils.toString(uploadedInputStream);
-					policiesString = policiesString.trim();
-					if (StringUtils.isNotEmpty(policiesString)){
-						gson.fromJson(policiesString, RangerExportPolicyList.class);
-						rangerExportPolicyList = new ObjectMapper().readValue(policiesString, RangerExportPolicyList.class);
+					ObjectMapper mapper = new ObjectMapper();
+
+					// parse the file as it is read, instead of reading it into a string first
+					JsonParser parser = mapper.getJsonFactory().createJsonParser(uploadedInputStream);
+					if (parser.nextToken() != null){
+						rangerExportPolicyList = mapper.readValue(parser, RangerExportPolicyList.class);
 					} else {
 						LOG.error("Provided json file is empty!!");
 						throw restErrorUtil.createRESTException("Provided json file is empty!!");
@@ -1889,6 +1937,7 @@ public class ServiceREST {
 						}
 					}
 					if (!CollectionUtils.sizeIsEmpty(policiesMap.entrySet())) {
+						List<RangerPolicy> policiesToCreate = new ArrayList<RangerPolicy>();
 						for (Entry<String, RangerPolicy> entry : policiesMap.entrySet()) {
 							RangerPolicy policy = entry.getValue();
 							if (policy != null){
@@ -1896,11 +1945,7 @@ public class ServiceREST {
 									for (String service : serviceNameList) {
 										if (StringUtils.isNotEmpty(service.trim()) && StringUtils.isNotEmpty(policy.getService().trim())){
 											if (policy.getService().trim().equalsIgnoreCase(service.trim())) {
-												createPolicy(policy, null);
-												totalPolicyCreate = totalPolicyCreate + 1;
-												if (LOG.isDebugEnabled()) {
-													LOG.debug("Policy " + policy.getName() + " created successfully.");
-												}
+												policiesToCreate.add(policy);
 												break;
 											}
 										}else{
@@ -1909,14 +1954,11 @@ public class ServiceREST {
 										}
 									}
 								}else{
-									createPolicy(policy, null);
-									totalPolicyCreate = totalPolicyCreate + 1;
-									if (LOG.isDebugEnabled()) {
-										LOG.debug("Policy " + policy.getName() + " created successfully.");
-									}
+									policiesToCreate.add(policy);
 								}
 							}
 						}
+						totalPolicyCreate = createPolicies(policiesToCreate);
 						if (LOG.isDebugEnabled()) {
 							LOG.debug("Total Policy Created From Json file : " + totalPolicyCreate);
 						}
@@ -1925,6 +1967,9 @@ public class ServiceREST {
 							throw restErrorUtil.createRESTException("zero policy is created from provided data file!!");
 						}
 					}
+				} catch (JsonProcessingException e) {
+					LOG.error("Provided json file is not valid!!", e);
+					throw restErrorUtil.createRESTException(e.getMessage());
 				} catch (IOException e) {
 					LOG.error(e.getMessage());
 					throw restErrorUtil.createRESTException(e.getMessage());
@@ -1933,17 +1978,7 @@ public class ServiceREST {
 				LOG.error("Provided file format is not supported!!");
 				throw restErrorUtil.createRESTException("Provided file format is not supported!!");
 			}
-		} catch(JsonSyntaxException ex) { 
-			LOG.error("Provided json file is not valid!!", ex);
-			xxTrxLogError.setAction("IMPORT ERROR");
-			xxTrxLogError.setObjectClassType(AppConstants.CLASS_TYPE_RANGER_POLICY);
-			if(StringUtils.isNotEmpty(metaDataInfo)){
-				xxTrxLogError.setPreviousValue(metaDataInfo);
-			}
-			trxLogListError.add(xxTrxLogError);
-			bizUtil.createTrxLog(trxLogListError);
-			throw restErrorUtil.createRESTException(ex.getMessage());
-	      }catch (WebApplicationException excp) {
+		} catch (WebApplicationException excp) {
 			LOG.error("Error while importing policy from file!!", excp);
 			xxTrxLogError.setAction("IMPORT ERROR");
 			xxTrxLogError.setObjectClassType(AppConstants.CLASS_TYPE_RANGER_POLICY);
@@ -2299,6 +2334,12 @@ public class ServiceREST {
 	@GET
 	@Path("/policies/download/{serviceName}")
 	@Produces({ "application/json", "application/xml" })
+	public Response downloadServicePoliciesIfUpdated(@PathParam("serviceName") String serviceName, @QueryParam("lastKnownVersion") Long lastKnownVersion, @DefaultValue("0") @QueryParam("lastActivationTime") Long lastActivationTime, @QueryParam("pluginId") String pluginId, @Context HttpServletRequest request) throws Exception {
+		ServicePolicies ret = getServicePoliciesIfUpdated(serviceName, lastKnownVersion, lastActivationTime, pluginId, request);
+
+		return toPolicyDownloadResponse(serviceName, ret, request);
+	}
+
 	public ServicePolicies getServicePoliciesIfUpdated(@PathParam("serviceName") String serviceName, @QueryParam("lastKnownVersion") Long lastKnownVersion, @DefaultValue("0") @QueryParam("lastActivationTime") Long lastActivationTime, @QueryParam("pluginId") String pluginId, @Context HttpServletRequest request) throws Exception {
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("==> ServiceREST.getServicePoliciesIfUpdated(" + serviceName + ", " + lastKnownVersion + ", " + lastActivationTime + ")");
@@ -2330,14 +2371,19 @@ public class ServiceREST {
 					perf = RangerPerfTracer.getPerfTracer(PERF_LOG, "ServiceREST.getServicePoliciesIfUpdated(serviceName=" + serviceName + ",lastKnownVersion=" + lastKnownVersion + ",lastActivationTime=" + lastActivationTime + ")");
 				}
 				ServicePolicies servicePolicies = svcStore.getServicePoliciesIfUpdated(serviceName, lastKnownVersion);
+				RangerResourceScope resourceScope = ServiceUtil.getResourceScope(request);
 
 				if (servicePolicies == null) {
 					downloadedVersion = lastKnownVersion;
 					httpCode = HttpServletResponse.SC_NOT_MODIFIED;
 					logMsg = "No change since last update";
+				} else if (isMatchingETag(serviceName, servicePolicies, resourceScope, request)) {
+					downloadedVersion = servicePolicies.getPolicyVersion();
+					httpCode = HttpServletResponse.SC_NOT_MODIFIED;
+					logMsg = "No change since last download";
 				} else {
 					downloadedVersion = servicePolicies.getPolicyVersion();
-					ret = filterServicePolicies(servicePolicies);
+					ret = filterServicePolicies(serviceName, servicePolicies, resourceScope);
 					httpCode = HttpServletResponse.SC_OK;
 					logMsg = "Returning " + (ret.getPolicies() != null ? ret.getPolicies().size() : 0) + " policies. Policy version=" + ret.getPolicyVersion();
 				}
@@ -2368,6 +2414,12 @@ public class ServiceREST {
 	@GET
 	@Path("/secure/policies/download/{serviceName}")
 	@Produces({ "application/json", "application/xml" })
+	public Response downloadSecureServicePoliciesIfUpdated(@PathParam("serviceName") String serviceName, @QueryParam("lastKnownVersion") Long lastKnownVersion, @DefaultValue("0") @QueryParam("lastActivationTime") Long lastActivationTime, @QueryParam("pluginId") String pluginId, @Context HttpServletRequest request) throws Exception {
+		ServicePolicies ret = getSecureServicePoliciesIfUpdated(serviceName, lastKnownVersion, lastActivationTime, pluginId, request);
+
+		return toPolicyDownloadResponse(serviceName, ret, request);
+	}
+
 	public ServicePolicies getSecureServicePoliciesIfUpdated(@PathParam("serviceName") String serviceName,@QueryParam("lastKnownVersion") Long lastKnownVersion, @DefaultValue("0") @QueryParam("lastActivationTime") Long lastActivationTime, @QueryParam("pluginId") String pluginId,@Context HttpServletRequest request) throws Exception {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> ServiceREST.getSecureServicePoliciesIfUpdated("+ serviceName + ", " + lastKnownVersion + ")");
@@ -2430,13 +2482,18 @@ public class ServiceREST {
 				}
 				if (isAllowed) {
 					ServicePolicies servicePolicies = svcStore.getServicePoliciesIfUpdated(serviceName, lastKnownVersion);
+					RangerResourceScope resourceScope = ServiceUtil.getResourceScope(request);
 					if (servicePolicies == null) {
 						downloadedVersion = lastKnownVersion;
 						httpCode = HttpServletResponse.SC_NOT_MODIFIED;
 						logMsg = "No change since last update";
+					} else if (isMatchingETag(serviceName, servicePolicies, resourceScope, request)) {
+						downloadedVersion = servicePolicies.getPolicyVersion();
+						httpCode = HttpServletResponse.SC_NOT_MODIFIED;
+						logMsg = "No change since last download";
 					} else {
 						downloadedVersion = servicePolicies.getPolicyVersion();
-						ret = filterServicePolicies(servicePolicies);
+						ret = filterServicePolicies(serviceName, servicePolicies, resourceScope);
 						httpCode = HttpServletResponse.SC_OK;
 						logMsg = "Returning " + (ret.getPolicies() != null ? ret.getPolicies().size() : 0) + " policies. Policy version=" + ret.getPolicyVersion();
 					}
@@ -2467,6 +2524,56 @@ public class ServiceREST {
 		return ret;
 	}		
 
+	/*
+	 * The payload of the version and scope is usually cached already, so that
+	 * If-None-Match is answered without filtering the policies again.
+	 */
+	private boolean isMatchingETag(String serviceName, ServicePolicies servicePolicies, RangerResourceScope resourceScope, HttpServletRequest request) throws IOException {
+		String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+
+		if (StringUtils.isBlank(ifNoneMatch)) {
+			return false;
+		}
+
+		RangerServicePoliciesCache cache   = RangerServicePoliciesCache.getInstance();
+		ServicePoliciesPayload     payload = cache.getCachedServicePoliciesPayload(serviceName, servicePolicies.getPolicyVersion(), resourceScope);
+
+		if (payload == null) {
+			payload = cache.getServicePoliciesPayload(serviceName, filterServicePolicies(serviceName, servicePolicies, resourceScope), resourceScope);
+		}
+
+		return payload.isMatchingETag(ifNoneMatch);
+	}
+
+	/*
+	 * JSON responses are written from the serialized and compressed payload
+	 * kept in RangerServicePoliciesCache, so that the policies of a version
+	 * are serialized once rather than once per download.
+	 */
+	private Response toPolicyDownloadResponse(String serviceName, ServicePolicies servicePolicies, HttpServletRequest request) throws IOException {
+		if (servicePolicies == null) {
+			return Response.noContent().build();
+		}
+
+		String accept = request.getHeader(HttpHeaders.ACCEPT);
+
+		if (StringUtils.contains(accept, MediaType.APPLICATION_XML) && !StringUtils.contains(accept, MediaType.APPLICATION_JSON)) {
+			return Response.ok(servicePolicies).build();
+		}
+
+		ServicePoliciesPayload payload        = RangerServicePoliciesCache.getInstance().getServicePoliciesPayload(serviceName, servicePolicies, ServiceUtil.getResourceScope(request));
+		String                 acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+		ResponseBuilder        builder;
+
+		if (StringUtils.containsIgnoreCase(acceptEncoding, "gzip")) {
+			builder = Response.ok(payload.getCompressedStream(), MediaType.APPLICATION_JSON_TYPE).header(HttpHeaders.CONTENT_ENCODING, "gzip");
+		} else {
+			builder = Response.ok(payload.getStream(), MediaType.APPLICATION_JSON_TYPE);
+		}
+
+		return builder.tag(payload.getETag()).header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING).build();
+	}
+
 	private void createPolicyDownloadAudit(String serviceName, Long lastKnownVersion, String pluginId, int httpRespCode, HttpServletRequest request) {
 		try {
 			String ipAddress = request.getHeader("X-FORWARDED-FOR");
@@ -2745,7 +2852,7 @@ public class ServiceREST {
 
 					if (policyEngine != null) {
 						if(userGroups == null) {
-							userGroups = daoManager.getXXGroupUser().findGroupNamesByUserName(userName);
+							userGroups = userMgr.getGroupsForUser(userName);
 						}
 
 						for (RangerPolicy policy : listToFilter) {
@@ -2940,6 +3047,12 @@ public class ServiceREST {
 		return ret;
 	}
 
+	private ServicePolicies filterServicePolicies(String serviceName, ServicePolicies servicePolicies, RangerResourceScope resourceScope) {
+		ServicePolicies ret = filterServicePolicies(servicePolicies);
+
+		return RangerServicePoliciesCache.getInstance().getScopedServicePolicies(serviceName, ret, resourceScope);
+	}
+
 	private ServicePolicies filterServicePolicies(ServicePolicies servicePolicies) {
 		ServicePolicies ret = null;
 		boolean containsDisabledResourcePolicies = false;
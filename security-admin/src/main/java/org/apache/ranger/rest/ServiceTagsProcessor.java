@@ -24,6 +24,7 @@ import org.apache.commons.collections.MapUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.lang.StringUtils;
+import org.apache.ranger.biz.TagDBStore;
 import org.apache.ranger.plugin.model.RangerServiceResource;
 import org.apache.ranger.plugin.model.RangerTag;
 import org.apache.ranger.plugin.model.RangerTagDef;
@@ -126,6 +127,16 @@ public class ServiceTagsProcessor {
 			}
 		}
 
+		if (tagStore instanceof TagDBStore) {
+			((TagDBStore) tagStore).addOrUpdateTaggedResources(serviceTags);
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("<== ServiceTagsProcessor.createOrUpdate()");
+			}
+
+			return;
+		}
+
 		List<RangerServiceResource> resources = serviceTags.getServiceResources();
 		if (CollectionUtils.isNotEmpty(resources)) {
 			RangerServiceResource resource = null;
@@ -28,6 +28,8 @@ import org.apache.ranger.biz.RangerBizUtil;
 import org.apache.ranger.biz.ServiceDBStore;
 import org.apache.ranger.biz.TagDBStore;
 import org.apache.ranger.common.RESTErrorUtil;
+import org.apache.ranger.common.RangerServiceTagsCache;
+import org.apache.ranger.common.ServiceUtil;
 import org.apache.ranger.db.RangerDaoManager;
 import org.apache.ranger.entity.XXService;
 import org.apache.ranger.entity.XXServiceDef;
@@ -1118,6 +1120,7 @@ public class TagREST {
 
         try {
             ret = tagStore.getServiceTagsIfUpdated(serviceName, lastKnownVersion);
+            ret = RangerServiceTagsCache.getInstance().getScopedServiceTags(serviceName, ret, ServiceUtil.getResourceScope(request));
 
             if (ret == null) {
                 downloadedVersion = lastKnownVersion;
@@ -1195,6 +1198,7 @@ public class TagREST {
         	}
         	if (isAllowed) {
 	            ret = tagStore.getServiceTagsIfUpdated(serviceName, lastKnownVersion);
+	            ret = RangerServiceTagsCache.getInstance().getScopedServiceTags(serviceName, ret, ServiceUtil.getResourceScope(request));
 
 				if(ret == null) {
                     downloadedVersion = lastKnownVersion;
@@ -29,14 +29,20 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
 
+import org.apache.ranger.biz.RangerBizUtil;
 import org.apache.ranger.biz.XAuditMgr;
 import org.apache.ranger.common.SearchCriteria;
 import org.apache.ranger.common.SearchUtil;
+import org.apache.ranger.common.StringUtil;
 import org.apache.ranger.common.annotation.RangerAnnotationClassName;
 import org.apache.ranger.common.annotation.RangerAnnotationJSMgrName;
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.entity.XXServiceDef;
+import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
 import org.apache.ranger.security.context.RangerAPIList;
 import org.apache.ranger.service.XAccessAuditService;
 import org.apache.ranger.service.XTrxLogService;
+import org.apache.ranger.view.VXAccessAuditCountList;
 import org.apache.ranger.view.VXAccessAuditList;
 import org.apache.ranger.view.VXLong;
 import org.apache.ranger.view.VXTrxLog;
@@ -66,6 +72,13 @@ public class XAuditREST {
 
 	@Autowired
 	XAccessAuditService xAccessAuditService;
+
+	@Autowired
+	RangerBizUtil bizUtil;
+
+	@Autowired
+	RangerDaoManager daoManager;
+
 	// Handle XTrxLog
 	@GET
 	@Path("/trx_log/{id}")
@@ -157,4 +170,68 @@ public class XAuditREST {
 		 return xAuditMgr.getXAccessAuditSearchCount(searchCriteria);
 	}
 
+	/**
+	 * Counts the access audits by the values of a field, like the users with
+	 * most denied accesses: field=requestUser&accessResult=0
+	 *
+	 * @param request
+	 * @return
+	 */
+	@GET
+	@Path("/access_audit/counts")
+	@Produces({ "application/xml", "application/json" })
+	@PreAuthorize("@rangerPreAuthSecurityHandler.isAPIAccessible(\"" + RangerAPIList.GET_X_ACCESS_AUDIT_COUNTS + "\")")
+	public VXAccessAuditCountList getXAccessAuditCounts(@Context HttpServletRequest request) {
+		 SearchCriteria searchCriteria = getAccessAuditCountCriteria(request);
+
+		 String  field = searchUtil.extractString(request, new SearchCriteria(), "field", "Field", StringUtil.VALIDATION_NAME);
+		 Integer limit = searchUtil.extractInt(request, new SearchCriteria(), "limit", "Limit");
+
+		 return xAuditMgr.getXAccessAuditCounts(searchCriteria, field, limit);
+	}
+
+	/**
+	 * Counts the access audits in each hour or day: gap=HOUR|DAY
+	 *
+	 * @param request
+	 * @return
+	 */
+	@GET
+	@Path("/access_audit/counts/time")
+	@Produces({ "application/xml", "application/json" })
+	@PreAuthorize("@rangerPreAuthSecurityHandler.isAPIAccessible(\"" + RangerAPIList.GET_X_ACCESS_AUDIT_COUNTS_BY_TIME + "\")")
+	public VXAccessAuditCountList getXAccessAuditCountsByTime(@Context HttpServletRequest request) {
+		 SearchCriteria searchCriteria = getAccessAuditCountCriteria(request);
+
+		 String gap = searchUtil.extractString(request, new SearchCriteria(), "gap", "Gap", StringUtil.VALIDATION_NAME);
+
+		 return xAuditMgr.getXAccessAuditCountsByTime(searchCriteria, gap);
+	}
+
+	private SearchCriteria getAccessAuditCountCriteria(HttpServletRequest request) {
+		 SearchCriteria searchCriteria = new SearchCriteria();
+
+		 searchUtil.extractString(request, searchCriteria, "accessType", "Access Type", StringUtil.VALIDATION_TEXT);
+		 searchUtil.extractString(request, searchCriteria, "aclEnforcer", "Access Enforcer", StringUtil.VALIDATION_TEXT);
+		 searchUtil.extractString(request, searchCriteria, "repoName", "Service Name", StringUtil.VALIDATION_TEXT);
+		 searchUtil.extractString(request, searchCriteria, "requestUser", "Request User", StringUtil.VALIDATION_TEXT);
+		 searchUtil.extractString(request, searchCriteria, "resourcePath", "Resource Path", StringUtil.VALIDATION_TEXT);
+		 searchUtil.extractString(request, searchCriteria, "resourceType", "Resource Type", StringUtil.VALIDATION_TEXT);
+		 searchUtil.extractString(request, searchCriteria, "clientIP", "Client IP", StringUtil.VALIDATION_TEXT);
+		 searchUtil.extractString(request, searchCriteria, "tags", "tags", null);
+		 searchUtil.extractInt(request, searchCriteria, "accessResult", "Access Result");
+		 searchUtil.extractInt(request, searchCriteria, "repoType", "Service Type");
+		 searchUtil.extractLong(request, searchCriteria, "policyId", "Policy Id");
+		 searchUtil.extractDate(request, searchCriteria, "startDate", "startDate", "MM/dd/yyyy");
+		 searchUtil.extractDate(request, searchCriteria, "endDate", "endDate", "MM/dd/yyyy");
+
+		 // key admins see only the audits of KMS, as in the access audit search
+		 XXServiceDef xxServiceDef = daoManager.getXXServiceDef().findByName(EmbeddedServiceDefsUtil.EMBEDDED_SERVICEDEF_KMS_NAME);
+		 if (bizUtil.isKeyAdmin() && xxServiceDef != null) {
+			 searchCriteria.getParamList().put("repoType", xxServiceDef.getId().intValue());
+		 }
+
+		 return searchCriteria;
+	}
+
 }
@@ -19,9 +19,11 @@
 
  package org.apache.ranger.rest;
 
+import java.io.InputStream;
 import java.util.HashMap;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
@@ -76,6 +78,7 @@ import org.apache.ranger.view.VXPermMapList;
 import org.apache.ranger.view.VXString;
 import org.apache.ranger.view.VXStringList;
 import org.apache.ranger.view.VXUser;
+import org.apache.ranger.view.VXUserGroupImportResult;
 import org.apache.ranger.view.VXUserGroupInfo;
 import org.apache.ranger.view.VXUserList;
 import org.apache.ranger.view.VXUserPermission;
@@ -286,6 +289,15 @@ public class XUserREST {
 		return  xUserMgr.createXUserGroupFromMap(vXUserGroupInfo);
 	}
 	
+	@POST
+	@Path("/users/import")
+	@Consumes({ "application/json" })
+	@Produces({ "application/xml", "application/json" })
+	@PreAuthorize("hasRole('ROLE_SYS_ADMIN')")
+	public VXUserGroupImportResult importXUserGroups(InputStream snapshot) {
+		return xUserMgr.importXUserGroups(snapshot);
+	}
+
 	@POST
 	@Path("/secure/users")
 	@Produces({ "application/xml", "application/json" })
@@ -115,6 +115,8 @@ public class RangerAPIList {
 	public static final String COUNT_X_TRX_LOGS = "XAuditREST.countXTrxLogs";
 	public static final String SEARCH_X_ACCESS_AUDITS = "XAuditREST.searchXAccessAudits";
 	public static final String COUNT_X_ACCESS_AUDITS = "XAuditREST.countXAccessAudits";
+	public static final String GET_X_ACCESS_AUDIT_COUNTS = "XAuditREST.getXAccessAuditCounts";
+	public static final String GET_X_ACCESS_AUDIT_COUNTS_BY_TIME = "XAuditREST.getXAccessAuditCountsByTime";
 
 	/**
 	 * List of APIs for XKeyREST
@@ -142,6 +144,7 @@ public class RangerAPIList {
 	public static final String SECURE_GET_X_USER = "XUserREST.secureGetXUser";
 	public static final String CREATE_X_USER = "XUserREST.createXUser";
 	public static final String CREATE_X_USER_GROUP_FROM_MAP = "XUserREST.createXUserGroupFromMap";
+	public static final String IMPORT_X_USER_GROUPS = "XUserREST.importXUserGroups";
 	public static final String SECURE_CREATE_X_USER = "XUserREST.secureCreateXUser";
 	public static final String UPDATE_X_USER = "XUserREST.updateXUser";
 	public static final String SECURE_UPDATE_X_USER = "XUserREST.secureUpdateXUser";
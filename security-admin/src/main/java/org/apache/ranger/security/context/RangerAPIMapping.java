@@ -417,6 +417,8 @@ public class RangerAPIMapping {
 		apiAssociatedWithAudit.add(RangerAPIList.COUNT_X_TRX_LOGS);
 		apiAssociatedWithAudit.add(RangerAPIList.SEARCH_X_ACCESS_AUDITS);
 		apiAssociatedWithAudit.add(RangerAPIList.COUNT_X_ACCESS_AUDITS);
+		apiAssociatedWithAudit.add(RangerAPIList.GET_X_ACCESS_AUDIT_COUNTS);
+		apiAssociatedWithAudit.add(RangerAPIList.GET_X_ACCESS_AUDIT_COUNTS_BY_TIME);
 		apiAssociatedWithAudit.add(RangerAPIList.SEARCH_X_POLICY_EXPORT_AUDITS);
 		apiAssociatedWithAudit.add(RangerAPIList.GET_REPORT_LOGS);
 		apiAssociatedWithAudit.add(RangerAPIList.GET_TRANSACTION_REPORT);
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.security.web.filter;
+
+import javax.servlet.ServletRequest;
+
+import org.apache.ranger.security.context.RangerContextHolder;
+import org.apache.ranger.security.context.RangerSecurityContext;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Carries the security contexts of a request across an async dispatch, which
+ * does not go through the authentication filters again
+ */
+final class RangerAsyncRequestContext {
+	private static final String ATTR_SECURITY_CONTEXT        = RangerAsyncRequestContext.class.getName() + ".securityContext";
+	private static final String ATTR_RANGER_SECURITY_CONTEXT = RangerAsyncRequestContext.class.getName() + ".rangerSecurityContext";
+
+	private RangerAsyncRequestContext() {
+	}
+
+	static void save(ServletRequest request) {
+		request.setAttribute(ATTR_SECURITY_CONTEXT, SecurityContextHolder.getContext());
+		request.setAttribute(ATTR_RANGER_SECURITY_CONTEXT, RangerContextHolder.getSecurityContext());
+	}
+
+	static void restore(ServletRequest request) {
+		SecurityContext       securityContext       = (SecurityContext) request.getAttribute(ATTR_SECURITY_CONTEXT);
+		RangerSecurityContext rangerSecurityContext = (RangerSecurityContext) request.getAttribute(ATTR_RANGER_SECURITY_CONTEXT);
+
+		if (securityContext != null) {
+			SecurityContextHolder.setContext(securityContext);
+		}
+
+		if (rangerSecurityContext != null) {
+			RangerContextHolder.setSecurityContext(rangerSecurityContext);
+		}
+	}
+
+	static void reset() {
+		RangerContextHolder.resetSecurityContext();
+		SecurityContextHolder.clearContext();
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.security.web.filter;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.biz.RangerServiceVersionNotifier;
+import org.apache.ranger.plugin.util.RangerRESTUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.filter.GenericFilterBean;
+
+/**
+ * Serves policy and tag download requests that carry maxWaitTimeMs as
+ * long-polls: when the plugin already has the latest version, the request is
+ * suspended, without holding a thread, until the version changes or the wait
+ * time passes. The request is then dispatched again to the download REST
+ * API, which returns the update or 304 as usual. Once the number of waiting
+ * requests reaches the caps of RangerServiceVersionNotifier, requests are
+ * served right away.
+ */
+public class RangerDownloadLongPollFilter extends GenericFilterBean {
+	private static final Log LOG = LogFactory.getLog(RangerDownloadLongPollFilter.class);
+
+	@Autowired
+	RangerServiceVersionNotifier versionNotifier;
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+		if (request.getDispatcherType() == DispatcherType.ASYNC) {
+			resume((HttpServletRequest) request, response, chain);
+		} else if (!suspend((HttpServletRequest) request)) {
+			chain.doFilter(request, response);
+		}
+	}
+
+	private boolean suspend(HttpServletRequest request) {
+		String maxWaitTimeMs    = request.getParameter(RangerRESTUtils.REST_PARAM_MAX_WAIT_TIME_MS);
+		String lastKnownVersion = request.getParameter(RangerRESTUtils.REST_PARAM_LAST_KNOWN_POLICY_VERSION);
+
+		if (StringUtils.isEmpty(maxWaitTimeMs) || StringUtils.isEmpty(lastKnownVersion) || !request.isAsyncSupported() || !versionNotifier.isEnabled()) {
+			return false;
+		}
+
+		String  path         = request.getRequestURI().substring(request.getContextPath().length());
+		String  serviceName  = null;
+		boolean isTagVersion = false;
+
+		if (path.startsWith(RangerRESTUtils.REST_URL_POLICY_GET_FOR_SERVICE_IF_UPDATED)) {
+			serviceName = path.substring(RangerRESTUtils.REST_URL_POLICY_GET_FOR_SERVICE_IF_UPDATED.length());
+		} else if (path.startsWith(RangerRESTUtils.REST_URL_POLICY_GET_FOR_SECURE_SERVICE_IF_UPDATED)) {
+			serviceName = path.substring(RangerRESTUtils.REST_URL_POLICY_GET_FOR_SECURE_SERVICE_IF_UPDATED.length());
+		} else if (path.startsWith(RangerRESTUtils.REST_URL_GET_SERVICE_TAGS_IF_UPDATED)) {
+			serviceName  = path.substring(RangerRESTUtils.REST_URL_GET_SERVICE_TAGS_IF_UPDATED.length());
+			isTagVersion = true;
+		} else if (path.startsWith(RangerRESTUtils.REST_URL_GET_SECURE_SERVICE_TAGS_IF_UPDATED)) {
+			serviceName  = path.substring(RangerRESTUtils.REST_URL_GET_SECURE_SERVICE_TAGS_IF_UPDATED.length());
+			isTagVersion = true;
+		}
+
+		if (StringUtils.isEmpty(serviceName) || serviceName.contains("/")) {
+			return false;
+		}
+
+		final long waitTimeMs;
+		final long knownVersion;
+
+		try {
+			serviceName  = URLDecoder.decode(serviceName, "UTF-8");
+			waitTimeMs   = Math.min(Long.parseLong(maxWaitTimeMs), versionNotifier.getMaxWaitTimeMs());
+			knownVersion = Long.parseLong(lastKnownVersion);
+		} catch (Exception excp) {
+			LOG.debug("RangerDownloadLongPollFilter: invalid request parameters; not waiting", excp);
+
+			return false;
+		}
+
+		if (waitTimeMs <= 0 || !versionNotifier.canWait(serviceName)) {
+			return false;
+		}
+
+		final AsyncContext asyncContext = request.startAsync();
+		final Waiter       waiter       = new Waiter(asyncContext, serviceName);
+
+		asyncContext.setTimeout(waitTimeMs);
+		asyncContext.addListener(waiter);
+
+		RangerAsyncRequestContext.save(request);
+
+		boolean isWaiting = false;
+
+		try {
+			isWaiting = versionNotifier.addWaiter(serviceName, isTagVersion, knownVersion, waiter);
+		} catch (Exception excp) {
+			LOG.error("RangerDownloadLongPollFilter: failed to wait for version change of service " + serviceName, excp);
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("RangerDownloadLongPollFilter: serviceName=" + serviceName + ", isTagVersion=" + isTagVersion + ", lastKnownVersion=" + knownVersion + ", waitTimeMs=" + waitTimeMs + ", isWaiting=" + isWaiting);
+		}
+
+		if (!isWaiting) {
+			waiter.onVersionChange();
+		}
+
+		return true;
+	}
+
+	private void resume(HttpServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+		try {
+			RangerAsyncRequestContext.restore(request);
+
+			chain.doFilter(request, response);
+		} finally {
+			RangerAsyncRequestContext.reset();
+		}
+	}
+
+	private class Waiter implements RangerServiceVersionNotifier.Listener, AsyncListener {
+		private final AsyncContext  asyncContext;
+		private final String        serviceName;
+		private final AtomicBoolean isDispatched = new AtomicBoolean(false);
+
+		Waiter(AsyncContext asyncContext, String serviceName) {
+			this.asyncContext = asyncContext;
+			this.serviceName  = serviceName;
+		}
+
+		@Override
+		public void onVersionChange() {
+			if (isDispatched.compareAndSet(false, true)) {
+				asyncContext.dispatch();
+			}
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) throws IOException {
+			versionNotifier.removeWaiter(serviceName, this);
+
+			onVersionChange();
+		}
+
+		@Override
+		public void onError(AsyncEvent event) throws IOException {
+			versionNotifier.removeWaiter(serviceName, this);
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) throws IOException {
+			versionNotifier.removeWaiter(serviceName, this);
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) throws IOException {
+		}
+	}
+}
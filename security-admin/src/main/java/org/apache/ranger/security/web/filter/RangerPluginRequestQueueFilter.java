@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.security.web.filter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.common.PropertiesUtil;
+import org.springframework.web.filter.GenericFilterBean;
+
+/**
+ * Limits the number of policy and tag downloads that are processed at a time.
+ * Requests beyond the limit are suspended in a bounded queue, without holding
+ * a thread, and dispatched again as earlier requests complete. Requests that
+ * find the queue full, or that wait in it longer than the queue timeout, get
+ * 503 and are retried by the plugin in its next poll. A large fleet of plugins
+ * then can not take all the request threads of Ranger Admin, and queued
+ * requests cost no threads.
+ *
+ * Grant and revoke are not to be mapped to this filter, as they are made on
+ * behalf of users and are not retried. The limit is off by default; it is
+ * enabled by setting ranger.admin.plugin.request.max.concurrent above 0.
+ */
+public class RangerPluginRequestQueueFilter extends GenericFilterBean {
+	private static final Log LOG = LogFactory.getLog(RangerPluginRequestQueueFilter.class);
+
+	public static final String PROP_MAX_CONCURRENT   = "ranger.admin.plugin.request.max.concurrent";
+	public static final String PROP_MAX_QUEUED       = "ranger.admin.plugin.request.max.queued";
+	public static final String PROP_QUEUE_TIMEOUT_MS = "ranger.admin.plugin.request.queue.timeout.ms";
+
+	private static final String ATTR_QUEUED_REQUEST = RangerPluginRequestQueueFilter.class.getName() + ".queuedRequest";
+
+	private static final int ADMITTED = 0;
+	private static final int QUEUED   = 1;
+	private static final int REJECTED = 2;
+
+	private int maxConcurrent  = 0;
+	private int maxQueued      = 1000;
+	private int queueTimeoutMs = 30 * 1000;
+
+	private final Deque<QueuedRequest> queue       = new ArrayDeque<QueuedRequest>();
+	private int                        activeCount = 0;
+
+	@Override
+	protected void initFilterBean() throws ServletException {
+		maxConcurrent  = PropertiesUtil.getIntProperty(PROP_MAX_CONCURRENT, maxConcurrent);
+		maxQueued      = Math.max(PropertiesUtil.getIntProperty(PROP_MAX_QUEUED, maxQueued), 0);
+		queueTimeoutMs = Math.max(PropertiesUtil.getIntProperty(PROP_QUEUE_TIMEOUT_MS, queueTimeoutMs), 0);
+
+		LOG.info("RangerPluginRequestQueueFilter: maxConcurrent=" + maxConcurrent + ", maxQueued=" + maxQueued + ", queueTimeoutMs=" + queueTimeoutMs);
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+		if (maxConcurrent <= 0) {
+			chain.doFilter(request, response);
+
+			return;
+		}
+
+		QueuedRequest queuedRequest = (QueuedRequest) request.getAttribute(ATTR_QUEUED_REQUEST);
+
+		if (queuedRequest != null) {
+			request.removeAttribute(ATTR_QUEUED_REQUEST);
+
+			// dispatched from the queue with the permit of a completed request
+			if (queuedRequest.start()) {
+				try {
+					RangerAsyncRequestContext.restore(request);
+
+					process(request, response, chain);
+				} finally {
+					RangerAsyncRequestContext.reset();
+				}
+			}
+		} else {
+			int admission = admit(request, response);
+
+			if (admission == ADMITTED) {
+				process(request, response, chain);
+			} else if (admission == REJECTED) {
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("RangerPluginRequestQueueFilter: queue full; rejecting request " + request);
+				}
+
+				((HttpServletResponse) response).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many plugin requests; retry later");
+			}
+		}
+	}
+
+	public synchronized int getActiveCount() {
+		return activeCount;
+	}
+
+	public synchronized int getQueuedCount() {
+		return queue.size();
+	}
+
+	private void process(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			release();
+		}
+	}
+
+	/*
+	 * takes a permit when available; otherwise suspends the request in the queue, when there is room
+	 */
+	private synchronized int admit(ServletRequest request, ServletResponse response) {
+		if (activeCount < maxConcurrent && queue.isEmpty()) {
+			activeCount++;
+
+			return ADMITTED;
+		}
+
+		if (queue.size() >= maxQueued || !request.isAsyncSupported()) {
+			return REJECTED;
+		}
+
+		AsyncContext  asyncContext  = request.startAsync(request, response);
+		QueuedRequest queuedRequest = new QueuedRequest(asyncContext);
+
+		asyncContext.setTimeout(queueTimeoutMs);
+		asyncContext.addListener(queuedRequest);
+
+		RangerAsyncRequestContext.save(request);
+
+		queue.addLast(queuedRequest);
+
+		return QUEUED;
+	}
+
+	/*
+	 * hands the permit of a completed request to the first queued request, if any
+	 */
+	private void release() {
+		QueuedRequest next = null;
+
+		synchronized (this) {
+			while (!queue.isEmpty()) {
+				QueuedRequest queued = queue.pollFirst();
+
+				if (queued.grant()) {
+					next = queued;
+
+					break;
+				}
+			}
+
+			if (next == null) {
+				activeCount--;
+			}
+		}
+
+		if (next != null) {
+			next.dispatch();
+		}
+	}
+
+	private synchronized void remove(QueuedRequest queuedRequest) {
+		queue.remove(queuedRequest);
+	}
+
+	private class QueuedRequest implements AsyncListener {
+		private static final int STATE_WAITING   = 0;
+		private static final int STATE_GRANTED   = 1;
+		private static final int STATE_STARTED   = 2;
+		private static final int STATE_CANCELLED = 3;
+
+		private final AsyncContext  asyncContext;
+		private final AtomicInteger state = new AtomicInteger(STATE_WAITING);
+
+		QueuedRequest(AsyncContext asyncContext) {
+			this.asyncContext = asyncContext;
+		}
+
+		boolean grant() {
+			return state.compareAndSet(STATE_WAITING, STATE_GRANTED);
+		}
+
+		boolean start() {
+			return state.compareAndSet(STATE_GRANTED, STATE_STARTED);
+		}
+
+		void dispatch() {
+			try {
+				asyncContext.getRequest().setAttribute(ATTR_QUEUED_REQUEST, this);
+				asyncContext.dispatch();
+			} catch (IllegalStateException excp) {
+				LOG.warn("RangerPluginRequestQueueFilter: failed to dispatch queued request", excp);
+
+				cancel();
+			}
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) throws IOException {
+			if (state.compareAndSet(STATE_WAITING, STATE_CANCELLED)) {
+				remove(this);
+
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("RangerPluginRequestQueueFilter: timed out in queue; rejecting request " + event.getSuppliedRequest());
+				}
+
+				((HttpServletResponse) event.getSuppliedResponse()).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many plugin requests; retry later");
+				event.getAsyncContext().complete();
+			}
+		}
+
+		@Override
+		public void onError(AsyncEvent event) throws IOException {
+			cancel();
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) throws IOException {
+			cancel();
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) throws IOException {
+		}
+
+		/*
+		 * a request that goes away while queued, or after it got the permit
+		 * but before it started, must not keep the permit
+		 */
+		private void cancel() {
+			if (state.compareAndSet(STATE_WAITING, STATE_CANCELLED)) {
+				remove(this);
+			} else if (state.compareAndSet(STATE_GRANTED, STATE_CANCELLED)) {
+				release();
+			}
+		}
+	}
+}
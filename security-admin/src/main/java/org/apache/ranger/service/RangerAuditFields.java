@@ -41,4 +41,10 @@ public class RangerAuditFields<T extends XXDBBase> {
 		return xObj;
 	}
 
+	public T populateAuditFieldsForUpdate(T xObj) {
+		xObj.setUpdateTime(DateUtil.getUTCDate());
+		xObj.setUpdatedByUserId(ContextUtil.getCurrentUserId());
+		return xObj;
+	}
+
 }
@@ -24,10 +24,15 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.persistence.Query;
+
 import org.apache.ranger.biz.RangerPolicyRetriever;
 import org.apache.ranger.common.AppConstants;
 import org.apache.ranger.common.JSONUtil;
 import org.apache.ranger.common.MessageEnums;
+import org.apache.ranger.common.SearchField;
+import org.apache.ranger.common.SearchField.DATA_TYPE;
+import org.apache.ranger.common.SearchField.SEARCH_TYPE;
 import org.apache.ranger.common.view.VTrxLogAttr;
 import org.apache.ranger.entity.XXPolicy;
 import org.apache.ranger.entity.XXService;
@@ -37,6 +42,7 @@ import org.apache.ranger.plugin.model.RangerPolicy.RangerDataMaskPolicyItem;
 import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
 import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
 import org.apache.ranger.plugin.model.RangerPolicy.RangerRowFilterPolicyItem;
+import org.apache.ranger.plugin.util.SearchFilter;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
 import org.codehaus.jackson.map.ObjectMapper;
@@ -64,11 +70,19 @@ public class RangerPolicyService extends RangerPolicyServiceBase<XXPolicy, Range
 	public static final String IS_ENABLED_CLASS_FIELD_NAME="isEnabled";
 	public static final String IS_AUDIT_ENABLED_CLASS_FIELD_NAME="isAuditEnabled";
 
+	public static final String POLICY_ID_AFTER = "policyIdAfter";
+
+	private static final String POLICY_ID_QUERY_STR = "SELECT obj.id FROM XXPolicy obj ";
+
 	static HashMap<String, VTrxLogAttr> trxLogAttrs = new HashMap<String, VTrxLogAttr>();
 	String actionCreate;
 	String actionUpdate;
 	String actionDelete;
 
+	// search fields to find ids of matching policies: conditions on policy items and
+	// resources are subqueries, so that a policy is returned only once
+	List<SearchField> policyIdSearchFields = new ArrayList<SearchField>();
+
 	static {
 		trxLogAttrs.put("name", new VTrxLogAttr("name", "Policy Name", false));
 		trxLogAttrs.put("description", new VTrxLogAttr("description", "Policy Description", false));
@@ -88,6 +102,36 @@ public class RangerPolicyService extends RangerPolicyServiceBase<XXPolicy, Range
 		actionCreate = "create";
 		actionUpdate = "update";
 		actionDelete = "delete";
+
+		for (SearchField searchField : searchFields) {
+			String fieldName = searchField.getClientFieldName();
+
+			if (!fieldName.equals(SearchFilter.IS_RECURSIVE) && !fieldName.equals(SearchFilter.USER)
+					&& !fieldName.equals(SearchFilter.GROUP) && !fieldName.equals(SearchFilter.POL_RESOURCE)) {
+				policyIdSearchFields.add(searchField);
+			}
+		}
+
+		policyIdSearchFields.add(createCustomSearchField(SearchFilter.IS_RECURSIVE, DATA_TYPE.BOOLEAN, SEARCH_TYPE.FULL,
+				"obj.id in (select xPolRes.policyId from XXPolicyResource xPolRes where xPolRes.isRecursive = :" + SearchFilter.IS_RECURSIVE + ")"));
+		// policies that have the user in a policy item, directly or through one of the user's groups
+		policyIdSearchFields.add(createCustomSearchField(SearchFilter.USER, DATA_TYPE.STRING, SEARCH_TYPE.FULL,
+				"(obj.id in (select uItem.policyId from XXPolicyItem uItem, XXPolicyItemUserPerm userPerm, XXUser xUser"
+						+ " where userPerm.policyItemId = uItem.id and xUser.id = userPerm.userId and LOWER(xUser.name) = :" + SearchFilter.USER + ")"
+				+ " or obj.id in (select gItem.policyId from XXPolicyItem gItem, XXPolicyItemGroupPerm gPerm, XXGroupUser grpUser, XXUser gUser"
+						+ " where gPerm.policyItemId = gItem.id and grpUser.parentGroupId = gPerm.groupId and gUser.id = grpUser.userId"
+						+ " and LOWER(gUser.name) = :" + SearchFilter.USER + "))"));
+		policyIdSearchFields.add(createCustomSearchField(SearchFilter.GROUP, DATA_TYPE.STRING, SEARCH_TYPE.FULL,
+				"obj.id in (select xPolItem.policyId from XXPolicyItem xPolItem, XXPolicyItemGroupPerm grpPerm, XXGroup xGrp"
+						+ " where grpPerm.policyItemId = xPolItem.id and xGrp.id = grpPerm.groupId and LOWER(xGrp.name) = :" + SearchFilter.GROUP + ")"));
+		policyIdSearchFields.add(createCustomSearchField(SearchFilter.ACCESS_TYPE, DATA_TYPE.STRING, SEARCH_TYPE.FULL,
+				"obj.id in (select aItem.policyId from XXPolicyItem aItem, XXPolicyItemAccess itemAccess, XXAccessTypeDef accessTypeDef"
+						+ " where itemAccess.policyItemId = aItem.id and accessTypeDef.id = itemAccess.type and LOWER(accessTypeDef.name) = :" + SearchFilter.ACCESS_TYPE + ")"));
+		policyIdSearchFields.add(createCustomSearchField(SearchFilter.POL_RESOURCE, DATA_TYPE.STRING, SEARCH_TYPE.PARTIAL,
+				"obj.id in (select polRes.policyId from XXPolicyResource polRes, XXPolicyResourceMap resMap"
+						+ " where resMap.resourceId = polRes.id and LOWER(resMap.value) like :" + SearchFilter.POL_RESOURCE + ")"));
+		policyIdSearchFields.add(createCustomSearchField(POLICY_ID_AFTER, DATA_TYPE.INTEGER, SEARCH_TYPE.GREATER_THAN,
+				"obj.id > :" + POLICY_ID_AFTER));
 	}
 
 	@Override
@@ -124,6 +168,73 @@ public class RangerPolicyService extends RangerPolicyServiceBase<XXPolicy, Range
 	public RangerPolicy getPopulatedViewObject(XXPolicy xPolicy) {
 		return this.populateViewBean(xPolicy);
 	}
+
+	/**
+	 * Returns ids of the policies that match the filter, for the page given
+	 * by startIndex and maxRows of the filter, in the filter's sort order.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Long> searchPolicyIds(SearchFilter searchFilter) {
+		String sortClause = searchUtil.constructSortClause(searchFilter, sortFields);
+		Query  query      = searchUtil.createSearchQuery(getDao().getEntityManager(), POLICY_ID_QUERY_STR, sortClause, searchFilter, policyIdSearchFields, false);
+
+		return query.getResultList();
+	}
+
+	/**
+	 * Returns ids, in ascending order, of up to maxRows policies that match
+	 * the filter and have id greater than lastPolicyId. startIndex and sort
+	 * order of the filter are not used.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Long> searchPolicyIds(SearchFilter searchFilter, Long lastPolicyId, int maxRows) {
+		Map<String, String> params       = searchFilter.getParams();
+		SearchFilter        keysetFilter = new SearchFilter(params == null ? new HashMap<String, String>() : new HashMap<String, String>(params));
+
+		keysetFilter.setParam(POLICY_ID_AFTER, lastPolicyId == null ? null : lastPolicyId.toString());
+		keysetFilter.setStartIndex(0);
+		keysetFilter.setMaxRows(maxRows);
+
+		Query query = searchUtil.createSearchQuery(getDao().getEntityManager(), POLICY_ID_QUERY_STR, " ORDER BY obj.id asc", keysetFilter, policyIdSearchFields, false);
+
+		return query.getResultList();
+	}
+
+	/**
+	 * Returns ids of up to maxRows policies that match the filter, starting at
+	 * startIndex, in the filter's sort order. startIndex and maxRows of the
+	 * filter are not used.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Long> searchPolicyIdPage(SearchFilter searchFilter, int startIndex, int maxRows) {
+		Map<String, String> params     = searchFilter.getParams();
+		SearchFilter        pageFilter = new SearchFilter(params == null ? new HashMap<String, String>() : new HashMap<String, String>(params));
+
+		pageFilter.setStartIndex(startIndex);
+		pageFilter.setMaxRows(maxRows);
+		pageFilter.setSortBy(searchFilter.getSortBy());
+		pageFilter.setSortType(searchFilter.getSortType());
+
+		String sortClause = searchUtil.constructSortClause(pageFilter, sortFields);
+		Query  query      = searchUtil.createSearchQuery(getDao().getEntityManager(), POLICY_ID_QUERY_STR, sortClause, pageFilter, policyIdSearchFields, false);
+
+		return query.getResultList();
+	}
+
+	public long getPolicyCount(SearchFilter searchFilter) {
+		Query query = searchUtil.createSearchQuery(getDao().getEntityManager(), countQueryStr, null, searchFilter, policyIdSearchFields, true);
+		Long  count = getDao().executeCountQueryInSecurityContext(tEntityClass, query);
+
+		return count == null ? 0 : count.longValue();
+	}
+
+	private static SearchField createCustomSearchField(String clientFieldName, DATA_TYPE dataType, SEARCH_TYPE searchType, String condition) {
+		SearchField ret = new SearchField(clientFieldName, null, dataType, searchType);
+
+		ret.setCustomCondition(condition);
+
+		return ret;
+	}
 	
 	public List<XXTrxLog> getTransactionLog(RangerPolicy vPolicy, int action){
 		return getTransactionLog(vPolicy, null, action);
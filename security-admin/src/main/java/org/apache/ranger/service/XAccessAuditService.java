@@ -19,9 +19,13 @@
 
  package org.apache.ranger.service;
 
+import java.text.DateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
+import javax.persistence.Query;
+
 import org.apache.commons.lang.StringUtils;
 import org.apache.ranger.authorization.hadoop.constants.RangerHadoopConstants;
 import org.apache.ranger.common.SearchCriteria;
@@ -35,6 +39,7 @@ import org.apache.ranger.entity.XXAccessAudit;
 import org.apache.ranger.entity.XXService;
 import org.apache.ranger.entity.XXServiceDef;
 import org.apache.ranger.view.VXAccessAudit;
+import org.apache.ranger.view.VXAccessAuditCount;
 import org.apache.ranger.view.VXAccessAuditList;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
@@ -184,6 +189,49 @@ public class XAccessAuditService extends XAccessAuditServiceBase<XXAccessAudit,
 		VXAccessAudit vXAccessAudit = new VXAccessAudit();
 		return mapEntityToViewBean(vXAccessAudit, gjXAccessAudit);
 	}
+
+	/**
+	 * @param fieldName property of XXAccessAudit to count by; callers must validate it, as it is part of the query
+	 * @return counts of the top limit values of the field, highest first
+	 */
+	@SuppressWarnings("unchecked")
+	public List<VXAccessAuditCount> getXAccessAuditCountsByField(SearchCriteria searchCriteria, String fieldName, int limit) {
+		String field = "obj." + fieldName;
+		Query query = createQuery("SELECT " + field + ", COUNT(obj) FROM XXAccessAudit obj ",
+				" GROUP BY " + field + " ORDER BY COUNT(obj) DESC", searchCriteria, searchFields, true);
+
+		query.setMaxResults(limit);
+
+		List<VXAccessAuditCount> ret = new ArrayList<VXAccessAuditCount>();
+		for (Object[] row : (List<Object[]>) query.getResultList()) {
+			ret.add(new VXAccessAuditCount(row[0] != null ? row[0].toString() : null, ((Number) row[1]).longValue()));
+		}
+		return ret;
+	}
+
+	/**
+	 * Counts the audits of each bucket, of gapInMillis, from startTime till endTime with one
+	 * count query per bucket. Each query reads a range of the event_time index, while grouping
+	 * by event time would return about one row per audit; the number of buckets is to be
+	 * limited by the caller
+	 *
+	 * @return counts for each bucket, including empty buckets, with the start of the bucket as the value
+	 */
+	public List<VXAccessAuditCount> getXAccessAuditCountsByTime(SearchCriteria searchCriteria, Date startTime, Date endTime, long gapInMillis, DateFormat dateFormat) {
+		List<VXAccessAuditCount> ret = new ArrayList<VXAccessAuditCount>();
+
+		for (long bucketStart = startTime.getTime(); bucketStart < endTime.getTime(); bucketStart += gapInMillis) {
+			long bucketEnd = Math.min(bucketStart + gapInMillis, endTime.getTime());
+
+			SearchCriteria bucketCriteria = new SearchCriteria();
+			bucketCriteria.getParamList().putAll(searchCriteria.getParamList());
+			bucketCriteria.getParamList().put("startDate", new Date(bucketStart));
+			bucketCriteria.getParamList().put("endDate", new Date(bucketEnd - 1));
+
+			ret.add(new VXAccessAuditCount(dateFormat.format(new Date(bucketStart)), getCountForSearchQuery(bucketCriteria, searchFields)));
+		}
+		return ret;
+	}
     /*
 	protected List<XXAccessAudit> searchResources(SearchCriteria searchCriteria,
 			List<SearchField> searchFieldList, List<SortField> sortFieldList,
@@ -19,11 +19,26 @@
 
 package org.apache.ranger.solr;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.apache.ranger.common.MessageEnums;
+import org.apache.ranger.common.PropertiesUtil;
 import org.apache.ranger.common.RESTErrorUtil;
 import org.apache.ranger.common.SearchCriteria;
 import org.apache.ranger.common.SearchField;
@@ -35,10 +50,14 @@ import org.apache.ranger.common.SortField.SORT_ORDER;
 import org.apache.ranger.db.RangerDaoManager;
 import org.apache.ranger.entity.XXServiceDef;
 import org.apache.ranger.view.VXAccessAudit;
+import org.apache.ranger.view.VXAccessAuditCount;
 import org.apache.ranger.view.VXAccessAuditList;
 import org.apache.ranger.view.VXLong;
 import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.StreamingResponseCallback;
+import org.apache.solr.client.solrj.response.FacetField;
 import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.response.RangeFacet;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -65,6 +84,45 @@ public class SolrAccessAuditsService {
 	@Autowired
 	RangerDaoManager daoManager;
 
+	public static final String PARAM_FIELDS = "fields";
+	public static final String PARAM_CURSOR_MARK = "cursorMark";
+
+	/**
+	 * Solr field for each property of VXAccessAudit that is read from Solr;
+	 * clients name the properties in the fields parameter to fetch only those
+	 */
+	public static final Map<String, String> AUDIT_FIELDS;
+
+	static {
+		Map<String, String> fields = new LinkedHashMap<String, String>();
+		fields.put("id", "id");
+		fields.put("eventTime", "evtTime");
+		fields.put("requestUser", "reqUser");
+		fields.put("repoName", "repo");
+		fields.put("repoType", "repoType");
+		fields.put("resourcePath", "resource");
+		fields.put("resourceType", "resType");
+		fields.put("accessType", "access");
+		fields.put("action", "action");
+		fields.put("accessResult", "result");
+		fields.put("aclEnforcer", "enforcer");
+		fields.put("policyId", "policy");
+		fields.put("resultReason", "reason");
+		fields.put("requestData", "reqData");
+		fields.put("agentId", "agent");
+		fields.put("sessionId", "sess");
+		fields.put("clientIP", "cliIP");
+		fields.put("sequenceNumber", "seq_num");
+		fields.put("eventCount", "event_count");
+		fields.put("eventDuration", "event_dur_ms");
+		fields.put("tags", "tags");
+		AUDIT_FIELDS = Collections.unmodifiableMap(fields);
+	}
+
+	private static final String SERVICE_TYPE = "serviceType";
+	private static final String EXPORT_DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
+	private static final int EXPORT_BATCH_SIZE = PropertiesUtil.getIntProperty("ranger.audit.solr.export.batch.size", 1000);
+
 	public List<SortField> sortFields = new ArrayList<SortField>();
 	public List<SearchField> searchFields = new ArrayList<SearchField>();
 
@@ -123,20 +181,17 @@ public class SolrAccessAuditsService {
 	public VXAccessAuditList searchXAccessAudits(SearchCriteria searchCriteria) {
 
 		// Make call to Solr
-		SolrClient solrClient = solrMgr.getSolrClient();
-
-		if (solrClient == null) {
-			logger.warn("Solr client is null, so not running the query.");
-			throw restErrorUtil.createRESTException(
-					"Error connecting to search engine",
-					MessageEnums.ERROR_SYSTEM);
-		}
+		SolrClient solrClient = getSolrClient();
 
 		VXAccessAuditList returnList = new VXAccessAuditList();
 		List<VXAccessAudit> xAccessAuditList = new ArrayList<VXAccessAudit>();
 
+		List<String> fieldList = toSolrFields(getFieldNames(searchCriteria));
+		Object cursorMark = searchCriteria.getParamValue(PARAM_CURSOR_MARK);
+
 		QueryResponse response = solrUtil.searchResources(searchCriteria,
-				searchFields, sortFields, solrClient);
+				searchFields, sortFields, fieldList,
+				cursorMark != null ? cursorMark.toString() : null, solrClient);
 		if (response == null) {
 			logger.warn("Error running search query. searchCriteria="
 					+ searchCriteria.toString());
@@ -144,11 +199,12 @@ public class SolrAccessAuditsService {
 					"Error running search query", MessageEnums.ERROR_SYSTEM);
 		}
 		SolrDocumentList docs = response.getResults();
+		Map<Integer, String> serviceTypes = new HashMap<Integer, String>();
 		int i;
 		for (i = 0; i < docs.size(); i++) {
 			SolrDocument doc = docs.get(i);
 			
-			VXAccessAudit vXAccessAudit = populateViewBean(doc);
+			VXAccessAudit vXAccessAudit = populateViewBean(doc, serviceTypes);
 			xAccessAuditList.add(vXAccessAudit);
 		}
 		
@@ -156,15 +212,180 @@ public class SolrAccessAuditsService {
 		returnList.setResultSize(i);
 		returnList.setTotalCount((int) docs.getNumFound());
 		returnList.setStartIndex((int) docs.getStart());
+		returnList.setNextCursorMark(response.getNextCursorMark());
 		returnList.setVXAccessAudits(xAccessAuditList);
 		return returnList;
 	}
 
+	/**
+	 * Writes all the audits matching searchCriteria, as CSV with a header row,
+	 * to out. Documents are read from Solr in batches and written as they are
+	 * received, so the size of the export is not limited by the heap.
+	 *
+	 * @return number of audits written
+	 */
+	public long exportXAccessAudits(SearchCriteria searchCriteria, OutputStream out) throws IOException {
+		SolrClient solrClient = getSolrClient();
+
+		List<String> fieldNames = getFieldNames(searchCriteria);
+		List<String> fieldList = toSolrFields(fieldNames);
+		final List<String> columns = new ArrayList<String>();
+		if (fieldNames == null) {
+			columns.addAll(AUDIT_FIELDS.keySet());
+			columns.add(SERVICE_TYPE);
+		} else {
+			columns.addAll(fieldNames);
+		}
+
+		final Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+		final Map<Integer, String> serviceTypes = new HashMap<Integer, String>();
+		final SimpleDateFormat dateFormat = new SimpleDateFormat(EXPORT_DATE_FORMAT);
+
+		writeCsvRow(writer, columns);
+
+		StreamingResponseCallback callback = new StreamingResponseCallback() {
+			@Override
+			public void streamSolrDocument(SolrDocument doc) {
+				List<String> values = new ArrayList<String>(columns.size());
+
+				for (String column : columns) {
+					values.add(getExportValue(doc, column, serviceTypes, dateFormat));
+				}
+				try {
+					writeCsvRow(writer, values);
+				} catch (IOException excp) {
+					throw new RuntimeException(excp);
+				}
+			}
+
+			@Override
+			public void streamDocListInfo(long numFound, long start, Float maxScore) {
+			}
+		};
+
+		long count = solrUtil.streamResources(searchCriteria, searchFields,
+				sortFields, fieldList, EXPORT_BATCH_SIZE, callback, solrClient);
+
+		writer.flush();
+
+		if (logger.isDebugEnabled()) {
+			logger.debug("exported " + count + " access audits. searchCriteria=" + searchCriteria);
+		}
+		return count;
+	}
+
+	/**
+	 * @param fieldName property of VXAccessAudit to count by
+	 * @return counts of the top limit values of the field, highest first
+	 */
+	public List<VXAccessAuditCount> getXAccessAuditCountsByField(SearchCriteria searchCriteria, String fieldName, int limit) {
+		String solrField = AUDIT_FIELDS.get(fieldName);
+		if (solrField == null) {
+			throw restErrorUtil.createRESTException("Invalid audit field: " + fieldName,
+					MessageEnums.INVALID_INPUT_DATA);
+		}
+
+		FacetField facetField = solrUtil.facetByField(searchCriteria, searchFields, solrField, limit, getSolrClient());
+
+		List<VXAccessAuditCount> ret = new ArrayList<VXAccessAuditCount>();
+		if (facetField != null && facetField.getValues() != null) {
+			for (FacetField.Count count : facetField.getValues()) {
+				ret.add(new VXAccessAuditCount(count.getName(), count.getCount()));
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @param gap size of each bucket in Solr date math, like +1DAY
+	 * @return counts for each bucket from startTime till endTime, including empty buckets
+	 */
+	public List<VXAccessAuditCount> getXAccessAuditCountsByTime(SearchCriteria searchCriteria, Date startTime, Date endTime, String gap) {
+		RangeFacet<?, ?> rangeFacet = solrUtil.facetByDateRange(searchCriteria, searchFields, "evtTime", startTime, endTime, gap, getSolrClient());
+
+		List<VXAccessAuditCount> ret = new ArrayList<VXAccessAuditCount>();
+		if (rangeFacet != null && rangeFacet.getCounts() != null) {
+			for (RangeFacet.Count count : rangeFacet.getCounts()) {
+				ret.add(new VXAccessAuditCount(count.getValue(), count.getCount()));
+			}
+		}
+		return ret;
+	}
+
+	private SolrClient getSolrClient() {
+		SolrClient solrClient = solrMgr.getSolrClient();
+
+		if (solrClient == null) {
+			logger.warn("Solr client is null, so not running the query.");
+			throw restErrorUtil.createRESTException(
+					"Error connecting to search engine",
+					MessageEnums.ERROR_SYSTEM);
+		}
+		return solrClient;
+	}
+
+	/**
+	 * @return properties named in the fields parameter, in the order given
+	 *         and starting with id, or null when all properties are needed;
+	 *         an unknown property is rejected with INVALID_INPUT_DATA
+	 */
+	public List<String> getFieldNames(SearchCriteria searchCriteria) {
+		Object fields = searchCriteria.getParamValue(PARAM_FIELDS);
+
+		if (fields == null || StringUtils.isBlank(fields.toString())) {
+			return null;
+		}
+
+		Collection<String> names = fields instanceof Collection ? toStrings((Collection<?>) fields)
+				: Arrays.asList(fields.toString().split(","));
+		List<String> ret = new ArrayList<String>();
+		ret.add("id");
+
+		for (String name : names) {
+			name = name.trim();
+			if (name.isEmpty() || ret.contains(name)) {
+				continue;
+			}
+			if (!AUDIT_FIELDS.containsKey(name) && !SERVICE_TYPE.equals(name)) {
+				throw restErrorUtil.createRESTException("Invalid audit field: " + name,
+						MessageEnums.INVALID_INPUT_DATA);
+			}
+			ret.add(name);
+		}
+		return ret;
+	}
+
+	private static List<String> toSolrFields(List<String> fieldNames) {
+		if (fieldNames == null) {
+			return null;
+		}
+
+		List<String> ret = new ArrayList<String>(fieldNames.size());
+		for (String fieldName : fieldNames) {
+			// service type is derived from repoType
+			String solrField = SERVICE_TYPE.equals(fieldName) ? "repoType" : AUDIT_FIELDS.get(fieldName);
+			if (!ret.contains(solrField)) {
+				ret.add(solrField);
+			}
+		}
+		return ret;
+	}
+
+	private static List<String> toStrings(Collection<?> values) {
+		List<String> ret = new ArrayList<String>(values.size());
+		for (Object value : values) {
+			if (value != null) {
+				ret.add(value.toString());
+			}
+		}
+		return ret;
+	}
+
 	/**
 	 * @param doc
 	 * @return
 	 */
-	private VXAccessAudit populateViewBean(SolrDocument doc) {
+	private VXAccessAudit populateViewBean(SolrDocument doc, Map<Integer, String> serviceTypes) {
 		VXAccessAudit accessAudit = new VXAccessAudit();
 		Object value = null;
 		if(logger.isDebugEnabled()) {
@@ -230,10 +451,7 @@ public class SolrAccessAuditsService {
 		value = doc.getFieldValue("repoType");
 		if (value != null) {
 			accessAudit.setRepoType(solrUtil.toInt(value));
-			XXServiceDef xServiceDef = daoManager.getXXServiceDef().getById((long) accessAudit.getRepoType());
-			if (xServiceDef != null) {
-				accessAudit.setServiceType(xServiceDef.getName());
-			}
+			accessAudit.setServiceType(getServiceType(accessAudit.getRepoType(), serviceTypes));
 		}
 		value = doc.getFieldValue("resType");
 		if (value != null) {
@@ -270,6 +488,50 @@ public class SolrAccessAuditsService {
 		return accessAudit;
 	}
 
+	/*
+	 * audits of a page or an export are of a handful of service types; look up each only once
+	 */
+	private String getServiceType(int repoType, Map<Integer, String> serviceTypes) {
+		if (serviceTypes.containsKey(repoType)) {
+			return serviceTypes.get(repoType);
+		}
+		XXServiceDef xServiceDef = daoManager.getXXServiceDef().getById((long) repoType);
+		String ret = xServiceDef != null ? xServiceDef.getName() : null;
+		serviceTypes.put(repoType, ret);
+		return ret;
+	}
+
+	private String getExportValue(SolrDocument doc, String column, Map<Integer, String> serviceTypes, SimpleDateFormat dateFormat) {
+		if (SERVICE_TYPE.equals(column)) {
+			Object value = doc.getFieldValue("repoType");
+			return value != null ? getServiceType(solrUtil.toInt(value), serviceTypes) : null;
+		}
+		Object value = doc.getFieldValue(AUDIT_FIELDS.get(column));
+		if (value instanceof Date) {
+			return dateFormat.format((Date) value);
+		}
+		return value != null ? value.toString() : null;
+	}
+
+	private static void writeCsvRow(Writer writer, List<String> values) throws IOException {
+		for (int i = 0; i < values.size(); i++) {
+			if (i > 0) {
+				writer.write(',');
+			}
+			String value = values.get(i);
+			if (value != null) {
+				if (StringUtils.containsAny(value, ",\"\r\n")) {
+					writer.write('"');
+					writer.write(value.replace("\"", "\"\""));
+					writer.write('"');
+				} else {
+					writer.write(value);
+				}
+			}
+		}
+		writer.write("\r\n");
+	}
+
 	/**
 	 * @param searchCriteria
 	 * @return
@@ -38,8 +38,13 @@ import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrQuery.ORDER;
 import org.apache.solr.client.solrj.SolrRequest.METHOD;
+import org.apache.solr.client.solrj.StreamingResponseCallback;
+import org.apache.solr.client.solrj.response.FacetField;
 import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.response.RangeFacet;
 import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.CursorMarkParams;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -47,6 +52,8 @@ import org.springframework.stereotype.Component;
 public class SolrUtil {
 	private static final Logger logger = Logger.getLogger(SolrUtil.class);
 
+	public static final String UNIQUE_KEY_FIELD = "id";
+
 	@Autowired
 	RESTErrorUtil restErrorUtil;
 
@@ -84,6 +91,166 @@ public class SolrUtil {
 	public QueryResponse searchResources(SearchCriteria searchCriteria,
 			List<SearchField> searchFields, List<SortField> sortFieldList,
 			SolrClient solrClient) {
+		return searchResources(searchCriteria, searchFields, sortFieldList, null, null, solrClient);
+	}
+
+	/**
+	 * @param fieldList fields to return for each document; all stored fields when empty
+	 * @param cursorMark when not null, the page is read from this cursor instead of the start index of searchCriteria
+	 */
+	public QueryResponse searchResources(SearchCriteria searchCriteria,
+			List<SearchField> searchFields, List<SortField> sortFieldList,
+			List<String> fieldList, String cursorMark, SolrClient solrClient) {
+		SolrQuery query = buildQuery(searchCriteria, searchFields, sortFieldList, fieldList);
+
+		if (cursorMark != null) {
+			setCursor(query, cursorMark);
+		} else {
+			query.setStart(searchCriteria.getStartIndex());
+		}
+		query.setRows(searchCriteria.getMaxRows());
+
+		return executeQuery(solrClient, query);
+	}
+
+	/**
+	 * Counts the documents matching searchCriteria by the values of a field,
+	 * without returning the documents
+	 *
+	 * @return counts of the top limit values, highest first
+	 */
+	public FacetField facetByField(SearchCriteria searchCriteria,
+			List<SearchField> searchFields, String fieldName, int limit,
+			SolrClient solrClient) {
+		SolrQuery query = buildQuery(searchCriteria, searchFields, null, null);
+
+		query.setRows(0);
+		query.setFacet(true);
+		query.addFacetField(fieldName);
+		query.setFacetLimit(limit);
+		query.setFacetMinCount(1);
+
+		return executeQuery(solrClient, query).getFacetField(fieldName);
+	}
+
+	/**
+	 * Counts the documents matching searchCriteria by buckets of a date field
+	 *
+	 * @param gap size of each bucket in Solr date math, like +1DAY
+	 */
+	@SuppressWarnings("rawtypes")
+	public RangeFacet facetByDateRange(SearchCriteria searchCriteria,
+			List<SearchField> searchFields, String fieldName, Date start,
+			Date end, String gap, SolrClient solrClient) {
+		SolrQuery query = buildQuery(searchCriteria, searchFields, null, null);
+
+		query.setRows(0);
+		query.setFacet(true);
+		query.addDateRangeFacet(fieldName, start, end, gap);
+
+		List<RangeFacet> ranges = executeQuery(solrClient, query).getFacetRanges();
+
+		return ranges == null || ranges.isEmpty() ? null : ranges.get(0);
+	}
+
+	private QueryResponse executeQuery(SolrClient solrClient, SolrQuery query) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("SOLR QUERY=" + query.toString());
+		}
+		QueryResponse response = runQuery(solrClient, query);
+
+		if (response == null || response.getStatus() != 0) {
+			logger.error("Error running query. query=" + query.toString()
+					+ ", response=" + response);
+			throw restErrorUtil.createRESTException("Error running query",
+					MessageEnums.ERROR_SYSTEM);
+		}
+		return response;
+	}
+
+	/**
+	 * Streams all the documents matching searchCriteria to the callback, reading
+	 * batchSize documents per request by cursor, so that only one batch is in
+	 * flight at a time irrespective of the number of matches.
+	 *
+	 * @return number of documents streamed
+	 */
+	public long streamResources(SearchCriteria searchCriteria,
+			List<SearchField> searchFields, List<SortField> sortFieldList,
+			List<String> fieldList, int batchSize,
+			final StreamingResponseCallback callback, SolrClient solrClient) {
+		SolrQuery query = buildQuery(searchCriteria, searchFields, sortFieldList, fieldList);
+		String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+		final long[] count = new long[] { 0 };
+
+		StreamingResponseCallback countingCallback = new StreamingResponseCallback() {
+			@Override
+			public void streamSolrDocument(SolrDocument doc) {
+				count[0]++;
+				callback.streamSolrDocument(doc);
+			}
+
+			@Override
+			public void streamDocListInfo(long numFound, long start, Float maxScore) {
+				callback.streamDocListInfo(numFound, start, maxScore);
+			}
+		};
+
+		query.setRows(batchSize);
+
+		while (true) {
+			setCursor(query, cursorMark);
+
+			if (logger.isDebugEnabled()) {
+				logger.debug("SOLR STREAM QUERY=" + query.toString());
+			}
+
+			QueryResponse response;
+			try {
+				response = solrClient.queryAndStreamResponse(query, countingCallback);
+			} catch (Throwable e) {
+				logger.error("Error from Solr server. query=" + query.toString(), e);
+				throw restErrorUtil.createRESTException("Error running query",
+						MessageEnums.ERROR_SYSTEM);
+			}
+
+			if (response == null || response.getStatus() != 0) {
+				logger.error("Error running query. query=" + query.toString()
+						+ ", response=" + response);
+				throw restErrorUtil.createRESTException("Error running query",
+						MessageEnums.ERROR_SYSTEM);
+			}
+
+			String nextCursorMark = response.getNextCursorMark();
+			if (nextCursorMark == null || nextCursorMark.equals(cursorMark)) {
+				break;
+			}
+			cursorMark = nextCursorMark;
+		}
+		return count[0];
+	}
+
+	private void setCursor(SolrQuery query, String cursorMark) {
+		// cursors need a sort that is unique for each document
+		if (!hasSort(query, UNIQUE_KEY_FIELD)) {
+			query.addSort(UNIQUE_KEY_FIELD, ORDER.asc);
+		}
+		query.setStart(null);
+		query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+	}
+
+	private boolean hasSort(SolrQuery query, String fieldName) {
+		for (SolrQuery.SortClause sortClause : query.getSorts()) {
+			if (fieldName.equals(sortClause.getItem())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private SolrQuery buildQuery(SearchCriteria searchCriteria,
+			List<SearchField> searchFields, List<SortField> sortFieldList,
+			List<String> fieldList) {
 		SolrQuery query = new SolrQuery();
 		query.setQuery("*:*");
 		if (searchCriteria.getParamList() != null) {
@@ -145,24 +312,15 @@ public class SolrUtil {
 			}
 		}
 
-		setSortClause(searchCriteria, sortFieldList, query);
-		query.setStart(searchCriteria.getStartIndex());
-		query.setRows(searchCriteria.getMaxRows());
-
-		// Fields to get
-		// query.setFields("myClassType", "id", "score", "globalId");
-		if (logger.isDebugEnabled()) {
-			logger.debug("SOLR QUERY=" + query.toString());
+		if (sortFieldList != null) {
+			setSortClause(searchCriteria, sortFieldList, query);
 		}
-		QueryResponse response = runQuery(solrClient, query);
 
-		if (response == null || response.getStatus() != 0) {
-			logger.error("Error running query. query=" + query.toString()
-					+ ", response=" + response);
-			throw restErrorUtil.createRESTException("Error running query",
-					MessageEnums.ERROR_SYSTEM);
+		// Fields to get
+		if (fieldList != null && !fieldList.isEmpty()) {
+			query.setFields(fieldList.toArray(new String[fieldList.size()]));
 		}
-		return response;
+		return query;
 	}
 
 	private String setFieldForPartialSearch(String fieldName, Object value) {
@@ -44,6 +44,11 @@ public class VXAccessAuditList extends VList {
 	private static final long serialVersionUID = 1L;
     List<VXAccessAudit> vXAccessAudits = new ArrayList<VXAccessAudit>();
 
+    /**
+     * Cursor to read the page following this one, when the page was read by cursor
+     */
+    String nextCursorMark;
+
     public VXAccessAuditList() {
 	super();
     }
@@ -68,6 +73,14 @@ public class VXAccessAuditList extends VList {
 	this.vXAccessAudits = vXAccessAudits;
     }
 
+    public String getNextCursorMark() {
+	return nextCursorMark;
+    }
+
+    public void setNextCursorMark(String nextCursorMark) {
+	this.nextCursorMark = nextCursorMark;
+    }
+
     @Override
     public int getListSize() {
 	if (vXAccessAudits != null) {
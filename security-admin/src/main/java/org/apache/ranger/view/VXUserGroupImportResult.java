@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.view;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.codehaus.jackson.annotate.JsonAutoDetect;
+import org.codehaus.jackson.annotate.JsonAutoDetect.Visibility;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+
+/**
+ * Changes made to users, groups and group-user mappings by the import of a
+ * usersync snapshot
+ */
+@JsonAutoDetect(getterVisibility=Visibility.NONE, setterVisibility=Visibility.NONE, fieldVisibility=Visibility.ANY)
+@JsonSerialize(include=JsonSerialize.Inclusion.NON_NULL )
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.FIELD)
+public class VXUserGroupImportResult implements java.io.Serializable {
+	private static final long serialVersionUID = 1L;
+
+	protected boolean isFullSnapshot;
+	protected int usersCreated;
+	protected int usersUpdated;
+	protected int groupsCreated;
+	protected int groupsUpdated;
+	protected int groupUsersCreated;
+	protected int groupUsersDeleted;
+
+	/**
+	 * Default constructor. This will set all the attributes to default value.
+	 */
+	public VXUserGroupImportResult() {
+	}
+
+	/**
+	 * @return true when the snapshot had all the users and groups of the source
+	 */
+	public boolean getIsFullSnapshot() {
+		return isFullSnapshot;
+	}
+
+	/**
+	 * @param isFullSnapshot the isFullSnapshot to set
+	 */
+	public void setIsFullSnapshot(boolean isFullSnapshot) {
+		this.isFullSnapshot = isFullSnapshot;
+	}
+
+	/**
+	 * @return the usersCreated
+	 */
+	public int getUsersCreated() {
+		return usersCreated;
+	}
+
+	/**
+	 * @param usersCreated the usersCreated to set
+	 */
+	public void setUsersCreated(int usersCreated) {
+		this.usersCreated = usersCreated;
+	}
+
+	/**
+	 * @return the usersUpdated
+	 */
+	public int getUsersUpdated() {
+		return usersUpdated;
+	}
+
+	/**
+	 * @param usersUpdated the usersUpdated to set
+	 */
+	public void setUsersUpdated(int usersUpdated) {
+		this.usersUpdated = usersUpdated;
+	}
+
+	/**
+	 * @return the groupsCreated
+	 */
+	public int getGroupsCreated() {
+		return groupsCreated;
+	}
+
+	/**
+	 * @param groupsCreated the groupsCreated to set
+	 */
+	public void setGroupsCreated(int groupsCreated) {
+		this.groupsCreated = groupsCreated;
+	}
+
+	/**
+	 * @return the groupsUpdated
+	 */
+	public int getGroupsUpdated() {
+		return groupsUpdated;
+	}
+
+	/**
+	 * @param groupsUpdated the groupsUpdated to set
+	 */
+	public void setGroupsUpdated(int groupsUpdated) {
+		this.groupsUpdated = groupsUpdated;
+	}
+
+	/**
+	 * @return the groupUsersCreated
+	 */
+	public int getGroupUsersCreated() {
+		return groupUsersCreated;
+	}
+
+	/**
+	 * @param groupUsersCreated the groupUsersCreated to set
+	 */
+	public void setGroupUsersCreated(int groupUsersCreated) {
+		this.groupUsersCreated = groupUsersCreated;
+	}
+
+	/**
+	 * @return the groupUsersDeleted
+	 */
+	public int getGroupUsersDeleted() {
+		return groupUsersDeleted;
+	}
+
+	/**
+	 * @param groupUsersDeleted the groupUsersDeleted to set
+	 */
+	public void setGroupUsersDeleted(int groupUsersDeleted) {
+		this.groupUsersDeleted = groupUsersDeleted;
+	}
+
+	/**
+	 * @return true when the import made any change
+	 */
+	public boolean hasChanges() {
+		return usersCreated > 0 || usersUpdated > 0 || groupsCreated > 0 || groupsUpdated > 0 || groupUsersCreated > 0 || groupUsersDeleted > 0;
+	}
+
+	@Override
+	public String toString() {
+		return "VXUserGroupImportResult [isFullSnapshot=" + isFullSnapshot
+				+ ", usersCreated=" + usersCreated + ", usersUpdated=" + usersUpdated
+				+ ", groupsCreated=" + groupsCreated + ", groupsUpdated=" + groupsUpdated
+				+ ", groupUsersCreated=" + groupUsersCreated + ", groupUsersDeleted=" + groupUsersDeleted + "]";
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ranger.biz;
+
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.db.XXPolicyExportAuditDao;
+import org.apache.ranger.entity.XXPolicyExportAudit;
+import org.apache.ranger.plugin.model.RangerPluginInfo;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestRangerPluginActivityQueue {
+
+	@InjectMocks
+	RangerPluginActivityQueue queue = new RangerPluginActivityQueue();
+
+	@Mock
+	PlatformTransactionManager txManager;
+
+	@Mock
+	RangerDaoManager daoMgr;
+
+	@Mock
+	AssetMgr assetMgr;
+
+	@Test
+	public void testPluginInfoCoalesced() {
+		RangerPluginInfo first  = pluginInfo("host1", 1L);
+		RangerPluginInfo latest = pluginInfo("host1", 2L);
+		RangerPluginInfo other  = pluginInfo("host2", 1L);
+
+		queue.addPluginInfo(first, true, HttpServletResponse.SC_NOT_MODIFIED);
+		queue.addPluginInfo(other, true, HttpServletResponse.SC_NOT_MODIFIED);
+		queue.addPluginInfo(latest, true, HttpServletResponse.SC_OK);
+		queue.flush();
+
+		Mockito.verify(assetMgr).updatePluginInfo(latest, true, HttpServletResponse.SC_OK);
+		Mockito.verify(assetMgr).updatePluginInfo(other, true, HttpServletResponse.SC_NOT_MODIFIED);
+		Mockito.verify(assetMgr, Mockito.never()).updatePluginInfo(first, true, HttpServletResponse.SC_NOT_MODIFIED);
+		Mockito.verify(txManager).commit(Mockito.any(TransactionStatus.class));
+
+		queue.flush();
+		Mockito.verifyNoMoreInteractions(assetMgr);
+	}
+
+	@Test
+	public void testPluginInfoKeepsDownloadTimeOfDownload() {
+		RangerPluginInfo downloaded = pluginInfo("host1", 1L);
+		downloaded.setPolicyDownloadedVersion(2L);
+		downloaded.setPolicyDownloadTime(1000L);
+		downloaded.setPolicyActivationTime(500L);
+
+		RangerPluginInfo notModified = pluginInfo("host1", 2L);
+		notModified.setPolicyDownloadTime(2000L);
+		notModified.setPolicyActivationTime(null);
+
+		queue.addPluginInfo(downloaded, true, HttpServletResponse.SC_OK);
+		queue.addPluginInfo(notModified, true, HttpServletResponse.SC_NOT_MODIFIED);
+		queue.flush();
+
+		ArgumentCaptor<RangerPluginInfo> captor = ArgumentCaptor.forClass(RangerPluginInfo.class);
+		Mockito.verify(assetMgr).updatePluginInfo(captor.capture(), Mockito.eq(true), Mockito.eq(HttpServletResponse.SC_NOT_MODIFIED));
+
+		RangerPluginInfo merged = captor.getValue();
+		Assert.assertEquals(Long.valueOf(2L), merged.getPolicyDownloadedVersion());
+		Assert.assertEquals(Long.valueOf(1000L), merged.getPolicyDownloadTime());
+		Assert.assertEquals(Long.valueOf(2L), merged.getPolicyActiveVersion());
+		Assert.assertEquals(Long.valueOf(500L), merged.getPolicyActivationTime());
+		Mockito.verifyNoMoreInteractions(assetMgr);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testNotModifiedAuditsCoalesced() {
+		XXPolicyExportAuditDao auditDao = Mockito.mock(XXPolicyExportAuditDao.class);
+		Mockito.when(daoMgr.getXXPolicyExportAudit()).thenReturn(auditDao);
+
+		for (int i = 0; i < 10; i++) {
+			queue.addPolicyExportAudit(policyExportAudit("plugin1", HttpServletResponse.SC_NOT_MODIFIED));
+			queue.addPolicyExportAudit(policyExportAudit("plugin2", HttpServletResponse.SC_NOT_MODIFIED));
+		}
+		queue.addPolicyExportAudit(policyExportAudit("plugin1", HttpServletResponse.SC_OK));
+		queue.addPolicyExportAudit(policyExportAudit("plugin1", HttpServletResponse.SC_OK));
+		queue.flush();
+
+		ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+		Mockito.verify(auditDao).batchCreate(captor.capture());
+		Assert.assertEquals(4, captor.getValue().size());
+	}
+
+	private RangerPluginInfo pluginInfo(String hostName, Long version) {
+		RangerPluginInfo ret = new RangerPluginInfo();
+
+		ret.setServiceName("hdfsdev");
+		ret.setHostName(hostName);
+		ret.setAppType("hdfs");
+		ret.setPolicyActiveVersion(version);
+		ret.setPolicyDownloadedVersion(version);
+
+		return ret;
+	}
+
+	private XXPolicyExportAudit policyExportAudit(String agentId, int httpCode) {
+		XXPolicyExportAudit ret = new XXPolicyExportAudit();
+
+		ret.setRepositoryName("hdfsdev");
+		ret.setAgentId(agentId);
+		ret.setClientIP("10.0.0.1");
+		ret.setHttpRetCode(httpCode);
+
+		return ret;
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ranger.biz;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ranger.db.*;
+import org.apache.ranger.entity.*;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.service.RangerAuditFields;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestRangerPolicyBatchWriter {
+	private static final Long SERVICE_DEF_ID = 2L;
+
+	@Mock RangerDaoManager daoMgr;
+	@Mock XXPolicyResourceDao xPolicyResourceDao;
+	@Mock XXPolicyResourceMapDao xPolicyResourceMapDao;
+	@Mock XXPolicyItemDao xPolicyItemDao;
+	@Mock XXPolicyItemUserPermDao xPolicyItemUserPermDao;
+	@Mock XXPolicyItemGroupPermDao xPolicyItemGroupPermDao;
+	@Mock XXPolicyItemAccessDao xPolicyItemAccessDao;
+	@Mock XXPolicyItemConditionDao xPolicyItemConditionDao;
+	@Mock XXPolicyItemDataMaskInfoDao xPolicyItemDataMaskInfoDao;
+	@Mock XXPolicyItemRowFilterInfoDao xPolicyItemRowFilterInfoDao;
+	@Mock XXUserDao xUserDao;
+	@Mock XXGroupDao xGroupDao;
+	@Mock XXAccessTypeDefDao xAccessTypeDefDao;
+	@Mock XXPolicyConditionDefDao xPolicyConditionDefDao;
+	@Mock XXResourceDefDao xResourceDefDao;
+	@Mock XXDataMaskTypeDefDao xDataMaskTypeDefDao;
+
+	private XXServiceDef xServiceDef;
+
+	@Before
+	public void setup() {
+		Mockito.when(daoMgr.getXXPolicyResource()).thenReturn(xPolicyResourceDao);
+		Mockito.when(daoMgr.getXXPolicyResourceMap()).thenReturn(xPolicyResourceMapDao);
+		Mockito.when(daoMgr.getXXPolicyItem()).thenReturn(xPolicyItemDao);
+		Mockito.when(daoMgr.getXXPolicyItemUserPerm()).thenReturn(xPolicyItemUserPermDao);
+		Mockito.when(daoMgr.getXXPolicyItemGroupPerm()).thenReturn(xPolicyItemGroupPermDao);
+		Mockito.when(daoMgr.getXXPolicyItemAccess()).thenReturn(xPolicyItemAccessDao);
+		Mockito.when(daoMgr.getXXPolicyItemCondition()).thenReturn(xPolicyItemConditionDao);
+		Mockito.when(daoMgr.getXXPolicyItemDataMaskInfo()).thenReturn(xPolicyItemDataMaskInfoDao);
+		Mockito.when(daoMgr.getXXPolicyItemRowFilterInfo()).thenReturn(xPolicyItemRowFilterInfoDao);
+		Mockito.when(daoMgr.getXXUser()).thenReturn(xUserDao);
+		Mockito.when(daoMgr.getXXGroup()).thenReturn(xGroupDao);
+		Mockito.when(daoMgr.getXXAccessTypeDef()).thenReturn(xAccessTypeDefDao);
+		Mockito.when(daoMgr.getXXPolicyConditionDef()).thenReturn(xPolicyConditionDefDao);
+		Mockito.when(daoMgr.getXXResourceDef()).thenReturn(xResourceDefDao);
+		Mockito.when(daoMgr.getXXDataMaskTypeDef()).thenReturn(xDataMaskTypeDefDao);
+
+		XXResourceDef xResourceDef = new XXResourceDef();
+		xResourceDef.setId(11L);
+		xResourceDef.setName("path");
+
+		XXAccessTypeDef xAccessTypeDef = new XXAccessTypeDef();
+		xAccessTypeDef.setId(21L);
+		xAccessTypeDef.setName("read");
+
+		XXUser xUser = new XXUser();
+		xUser.setId(31L);
+		xUser.setName("user1");
+
+		Mockito.when(xResourceDefDao.findByServiceDefId(SERVICE_DEF_ID)).thenReturn(Arrays.asList(xResourceDef));
+		Mockito.when(xAccessTypeDefDao.findByServiceDefId(SERVICE_DEF_ID)).thenReturn(Arrays.asList(xAccessTypeDef));
+		Mockito.when(xPolicyConditionDefDao.findByServiceDefId(SERVICE_DEF_ID)).thenReturn(Collections.<XXPolicyConditionDef>emptyList());
+		Mockito.when(xDataMaskTypeDefDao.findByServiceDefId(SERVICE_DEF_ID)).thenReturn(Collections.<XXDataMaskTypeDef>emptyList());
+		Mockito.when(xUserDao.findByUserName("user1")).thenReturn(xUser);
+
+		xServiceDef = new XXServiceDef();
+		xServiceDef.setId(SERVICE_DEF_ID);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testFlushWritesEachTableOnce() throws Exception {
+		Mockito.when(xPolicyResourceDao.batchCreate(Mockito.anyList())).thenAnswer(new IdAssigner<XXPolicyResource>(100L));
+		Mockito.when(xPolicyItemDao.batchCreate(Mockito.anyList())).thenAnswer(new IdAssigner<XXPolicyItem>(200L));
+
+		RangerPolicyBatchWriter writer = new RangerPolicyBatchWriter(daoMgr, new RangerAuditFields<XXDBBase>());
+
+		writer.add(createPolicy("policy-1", "read"), createXPolicy(1L), xServiceDef);
+		writer.add(createPolicy("policy-2", "read"), createXPolicy(2L), xServiceDef);
+
+		Assert.assertEquals(4, writer.getPendingCount());
+
+		writer.flush();
+
+		Assert.assertEquals(0, writer.getPendingCount());
+
+		ArgumentCaptor<List> resMapCaptor = ArgumentCaptor.forClass(List.class);
+		ArgumentCaptor<List> accessCaptor = ArgumentCaptor.forClass(List.class);
+		ArgumentCaptor<List> userCaptor   = ArgumentCaptor.forClass(List.class);
+
+		Mockito.verify(xPolicyResourceDao, Mockito.times(1)).batchCreate(Mockito.anyList());
+		Mockito.verify(xPolicyResourceMapDao, Mockito.times(1)).batchCreate(resMapCaptor.capture());
+		Mockito.verify(xPolicyItemDao, Mockito.times(1)).batchCreate(Mockito.anyList());
+		Mockito.verify(xPolicyItemAccessDao, Mockito.times(1)).batchCreate(accessCaptor.capture());
+		Mockito.verify(xPolicyItemUserPermDao, Mockito.times(1)).batchCreate(userCaptor.capture());
+		Mockito.verify(xUserDao, Mockito.times(1)).findByUserName("user1");
+		Mockito.verify(xResourceDefDao, Mockito.times(1)).findByServiceDefId(SERVICE_DEF_ID);
+
+		List<XXPolicyResourceMap>  resMaps  = resMapCaptor.getValue();
+		List<XXPolicyItemAccess>   accesses = accessCaptor.getValue();
+		List<XXPolicyItemUserPerm> users    = userCaptor.getValue();
+
+		Assert.assertEquals(2, resMaps.size());
+		Assert.assertEquals(Long.valueOf(100L), resMaps.get(0).getResourceid());
+		Assert.assertEquals(Long.valueOf(101L), resMaps.get(1).getResourceid());
+
+		Assert.assertEquals(2, accesses.size());
+		Assert.assertEquals(Long.valueOf(200L), accesses.get(0).getPolicyitemid());
+		Assert.assertEquals(Long.valueOf(201L), accesses.get(1).getPolicyitemid());
+		Assert.assertEquals(Long.valueOf(21L), accesses.get(0).getType());
+
+		Assert.assertEquals(2, users.size());
+		Assert.assertEquals(Long.valueOf(31L), users.get(1).getUserid());
+		Assert.assertEquals(Long.valueOf(201L), users.get(1).getPolicyitemid());
+	}
+
+	@Test
+	public void testAddRejectsUnknownAccessType() throws Exception {
+		RangerPolicyBatchWriter writer = new RangerPolicyBatchWriter(daoMgr, new RangerAuditFields<XXDBBase>());
+
+		try {
+			writer.add(createPolicy("policy-1", "write"), createXPolicy(1L), xServiceDef);
+
+			Assert.fail("expected policy with unknown access-type to be rejected");
+		} catch (Exception excp) {
+			Assert.assertTrue(excp.getMessage().startsWith("write: is not a valid access-type"));
+		}
+	}
+
+	private RangerPolicy createPolicy(String name, String accessType) {
+		Map<String, RangerPolicyResource> resources = new HashMap<String, RangerPolicyResource>();
+
+		resources.put("path", new RangerPolicyResource("/data/" + name));
+
+		RangerPolicyItem policyItem = new RangerPolicyItem(Arrays.asList(new RangerPolicyItemAccess(accessType)), Arrays.asList("user1"),
+				new ArrayList<String>(), new ArrayList<RangerPolicyItemCondition>(), false);
+
+		RangerPolicy ret = new RangerPolicy();
+
+		ret.setName(name);
+		ret.setService("hdfsdev");
+		ret.setResources(resources);
+		ret.setPolicyItems(Arrays.asList(policyItem));
+
+		return ret;
+	}
+
+	private XXPolicy createXPolicy(Long id) {
+		XXPolicy ret = new XXPolicy();
+
+		ret.setId(id);
+
+		return ret;
+	}
+
+	static class IdAssigner<T extends XXDBBase> implements Answer<List<T>> {
+		private long nextId;
+
+		IdAssigner(long firstId) {
+			this.nextId = firstId;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public List<T> answer(InvocationOnMock invocation) {
+			List<T> objs = (List<T>) invocation.getArguments()[0];
+
+			for (T obj : objs) {
+				obj.setId(nextId++);
+			}
+
+			return objs;
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ranger.biz;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ranger.db.*;
+import org.apache.ranger.entity.*;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestRangerPolicyRetriever {
+	private static final Long SERVICE_ID     = 1L;
+	private static final Long SERVICE_DEF_ID = 2L;
+	private static final int  POLICY_COUNT   = 50;
+
+	@Mock RangerDaoManager daoMgr;
+	@Mock XXPolicyDao xPolicyDao;
+	@Mock XXPolicyResourceDao xPolicyResourceDao;
+	@Mock XXPolicyResourceMapDao xPolicyResourceMapDao;
+	@Mock XXPolicyItemDao xPolicyItemDao;
+	@Mock XXPolicyItemUserPermDao xPolicyItemUserPermDao;
+	@Mock XXPolicyItemGroupPermDao xPolicyItemGroupPermDao;
+	@Mock XXPolicyItemAccessDao xPolicyItemAccessDao;
+	@Mock XXPolicyItemConditionDao xPolicyItemConditionDao;
+	@Mock XXPolicyItemDataMaskInfoDao xPolicyItemDataMaskInfoDao;
+	@Mock XXPolicyItemRowFilterInfoDao xPolicyItemRowFilterInfoDao;
+	@Mock XXUserDao xUserDao;
+	@Mock XXGroupDao xGroupDao;
+	@Mock XXPortalUserDao xPortalUserDao;
+	@Mock XXAccessTypeDefDao xAccessTypeDefDao;
+	@Mock XXPolicyConditionDefDao xPolicyConditionDefDao;
+	@Mock XXResourceDefDao xResourceDefDao;
+	@Mock XXDataMaskTypeDefDao xDataMaskTypeDefDao;
+
+	@Before
+	public void setup() {
+		Mockito.when(daoMgr.getXXPolicy()).thenReturn(xPolicyDao);
+		Mockito.when(daoMgr.getXXPolicyResource()).thenReturn(xPolicyResourceDao);
+		Mockito.when(daoMgr.getXXPolicyResourceMap()).thenReturn(xPolicyResourceMapDao);
+		Mockito.when(daoMgr.getXXPolicyItem()).thenReturn(xPolicyItemDao);
+		Mockito.when(daoMgr.getXXPolicyItemUserPerm()).thenReturn(xPolicyItemUserPermDao);
+		Mockito.when(daoMgr.getXXPolicyItemGroupPerm()).thenReturn(xPolicyItemGroupPermDao);
+		Mockito.when(daoMgr.getXXPolicyItemAccess()).thenReturn(xPolicyItemAccessDao);
+		Mockito.when(daoMgr.getXXPolicyItemCondition()).thenReturn(xPolicyItemConditionDao);
+		Mockito.when(daoMgr.getXXPolicyItemDataMaskInfo()).thenReturn(xPolicyItemDataMaskInfoDao);
+		Mockito.when(daoMgr.getXXPolicyItemRowFilterInfo()).thenReturn(xPolicyItemRowFilterInfoDao);
+		Mockito.when(daoMgr.getXXUser()).thenReturn(xUserDao);
+		Mockito.when(daoMgr.getXXGroup()).thenReturn(xGroupDao);
+		Mockito.when(daoMgr.getXXPortalUser()).thenReturn(xPortalUserDao);
+		Mockito.when(daoMgr.getXXAccessTypeDef()).thenReturn(xAccessTypeDefDao);
+		Mockito.when(daoMgr.getXXPolicyConditionDef()).thenReturn(xPolicyConditionDefDao);
+		Mockito.when(daoMgr.getXXResourceDef()).thenReturn(xResourceDefDao);
+		Mockito.when(daoMgr.getXXDataMaskTypeDef()).thenReturn(xDataMaskTypeDefDao);
+	}
+
+	@Test
+	public void testServicePoliciesUseBulkLookups() {
+		List<XXPolicy>             xPolicies   = new ArrayList<XXPolicy>();
+		List<XXPolicyItem>         xItems      = new ArrayList<XXPolicyItem>();
+		List<XXPolicyItemAccess>   xAccesses   = new ArrayList<XXPolicyItemAccess>();
+		List<XXPolicyItemUserPerm> xUserPerms  = new ArrayList<XXPolicyItemUserPerm>();
+
+		for(long i = 1; i <= POLICY_COUNT; i++) {
+			XXPolicy xPolicy = new XXPolicy();
+			xPolicy.setId(i);
+			xPolicy.setName("policy-" + i);
+			xPolicy.setService(SERVICE_ID);
+			xPolicy.setAddedByUserId(1L);
+			xPolicy.setUpdatedByUserId(1L);
+			xPolicies.add(xPolicy);
+
+			XXPolicyItem xItem = new XXPolicyItem();
+			xItem.setId(i);
+			xItem.setPolicyId(i);
+			xItem.setItemType(0);
+			xItem.setDelegateAdmin(Boolean.FALSE);
+			xItems.add(xItem);
+
+			XXPolicyItemAccess xAccess = new XXPolicyItemAccess();
+			xAccess.setPolicyitemid(i);
+			xAccess.setType(10L);
+			xAccess.setIsAllowed(Boolean.TRUE);
+			xAccesses.add(xAccess);
+
+			XXPolicyItemUserPerm xUserPerm = new XXPolicyItemUserPerm();
+			xUserPerm.setPolicyItemId(i);
+			xUserPerm.setUserId(100L + (i % 5));
+			xUserPerms.add(xUserPerm);
+		}
+
+		List<Object[]> users = new ArrayList<Object[]>();
+		for(long i = 0; i < 5; i++) {
+			users.add(new Object[] { 100L + i, "user" + i });
+		}
+
+		XXPortalUser portalUser = new XXPortalUser();
+		portalUser.setId(1L);
+		portalUser.setLoginId("admin");
+
+		XXAccessTypeDef accessTypeDef = new XXAccessTypeDef();
+		accessTypeDef.setId(10L);
+		accessTypeDef.setName("read");
+
+		Mockito.when(xPolicyDao.findByServiceId(SERVICE_ID)).thenReturn(xPolicies);
+		Mockito.when(xPolicyItemDao.findByServiceId(SERVICE_ID)).thenReturn(xItems);
+		Mockito.when(xPolicyItemAccessDao.findByServiceId(SERVICE_ID)).thenReturn(xAccesses);
+		Mockito.when(xPolicyItemUserPermDao.findByServiceId(SERVICE_ID)).thenReturn(xUserPerms);
+		Mockito.when(xUserDao.getIdsAndNamesByServiceId(SERVICE_ID)).thenReturn(users);
+		Mockito.when(xPortalUserDao.findByServiceId(SERVICE_ID)).thenReturn(Arrays.asList(portalUser));
+		Mockito.when(xAccessTypeDefDao.findByServiceDefId(SERVICE_DEF_ID)).thenReturn(Arrays.asList(accessTypeDef));
+
+		XXService xService = new XXService();
+		xService.setId(SERVICE_ID);
+		xService.setType(SERVICE_DEF_ID);
+		xService.setName("hdfsdev");
+
+		List<RangerPolicy> policies = new RangerPolicyRetriever(daoMgr).getServicePolicies(xService);
+
+		Assert.assertEquals(POLICY_COUNT, policies.size());
+		Assert.assertEquals("admin", policies.get(0).getCreatedBy());
+		Assert.assertEquals("user1", policies.get(0).getPolicyItems().get(0).getUsers().get(0));
+		Assert.assertEquals("read", policies.get(0).getPolicyItems().get(0).getAccesses().get(0).getType());
+
+		Mockito.verify(xUserDao, Mockito.never()).getById(Mockito.anyLong());
+		Mockito.verify(xPortalUserDao, Mockito.never()).getById(Mockito.anyLong());
+		Mockito.verify(xAccessTypeDefDao, Mockito.never()).getById(Mockito.anyLong());
+		Mockito.verify(xUserDao, Mockito.times(1)).getIdsAndNamesByServiceId(SERVICE_ID);
+	}
+}
@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ranger.biz;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+
+import org.apache.ranger.common.GUIDUtil;
+import org.apache.ranger.common.RESTErrorUtil;
+import org.apache.ranger.db.*;
+import org.apache.ranger.entity.*;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.store.RangerServiceResourceSignature;
+import org.apache.ranger.plugin.util.ServiceTags;
+import org.apache.ranger.service.RangerAuditFields;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestRangerServiceTagsImporter {
+	private static final Long SERVICE_ID     = 1L;
+	private static final Long SERVICE_DEF_ID = 2L;
+	private static final Long TAG_DEF_ID     = 3L;
+
+	@Mock RESTErrorUtil errorUtil;
+	@Mock RangerDaoManager daoMgr;
+	@Mock EntityManager entityManager;
+	@Mock XXTagDefDao xTagDefDao;
+	@Mock XXServiceDao xServiceDao;
+	@Mock XXResourceDefDao xResourceDefDao;
+	@Mock XXServiceResourceDao xServiceResourceDao;
+	@Mock XXServiceResourceElementDao xServiceResourceElementDao;
+	@Mock XXServiceResourceElementValueDao xServiceResourceElementValueDao;
+	@Mock XXTagDao xTagDao;
+	@Mock XXTagAttributeDao xTagAttributeDao;
+	@Mock XXTagResourceMapDao xTagResourceMapDao;
+	@Mock XXServiceVersionInfoDao xServiceVersionInfoDao;
+
+	@Before
+	public void setup() {
+		Mockito.when(daoMgr.getEntityManager()).thenReturn(entityManager);
+		Mockito.when(daoMgr.getXXTagDef()).thenReturn(xTagDefDao);
+		Mockito.when(daoMgr.getXXService()).thenReturn(xServiceDao);
+		Mockito.when(daoMgr.getXXResourceDef()).thenReturn(xResourceDefDao);
+		Mockito.when(daoMgr.getXXServiceResource()).thenReturn(xServiceResourceDao);
+		Mockito.when(daoMgr.getXXServiceResourceElement()).thenReturn(xServiceResourceElementDao);
+		Mockito.when(daoMgr.getXXServiceResourceElementValue()).thenReturn(xServiceResourceElementValueDao);
+		Mockito.when(daoMgr.getXXTag()).thenReturn(xTagDao);
+		Mockito.when(daoMgr.getXXTagAttribute()).thenReturn(xTagAttributeDao);
+		Mockito.when(daoMgr.getXXTagResourceMap()).thenReturn(xTagResourceMapDao);
+		Mockito.when(daoMgr.getXXServiceVersionInfo()).thenReturn(xServiceVersionInfoDao);
+
+		XXTagDef xTagDef = new XXTagDef();
+		xTagDef.setId(TAG_DEF_ID);
+		xTagDef.setName("PII");
+
+		XXService xService = new XXService();
+		xService.setId(SERVICE_ID);
+		xService.setName("hivedev");
+		xService.setType(SERVICE_DEF_ID);
+
+		XXResourceDef xResourceDef = new XXResourceDef();
+		xResourceDef.setId(11L);
+		xResourceDef.setName("database");
+
+		Mockito.when(xTagDefDao.getAll()).thenReturn(Arrays.asList(xTagDef));
+		Mockito.when(xServiceDao.findByName("hivedev")).thenReturn(xService);
+		Mockito.when(xResourceDefDao.findByServiceDefId(SERVICE_DEF_ID)).thenReturn(Arrays.asList(xResourceDef));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testNewResourcesAreWrittenInBatches() throws Exception {
+		Mockito.when(xServiceResourceDao.batchCreate(Mockito.anyList())).thenAnswer(new TestRangerPolicyBatchWriter.IdAssigner<XXServiceResource>(100L));
+		Mockito.when(xServiceResourceElementDao.batchCreate(Mockito.anyList())).thenAnswer(new TestRangerPolicyBatchWriter.IdAssigner<XXServiceResourceElement>(200L));
+		Mockito.when(xTagDao.batchCreate(Mockito.anyList())).thenAnswer(new TestRangerPolicyBatchWriter.IdAssigner<XXTag>(300L));
+
+		RangerTag sharedTag = new RangerTag("shared-guid", "PII", Collections.singletonMap("level", "high"), RangerTag.OWNER_GLOBAL);
+
+		ServiceTags serviceTags = createServiceTags(Collections.singletonMap(1L, sharedTag), createResource(-1L, "finance"), createResource(-2L, "sales"));
+
+		serviceTags.getResourceToTagIds().put(-1L, Arrays.asList(1L));
+		serviceTags.getResourceToTagIds().put(-2L, Arrays.asList(1L));
+
+		new RangerServiceTagsImporter(daoMgr, new RangerAuditFields<XXDBBase>(), new GUIDUtil(), errorUtil).importServiceTags(serviceTags);
+
+		ArgumentCaptor<List> elementCaptor = ArgumentCaptor.forClass(List.class);
+		ArgumentCaptor<List> valueCaptor   = ArgumentCaptor.forClass(List.class);
+		ArgumentCaptor<List> tagCaptor     = ArgumentCaptor.forClass(List.class);
+		ArgumentCaptor<List> mapCaptor     = ArgumentCaptor.forClass(List.class);
+
+		Mockito.verify(xServiceResourceDao, Mockito.times(1)).batchCreate(Mockito.anyList());
+		Mockito.verify(xServiceResourceElementDao, Mockito.times(1)).batchCreate(elementCaptor.capture());
+		Mockito.verify(xServiceResourceElementValueDao, Mockito.times(1)).batchCreate(valueCaptor.capture());
+		Mockito.verify(xTagDao, Mockito.times(1)).batchCreate(tagCaptor.capture());
+		Mockito.verify(xTagResourceMapDao, Mockito.times(1)).batchCreate(mapCaptor.capture());
+		Mockito.verify(xServiceVersionInfoDao, Mockito.times(1)).updateServiceVersionInfoForServiceTagsUpdate(Mockito.eq(SERVICE_ID), Mockito.eq(new HashSet<Long>(Arrays.asList(100L, 101L))), Mockito.any(Date.class));
+		Mockito.verify(xServiceDao, Mockito.times(1)).findByName("hivedev");
+
+		List<XXServiceResourceElement>      elements = elementCaptor.getValue();
+		List<XXServiceResourceElementValue> values   = valueCaptor.getValue();
+		List<XXTag>                         tags     = tagCaptor.getValue();
+		List<XXTagResourceMap>              maps     = mapCaptor.getValue();
+
+		Assert.assertEquals(2, elements.size());
+		Assert.assertEquals(Long.valueOf(100L), elements.get(0).getResourceId());
+		Assert.assertEquals(Long.valueOf(101L), elements.get(1).getResourceId());
+		Assert.assertEquals(Long.valueOf(11L), elements.get(0).getResDefId());
+
+		Assert.assertEquals(2, values.size());
+		Assert.assertEquals(Long.valueOf(201L), values.get(1).getResElementId());
+		Assert.assertEquals("sales", values.get(1).getValue());
+
+		// the shared tag is created once, and mapped to both resources
+		Assert.assertEquals(1, tags.size());
+		Assert.assertEquals("shared-guid", tags.get(0).getGuid());
+		Assert.assertEquals(TAG_DEF_ID, tags.get(0).getType());
+
+		Assert.assertEquals(2, maps.size());
+		Assert.assertEquals(Long.valueOf(300L), maps.get(0).getTagId());
+		Assert.assertEquals(Long.valueOf(100L), maps.get(0).getResourceId());
+		Assert.assertEquals(Long.valueOf(300L), maps.get(1).getTagId());
+		Assert.assertEquals(Long.valueOf(101L), maps.get(1).getResourceId());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testUnchangedResourceIsNotUpdated() throws Exception {
+		RangerServiceResource resource = createResource(-1L, "finance");
+
+		XXServiceResource xResource = new XXServiceResource();
+		xResource.setId(100L);
+		xResource.setGuid("resource-guid");
+		xResource.setServiceId(SERVICE_ID);
+		xResource.setIsEnabled(true);
+		xResource.setResourceSignature(new RangerServiceResourceSignature(resource).getSignature());
+
+		XXTag xTag = new XXTag();
+		xTag.setId(300L);
+		xTag.setGuid("shared-guid");
+		xTag.setType(TAG_DEF_ID);
+		xTag.setOwner(RangerTag.OWNER_GLOBAL);
+
+		XXTag xStaleTag = new XXTag();
+		xStaleTag.setId(301L);
+		xStaleTag.setGuid("stale-guid");
+		xStaleTag.setType(TAG_DEF_ID);
+		xStaleTag.setOwner(RangerTag.OWNER_GLOBAL);
+
+		XXTagResourceMap xStaleMap = new XXTagResourceMap();
+		xStaleMap.setId(400L);
+		xStaleMap.setTagId(301L);
+		xStaleMap.setResourceId(100L);
+
+		Mockito.when(xServiceResourceDao.findByServiceAndResourceSignatures(Mockito.eq(SERVICE_ID), Mockito.anyList())).thenReturn(Arrays.asList(xResource));
+		Mockito.when(xTagDao.findForResourceIds(Mockito.anyList())).thenReturn(Arrays.asList(xStaleTag));
+		Mockito.when(xTagDao.findByGuids(Mockito.anyList())).thenReturn(Arrays.asList(xTag));
+		Mockito.when(xTagResourceMapDao.findByResourceIds(Mockito.anyList())).thenReturn(Arrays.asList(xStaleMap));
+
+		RangerTag sharedTag = new RangerTag("shared-guid", "PII", new HashMap<String, String>(), RangerTag.OWNER_GLOBAL);
+
+		ServiceTags serviceTags = createServiceTags(Collections.singletonMap(1L, sharedTag), resource);
+
+		serviceTags.getResourceToTagIds().put(-1L, Arrays.asList(1L));
+
+		new RangerServiceTagsImporter(daoMgr, new RangerAuditFields<XXDBBase>(), new GUIDUtil(), errorUtil).importServiceTags(serviceTags);
+
+		ArgumentCaptor<List> mapCaptor     = ArgumentCaptor.forClass(List.class);
+		ArgumentCaptor<List> removedCaptor = ArgumentCaptor.forClass(List.class);
+
+		Mockito.verify(xServiceResourceDao, Mockito.never()).batchCreate(Mockito.anyList());
+		Mockito.verify(xTagDao, Mockito.never()).batchCreate(Mockito.anyList());
+		Mockito.verify(xTagResourceMapDao, Mockito.times(1)).batchCreate(mapCaptor.capture());
+		Mockito.verify(xTagResourceMapDao, Mockito.times(1)).batchRemove(removedCaptor.capture());
+
+		Assert.assertEquals(Long.valueOf(300L), ((XXTagResourceMap) mapCaptor.getValue().get(0)).getTagId());
+		Assert.assertEquals(Long.valueOf(100L), ((XXTagResourceMap) mapCaptor.getValue().get(0)).getResourceId());
+		Assert.assertEquals(Arrays.asList(xStaleMap), removedCaptor.getValue());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testChangedResourceAndTagAreUpdatedInBatches() throws Exception {
+		Mockito.when(xServiceResourceElementDao.batchCreate(Mockito.anyList())).thenAnswer(new TestRangerPolicyBatchWriter.IdAssigner<XXServiceResourceElement>(200L));
+
+		RangerServiceResource resource = createResource(-1L, "finance");
+
+		resource.setGuid("resource-guid");
+
+		XXServiceResource xResource = new XXServiceResource();
+		xResource.setId(100L);
+		xResource.setGuid("resource-guid");
+		xResource.setServiceId(SERVICE_ID);
+		xResource.setIsEnabled(true);
+		xResource.setResourceSignature(new RangerServiceResourceSignature(createResource(-1L, "sales")).getSignature());
+
+		XXTag xTag = new XXTag();
+		xTag.setId(300L);
+		xTag.setGuid("shared-guid");
+		xTag.setType(TAG_DEF_ID);
+		xTag.setOwner(RangerTag.OWNER_GLOBAL);
+
+		XXTagResourceMap xMap = new XXTagResourceMap();
+		xMap.setId(400L);
+		xMap.setTagId(300L);
+		xMap.setResourceId(100L);
+
+		XXServiceResourceElement      xOldElement = new XXServiceResourceElement();
+		XXServiceResourceElementValue xOldValue   = new XXServiceResourceElementValue();
+		XXTagAttribute                xOldAttr    = new XXTagAttribute();
+
+		xOldAttr.setTagId(300L);
+		xOldAttr.setName("level");
+		xOldAttr.setValue("low");
+
+		Mockito.when(xServiceResourceDao.findByGuids(Mockito.anyList())).thenReturn(Arrays.asList(xResource));
+		Mockito.when(xServiceResourceElementDao.findByResourceIds(Arrays.asList(100L))).thenReturn(Arrays.asList(xOldElement));
+		Mockito.when(xServiceResourceElementValueDao.findByResourceIds(Arrays.asList(100L))).thenReturn(Arrays.asList(xOldValue));
+		Mockito.when(xTagDao.findForResourceIds(Mockito.anyList())).thenReturn(Arrays.asList(xTag));
+		Mockito.when(xTagResourceMapDao.findByResourceIds(Mockito.anyList())).thenReturn(Arrays.asList(xMap));
+		Mockito.when(xTagAttributeDao.findByTagIds(Arrays.asList(300L))).thenReturn(Arrays.asList(xOldAttr));
+		// the tag is also mapped to a resource of another import
+		Mockito.when(xServiceResourceDao.findServiceAndResourceIdsByTagIds(Arrays.asList(300L))).thenReturn(Arrays.asList(new Object[] { SERVICE_ID, 100L }, new Object[] { SERVICE_ID, 500L }));
+
+		RangerTag sharedTag = new RangerTag("shared-guid", "PII", Collections.singletonMap("level", "high"), RangerTag.OWNER_GLOBAL);
+
+		ServiceTags serviceTags = createServiceTags(Collections.singletonMap(1L, sharedTag), resource);
+
+		serviceTags.getResourceToTagIds().put(-1L, Arrays.asList(1L));
+
+		new RangerServiceTagsImporter(daoMgr, new RangerAuditFields<XXDBBase>(), new GUIDUtil(), errorUtil).importServiceTags(serviceTags);
+
+		ArgumentCaptor<List> valueCaptor = ArgumentCaptor.forClass(List.class);
+		ArgumentCaptor<List> attrCaptor  = ArgumentCaptor.forClass(List.class);
+
+		Mockito.verify(xServiceResourceDao, Mockito.never()).batchCreate(Mockito.anyList());
+		Mockito.verify(xServiceResourceDao, Mockito.times(1)).batchUpdate(Arrays.asList(xResource));
+		Mockito.verify(xServiceResourceElementValueDao, Mockito.times(1)).batchRemove(Arrays.asList(xOldValue));
+		Mockito.verify(xServiceResourceElementDao, Mockito.times(1)).batchRemove(Arrays.asList(xOldElement));
+		Mockito.verify(xServiceResourceElementValueDao, Mockito.times(1)).batchCreate(valueCaptor.capture());
+		Mockito.verify(xTagDao, Mockito.never()).batchCreate(Mockito.anyList());
+		Mockito.verify(xTagDao, Mockito.times(1)).batchUpdate(Arrays.asList(xTag));
+		Mockito.verify(xTagAttributeDao, Mockito.times(1)).batchRemove(Arrays.asList(xOldAttr));
+		Mockito.verify(xTagAttributeDao, Mockito.times(1)).batchCreate(attrCaptor.capture());
+		Mockito.verify(xTagResourceMapDao, Mockito.never()).batchCreate(Mockito.anyList());
+		Mockito.verify(xTagResourceMapDao, Mockito.never()).batchRemove(Mockito.anyList());
+		// one version update for all the changes, instead of one per updated object
+		Mockito.verify(xServiceVersionInfoDao, Mockito.times(1)).updateServiceVersionInfoForServiceTagsUpdate(Mockito.eq(SERVICE_ID), Mockito.eq(new HashSet<Long>(Arrays.asList(100L, 500L))), Mockito.any(Date.class));
+		Mockito.verifyNoMoreInteractions(xServiceVersionInfoDao);
+
+		Assert.assertEquals(resource.getResourceSignature(), xResource.getResourceSignature());
+		Assert.assertEquals("finance", ((XXServiceResourceElementValue) valueCaptor.getValue().get(0)).getValue());
+		Assert.assertEquals(Long.valueOf(300L), ((XXTagAttribute) attrCaptor.getValue().get(0)).getTagId());
+		Assert.assertEquals("high", ((XXTagAttribute) attrCaptor.getValue().get(0)).getValue());
+	}
+
+	private RangerServiceResource createResource(Long id, String database) {
+		Map<String, RangerPolicyResource> elements = new HashMap<String, RangerPolicyResource>();
+
+		elements.put("database", new RangerPolicyResource(database));
+
+		RangerServiceResource ret = new RangerServiceResource("hivedev", elements);
+
+		ret.setId(id);
+
+		return ret;
+	}
+
+	private ServiceTags createServiceTags(Map<Long, RangerTag> tags, RangerServiceResource... resources) {
+		ServiceTags ret = new ServiceTags();
+
+		ret.setOp(ServiceTags.OP_ADD_OR_UPDATE);
+		ret.setServiceName("hivedev");
+		ret.setTags(tags);
+		ret.setServiceResources(Arrays.asList(resources));
+		ret.setResourceToTagIds(new HashMap<Long, List<Long>>());
+
+		return ret;
+	}
+}
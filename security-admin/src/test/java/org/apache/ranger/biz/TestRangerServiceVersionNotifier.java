@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ranger.biz;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ranger.common.PropertiesUtil;
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.db.XXServiceVersionInfoDao;
+import org.apache.ranger.entity.XXServiceVersionInfo;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestRangerServiceVersionNotifier {
+
+	@InjectMocks
+	RangerServiceVersionNotifier notifier = new RangerServiceVersionNotifier();
+
+	@Mock
+	PlatformTransactionManager txManager;
+
+	@Mock
+	RangerDaoManager daoMgr;
+
+	@Mock
+	XXServiceVersionInfoDao versionInfoDao;
+
+	@Mock
+	RangerServiceVersionNotifier.Listener policyListener;
+
+	@Mock
+	RangerServiceVersionNotifier.Listener tagListener;
+
+	private XXServiceVersionInfo versionInfo;
+
+	@Before
+	public void setup() {
+		versionInfo = new XXServiceVersionInfo();
+		versionInfo.setServiceId(1L);
+		versionInfo.setPolicyVersion(5L);
+		versionInfo.setTagVersion(3L);
+
+		List<Object[]> versionInfos = new ArrayList<Object[]>();
+		versionInfos.add(new Object[] { versionInfo, "hdfsdev" });
+
+		Mockito.when(daoMgr.getXXServiceVersionInfo()).thenReturn(versionInfoDao);
+		Mockito.when(versionInfoDao.findByServiceName("hdfsdev")).thenReturn(versionInfo);
+		Mockito.when(versionInfoDao.getAllWithServiceNames()).thenReturn(versionInfos);
+	}
+
+	@Test
+	public void testNotifyWhenAlreadyChanged() {
+		Assert.assertTrue(notifier.addWaiter("hdfsdev", false, 4L, policyListener));
+		Assert.assertTrue(notifier.addWaiter("unknown", false, 4L, tagListener));
+
+		// versions are not read on the thread adding the waiter
+		Mockito.verify(versionInfoDao, Mockito.never()).findByServiceName(Mockito.anyString());
+
+		notifier.checkVersions();
+
+		Mockito.verify(policyListener, Mockito.times(1)).onVersionChange();
+		Mockito.verify(tagListener, Mockito.times(1)).onVersionChange();
+	}
+
+	@Test
+	public void testWaiterCaps() {
+		PropertiesUtil.getPropertiesMap().put(RangerServiceVersionNotifier.PROP_LONGPOLL_ENABLED, "false");
+		PropertiesUtil.getPropertiesMap().put(RangerServiceVersionNotifier.PROP_MAX_WAITERS, "3");
+		PropertiesUtil.getPropertiesMap().put(RangerServiceVersionNotifier.PROP_MAX_WAITERS_PER_SERVICE, "2");
+
+		try {
+			notifier.init();
+
+			Assert.assertTrue(notifier.addWaiter("hdfsdev", false, 5L, policyListener));
+			Assert.assertTrue(notifier.addWaiter("hdfsdev", true, 3L, tagListener));
+			Assert.assertFalse(notifier.canWait("hdfsdev"));
+			Assert.assertFalse(notifier.addWaiter("hdfsdev", false, 5L, policyListener));
+			Assert.assertTrue(notifier.addWaiter("hivedev", false, 5L, policyListener));
+			Assert.assertFalse(notifier.canWait("hbasedev"));
+
+			notifier.removeWaiter("hdfsdev", tagListener);
+
+			Assert.assertTrue(notifier.canWait("hdfsdev"));
+		} finally {
+			PropertiesUtil.getPropertiesMap().remove(RangerServiceVersionNotifier.PROP_LONGPOLL_ENABLED);
+			PropertiesUtil.getPropertiesMap().remove(RangerServiceVersionNotifier.PROP_MAX_WAITERS);
+			PropertiesUtil.getPropertiesMap().remove(RangerServiceVersionNotifier.PROP_MAX_WAITERS_PER_SERVICE);
+		}
+	}
+
+	@Test
+	public void testNotifyOnVersionChange() {
+		Assert.assertTrue(notifier.addWaiter("hdfsdev", false, 5L, policyListener));
+		Assert.assertTrue(notifier.addWaiter("hdfsdev", true, 3L, tagListener));
+
+		notifier.checkVersions();
+		Mockito.verifyZeroInteractions(policyListener, tagListener);
+
+		versionInfo.setPolicyVersion(6L);
+		notifier.checkVersions();
+		notifier.checkVersions();
+
+		Mockito.verify(policyListener, Mockito.times(1)).onVersionChange();
+		Mockito.verifyZeroInteractions(tagListener);
+
+		notifier.removeWaiter("hdfsdev", tagListener);
+		versionInfo.setTagVersion(4L);
+		notifier.checkVersions();
+
+		Mockito.verifyZeroInteractions(tagListener);
+	}
+}
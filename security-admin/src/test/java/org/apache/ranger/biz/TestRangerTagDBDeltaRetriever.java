@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ranger.biz;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ranger.db.*;
+import org.apache.ranger.entity.*;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.util.ServiceTags;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestRangerTagDBDeltaRetriever {
+	private static final Long SERVICE_ID = 1L;
+	private static final Long TAG_DEF_ID = 3L;
+
+	@Mock RangerDaoManager daoMgr;
+	@Mock XXTagChangeLogDao xTagChangeLogDao;
+	@Mock XXTagDefDao xTagDefDao;
+	@Mock XXResourceDefDao xResourceDefDao;
+	@Mock XXServiceResourceDao xServiceResourceDao;
+	@Mock XXServiceResourceElementDao xServiceResourceElementDao;
+	@Mock XXServiceResourceElementValueDao xServiceResourceElementValueDao;
+	@Mock XXTagDao xTagDao;
+	@Mock XXTagAttributeDao xTagAttributeDao;
+	@Mock XXTagResourceMapDao xTagResourceMapDao;
+
+	private XXService xService;
+
+	@Before
+	public void setup() {
+		Mockito.when(daoMgr.getXXTagChangeLog()).thenReturn(xTagChangeLogDao);
+		Mockito.when(daoMgr.getXXTagDef()).thenReturn(xTagDefDao);
+		Mockito.when(daoMgr.getXXResourceDef()).thenReturn(xResourceDefDao);
+		Mockito.when(daoMgr.getXXServiceResource()).thenReturn(xServiceResourceDao);
+		Mockito.when(daoMgr.getXXServiceResourceElement()).thenReturn(xServiceResourceElementDao);
+		Mockito.when(daoMgr.getXXServiceResourceElementValue()).thenReturn(xServiceResourceElementValueDao);
+		Mockito.when(daoMgr.getXXTag()).thenReturn(xTagDao);
+		Mockito.when(daoMgr.getXXTagAttribute()).thenReturn(xTagAttributeDao);
+		Mockito.when(daoMgr.getXXTagResourceMap()).thenReturn(xTagResourceMapDao);
+
+		XXTagDef xTagDef = new XXTagDef();
+		xTagDef.setId(TAG_DEF_ID);
+		xTagDef.setName("PII");
+
+		XXResourceDef xResourceDef = new XXResourceDef();
+		xResourceDef.setId(11L);
+		xResourceDef.setName("database");
+
+		Mockito.when(xTagDefDao.findForServicePlugin(SERVICE_ID)).thenReturn(Arrays.asList(xTagDef));
+		Mockito.when(xResourceDefDao.getById(11L)).thenReturn(xResourceDef);
+
+		xService = new XXService();
+		xService.setId(SERVICE_ID);
+		xService.setName("hivedev");
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testChangedResourcesAreMerged() {
+		ServiceTags cached = createCachedServiceTags();
+
+		// resource 10: tag 20 replaced by tag 21; resource 11: deleted; resource 12: unchanged
+		Mockito.when(xTagChangeLogDao.findByServiceIdAndVersions(SERVICE_ID, 5L, 7L)).thenReturn(Arrays.asList(
+				new XXTagChangeLog(SERVICE_ID, XXTagChangeLog.CHANGE_TYPE_SERVICE_RESOURCE_UPDATE, 6L, 10L, null),
+				new XXTagChangeLog(SERVICE_ID, XXTagChangeLog.CHANGE_TYPE_SERVICE_RESOURCE_UPDATE, 7L, 11L, null)));
+		Mockito.when(xServiceResourceDao.findByServiceAndIds(Mockito.eq(SERVICE_ID), Mockito.anyList())).thenReturn(Arrays.asList(createXResource(10L)));
+		Mockito.when(xServiceResourceElementDao.findByResourceIds(Mockito.anyList())).thenReturn(Arrays.asList(createXElement(100L, 10L)));
+		Mockito.when(xServiceResourceElementValueDao.findByResourceIds(Mockito.anyList())).thenReturn(Arrays.asList(createXElementValue(100L, "finance")));
+		Mockito.when(xTagDao.findForResourceIds(Mockito.anyList())).thenReturn(Arrays.asList(createXTag(21L)));
+		Mockito.when(xTagResourceMapDao.findByResourceIds(Mockito.anyList())).thenReturn(Arrays.asList(createXTagResourceMap(21L, 10L)));
+		Mockito.when(xTagAttributeDao.findByTagIds(Mockito.anyList())).thenReturn(Arrays.asList(createXTagAttribute(21L, "level", "high")));
+
+		ServiceTags serviceTags = new RangerTagDBDeltaRetriever(daoMgr, xService).getServiceTags(cached, 7L, null);
+
+		Assert.assertNotNull(serviceTags);
+		Assert.assertEquals(Long.valueOf(7L), serviceTags.getTagVersion());
+
+		Assert.assertEquals(2, serviceTags.getServiceResources().size());
+		Assert.assertSame(cached.getServiceResources().get(2), serviceTags.getServiceResources().get(0));
+		Assert.assertEquals(Long.valueOf(10L), serviceTags.getServiceResources().get(1).getId());
+		Assert.assertEquals(Arrays.asList("finance"), serviceTags.getServiceResources().get(1).getResourceElements().get("database").getValues());
+
+		Assert.assertEquals(Arrays.asList(21L), serviceTags.getResourceToTagIds().get(10L));
+		Assert.assertFalse(serviceTags.getResourceToTagIds().containsKey(11L));
+		Assert.assertEquals(Arrays.asList(22L), serviceTags.getResourceToTagIds().get(12L));
+
+		// tag 20 is no longer mapped to any resource
+		Assert.assertEquals(2, serviceTags.getTags().size());
+		Assert.assertEquals("PII", serviceTags.getTags().get(21L).getType());
+		Assert.assertEquals("high", serviceTags.getTags().get(21L).getAttributes().get("level"));
+		Assert.assertSame(cached.getTags().get(22L), serviceTags.getTags().get(22L));
+
+		// the cached ServiceTags is left as it was
+		Assert.assertEquals(3, cached.getServiceResources().size());
+		Assert.assertEquals(3, cached.getTags().size());
+		Assert.assertEquals(Arrays.asList(20L), cached.getResourceToTagIds().get(10L));
+	}
+
+	@Test
+	public void testMissingVersionNeedsFullReload() {
+		ServiceTags cached = createCachedServiceTags();
+
+		Mockito.when(xTagChangeLogDao.findByServiceIdAndVersions(SERVICE_ID, 5L, 7L)).thenReturn(Arrays.asList(
+				new XXTagChangeLog(SERVICE_ID, XXTagChangeLog.CHANGE_TYPE_SERVICE_RESOURCE_UPDATE, 7L, 10L, null)));
+
+		Assert.assertNull(new RangerTagDBDeltaRetriever(daoMgr, xService).getServiceTags(cached, 7L, null));
+
+		Mockito.verifyZeroInteractions(xServiceResourceDao);
+	}
+
+	@Test
+	public void testTagDefChangeNeedsFullReload() {
+		ServiceTags cached = createCachedServiceTags();
+
+		Mockito.when(xTagChangeLogDao.findByServiceIdAndVersions(SERVICE_ID, 5L, 6L)).thenReturn(Arrays.asList(
+				new XXTagChangeLog(SERVICE_ID, XXTagChangeLog.CHANGE_TYPE_TAG_DEF_UPDATE, 6L, null, null)));
+
+		Assert.assertNull(new RangerTagDBDeltaRetriever(daoMgr, xService).getServiceTags(cached, 6L, null));
+	}
+
+	private ServiceTags createCachedServiceTags() {
+		List<RangerServiceResource> resources        = new ArrayList<RangerServiceResource>();
+		Map<Long, List<Long>>       resourceToTagIds = new HashMap<Long, List<Long>>();
+		Map<Long, RangerTag>        tags             = new HashMap<Long, RangerTag>();
+
+		for (long id = 10; id <= 12; id++) {
+			RangerServiceResource resource = new RangerServiceResource();
+
+			resource.setId(id);
+			resource.getResourceElements().put("database", new RangerPolicyResource("db" + id));
+
+			resources.add(resource);
+		}
+
+		resourceToTagIds.put(10L, Arrays.asList(20L));
+		resourceToTagIds.put(11L, Arrays.asList(20L));
+		resourceToTagIds.put(12L, Arrays.asList(22L));
+
+		for (long id = 20; id <= 22; id++) {
+			RangerTag tag = new RangerTag("PII", Collections.<String, String>emptyMap());
+
+			tag.setId(id);
+
+			tags.put(id, tag);
+		}
+
+		ServiceTags ret = new ServiceTags();
+
+		ret.setServiceName("hivedev");
+		ret.setTagVersion(5L);
+		ret.setServiceResources(resources);
+		ret.setResourceToTagIds(resourceToTagIds);
+		ret.setTags(tags);
+
+		return ret;
+	}
+
+	private XXServiceResource createXResource(Long id) {
+		XXServiceResource ret = new XXServiceResource();
+
+		ret.setId(id);
+		ret.setServiceId(SERVICE_ID);
+		ret.setIsEnabled(true);
+
+		return ret;
+	}
+
+	private XXServiceResourceElement createXElement(Long id, Long resourceId) {
+		XXServiceResourceElement ret = new XXServiceResourceElement();
+
+		ret.setId(id);
+		ret.setResourceId(resourceId);
+		ret.setResDefId(11L);
+		ret.setIsExcludes(false);
+		ret.setIsRecursive(false);
+
+		return ret;
+	}
+
+	private XXServiceResourceElementValue createXElementValue(Long resElementId, String value) {
+		XXServiceResourceElementValue ret = new XXServiceResourceElementValue();
+
+		ret.setResElementId(resElementId);
+		ret.setValue(value);
+
+		return ret;
+	}
+
+	private XXTag createXTag(Long id) {
+		XXTag ret = new XXTag();
+
+		ret.setId(id);
+		ret.setType(TAG_DEF_ID);
+		ret.setOwner(RangerTag.OWNER_SERVICERESOURCE);
+
+		return ret;
+	}
+
+	private XXTagResourceMap createXTagResourceMap(Long tagId, Long resourceId) {
+		XXTagResourceMap ret = new XXTagResourceMap();
+
+		ret.setTagId(tagId);
+		ret.setResourceId(resourceId);
+
+		return ret;
+	}
+
+	private XXTagAttribute createXTagAttribute(Long tagId, String name, String value) {
+		XXTagAttribute ret = new XXTagAttribute();
+
+		ret.setTagId(tagId);
+		ret.setName(name);
+		ret.setValue(value);
+
+		return ret;
+	}
+}
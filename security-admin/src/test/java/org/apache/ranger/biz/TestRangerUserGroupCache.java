@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.db.XXGroupUserDao;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestRangerUserGroupCache {
+
+	@Mock RangerDaoManager           daoMgr;
+	@Mock PlatformTransactionManager txManager;
+	@Mock XXGroupUserDao             xGroupUserDao;
+
+	RangerUserGroupCache cache = new RangerUserGroupCache();
+
+	@Before
+	public void setup() {
+		cache.daoMgr    = daoMgr;
+		cache.txManager = txManager;
+
+		Mockito.when(daoMgr.getXXGroupUser()).thenReturn(xGroupUserDao);
+		Mockito.when(xGroupUserDao.findAllUserAndGroupNames()).thenReturn(Arrays.asList(
+				new Object[] { "alice", "finance" },
+				new Object[] { "alice", "sales" },
+				new Object[] { "bob", "sales" }));
+	}
+
+	@Test
+	public void testLoad() {
+		Assert.assertNull(cache.getGroupsForUser("alice"));
+		Assert.assertNull(cache.getUsersInGroup("sales"));
+
+		cache.refresh();
+
+		Assert.assertTrue(cache.isLoaded());
+		Assert.assertEquals(setOf("finance", "sales"), cache.getGroupsForUser("alice"));
+		Assert.assertEquals(setOf("alice", "bob"), cache.getUsersInGroup("sales"));
+		Assert.assertEquals(setOf(), cache.getGroupsForUser("carol"));
+
+		// lookups return copies
+		cache.getGroupsForUser("alice").clear();
+
+		Assert.assertEquals(setOf("finance", "sales"), cache.getGroupsForUser("alice"));
+	}
+
+	@Test
+	public void testUserChangeUpdatesBothDirections() {
+		cache.refresh();
+
+		Mockito.when(xGroupUserDao.findGroupNamesByUserName("alice")).thenReturn(setOf("sales", "admins"));
+		Mockito.when(xGroupUserDao.findGroupNamesByUserName("bob")).thenReturn(setOf());
+
+		cache.onUserGroupsChange("alice");
+		cache.onUserGroupsChange("bob");
+		cache.refresh();
+
+		Assert.assertEquals(setOf("sales", "admins"), cache.getGroupsForUser("alice"));
+		Assert.assertEquals(setOf(), cache.getGroupsForUser("bob"));
+		Assert.assertEquals(setOf("alice"), cache.getUsersInGroup("sales"));
+		Assert.assertEquals(setOf("alice"), cache.getUsersInGroup("admins"));
+		Assert.assertEquals(setOf(), cache.getUsersInGroup("finance"));
+
+		// only the changed users are read again
+		Mockito.verify(xGroupUserDao, Mockito.times(1)).findAllUserAndGroupNames();
+	}
+
+	@Test
+	public void testChangeReloads() {
+		cache.refresh();
+
+		Mockito.when(xGroupUserDao.findAllUserAndGroupNames()).thenReturn(Arrays.asList(new Object[][] { { "bob", "finance" } }));
+
+		cache.onChange();
+		cache.refresh();
+
+		Assert.assertEquals(setOf(), cache.getGroupsForUser("alice"));
+		Assert.assertEquals(setOf("bob"), cache.getUsersInGroup("finance"));
+		Mockito.verify(xGroupUserDao, Mockito.never()).findGroupNamesByUserName(Mockito.anyString());
+	}
+
+	@Test
+	public void testOldIndexNotUsed() {
+		cache.refresh();
+
+		Assert.assertEquals(setOf("finance", "sales"), cache.getGroupsForUser("alice"));
+
+		cache.maxAgeMs = -1;
+
+		Assert.assertTrue(cache.isLoaded());
+		Assert.assertNull(cache.getGroupsForUser("alice"));
+		Assert.assertNull(cache.getUsersInGroup("sales"));
+	}
+
+	private static HashSet<String> setOf(String... values) {
+		return new HashSet<String>(Arrays.asList(values));
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.apache.ranger.common.RangerCommonEnums;
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.db.XXGroupDao;
+import org.apache.ranger.db.XXGroupUserDao;
+import org.apache.ranger.db.XXUserDao;
+import org.apache.ranger.entity.XXGroup;
+import org.apache.ranger.entity.XXGroupUser;
+import org.apache.ranger.entity.XXUser;
+import org.apache.ranger.view.VXUserGroupImportResult;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestRangerUserGroupImporter {
+
+	@Mock RangerDaoManager daoMgr;
+	@Mock EntityManager entityManager;
+	@Mock XXGroupDao xGroupDao;
+	@Mock XXUserDao xUserDao;
+	@Mock XXGroupUserDao xGroupUserDao;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		Mockito.when(daoMgr.getEntityManager()).thenReturn(entityManager);
+		Mockito.when(daoMgr.getXXGroup()).thenReturn(xGroupDao);
+		Mockito.when(daoMgr.getXXUser()).thenReturn(xUserDao);
+		Mockito.when(daoMgr.getXXGroupUser()).thenReturn(xGroupUserDao);
+
+		Mockito.when(xGroupDao.batchCreate(Mockito.anyList())).thenAnswer(new TestRangerPolicyBatchWriter.IdAssigner<XXGroup>(300L));
+		Mockito.when(xUserDao.batchCreate(Mockito.anyList())).thenAnswer(new TestRangerPolicyBatchWriter.IdAssigner<XXUser>(400L));
+		Mockito.when(xGroupUserDao.batchCreate(Mockito.anyList())).thenAnswer(new TestRangerPolicyBatchWriter.IdAssigner<XXGroupUser>(500L));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testDeltaSnapshot() throws Exception {
+		Mockito.when(xGroupDao.findByGroupNames(Mockito.anyList())).thenReturn(Arrays.asList(createGroup(10L, "finance", RangerCommonEnums.GROUP_EXTERNAL)));
+		Mockito.when(xUserDao.findByUserNames(Mockito.anyList())).thenReturn(Arrays.asList(createUser(1L, "alice"), createUser(2L, "bob")));
+		Mockito.when(xGroupUserDao.findMembershipsByUserIds(Mockito.anyList())).thenReturn(Arrays.asList(
+				new Object[] { 100L, 1L, 10L, RangerCommonEnums.GROUP_EXTERNAL },
+				new Object[] { 101L, 1L, 20L, RangerCommonEnums.GROUP_EXTERNAL },
+				new Object[] { 102L, 1L, 10L, RangerCommonEnums.GROUP_EXTERNAL },
+				new Object[] { 105L, 1L, 30L, RangerCommonEnums.GROUP_INTERNAL }));
+
+		String snapshot = "{ \"xgroupInfo\": [ { \"name\": \"finance\", \"groupSource\": 1 } ],"
+						+ "  \"xuserInfo\":  [ { \"name\": \"alice\", \"groupNameList\": [ \"finance\", \"sales\" ] },"
+						+ "                    { \"name\": \"bob\" },"
+						+ "                    { \"name\": \"carol\", \"groupNameList\": [ ] } ] }";
+
+		VXUserGroupImportResult result = importSnapshot(snapshot);
+
+		Assert.assertFalse(result.getIsFullSnapshot());
+		Assert.assertEquals(1, result.getGroupsCreated());
+		Assert.assertEquals(0, result.getGroupsUpdated());
+		Assert.assertEquals(1, result.getUsersCreated());
+		Assert.assertEquals(0, result.getUsersUpdated());
+		Assert.assertEquals(1, result.getGroupUsersCreated());
+		Assert.assertEquals(2, result.getGroupUsersDeleted());
+
+		ArgumentCaptor<List> groupCaptor     = ArgumentCaptor.forClass(List.class);
+		ArgumentCaptor<List> groupUserCaptor = ArgumentCaptor.forClass(List.class);
+		ArgumentCaptor<List> userIdsCaptor   = ArgumentCaptor.forClass(List.class);
+
+		Mockito.verify(xGroupDao).batchCreate(groupCaptor.capture());
+		Mockito.verify(xGroupUserDao).batchCreate(groupUserCaptor.capture());
+		Mockito.verify(xGroupUserDao).findMembershipsByUserIds(userIdsCaptor.capture());
+		// the internal group membership 105 is kept, though not in alice's list
+		Mockito.verify(xGroupUserDao).deleteByIds(Arrays.asList(101L, 102L));
+		Mockito.verify(xGroupDao, Mockito.never()).getAll();
+
+		XXGroup     sales     = (XXGroup) groupCaptor.getValue().get(0);
+		XXGroupUser groupUser = (XXGroupUser) groupUserCaptor.getValue().get(0);
+
+		Assert.assertEquals("sales", sales.getName());
+		Assert.assertEquals(RangerCommonEnums.GROUP_EXTERNAL, sales.getGroupSource());
+		Assert.assertEquals(Long.valueOf(1L), groupUser.getUserId());
+		Assert.assertEquals(Long.valueOf(300L), groupUser.getParentGroupId());
+		Assert.assertEquals("sales", groupUser.getName());
+
+		// bob has no group list in the delta: his memberships are not looked at
+		Assert.assertEquals(new HashSet<Long>(Arrays.asList(1L, 400L)), new HashSet<Long>(userIdsCaptor.getValue()));
+	}
+
+	@Test
+	public void testFullSnapshot() throws Exception {
+		Mockito.when(xGroupDao.getAll()).thenReturn(Arrays.asList(createGroup(10L, "finance", RangerCommonEnums.GROUP_EXTERNAL), createGroup(11L, "admins", RangerCommonEnums.GROUP_INTERNAL)));
+		Mockito.when(xUserDao.getAll()).thenReturn(Arrays.asList(createUser(1L, "alice"), createUser(4L, "dave")));
+		Mockito.when(xGroupUserDao.findAllMemberships()).thenReturn(Arrays.asList(
+				new Object[] { 100L, 1L, 10L, RangerCommonEnums.GROUP_EXTERNAL },
+				new Object[] { 106L, 1L, 11L, RangerCommonEnums.GROUP_INTERNAL },
+				new Object[] { 103L, 4L, 10L, RangerCommonEnums.GROUP_EXTERNAL },
+				new Object[] { 104L, 4L, 11L, RangerCommonEnums.GROUP_INTERNAL }));
+
+		VXUserGroupImportResult result = importSnapshot("{ \"isFullSnapshot\": true, \"xuserInfo\": [ { \"name\": \"alice\", \"groupNameList\": [ \"finance\" ] } ] }");
+
+		Assert.assertTrue(result.getIsFullSnapshot());
+		Assert.assertEquals(0, result.getGroupUsersCreated());
+		Assert.assertEquals(1, result.getGroupUsersDeleted());
+
+		// alice keeps the internal group not in her list; dave, not in the snapshot, is removed from the external group only
+		Mockito.verify(xGroupUserDao).deleteByIds(Arrays.asList(103L));
+		Mockito.verify(xGroupDao, Mockito.never()).findByGroupNames(Mockito.anyListOf(String.class));
+		Mockito.verify(xGroupDao, Mockito.never()).batchCreate(Mockito.anyListOf(XXGroup.class));
+		Mockito.verify(xUserDao, Mockito.never()).batchCreate(Mockito.anyListOf(XXUser.class));
+	}
+
+	@Test
+	public void testUnchangedSnapshotWritesNothing() throws Exception {
+		XXUser alice = createUser(1L, "alice");
+
+		alice.setDescription("alice from AD");
+
+		Mockito.when(xGroupDao.findByGroupNames(Mockito.anyListOf(String.class))).thenReturn(Arrays.asList(createGroup(10L, "finance", RangerCommonEnums.GROUP_EXTERNAL)));
+		Mockito.when(xUserDao.findByUserNames(Mockito.anyListOf(String.class))).thenReturn(Arrays.asList(alice));
+		Mockito.when(xGroupUserDao.findMembershipsByUserIds(Mockito.anyListOf(Long.class))).thenReturn(Collections.singletonList(new Object[] { 100L, 1L, 10L, RangerCommonEnums.GROUP_EXTERNAL }));
+
+		VXUserGroupImportResult result = importSnapshot("{ \"xuserInfo\": [ { \"name\": \"alice\", \"description\": \"alice from AD\", \"groupNameList\": [ \"finance\" ] } ] }");
+
+		Assert.assertFalse(result.hasChanges());
+
+		Mockito.verify(xGroupDao, Mockito.never()).batchCreate(Mockito.anyListOf(XXGroup.class));
+		Mockito.verify(xUserDao, Mockito.never()).batchUpdate(Mockito.anyListOf(XXUser.class));
+		Mockito.verify(xGroupUserDao, Mockito.never()).batchCreate(Mockito.anyListOf(XXGroupUser.class));
+		Mockito.verify(xGroupUserDao, Mockito.never()).deleteByIds(Mockito.anyListOf(Long.class));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testGroupSourceNotInSnapshot() throws Exception {
+		XXGroup finance = createGroup(10L, "finance", RangerCommonEnums.GROUP_EXTERNAL);
+
+		Mockito.when(xGroupDao.findByGroupNames(Mockito.anyListOf(String.class))).thenReturn(Arrays.asList(finance));
+
+		VXUserGroupImportResult result = importSnapshot("{ \"xgroupInfo\": [ { \"name\": \"finance\", \"description\": \"finance team\" }, { \"name\": \"hr\" } ] }");
+
+		Assert.assertEquals(1, result.getGroupsCreated());
+		Assert.assertEquals(1, result.getGroupsUpdated());
+
+		ArgumentCaptor<List> groupCaptor = ArgumentCaptor.forClass(List.class);
+
+		Mockito.verify(xGroupDao).batchCreate(groupCaptor.capture());
+
+		// groups are external unless the snapshot says otherwise
+		Assert.assertEquals(RangerCommonEnums.GROUP_EXTERNAL, ((XXGroup) groupCaptor.getValue().get(0)).getGroupSource());
+		Assert.assertEquals(RangerCommonEnums.GROUP_EXTERNAL, finance.getGroupSource());
+		Assert.assertEquals("finance team", finance.getDescription());
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidSnapshot() throws Exception {
+		new RangerUserGroupImporter(daoMgr, 1L).readSnapshot(new ByteArrayInputStream("[ ]".getBytes("UTF-8")));
+	}
+
+	private VXUserGroupImportResult importSnapshot(String snapshot) throws Exception {
+		RangerUserGroupImporter importer = new RangerUserGroupImporter(daoMgr, 1L);
+
+		importer.readSnapshot(new ByteArrayInputStream(snapshot.getBytes("UTF-8")));
+
+		return importer.importSnapshot();
+	}
+
+	private static XXGroup createGroup(Long id, String name, int groupSource) {
+		XXGroup ret = new XXGroup();
+
+		ret.setId(id);
+		ret.setName(name);
+		ret.setGroupSource(groupSource);
+
+		return ret;
+	}
+
+	private static XXUser createUser(Long id, String name) {
+		XXUser ret = new XXUser();
+
+		ret.setId(id);
+		ret.setName(name);
+
+		return ret;
+	}
+}
@@ -17,6 +17,8 @@
 
 package org.apache.ranger.biz;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -24,6 +26,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
 import org.apache.ranger.common.ContextUtil;
 import org.apache.ranger.common.RangerFactory;
 import org.apache.ranger.common.StringUtil;
@@ -59,6 +65,7 @@ import org.apache.ranger.service.RangerServiceDefService;
 import org.apache.ranger.service.RangerServiceService;
 import org.apache.ranger.service.RangerServiceWithAssignedIdService;
 import org.apache.ranger.service.XUserService;
+import org.apache.ranger.view.RangerExportPolicyList;
 import org.apache.ranger.view.RangerPolicyList;
 import org.apache.ranger.view.RangerServiceDefList;
 import org.apache.ranger.view.RangerServiceList;
@@ -76,6 +83,8 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import com.google.gson.Gson;
+
 @RunWith(MockitoJUnitRunner.class)
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class TestServiceDBStore {
@@ -126,6 +135,9 @@ public class TestServiceDBStore {
 	@Mock
 	ServicePredicateUtil predicateUtil;
 
+	@Mock
+	RangerServiceVersionNotifier serviceVersionNotifier;
+
 	@Rule
 	public ExpectedException thrown = ExpectedException.none();
 
@@ -2664,6 +2676,10 @@ public class TestServiceDBStore {
 		policy.setService(rangerService.getId());
 		policiesList.add(policy);
 
+		XXServiceVersionInfoDao xServiceVersionInfoDao = Mockito.mock(XXServiceVersionInfoDao.class);
+		Mockito.when(daoManager.getXXServiceVersionInfo()).thenReturn(xServiceVersionInfoDao);
+		Mockito.when(xServiceVersionInfoDao.findByServiceName(serviceName)).thenReturn(null);
+
 		XXPolicyDao xPolicyDao = Mockito.mock(XXPolicyDao.class);
 		Mockito.when(daoManager.getXXPolicy()).thenReturn(xPolicyDao);
 		Mockito.when(
@@ -2803,4 +2819,184 @@ public class TestServiceDBStore {
 		//Assert.assertNull(policy);
 		Assert.assertEquals(3, policy.getPolicyItems().size());
 	}
+
+	@Test
+	public void test42getServicePoliciesIncremental() throws Exception {
+		XXService xService = xService();
+		XXPolicyDao xPolicyDao = Mockito.mock(XXPolicyDao.class);
+		XXPolicyChangeLogDao xPolicyChangeLogDao = Mockito.mock(XXPolicyChangeLogDao.class);
+
+		List<RangerPolicy> cachedPolicies = new ArrayList<RangerPolicy>();
+		for (long i = 1; i <= 3; i++) {
+			RangerPolicy policy = rangerPolicy();
+			policy.setId(i);
+			cachedPolicies.add(policy);
+		}
+
+		// version 6 deleted policy 2, version 7 changed only the tag-service policies
+		List<XXPolicyChangeLog> changeLogs = new ArrayList<XXPolicyChangeLog>();
+		changeLogs.add(new XXPolicyChangeLog(Id, XXPolicyChangeLog.CHANGE_TYPE_POLICY_UPDATE, 6L, 2L));
+		changeLogs.add(new XXPolicyChangeLog(Id, XXPolicyChangeLog.CHANGE_TYPE_TAG_POLICIES_UPDATE, 7L, null));
+
+		List<Long> policyIds = new ArrayList<Long>();
+		policyIds.add(3L);
+		policyIds.add(1L);
+
+		Mockito.when(daoManager.getXXPolicy()).thenReturn(xPolicyDao);
+		Mockito.when(daoManager.getXXPolicyChangeLog()).thenReturn(xPolicyChangeLogDao);
+		Mockito.when(xPolicyChangeLogDao.findByServiceIdAndVersions(Id, 5L, 7L)).thenReturn(changeLogs);
+		Mockito.when(xPolicyDao.getById(2L)).thenReturn(null);
+		Mockito.when(xPolicyDao.findIdsByServiceId(Id)).thenReturn(policyIds);
+
+		List<RangerPolicy> policies = serviceDBStore.getServicePoliciesFromDb(xService, cachedPolicies, 5L, 7L);
+
+		Assert.assertEquals(2, policies.size());
+		Assert.assertSame(cachedPolicies.get(0), policies.get(0));
+		Assert.assertSame(cachedPolicies.get(2), policies.get(1));
+		Assert.assertEquals(3, cachedPolicies.size());
+		Mockito.verify(xPolicyDao, Mockito.never()).findByServiceId(Mockito.anyLong());
+	}
+
+	@Test
+	public void test42getServicePoliciesIncrementalMissingVersion() throws Exception {
+		XXService xService = xService();
+		XXPolicyDao xPolicyDao = Mockito.mock(XXPolicyDao.class);
+		XXPolicyChangeLogDao xPolicyChangeLogDao = Mockito.mock(XXPolicyChangeLogDao.class);
+		XXPolicyResourceDao xXPolicyResourceDao = Mockito.mock(XXPolicyResourceDao.class);
+		XXPolicyResourceMapDao xXPolicyResourceMapDao = Mockito.mock(XXPolicyResourceMapDao.class);
+		XXPolicyItemDao xXPolicyItemDao = Mockito.mock(XXPolicyItemDao.class);
+		XXPolicyItemUserPermDao xXPolicyItemUserPermDao = Mockito.mock(XXPolicyItemUserPermDao.class);
+		XXPolicyItemGroupPermDao xXPolicyItemGroupPermDao = Mockito.mock(XXPolicyItemGroupPermDao.class);
+		XXPolicyItemAccessDao xXPolicyItemAccessDao = Mockito.mock(XXPolicyItemAccessDao.class);
+		XXPolicyItemConditionDao xXPolicyItemConditionDao = Mockito.mock(XXPolicyItemConditionDao.class);
+		XXPolicyItemDataMaskInfoDao xXPolicyItemDataMaskInfoDao = Mockito.mock(XXPolicyItemDataMaskInfoDao.class);
+		XXPolicyItemRowFilterInfoDao xXPolicyItemRowFilterInfoDao = Mockito.mock(XXPolicyItemRowFilterInfoDao.class);
+
+		List<RangerPolicy> cachedPolicies = new ArrayList<RangerPolicy>();
+		RangerPolicy cachedPolicy = rangerPolicy();
+		cachedPolicies.add(cachedPolicy);
+
+		// version 7 is not in the change-log
+		List<XXPolicyChangeLog> changeLogs = new ArrayList<XXPolicyChangeLog>();
+		changeLogs.add(new XXPolicyChangeLog(Id, XXPolicyChangeLog.CHANGE_TYPE_POLICY_UPDATE, 6L, 2L));
+
+		Mockito.when(daoManager.getXXPolicy()).thenReturn(xPolicyDao);
+		Mockito.when(daoManager.getXXPolicyChangeLog()).thenReturn(xPolicyChangeLogDao);
+		Mockito.when(daoManager.getXXPolicyResource()).thenReturn(xXPolicyResourceDao);
+		Mockito.when(daoManager.getXXPolicyResourceMap()).thenReturn(xXPolicyResourceMapDao);
+		Mockito.when(daoManager.getXXPolicyItem()).thenReturn(xXPolicyItemDao);
+		Mockito.when(daoManager.getXXPolicyItemUserPerm()).thenReturn(xXPolicyItemUserPermDao);
+		Mockito.when(daoManager.getXXPolicyItemGroupPerm()).thenReturn(xXPolicyItemGroupPermDao);
+		Mockito.when(daoManager.getXXPolicyItemAccess()).thenReturn(xXPolicyItemAccessDao);
+		Mockito.when(daoManager.getXXPolicyItemCondition()).thenReturn(xXPolicyItemConditionDao);
+		Mockito.when(daoManager.getXXPolicyItemDataMaskInfo()).thenReturn(xXPolicyItemDataMaskInfoDao);
+		Mockito.when(daoManager.getXXPolicyItemRowFilterInfo()).thenReturn(xXPolicyItemRowFilterInfoDao);
+		Mockito.when(xPolicyChangeLogDao.findByServiceIdAndVersions(Id, 5L, 7L)).thenReturn(changeLogs);
+
+		List<RangerPolicy> policies = serviceDBStore.getServicePoliciesFromDb(xService, cachedPolicies, 5L, 7L);
+
+		Assert.assertTrue(policies.isEmpty());
+		Mockito.verify(xPolicyDao).findByServiceId(Id);
+		Mockito.verify(xPolicyDao, Mockito.never()).getById(Mockito.anyLong());
+	}
+
+	@Test
+	public void test43getPaginatedPoliciesReadsOnlyPage() throws Exception {
+		SearchFilter filter = new SearchFilter();
+		filter.setParam(SearchFilter.USER, "user1");
+		filter.setStartIndex(2);
+		filter.setMaxRows(2);
+
+		XXService xService = xService();
+
+		List<Long> pagePolicyIds = new ArrayList<Long>();
+		pagePolicyIds.add(5L);
+		pagePolicyIds.add(3L);
+
+		XXPolicyDao xPolicyDao = Mockito.mock(XXPolicyDao.class);
+		XXServiceDao xServiceDao = Mockito.mock(XXServiceDao.class);
+		XXPolicyResourceDao xPolicyResourceDao = Mockito.mock(XXPolicyResourceDao.class);
+		XXPolicyResourceMapDao xPolicyResourceMapDao = Mockito.mock(XXPolicyResourceMapDao.class);
+		XXPolicyItemDao xPolicyItemDao = Mockito.mock(XXPolicyItemDao.class);
+		XXPolicyItemUserPermDao xPolicyItemUserPermDao = Mockito.mock(XXPolicyItemUserPermDao.class);
+		XXPolicyItemGroupPermDao xPolicyItemGroupPermDao = Mockito.mock(XXPolicyItemGroupPermDao.class);
+		XXPolicyItemAccessDao xPolicyItemAccessDao = Mockito.mock(XXPolicyItemAccessDao.class);
+		XXPolicyItemConditionDao xPolicyItemConditionDao = Mockito.mock(XXPolicyItemConditionDao.class);
+		XXPolicyItemDataMaskInfoDao xPolicyItemDataMaskInfoDao = Mockito.mock(XXPolicyItemDataMaskInfoDao.class);
+		XXPolicyItemRowFilterInfoDao xPolicyItemRowFilterInfoDao = Mockito.mock(XXPolicyItemRowFilterInfoDao.class);
+
+		Mockito.when(daoManager.getXXPolicy()).thenReturn(xPolicyDao);
+		Mockito.when(daoManager.getXXService()).thenReturn(xServiceDao);
+		Mockito.when(daoManager.getXXPolicyResource()).thenReturn(xPolicyResourceDao);
+		Mockito.when(daoManager.getXXPolicyResourceMap()).thenReturn(xPolicyResourceMapDao);
+		Mockito.when(daoManager.getXXPolicyItem()).thenReturn(xPolicyItemDao);
+		Mockito.when(daoManager.getXXPolicyItemUserPerm()).thenReturn(xPolicyItemUserPermDao);
+		Mockito.when(daoManager.getXXPolicyItemGroupPerm()).thenReturn(xPolicyItemGroupPermDao);
+		Mockito.when(daoManager.getXXPolicyItemAccess()).thenReturn(xPolicyItemAccessDao);
+		Mockito.when(daoManager.getXXPolicyItemCondition()).thenReturn(xPolicyItemConditionDao);
+		Mockito.when(daoManager.getXXPolicyItemDataMaskInfo()).thenReturn(xPolicyItemDataMaskInfoDao);
+		Mockito.when(daoManager.getXXPolicyItemRowFilterInfo()).thenReturn(xPolicyItemRowFilterInfoDao);
+		Mockito.when(xServiceDao.getById(xService.getId())).thenReturn(xService);
+
+		for (Long policyId : pagePolicyIds) {
+			XXPolicy xPolicy = new XXPolicy();
+			xPolicy.setId(policyId);
+			xPolicy.setName("policy-" + policyId);
+			xPolicy.setService(xService.getId());
+
+			Mockito.when(xPolicyDao.getById(policyId)).thenReturn(xPolicy);
+		}
+
+		Mockito.when(policyService.getPolicyCount(filter)).thenReturn(10L);
+		Mockito.when(policyService.searchPolicyIds(filter)).thenReturn(pagePolicyIds);
+
+		PList<RangerPolicy> policies = serviceDBStore.getPaginatedPolicies(filter);
+
+		Assert.assertEquals(10, policies.getTotalCount());
+		Assert.assertEquals(2, policies.getList().size());
+		Assert.assertEquals(Long.valueOf(5L), policies.getList().get(0).getId());
+		Assert.assertEquals(Long.valueOf(3L), policies.getList().get(1).getId());
+		Assert.assertEquals(xService.getName(), policies.getList().get(0).getService());
+		Mockito.verify(xPolicyDao, Mockito.never()).findByServiceId(Mockito.anyLong());
+		Mockito.verify(daoManager, Mockito.never()).getXXGroupUser();
+	}
+
+	@Test
+	public void test44getPoliciesInJsonStreamsExportList() throws Exception {
+		final ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+		HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+		Mockito.when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				outBytes.write(b);
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener writeListener) {
+			}
+		});
+
+		List<RangerPolicy> policies = new ArrayList<RangerPolicy>();
+		for (long i = 1; i <= 3; i++) {
+			RangerPolicy policy = rangerPolicy();
+			policy.setId(i);
+			policy.setName("policy-" + i);
+			policies.add(policy);
+		}
+
+		serviceDBStore.getPoliciesInJson(policies, response);
+
+		RangerExportPolicyList exported = new Gson().fromJson(outBytes.toString("UTF-8"), RangerExportPolicyList.class);
+
+		Assert.assertEquals(3, exported.getPolicies().size());
+		Assert.assertEquals("policy-3", exported.getPolicies().get(2).getName());
+		Assert.assertEquals(policies.get(0).getResources().keySet(), exported.getPolicies().get(0).getResources().keySet());
+		Assert.assertTrue(exported.getMetaDataInfo().containsKey("Host name"));
+		Mockito.verify(response).setStatus(HttpServletResponse.SC_OK);
+	}
 }
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.biz;
+
+import java.util.Arrays;
+
+import org.apache.ranger.common.RangerConstants;
+import org.apache.ranger.common.UserSessionBase;
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.db.XXModuleDefDao;
+import org.apache.ranger.db.XXPortalUserDao;
+import org.apache.ranger.db.XXPortalUserRoleDao;
+import org.apache.ranger.db.XXUserDao;
+import org.apache.ranger.entity.XXPortalUser;
+import org.apache.ranger.entity.XXPortalUserRole;
+import org.apache.ranger.entity.XXUser;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestSessionMgr {
+	private static final String LOGIN_ID = "hive";
+
+	@InjectMocks
+	SessionMgr sessionMgr = new SessionMgr();
+
+	@Mock
+	RangerDaoManager daoManager;
+
+	@Mock
+	XXPortalUserDao xPortalUserDao;
+
+	@Mock
+	XXPortalUserRoleDao xPortalUserRoleDao;
+
+	@Mock
+	XXUserDao xUserDao;
+
+	@Mock
+	XXModuleDefDao xModuleDefDao;
+
+	@Before
+	public void setup() {
+		XXPortalUser portalUser = new XXPortalUser();
+		portalUser.setId(1L);
+		portalUser.setLoginId(LOGIN_ID);
+
+		XXPortalUserRole userRole = new XXPortalUserRole();
+		userRole.setUserId(1L);
+		userRole.setUserRole(RangerConstants.ROLE_USER);
+
+		XXUser xUser = new XXUser();
+		xUser.setId(2L);
+		xUser.setName(LOGIN_ID);
+
+		Mockito.when(daoManager.getXXPortalUser()).thenReturn(xPortalUserDao);
+		Mockito.when(daoManager.getXXPortalUserRole()).thenReturn(xPortalUserRoleDao);
+		Mockito.when(daoManager.getXXUser()).thenReturn(xUserDao);
+		Mockito.when(daoManager.getXXModuleDef()).thenReturn(xModuleDefDao);
+
+		Mockito.when(xPortalUserDao.findByLoginId(LOGIN_ID)).thenReturn(portalUser);
+		Mockito.when(xPortalUserRoleDao.findByUserId(1L)).thenReturn(Arrays.asList(userRole));
+		Mockito.when(xUserDao.findByUserName(LOGIN_ID)).thenReturn(xUser);
+		Mockito.when(xModuleDefDao.findAccessibleModulesByUserId(1L, 2L)).thenReturn(Arrays.asList(RangerConstants.MODULE_RESOURCE_BASED_POLICIES));
+	}
+
+	@Test
+	public void testPermissionsAreLoadedOnceForSessions() {
+		UserSessionBase session1 = createUserSession();
+		UserSessionBase session2 = createUserSession();
+
+		sessionMgr.refreshPermissionsIfNeeded(session1);
+		sessionMgr.refreshPermissionsIfNeeded(session2);
+
+		Assert.assertTrue(session1.getRangerUserPermission().getUserPermissions().contains(RangerConstants.MODULE_RESOURCE_BASED_POLICIES));
+		Assert.assertEquals(session1.getRangerUserPermission().getUserPermissions(), session2.getRangerUserPermission().getUserPermissions());
+		Assert.assertNotSame(session1.getRangerUserPermission(), session2.getRangerUserPermission());
+
+		Mockito.verify(xModuleDefDao, Mockito.times(1)).findAccessibleModulesByUserId(1L, 2L);
+	}
+
+	@Test
+	public void testResetPrincipalCache() {
+		sessionMgr.refreshPermissionsIfNeeded(createUserSession());
+
+		sessionMgr.resetPrincipalCache();
+
+		sessionMgr.refreshPermissionsIfNeeded(createUserSession());
+
+		Mockito.verify(xModuleDefDao, Mockito.times(2)).findAccessibleModulesByUserId(1L, 2L);
+	}
+
+	@Test
+	public void testResetPrincipalCacheAfterCommit() {
+		TransactionSynchronizationManager.initSynchronization();
+
+		try {
+			sessionMgr.resetPrincipalCache();
+
+			// loaded by another request before the transaction commits
+			sessionMgr.refreshPermissionsIfNeeded(createUserSession());
+
+			for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+				synchronization.afterCommit();
+			}
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		sessionMgr.refreshPermissionsIfNeeded(createUserSession());
+
+		Mockito.verify(xModuleDefDao, Mockito.times(2)).findAccessibleModulesByUserId(1L, 2L);
+	}
+
+	@Test
+	public void testResetUserModulePermissionReloads() {
+		UserSessionBase session = createUserSession();
+
+		sessionMgr.refreshPermissionsIfNeeded(session);
+
+		Mockito.when(xModuleDefDao.findAccessibleModulesByUserId(1L, 2L)).thenReturn(Arrays.asList(RangerConstants.MODULE_AUDIT));
+
+		sessionMgr.resetUserModulePermission(session);
+		sessionMgr.refreshPermissionsIfNeeded(createUserSession());
+
+		Assert.assertTrue(session.getRangerUserPermission().getUserPermissions().contains(RangerConstants.MODULE_AUDIT));
+		Assert.assertFalse(session.getRangerUserPermission().getUserPermissions().contains(RangerConstants.MODULE_RESOURCE_BASED_POLICIES));
+
+		Mockito.verify(xModuleDefDao, Mockito.times(3)).findAccessibleModulesByUserId(1L, 2L);
+	}
+
+	private UserSessionBase createUserSession() {
+		XXPortalUser portalUser = new XXPortalUser();
+		portalUser.setId(1L);
+		portalUser.setLoginId(LOGIN_ID);
+
+		UserSessionBase ret = new UserSessionBase();
+		ret.setXXPortalUser(portalUser);
+
+		return ret;
+	}
+}
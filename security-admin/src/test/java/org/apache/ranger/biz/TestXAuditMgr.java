@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.biz;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import javax.ws.rs.WebApplicationException;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.apache.ranger.common.MessageEnums;
+import org.apache.ranger.common.RESTErrorUtil;
+import org.apache.ranger.common.RequestContext;
+import org.apache.ranger.common.SearchCriteria;
+import org.apache.ranger.security.context.RangerContextHolder;
+import org.apache.ranger.security.context.RangerSecurityContext;
+import org.apache.ranger.service.XAccessAuditService;
+import org.apache.ranger.solr.SolrAccessAuditsService;
+import org.apache.ranger.view.VXAccessAuditCount;
+import org.apache.ranger.view.VXAccessAuditCountList;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestXAuditMgr {
+
+	@InjectMocks
+	XAuditMgr xAuditMgr = new XAuditMgr();
+
+	@Mock
+	RangerBizUtil rangerBizUtil;
+
+	@Mock
+	RESTErrorUtil restErrorUtil;
+
+	@Mock
+	XAccessAuditService xAccessAuditService;
+
+	@Mock
+	SolrAccessAuditsService solrAccessAuditsService;
+
+	@Before
+	public void setup() {
+		Mockito.when(rangerBizUtil.getAuditDBType()).thenReturn("db");
+		Mockito.when(restErrorUtil.createRESTException(Mockito.anyString(), Mockito.any(MessageEnums.class))).thenReturn(new WebApplicationException());
+	}
+
+	@Test
+	public void testCountsAreCached() {
+		List<VXAccessAuditCount> counts = Arrays.asList(new VXAccessAuditCount("bob", 20), new VXAccessAuditCount("alice", 5));
+
+		Mockito.when(xAccessAuditService.getXAccessAuditCountsByField(Mockito.any(SearchCriteria.class), Mockito.eq("requestUser"), Mockito.eq(10))).thenReturn(counts);
+
+		VXAccessAuditCountList first  = xAuditMgr.getXAccessAuditCounts(createSearchCriteria(0), "requestUser", null);
+		VXAccessAuditCountList second = xAuditMgr.getXAccessAuditCounts(createSearchCriteria(0), "requestUser", null);
+		VXAccessAuditCountList other  = xAuditMgr.getXAccessAuditCounts(createSearchCriteria(1), "requestUser", null);
+
+		Assert.assertEquals("requestUser", first.getField());
+		Assert.assertEquals(2, first.getListSize());
+		Assert.assertEquals("bob", second.getVXAccessAuditCounts().get(0).getValue());
+		Assert.assertEquals(20, second.getVXAccessAuditCounts().get(0).getCount());
+		Assert.assertEquals(2, other.getListSize());
+
+		Mockito.verify(xAccessAuditService, Mockito.times(2)).getXAccessAuditCountsByField(Mockito.any(SearchCriteria.class), Mockito.eq("requestUser"), Mockito.eq(10));
+
+		xAuditMgr.resetCountsCache();
+		xAuditMgr.getXAccessAuditCounts(createSearchCriteria(0), "requestUser", null);
+
+		Mockito.verify(xAccessAuditService, Mockito.times(3)).getXAccessAuditCountsByField(Mockito.any(SearchCriteria.class), Mockito.eq("requestUser"), Mockito.eq(10));
+		Mockito.verifyZeroInteractions(solrAccessAuditsService);
+	}
+
+	@Test(expected = WebApplicationException.class)
+	public void testInvalidCountField() {
+		xAuditMgr.getXAccessAuditCounts(new SearchCriteria(), "requestData", 10);
+	}
+
+	@Test
+	public void testCountsByTimeInSolr() throws Exception {
+		DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+		dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+		SearchCriteria searchCriteria = new SearchCriteria();
+		searchCriteria.getParamList().put("startDate", dateFormat.parse("2016-10-01 05:30"));
+		searchCriteria.getParamList().put("endDate", dateFormat.parse("2016-10-03 00:00"));
+
+		Mockito.when(rangerBizUtil.getAuditDBType()).thenReturn("solr");
+		Mockito.when(solrAccessAuditsService.getXAccessAuditCountsByTime(Mockito.any(SearchCriteria.class), Mockito.any(Date.class), Mockito.any(Date.class), Mockito.anyString()))
+				.thenReturn(new ArrayList<VXAccessAuditCount>());
+
+		VXAccessAuditCountList counts = xAuditMgr.getXAccessAuditCountsByTime(searchCriteria, "day");
+
+		ArgumentCaptor<SearchCriteria> criteria = ArgumentCaptor.forClass(SearchCriteria.class);
+		ArgumentCaptor<Date>           start    = ArgumentCaptor.forClass(Date.class);
+		ArgumentCaptor<Date>           end      = ArgumentCaptor.forClass(Date.class);
+
+		Mockito.verify(solrAccessAuditsService).getXAccessAuditCountsByTime(criteria.capture(), start.capture(), end.capture(), Mockito.eq("+1DAY"));
+
+		// aligned to days, including the whole of the end day
+		Assert.assertEquals(dateFormat.parse("2016-10-01 00:00"), start.getValue());
+		Assert.assertEquals(dateFormat.parse("2016-10-04 00:00"), end.getValue());
+		Assert.assertEquals(start.getValue(), criteria.getValue().getParamValue("startDate"));
+		Assert.assertEquals(new Date(end.getValue().getTime() - 1), criteria.getValue().getParamValue("endDate"));
+
+		Assert.assertEquals("eventTime", counts.getField());
+		Assert.assertEquals(XAuditMgr.COUNT_GAP_DAY, counts.getGap());
+
+		// the given criteria is left as it was
+		Assert.assertEquals(dateFormat.parse("2016-10-01 05:30"), searchCriteria.getParamValue("startDate"));
+	}
+
+	@Test
+	public void testCountsByTimeWithClientTimeOffset() throws Exception {
+		DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+		dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+		SearchCriteria searchCriteria = new SearchCriteria();
+		searchCriteria.getParamList().put("startDate", dateFormat.parse("2016-10-01 00:00"));
+		searchCriteria.getParamList().put("endDate", dateFormat.parse("2016-10-02 00:00"));
+
+		Mockito.when(xAccessAuditService.getXAccessAuditCountsByTime(Mockito.any(SearchCriteria.class), Mockito.any(Date.class), Mockito.any(Date.class), Mockito.anyLong(), Mockito.any(DateFormat.class)))
+				.thenReturn(new ArrayList<VXAccessAuditCount>());
+
+		// a client 5 hours behind UTC
+		RequestContext requestContext = new RequestContext();
+		requestContext.setClientTimeOffsetInMinute(300);
+
+		RangerSecurityContext context = new RangerSecurityContext();
+		context.setRequestContext(requestContext);
+		RangerContextHolder.setSecurityContext(context);
+
+		try {
+			xAuditMgr.getXAccessAuditCountsByTime(searchCriteria, "day");
+		} finally {
+			RangerContextHolder.resetSecurityContext();
+		}
+
+		ArgumentCaptor<Date> start = ArgumentCaptor.forClass(Date.class);
+		ArgumentCaptor<Date> end   = ArgumentCaptor.forClass(Date.class);
+
+		Mockito.verify(xAccessAuditService).getXAccessAuditCountsByTime(Mockito.any(SearchCriteria.class), start.capture(), end.capture(), Mockito.eq(DateUtils.MILLIS_PER_DAY), Mockito.any(DateFormat.class));
+
+		// days of the client, from the start of startDate till the end of endDate
+		Assert.assertEquals(dateFormat.parse("2016-10-01 05:00"), start.getValue());
+		Assert.assertEquals(dateFormat.parse("2016-10-03 05:00"), end.getValue());
+	}
+
+	@Test(expected = WebApplicationException.class)
+	public void testTooManyBuckets() {
+		SearchCriteria searchCriteria = new SearchCriteria();
+		searchCriteria.getParamList().put("startDate", new Date(0));
+		searchCriteria.getParamList().put("endDate", new Date(2000 * DateUtils.MILLIS_PER_DAY));
+
+		xAuditMgr.getXAccessAuditCountsByTime(searchCriteria, XAuditMgr.COUNT_GAP_HOUR);
+	}
+
+	private static SearchCriteria createSearchCriteria(int accessResult) {
+		SearchCriteria ret = new SearchCriteria();
+
+		ret.getParamList().put("accessResult", accessResult);
+		ret.getParamList().put("startDate", new Date(0));
+
+		return ret;
+	}
+}
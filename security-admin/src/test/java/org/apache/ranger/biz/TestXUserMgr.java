@@ -17,6 +17,7 @@
 package org.apache.ranger.biz;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -154,6 +155,9 @@ public class TestXUserMgr {
 	@Mock
 	SessionMgr sessionMgr;
 
+	@Mock
+	RangerUserGroupCache userGroupCache;
+
 	@Mock
 	XPermMapService xPermMapService;
 
@@ -1309,6 +1313,7 @@ public class TestXUserMgr {
 	public void test44getGroupsForUser() {
 		VXUser vxUser = vxUser();
 		String userName = "test";
+		Mockito.when(userGroupCache.getGroupsForUser(userName)).thenReturn(null);
 		Mockito.when(xUserService.getXUserByUserName(userName)).thenReturn(
 				vxUser);
 		Set<String> list = xUserMgr.getGroupsForUser(userName);
@@ -1810,4 +1815,12 @@ public class TestXUserMgr {
 				.getLoginId());
 		Assert.assertNotNull(vXStringList);
 	}
+
+	@Test
+	public void test49getGroupsForUserFromCache() {
+		Set<String> groups = new HashSet<String>(Arrays.asList("finance", "sales"));
+		Mockito.when(userGroupCache.getGroupsForUser("test")).thenReturn(groups);
+		Assert.assertEquals(groups, xUserMgr.getGroupsForUser("test"));
+		Mockito.verifyZeroInteractions(xUserService, xGroupUserService);
+	}
 }
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ranger.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.util.SearchFilter;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRangerPolicySearchIndex {
+
+	@Test
+	public void testPrincipalAndAccessTypeSearch() {
+		RangerPolicySearchIndex index = new RangerPolicySearchIndex(createServicePolicies());
+
+		Assert.assertEquals(Arrays.asList("finance", "finance-tables"), getNames(index, SearchFilter.USER, "alice"));
+		Assert.assertEquals(Arrays.asList("all-databases"), getNames(index, SearchFilter.GROUP, "admins"));
+		Assert.assertEquals(Arrays.asList("finance", "all-databases"), getNames(index, SearchFilter.ACCESS_TYPE, "ALTER"));
+		Assert.assertEquals(Collections.<String>emptyList(), getNames(index, SearchFilter.USER, "nobody"));
+
+		SearchFilter filter = new SearchFilter();
+		filter.setParam(SearchFilter.USER, "alice");
+		filter.setParam(SearchFilter.ACCESS_TYPE, "alter");
+
+		Assert.assertEquals(Arrays.asList("finance"), getNames(index.getCandidatePolicies(filter)));
+	}
+
+	@Test
+	public void testResourceSearch() {
+		RangerPolicySearchIndex index = new RangerPolicySearchIndex(createServicePolicies());
+
+		Assert.assertEquals(Arrays.asList("finance", "finance-tables", "all-databases"), getNames(index, SearchFilter.RESOURCE_PREFIX + "database", "finance"));
+		Assert.assertEquals(Arrays.asList("all-databases"), getNames(index, SearchFilter.RESOURCE_PREFIX + "database", "sales"));
+		Assert.assertEquals(Arrays.asList("finance-tables", "all-databases"), getNames(index, SearchFilter.RESOURCE_PREFIX + "table", "tax_2017"));
+		Assert.assertEquals(Arrays.asList("finance", "all-databases"), getNames(index, SearchFilter.RESOURCE_PREFIX + "table", "Accounts"));
+		Assert.assertEquals(Collections.<String>emptyList(), getNames(index, SearchFilter.RESOURCE_PREFIX + "udf", "id"));
+	}
+
+	@Test
+	public void testNoIndexedParams() {
+		RangerPolicySearchIndex index  = new RangerPolicySearchIndex(createServicePolicies());
+		SearchFilter            filter = new SearchFilter();
+
+		filter.setParam(SearchFilter.POLICY_NAME, "finance");
+
+		Assert.assertFalse(RangerPolicySearchIndex.hasIndexedParams(filter));
+		Assert.assertEquals(3, index.getCandidatePolicies(filter).size());
+		Assert.assertEquals(Long.valueOf(7L), index.getPolicyVersion());
+	}
+
+	private List<String> getNames(RangerPolicySearchIndex index, String paramName, String paramValue) {
+		SearchFilter filter = new SearchFilter();
+
+		filter.setParam(paramName, paramValue);
+
+		Assert.assertTrue(RangerPolicySearchIndex.hasIndexedParams(filter));
+
+		return getNames(index.getCandidatePolicies(filter));
+	}
+
+	private List<String> getNames(List<RangerPolicy> policies) {
+		List<String> ret = new ArrayList<String>();
+
+		for (RangerPolicy policy : policies) {
+			ret.add(policy.getName());
+		}
+
+		return ret;
+	}
+
+	private ServicePolicies createServicePolicies() {
+		RangerServiceDef serviceDef = new RangerServiceDef();
+
+		serviceDef.setName("hive");
+		serviceDef.setResources(Arrays.asList(createResourceDef(1L, "database", null, 1),
+											  createResourceDef(2L, "table", "database", 2),
+											  createResourceDef(3L, "column", "table", 3)));
+
+		List<RangerPolicy> policies = new ArrayList<RangerPolicy>();
+
+		policies.add(createPolicy(1L, "finance", "finance", "accounts", createPolicyItem("alice", null, "select", "alter")));
+		policies.add(createPolicy(2L, "finance-tables", "finance", "tax_*", createPolicyItem("alice", null, "select")));
+		policies.add(createPolicy(3L, "all-databases", "*", null, createPolicyItem("bob", "admins", "alter")));
+
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceName("hivedev");
+		ret.setServiceId(1L);
+		ret.setPolicyVersion(7L);
+		ret.setServiceDef(serviceDef);
+		ret.setPolicies(policies);
+
+		return ret;
+	}
+
+	private RangerResourceDef createResourceDef(Long itemId, String name, String parent, Integer level) {
+		Map<String, String> matcherOptions = new HashMap<String, String>();
+
+		matcherOptions.put("wildCard", "true");
+		matcherOptions.put("ignoreCase", "true");
+
+		return new RangerResourceDef(itemId, name, "string", level, parent, true, true, false, true,
+				"org.apache.ranger.plugin.resourcematcher.RangerDefaultResourceMatcher", matcherOptions,
+				null, null, null, name, name, null, null, null);
+	}
+
+	private RangerPolicy createPolicy(Long id, String name, String database, String table, RangerPolicyItem policyItem) {
+		Map<String, RangerPolicyResource> resources = new HashMap<String, RangerPolicyResource>();
+
+		resources.put("database", new RangerPolicyResource(database));
+		resources.put("table", new RangerPolicyResource(table != null ? table : "*"));
+		resources.put("column", new RangerPolicyResource("*"));
+
+		RangerPolicy ret = new RangerPolicy();
+
+		ret.setId(id);
+		ret.setName(name);
+		ret.setService("hivedev");
+		ret.setResources(resources);
+		ret.setPolicyItems(Arrays.asList(policyItem));
+
+		return ret;
+	}
+
+	private RangerPolicyItem createPolicyItem(String user, String group, String... accessTypes) {
+		List<RangerPolicyItemAccess> accesses = new ArrayList<RangerPolicyItemAccess>();
+
+		for (String accessType : accessTypes) {
+			accesses.add(new RangerPolicyItemAccess(accessType));
+		}
+
+		return new RangerPolicyItem(accesses, user != null ? Arrays.asList(user) : null, group != null ? Arrays.asList(group) : null,
+				Collections.<RangerPolicyItemCondition>emptyList(), false);
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ranger.common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerPolicyResourceSignature;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRangerPolicySignatureMap {
+
+	@Test
+	public void testGetPolicies() {
+		RangerPolicy finance  = createPolicy(1L, "finance", "/finance", true);
+		RangerPolicy finance2 = createPolicy(2L, "finance-disabled", "/finance", false);
+		RangerPolicy sales    = createPolicy(3L, "sales", "/sales", true);
+
+		List<RangerPolicy> policies = new ArrayList<RangerPolicy>();
+
+		policies.add(finance);
+		policies.add(finance2);
+		policies.add(sales);
+
+		ServicePolicies servicePolicies = new ServicePolicies();
+
+		servicePolicies.setServiceName("hdfsdev");
+		servicePolicies.setPolicyVersion(5L);
+		servicePolicies.setPolicies(policies);
+
+		RangerPolicySignatureMap signatureMap = new RangerPolicySignatureMap(servicePolicies);
+		String                   signature    = new RangerPolicyResourceSignature(createPolicy(null, "new", "/finance", true)).getSignature();
+
+		Assert.assertEquals(Long.valueOf(5L), signatureMap.getPolicyVersion());
+		Assert.assertEquals(2, signatureMap.getPolicies(signature, null).size());
+		Assert.assertEquals(1, signatureMap.getPolicies(signature, Boolean.TRUE).size());
+		Assert.assertEquals(Long.valueOf(1L), signatureMap.getPolicies(signature, Boolean.TRUE).get(0).getId());
+		Assert.assertEquals(Long.valueOf(2L), signatureMap.getPolicies(signature, Boolean.FALSE).get(0).getId());
+		Assert.assertTrue(signatureMap.getPolicies(new RangerPolicyResourceSignature(createPolicy(null, "new", "/hr", true)).getSignature(), null).isEmpty());
+	}
+
+	private RangerPolicy createPolicy(Long id, String name, String path, boolean isEnabled) {
+		Map<String, RangerPolicyResource> resources = new HashMap<String, RangerPolicyResource>();
+
+		resources.put("path", new RangerPolicyResource(path));
+
+		RangerPolicy ret = new RangerPolicy();
+
+		ret.setId(id);
+		ret.setName(name);
+		ret.setService("hdfsdev");
+		ret.setIsEnabled(isEnabled);
+		ret.setResources(resources);
+
+		return ret;
+	}
+}
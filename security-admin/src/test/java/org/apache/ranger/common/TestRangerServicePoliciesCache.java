@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ranger.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.ranger.common.RangerServicePoliciesCache.ServicePoliciesPayload;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRangerServicePoliciesCache {
+
+	@Test
+	public void testPayloadRoundTrip() throws Exception {
+		ServicePolicies servicePolicies = createServicePolicies(5L, 100);
+
+		ServicePoliciesPayload payload = RangerServicePoliciesCache.getInstance().getServicePoliciesPayload("hdfsdev", servicePolicies);
+
+		ServicePolicies downloaded = new ObjectMapper().readValue(IOUtils.toByteArray(payload.getStream()), ServicePolicies.class);
+
+		Assert.assertEquals(Long.valueOf(5L), payload.getPolicyVersion());
+		Assert.assertEquals(100, downloaded.getPolicies().size());
+		Assert.assertEquals("policy-42", downloaded.getPolicies().get(42).getName());
+		Assert.assertTrue(payload.getCompressedSize() < IOUtils.toByteArray(payload.getStream()).length);
+	}
+
+	@Test
+	public void testETag() throws Exception {
+		ServicePoliciesPayload payload1 = new ServicePoliciesPayload(createServicePolicies(5L, 10));
+		ServicePoliciesPayload payload2 = new ServicePoliciesPayload(createServicePolicies(5L, 10));
+		ServicePoliciesPayload payload3 = new ServicePoliciesPayload(createServicePolicies(6L, 10));
+
+		Assert.assertEquals(payload1.getETag(), payload2.getETag());
+		Assert.assertNotEquals(payload1.getETag(), payload3.getETag());
+
+		Assert.assertTrue(payload1.isMatchingETag("\"" + payload1.getETag() + "\""));
+		Assert.assertTrue(payload1.isMatchingETag("\"abc\", W/\"" + payload1.getETag() + "\""));
+		Assert.assertTrue(payload1.isMatchingETag("*"));
+		Assert.assertFalse(payload1.isMatchingETag("\"" + payload3.getETag() + "\""));
+		Assert.assertFalse(payload1.isMatchingETag(null));
+	}
+
+	private ServicePolicies createServicePolicies(Long version, int count) {
+		ServicePolicies ret = new ServicePolicies();
+		List<RangerPolicy> policies = new ArrayList<RangerPolicy>();
+
+		for (int i = 0; i < count; i++) {
+			RangerPolicy policy = new RangerPolicy();
+			policy.setId((long) i);
+			policy.setName("policy-" + i);
+			policy.setService("hdfsdev");
+			policies.add(policy);
+		}
+
+		ret.setServiceName("hdfsdev");
+		ret.setServiceId(1L);
+		ret.setPolicyVersion(version);
+		ret.setPolicies(policies);
+
+		return ret;
+	}
+}
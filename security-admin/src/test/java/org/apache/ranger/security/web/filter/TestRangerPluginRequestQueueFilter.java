@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.security.web.filter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.ranger.common.PropertiesUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestRangerPluginRequestQueueFilter {
+
+	private RangerPluginRequestQueueFilter filter;
+
+	@Before
+	public void setup() throws Exception {
+		PropertiesUtil.getPropertiesMap().put(RangerPluginRequestQueueFilter.PROP_MAX_CONCURRENT, "1");
+		PropertiesUtil.getPropertiesMap().put(RangerPluginRequestQueueFilter.PROP_MAX_QUEUED, "1");
+
+		filter = new RangerPluginRequestQueueFilter();
+		filter.afterPropertiesSet();
+	}
+
+	@After
+	public void cleanup() {
+		PropertiesUtil.getPropertiesMap().remove(RangerPluginRequestQueueFilter.PROP_MAX_CONCURRENT);
+		PropertiesUtil.getPropertiesMap().remove(RangerPluginRequestQueueFilter.PROP_MAX_QUEUED);
+	}
+
+	@Test
+	public void testQueuedRequestIsDispatchedOnRelease() throws Exception {
+		final HttpServletRequest  request2  = createRequest();
+		final HttpServletResponse response2 = Mockito.mock(HttpServletResponse.class);
+		final HttpServletRequest  request3  = createRequest();
+		final HttpServletResponse response3 = Mockito.mock(HttpServletResponse.class);
+		final FilterChain         chain2    = Mockito.mock(FilterChain.class);
+		final AsyncContext        async2    = mockAsync(request2);
+
+		FilterChain chain1 = new FilterChain() {
+			@Override
+			public void doFilter(ServletRequest request, ServletResponse response) {
+				try {
+					// while the first request is in process: the second is queued, the third rejected
+					filter.doFilter(request2, response2, chain2);
+					filter.doFilter(request3, response3, Mockito.mock(FilterChain.class));
+
+					Assert.assertEquals(1, filter.getActiveCount());
+					Assert.assertEquals(1, filter.getQueuedCount());
+				} catch (Exception excp) {
+					throw new RuntimeException(excp);
+				}
+			}
+		};
+
+		filter.doFilter(createRequest(), Mockito.mock(HttpServletResponse.class), chain1);
+
+		Mockito.verify(chain2, Mockito.never()).doFilter(request2, response2);
+		Mockito.verify(response3).sendError(Mockito.eq(HttpServletResponse.SC_SERVICE_UNAVAILABLE), Mockito.anyString());
+		Mockito.verify(async2).dispatch();
+
+		// the permit is carried over to the dispatched request
+		Assert.assertEquals(1, filter.getActiveCount());
+		Assert.assertEquals(0, filter.getQueuedCount());
+
+		filter.doFilter(request2, response2, chain2);
+
+		Mockito.verify(chain2).doFilter(request2, response2);
+		Assert.assertEquals(0, filter.getActiveCount());
+	}
+
+	@Test
+	public void testQueuedRequestTimesOut() throws Exception {
+		final HttpServletRequest  request2  = createRequest();
+		final HttpServletResponse response2 = Mockito.mock(HttpServletResponse.class);
+		final AsyncContext        async2    = mockAsync(request2);
+		final AsyncListener[]     listener  = new AsyncListener[1];
+
+		FilterChain chain1 = new FilterChain() {
+			@Override
+			public void doFilter(ServletRequest request, ServletResponse response) {
+				try {
+					filter.doFilter(request2, response2, Mockito.mock(FilterChain.class));
+
+					ArgumentCaptor<AsyncListener> captor = ArgumentCaptor.forClass(AsyncListener.class);
+
+					Mockito.verify(async2).addListener(captor.capture());
+
+					listener[0] = captor.getValue();
+					listener[0].onTimeout(new AsyncEvent(async2, request2, response2));
+				} catch (Exception excp) {
+					throw new RuntimeException(excp);
+				}
+			}
+		};
+
+		filter.doFilter(createRequest(), Mockito.mock(HttpServletResponse.class), chain1);
+
+		Mockito.verify(response2).sendError(Mockito.eq(HttpServletResponse.SC_SERVICE_UNAVAILABLE), Mockito.anyString());
+		Mockito.verify(async2).complete();
+		Mockito.verify(async2, Mockito.never()).dispatch();
+
+		Assert.assertEquals(0, filter.getActiveCount());
+		Assert.assertEquals(0, filter.getQueuedCount());
+	}
+
+	private static HttpServletRequest createRequest() {
+		HttpServletRequest        ret        = Mockito.mock(HttpServletRequest.class);
+		final Map<String, Object> attributes = new HashMap<String, Object>();
+
+		Mockito.when(ret.isAsyncSupported()).thenReturn(true);
+		Mockito.when(ret.getAttribute(Mockito.anyString())).thenAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) {
+				return attributes.get(invocation.getArguments()[0]);
+			}
+		});
+		Mockito.doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+
+				return null;
+			}
+		}).when(ret).setAttribute(Mockito.anyString(), Mockito.any());
+		Mockito.doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				attributes.remove(invocation.getArguments()[0]);
+
+				return null;
+			}
+		}).when(ret).removeAttribute(Mockito.anyString());
+
+		return ret;
+	}
+
+	private static AsyncContext mockAsync(HttpServletRequest request) {
+		AsyncContext ret = Mockito.mock(AsyncContext.class);
+
+		Mockito.when(ret.getRequest()).thenReturn(request);
+		Mockito.when(request.startAsync(Mockito.any(ServletRequest.class), Mockito.any(ServletResponse.class))).thenReturn(ret);
+
+		return ret;
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.solr;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+
+import org.apache.ranger.common.MessageEnums;
+import org.apache.ranger.common.RESTErrorUtil;
+import org.apache.ranger.common.SearchCriteria;
+import org.apache.ranger.common.StringUtil;
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.db.XXServiceDefDao;
+import org.apache.ranger.entity.XXServiceDef;
+import org.apache.ranger.view.VXAccessAuditList;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest.METHOD;
+import org.apache.solr.client.solrj.StreamingResponseCallback;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestSolrAccessAuditsService {
+
+	@Mock
+	SolrMgr solrMgr;
+
+	@Mock
+	SolrClient solrClient;
+
+	@Mock
+	RESTErrorUtil restErrorUtil;
+
+	@Mock
+	RangerDaoManager daoManager;
+
+	@Mock
+	XXServiceDefDao xServiceDefDao;
+
+	SolrAccessAuditsService auditsService = new SolrAccessAuditsService();
+
+	@Before
+	public void setup() {
+		SolrUtil solrUtil = new SolrUtil();
+
+		solrUtil.restErrorUtil = restErrorUtil;
+		solrUtil.stringUtil = new StringUtil();
+
+		auditsService.solrMgr = solrMgr;
+		auditsService.solrUtil = solrUtil;
+		auditsService.restErrorUtil = restErrorUtil;
+		auditsService.daoManager = daoManager;
+
+		XXServiceDef xServiceDef = new XXServiceDef();
+		xServiceDef.setId(3L);
+		xServiceDef.setName("hive");
+
+		Mockito.when(solrMgr.getSolrClient()).thenReturn(solrClient);
+		Mockito.when(daoManager.getXXServiceDef()).thenReturn(xServiceDefDao);
+		Mockito.when(xServiceDefDao.getById(3L)).thenReturn(xServiceDef);
+		Mockito.when(restErrorUtil.createRESTException(Mockito.anyString(), Mockito.any(MessageEnums.class))).thenReturn(new WebApplicationException());
+	}
+
+	@Test
+	public void testSearchByCursorWithFields() throws Exception {
+		final List<SolrQuery> queries = new ArrayList<SolrQuery>();
+
+		Mockito.when(solrClient.query(Mockito.any(SolrQuery.class), Mockito.eq(METHOD.POST))).thenAnswer(new Answer<QueryResponse>() {
+			@Override
+			public QueryResponse answer(InvocationOnMock invocation) {
+				queries.add(((SolrQuery) invocation.getArguments()[0]).getCopy());
+
+				return createResponse(Arrays.asList(createDoc("a1", "hive", 3), createDoc("a2", "hdfs", 3)), "AoE=");
+			}
+		});
+
+		SearchCriteria searchCriteria = new SearchCriteria();
+		searchCriteria.setMaxRows(25);
+		searchCriteria.setStartIndex(50);
+		searchCriteria.addParam(SolrAccessAuditsService.PARAM_FIELDS, "eventTime, requestUser,serviceType");
+		searchCriteria.addParam(SolrAccessAuditsService.PARAM_CURSOR_MARK, CursorMarkParams.CURSOR_MARK_START);
+
+		VXAccessAuditList audits = auditsService.searchXAccessAudits(searchCriteria);
+
+		Assert.assertEquals(2, audits.getListSize());
+		Assert.assertEquals("AoE=", audits.getNextCursorMark());
+		Assert.assertEquals("hive", audits.getVXAccessAudits().get(0).getRequestUser());
+		Assert.assertEquals("hive", audits.getVXAccessAudits().get(1).getServiceType());
+
+		SolrQuery query = queries.get(0);
+
+		Assert.assertEquals("id,evtTime,reqUser,repoType", query.getFields());
+		Assert.assertEquals(CursorMarkParams.CURSOR_MARK_START, query.get(CursorMarkParams.CURSOR_MARK_PARAM));
+		Assert.assertEquals("evtTime desc,id asc", query.get(CommonParams.SORT));
+		Assert.assertNull(query.getStart());
+		Assert.assertEquals(Integer.valueOf(25), query.getRows());
+
+		// service type of the page looked up once
+		Mockito.verify(xServiceDefDao, Mockito.times(1)).getById(3L);
+	}
+
+	@Test
+	public void testExportStreamsBatches() throws Exception {
+		final List<String> cursorMarks = new ArrayList<String>();
+
+		Mockito.when(solrClient.queryAndStreamResponse(Mockito.any(SolrQuery.class), Mockito.any(StreamingResponseCallback.class))).thenAnswer(new Answer<QueryResponse>() {
+			@Override
+			public QueryResponse answer(InvocationOnMock invocation) {
+				SolrQuery                 query    = (SolrQuery) invocation.getArguments()[0];
+				StreamingResponseCallback callback = (StreamingResponseCallback) invocation.getArguments()[1];
+				String                    cursor   = query.get(CursorMarkParams.CURSOR_MARK_PARAM);
+
+				cursorMarks.add(cursor);
+
+				List<SolrDocument> docs = new ArrayList<SolrDocument>();
+
+				if (cursorMarks.size() == 1) {
+					docs.add(createDoc("a1", "hive", 3));
+					docs.add(createDoc("a2", "bob, \"the\" user", 3));
+				}
+				for (SolrDocument doc : docs) {
+					callback.streamSolrDocument(doc);
+				}
+
+				return createResponse(new ArrayList<SolrDocument>(docs.size()), docs.isEmpty() ? cursor : "AoE=");
+			}
+		});
+
+		SearchCriteria searchCriteria = new SearchCriteria();
+		searchCriteria.addParam(SolrAccessAuditsService.PARAM_FIELDS, "requestUser,serviceType");
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		auditsService.exportXAccessAudits(searchCriteria, out);
+
+		String[] lines = out.toString("UTF-8").split("\r\n");
+
+		Assert.assertEquals(Arrays.asList(CursorMarkParams.CURSOR_MARK_START, "AoE="), cursorMarks);
+		Assert.assertEquals(3, lines.length);
+		Assert.assertEquals("id,requestUser,serviceType", lines[0]);
+		Assert.assertEquals("a1,hive,hive", lines[1]);
+		Assert.assertEquals("a2,\"bob, \"\"the\"\" user\",hive", lines[2]);
+	}
+
+	@Test(expected = WebApplicationException.class)
+	public void testInvalidField() {
+		SearchCriteria searchCriteria = new SearchCriteria();
+		searchCriteria.addParam(SolrAccessAuditsService.PARAM_FIELDS, "requestUser,password");
+
+		auditsService.searchXAccessAudits(searchCriteria);
+	}
+
+	private static SolrDocument createDoc(String id, String user, int repoType) {
+		SolrDocument ret = new SolrDocument();
+
+		ret.setField("id", id);
+		ret.setField("reqUser", user);
+		ret.setField("repoType", repoType);
+
+		return ret;
+	}
+
+	private QueryResponse createResponse(List<SolrDocument> docs, String nextCursorMark) {
+		NamedList<Object> header = new NamedList<Object>();
+		header.add("status", 0);
+
+		SolrDocumentList results = new SolrDocumentList();
+		results.addAll(docs);
+		results.setNumFound(docs.size());
+
+		NamedList<Object> response = new NamedList<Object>();
+		response.add("responseHeader", header);
+		response.add("response", results);
+		response.add(CursorMarkParams.CURSOR_MARK_NEXT, nextCursorMark);
+
+		return new QueryResponse(response, solrClient);
+	}
+}